@@ -29,15 +29,18 @@ import javax.ws.rs.client.Invocation.Builder;
 import org.apache.http.client.ServiceUnavailableRetryStrategy;
 
 import com.fortify.util.rest.connection.AbstractRestConnection;
+import com.fortify.util.rest.connection.AbstractRestConnectionConfig;
 import com.fortify.util.rest.connection.TooManyRequestsRetryStrategy;
+import com.fortify.util.rest.connection.resilience.RateLimiter;
 
 /**
  * This class provides a basic, non-authenticating REST connection
  * for FoD. It's main characteristics compared to a standard 
  * {@link AbstractRestConnection} is that it will add an 
- * <code>Accept: application/json</code> header, and enable a 
- * 'service unavailable' strategy to retry requests that fail 
- * due to FoD rate limiting.
+ * <code>Accept: application/json</code> header, enable a 
+ * {@link RateLimiter} for pacing requests based on the FoD rate
+ * limit headers, and enable a 'service unavailable' strategy to 
+ * retry requests that fail due to FoD rate limiting.
  */
 public class FoDBasicRestConnection extends AbstractRestConnection {
 	protected FoDBasicRestConnection(FoDRestConnectionConfig<?> config) {
@@ -53,8 +56,27 @@ public class FoDBasicRestConnection extends AbstractRestConnection {
 				.accept("application/json");
 	}
 	
+	/**
+	 * Enable rate limiting by default. If not explicitly configured, this will either
+	 * create a new {@link RateLimiter} instance for this connection, or return a
+	 * {@link RateLimiter} instance shared by all connections for the same tenant if 
+	 * enabled through {@link FoDRestConnectionConfig#rateLimitPerTenant(boolean)}.
+	 */
+	@Override
+	protected RateLimiter createRateLimiter(AbstractRestConnectionConfig<?> config) {
+		RateLimiter result = super.createRateLimiter(config);
+		if ( result == null ) {
+			FoDRestConnectionConfig<?> fodConfig = (FoDRestConnectionConfig<?>)config;
+			result = fodConfig.isRateLimitPerTenant() 
+					? RateLimiter.shared(fodConfig.getRateLimiterKey()).logPrefix("[FoD]")
+					: new RateLimiter().logPrefix("[FoD]");
+		}
+		return result;
+	}
+	
 	@Override
 	protected ServiceUnavailableRetryStrategy getServiceUnavailableRetryStrategy() {
-		return new TooManyRequestsRetryStrategy().retryAfterHeaderName("X-Rate-Limit-Reset").logPrefix("[FoD]");
+		return new TooManyRequestsRetryStrategy().retryAfterHeaderName("X-Rate-Limit-Reset").logPrefix("[FoD]")
+				.rateLimiter(getRateLimiter());
 	}
 }
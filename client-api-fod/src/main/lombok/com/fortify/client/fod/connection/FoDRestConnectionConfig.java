@@ -53,6 +53,7 @@ public class FoDRestConnectionConfig<T extends FoDRestConnectionConfig<T>> exten
 	private String clientSecret;
 	private String tenant;
 	private URI    browserBaseUrl;
+	private boolean rateLimitPerTenant = false;
 	
 	public T clientId(String clientId) {
 		setClientId(clientId);
@@ -69,6 +70,21 @@ public class FoDRestConnectionConfig<T extends FoDRestConnectionConfig<T>> exten
 		return getThis();
 	}
 	
+	/**
+	 * Configure whether a single rate limiter should be shared by all connections
+	 * for the same FoD tenant (or client id) within this JVM; default is false, 
+	 * meaning every connection paces its requests independently. As FoD applies
+	 * rate limits per tenant, sharing the rate limiter avoids concurrent connections
+	 * for the same tenant exceeding the rate limit. This setting is ignored if a 
+	 * rate limiter has been configured explicitly through {@link #rateLimiter(com.fortify.util.rest.connection.resilience.RateLimiter)}.
+	 * @param rateLimitPerTenant
+	 * @return
+	 */
+	public T rateLimitPerTenant(boolean rateLimitPerTenant) {
+		setRateLimitPerTenant(rateLimitPerTenant);
+		return getThis();
+	}
+	
 	public String getUserNameWithTenant() {
 		return getTenant() + "\\" + getUserName();
 	}
@@ -101,6 +117,22 @@ public class FoDRestConnectionConfig<T extends FoDRestConnectionConfig<T>> exten
 		}
 	}
 	
+	@Override
+	protected String getPersistentCacheIdentity() {
+		return StringUtils.isNotBlank(getClientId()) 
+				? "clientId:"+getClientId()+":"+getScope() 
+				: getUserNameWithTenant()+":"+getScope();
+	}
+	
+	/**
+	 * Get the key for looking up the shared rate limiter if 
+	 * {@link #rateLimitPerTenant(boolean)} has been enabled.
+	 * @return
+	 */
+	String getRateLimiterKey() {
+		return getBaseUrl()+"|"+(StringUtils.isNotBlank(getClientId()) ? "clientId:"+getClientId() : "tenant:"+getTenant());
+	}
+	
 	@Override
 	protected void parseUriUserInfo(String userInfo) {
 		if ( userInfo != null ) {
@@ -43,7 +43,8 @@ import com.fortify.util.log4j.LogMaskingHelper;
  * FoD REST API. Given an {@link FoDBasicRestConnection} and 
  * authentication form data, it will call the FoD /oauth/token
  * API to request a REST token. The token will be automatically
- * refreshed as required.
+ * refreshed as required. This class is thread-safe; concurrent callers
+ * will share a single token request.
  */
 public final class FoDTokenFactory {
 	static final Log LOG = LogFactory.getLog(FoDTokenFactory.class);
@@ -52,7 +53,7 @@ public final class FoDTokenFactory {
 	
 	private final FoDBasicRestConnection basicConn;
 	private final Form auth;
-	private FoDTokenFactory.TokenData tokenData = null;
+	private volatile FoDTokenFactory.TokenData tokenData = null;
 	
 	public FoDTokenFactory(FoDBasicRestConnection basicConn, Form auth) {
 		this.basicConn = basicConn;
@@ -60,13 +61,20 @@ public final class FoDTokenFactory {
 	}
 
 	public String getToken() {
-		if ( tokenData == null || tokenData.isExpired() ) {
-			LogMaskingHelper.maskByPatternGroups().patterns(EXPR_TOKEN, EXPR_PASSWORD).on(() ->
-				tokenData = basicConn.executeRequest(HttpMethod.POST, basicConn.getBaseResource().path("/oauth/token"), Entity.entity(auth, "application/x-www-form-urlencoded"), FoDTokenFactory.TokenData.class)
-			);
-			LOG.info("[FoD] Obtained access token, expiring at "+new Date(tokenData.getExpiresAt()).toString());
+		TokenData result = tokenData;
+		if ( result == null || result.isExpired() ) {
+			synchronized (this) {
+				result = tokenData;
+				if ( result == null || result.isExpired() ) {
+					LogMaskingHelper.maskByPatternGroups().patterns(EXPR_TOKEN, EXPR_PASSWORD).on(() ->
+						tokenData = basicConn.executeRequest(HttpMethod.POST, basicConn.getBaseResource().path("/oauth/token"), Entity.entity(auth, "application/x-www-form-urlencoded"), FoDTokenFactory.TokenData.class)
+					);
+					result = tokenData;
+					LOG.info("[FoD] Obtained access token, expiring at "+new Date(result.getExpiresAt()).toString());
+				}
+			}
 		}
-		return tokenData.getAccessToken();
+		return result.getAccessToken();
 	}
 	
 	@JsonIgnoreProperties(ignoreUnknown = true)
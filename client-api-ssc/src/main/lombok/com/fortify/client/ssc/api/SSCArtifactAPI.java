@@ -40,6 +40,7 @@ import com.fortify.client.ssc.api.SSCFileUpDownloadAPI.FileTokenType;
 import com.fortify.client.ssc.api.query.builder.SSCApplicationVersionArtifactsQueryBuilder;
 import com.fortify.client.ssc.api.query.builder.SSCArtifactByIdQueryBuilder;
 import com.fortify.client.ssc.connection.SSCAuthenticatingRestConnection;
+import com.fortify.util.rest.connection.transfer.ITransferProgressListener;
 import com.fortify.util.rest.json.JSONMap;
 import com.fortify.util.spring.SpringExpressionUtil;
 
@@ -85,10 +86,15 @@ public class SSCArtifactAPI extends AbstractSSCAPI {
 	
 	@SSCRequiredActionsPermitted({"POST=/upload/resultFileUpload.html"})
 	public final JSONMap uploadArtifact(String applicationVersionId, File fprFile) {
+		return uploadArtifact(applicationVersionId, fprFile, null);
+	}
+	
+	@SSCRequiredActionsPermitted({"POST=/upload/resultFileUpload.html"})
+	public final JSONMap uploadArtifact(String applicationVersionId, File fprFile, ITransferProgressListener progressListener) {
 		WebTarget webTarget = conn().getBaseResource()
 				.path("/upload/resultFileUpload.html")
 				.queryParam("entityId", ""+applicationVersionId);
-		return conn().api(SSCFileUpDownloadAPI.class).uploadFile(webTarget, FileTokenType.UPLOAD, fprFile);
+		return conn().api(SSCFileUpDownloadAPI.class).uploadFile(webTarget, FileTokenType.UPLOAD, fprFile, progressListener);
 	}
 	
 	@SSCRequiredActionsPermitted({"POST=/api/\\d+/artifacts/\\d+/action"})
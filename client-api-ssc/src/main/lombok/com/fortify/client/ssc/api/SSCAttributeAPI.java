@@ -26,12 +26,17 @@ package com.fortify.client.ssc.api;
 
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
 
 import org.apache.commons.lang.StringUtils;
 import org.springframework.util.LinkedMultiValueMap;
@@ -41,9 +46,15 @@ import com.fortify.client.ssc.annotation.SSCRequiredActionsPermitted;
 import com.fortify.client.ssc.api.query.builder.SSCApplicationVersionAttributesQueryBuilder;
 import com.fortify.client.ssc.api.query.builder.SSCAttributeDefinitionsQueryBuilder;
 import com.fortify.client.ssc.connection.SSCAuthenticatingRestConnection;
+import com.fortify.client.ssc.connection.SSCBulkRequestExecutor;
 import com.fortify.util.rest.json.JSONList;
 import com.fortify.util.rest.json.JSONMap;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
 /**
  * This class is used to access SSC attribute-related functionality.
  * 
@@ -108,14 +119,97 @@ public class SSCAttributeAPI extends AbstractSSCAPI {
 	 */
 	@SSCRequiredActionsPermitted({"PUT=/api/v\\d+/projectVersions/\\d+/attributes"})
 	public JSONList updateApplicationVersionAttributes(String applicationVersionId, MultiValueMap<String, Object> attributeNameOrIdToValuesMap) {
-		JSONList data = new UpdateAttributesJSONMapBuilder(attributeNameOrIdToValuesMap).build();
+		JSONList data = new UpdateAttributesJSONMapBuilder(getAttributeDefinitionsForUpdate()).build(attributeNameOrIdToValuesMap);
 		
 		JSONMap result = conn().executeRequest(HttpMethod.PUT, 
-				conn().getBaseResource().path("/api/v1/projectVersions").path(applicationVersionId).path("attributes"), 
+				getApplicationVersionAttributesResource(applicationVersionId), 
 				Entity.entity(data, "application/json"), JSONMap.class);
 		return result.get("data", JSONList.class);
 	}
 	
+	/**
+	 * Update the application version attributes as specified in the given 
+	 * {@link MultiValueMap} for each of the given application version id's.
+	 * The attribute update request is built only once, and then sent for every
+	 * application version; see {@link #updateApplicationVersionAttributes(Map)} 
+	 * for details.
+	 * @param applicationVersionIds
+	 * @param attributeNameOrIdToValuesMap
+	 * @return {@link Map} containing an {@link AttributeUpdateResult} for each application version id
+	 */
+	@SSCRequiredActionsPermitted({"PUT=/api/v\\d+/projectVersions/\\d+/attributes", "POST=/api/v\\d+/bulk"})
+	public Map<String, AttributeUpdateResult> updateApplicationVersionAttributes(Collection<String> applicationVersionIds, MultiValueMap<String, Object> attributeNameOrIdToValuesMap) {
+		JSONList data = new UpdateAttributesJSONMapBuilder(getAttributeDefinitionsForUpdate()).build(attributeNameOrIdToValuesMap);
+		SSCBulkRequestExecutor bulkRequestExecutor = conn().getBulkRequestExecutor();
+		Map<String, CompletableFuture<JSONMap>> pendingUpdates = new LinkedHashMap<>();
+		for ( String applicationVersionId : applicationVersionIds ) {
+			pendingUpdates.put(applicationVersionId, bulkRequestExecutor.executeRequest(HttpMethod.PUT, 
+					getApplicationVersionAttributesResource(applicationVersionId), data));
+		}
+		return getAttributeUpdateResults(bulkRequestExecutor, pendingUpdates);
+	}
+	
+	/**
+	 * Update the application version attributes for multiple application versions, 
+	 * as specified in the given {@link Map} containing application version id's 
+	 * and corresponding attributes to be updated. Attribute definitions are loaded 
+	 * only once, and the individual updates are sent to SSC in batches through the
+	 * {@link com.fortify.client.ssc.connection.SSCBulkRequestExecutor}. Failure to 
+	 * update a single application version doesn't affect updates for other 
+	 * application versions; the returned {@link Map} contains an 
+	 * {@link AttributeUpdateResult} describing either the updated attributes or 
+	 * the error for each application version id, in the same order as the given
+	 * {@link Map}. 
+	 * @param applicationVersionIdToAttributesMap
+	 * @return {@link Map} containing an {@link AttributeUpdateResult} for each application version id
+	 */
+	@SSCRequiredActionsPermitted({"PUT=/api/v\\d+/projectVersions/\\d+/attributes", "POST=/api/v\\d+/bulk"})
+	public Map<String, AttributeUpdateResult> updateApplicationVersionAttributes(Map<String, MultiValueMap<String, Object>> applicationVersionIdToAttributesMap) {
+		UpdateAttributesJSONMapBuilder builder = new UpdateAttributesJSONMapBuilder(getAttributeDefinitionsForUpdate());
+		SSCBulkRequestExecutor bulkRequestExecutor = conn().getBulkRequestExecutor();
+		Map<String, CompletableFuture<JSONMap>> pendingUpdates = new LinkedHashMap<>();
+		for ( Map.Entry<String, MultiValueMap<String, Object>> entry : applicationVersionIdToAttributesMap.entrySet() ) {
+			CompletableFuture<JSONMap> pendingUpdate;
+			try {
+				pendingUpdate = bulkRequestExecutor.executeRequest(HttpMethod.PUT, 
+					getApplicationVersionAttributesResource(entry.getKey()), builder.build(entry.getValue()));
+			} catch (RuntimeException e) {
+				pendingUpdate = new CompletableFuture<>();
+				pendingUpdate.completeExceptionally(e);
+			}
+			pendingUpdates.put(entry.getKey(), pendingUpdate);
+		}
+		return getAttributeUpdateResults(bulkRequestExecutor, pendingUpdates);
+	}
+	
+	private Map<String, AttributeUpdateResult> getAttributeUpdateResults(SSCBulkRequestExecutor bulkRequestExecutor, Map<String, CompletableFuture<JSONMap>> pendingUpdates) {
+		bulkRequestExecutor.flush();
+		Map<String, AttributeUpdateResult> result = new LinkedHashMap<>();
+		for ( Map.Entry<String, CompletableFuture<JSONMap>> entry : pendingUpdates.entrySet() ) {
+			result.put(entry.getKey(), getAttributeUpdateResult(entry.getKey(), entry.getValue()));
+		}
+		return result;
+	}
+	
+	private AttributeUpdateResult getAttributeUpdateResult(String applicationVersionId, CompletableFuture<JSONMap> pendingUpdate) {
+		try {
+			return new AttributeUpdateResult(applicationVersionId, pendingUpdate.get().get("data", JSONList.class), null);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while updating application version attributes", e);
+		} catch (ExecutionException e) {
+			return new AttributeUpdateResult(applicationVersionId, null, e.getCause());
+		}
+	}
+	
+	private WebTarget getApplicationVersionAttributesResource(String applicationVersionId) {
+		return conn().getBaseResource().path("/api/v1/projectVersions").path(applicationVersionId).path("attributes");
+	}
+	
+	private JSONMap getAttributeDefinitionsForUpdate() {
+		return getAttributeDefinitionsByNameAndId(false, "id", "name", "type", "options");
+	}
+	
 	public MultiValueMap<String, Object> getRequiredAttributesWithDefaultValues() {
 		MultiValueMap<String, Object> result = new LinkedMultiValueMap<>();
 		JSONList requiredAttributeDefinitions = queryAttributeDefinitions()
@@ -161,12 +255,28 @@ public class SSCAttributeAPI extends AbstractSSCAPI {
 		return attributeDefinitionsAndNameOrId;
 	}
 	
-	private final class UpdateAttributesJSONMapBuilder {
-		private final MultiValueMap<String, Object> attributeNameOrIdToValuesMap;
+	/**
+	 * This class describes the result of updating the attributes for a single
+	 * application version through {@link SSCAttributeAPI#updateApplicationVersionAttributes(Map)}.
+	 * If the update was successful, {@link #getAttributes()} returns the updated
+	 * attributes as returned by SSC, otherwise {@link #getError()} returns the 
+	 * error that occurred while updating the attributes.
+	 */
+	@Getter @ToString @RequiredArgsConstructor(access=AccessLevel.PRIVATE)
+	public static final class AttributeUpdateResult {
+		private final String applicationVersionId;
+		private final JSONList attributes;
+		private final Throwable error;
+		
+		public boolean isSuccess() {
+			return error == null;
+		}
+	}
+	
+	private static final class UpdateAttributesJSONMapBuilder {
 		private final JSONMap attributeDefinitionsByNameOrId;
-		public UpdateAttributesJSONMapBuilder(MultiValueMap<String, Object> attributeNameOrIdToValuesMap) {
-			this.attributeNameOrIdToValuesMap = attributeNameOrIdToValuesMap;
-			this.attributeDefinitionsByNameOrId = getAttributeDefinitionsByNameAndId(false, "id", "name", "type", "options");
+		public UpdateAttributesJSONMapBuilder(JSONMap attributeDefinitionsByNameOrId) {
+			this.attributeDefinitionsByNameOrId = attributeDefinitionsByNameOrId;
 		}
 
 		private JSONMap getUpdateAttributeJSONMap(String attributeNameOrId, List<Object> attributeValues) {
@@ -223,7 +333,7 @@ public class SSCAttributeAPI extends AbstractSSCAPI {
 			return values;
 		}
 
-		public JSONList build() {
+		public JSONList build(MultiValueMap<String, Object> attributeNameOrIdToValuesMap) {
 			JSONList data = new JSONList();
 			for ( Map.Entry<String, List<Object>> entry : attributeNameOrIdToValuesMap.entrySet() ) {
 				data.add(getUpdateAttributeJSONMap(entry.getKey(), entry.getValue()));
@@ -28,7 +28,6 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Collections;
@@ -37,7 +36,6 @@ import javax.ws.rs.HttpMethod;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
 
@@ -51,6 +49,8 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import com.fortify.client.ssc.annotation.SSCRequiredActionsPermitted;
 import com.fortify.client.ssc.connection.SSCAuthenticatingRestConnection;
+import com.fortify.util.rest.connection.transfer.DownloadResult;
+import com.fortify.util.rest.connection.transfer.ITransferProgressListener;
 import com.fortify.util.rest.json.JSONMap;
 import com.fortify.util.spring.SpringExpressionUtil;
 
@@ -83,32 +83,54 @@ public class SSCFileUpDownloadAPI extends AbstractSSCAPI {
 	}
 	
 	public final JSONMap uploadFile(WebTarget baseTarget, FileTokenType type, File file) {
+		return uploadFile(baseTarget, type, file, null);
+	}
+	
+	/**
+	 * Upload the given file. The file is streamed from disk while being uploaded, 
+	 * so memory usage doesn't depend on file size.
+	 * @param baseTarget
+	 * @param type
+	 * @param file
+	 * @param progressListener Optional {@link ITransferProgressListener} for receiving upload progress updates
+	 * @return
+	 */
+	public final JSONMap uploadFile(WebTarget baseTarget, FileTokenType type, File file, ITransferProgressListener progressListener) {
 		MultiPart multiPart = new FormDataMultiPart();
 		multiPart.type(new MediaType("multipart", "form-data",
 	    		Collections.singletonMap(Boundary.BOUNDARY_PARAMETER, Boundary.createBoundary())));
 		multiPart.bodyPart(new FormDataBodyPart("Filename", file.getName()));
 		multiPart.bodyPart(new FileDataBodyPart(file.getName(), file, MediaType.APPLICATION_OCTET_STREAM_TYPE));
 		
-		String xml = conn().executeRequest(HttpMethod.POST, 
+		String xml = conn().executeUploadRequest(HttpMethod.POST, 
 				baseTarget
 					.queryParam("mat", getFileToken(type))
 					.request("application/xml"),
-				Entity.entity(multiPart, multiPart.getMediaType()), String.class);
+				Entity.entity(multiPart, multiPart.getMediaType()), String.class, file.length(), progressListener);
 		return xml2json(new ByteArrayInputStream(xml.getBytes()));
 	}
 	
 	public final long downloadFile(WebTarget baseTarget, FileTokenType type, Path target) {
-		Response response = conn().executeRequest(HttpMethod.GET, 
-				baseTarget
-				.queryParam("mat", getFileToken(FileTokenType.DOWNLOAD))
-				.request("*/*"), Response.class);
-		try {
-			return Files.copy(response.readEntity(InputStream.class), target, StandardCopyOption.REPLACE_EXISTING);
-		} catch (IOException e) {
-			throw new RuntimeException("Error downloading file", e);
-		} finally {
-			response.close();
-		}
+		return downloadFile(baseTarget, type, target, null).getFileSize();
+	}
+	
+	/**
+	 * Download a file to the given target path, replacing any existing file. A new file 
+	 * token is requested for every download request, allowing failed downloads to be 
+	 * resumed, and large downloads to be split into parallel range requests if configured
+	 * through {@link com.fortify.util.rest.connection.AbstractRestConnectionConfig#downloadParallelRanges(int)}.
+	 * @param baseTarget
+	 * @param type
+	 * @param target
+	 * @param progressListener Optional {@link ITransferProgressListener} for receiving download progress updates
+	 * @return {@link DownloadResult} describing the download
+	 */
+	public final DownloadResult downloadFile(WebTarget baseTarget, FileTokenType type, Path target, ITransferProgressListener progressListener) {
+		return conn().fileDownloader(() -> baseTarget
+					.queryParam("mat", getFileToken(FileTokenType.DOWNLOAD))
+					.request("*/*"))
+				.progressListener(progressListener)
+				.download(target, StandardCopyOption.REPLACE_EXISTING);
 	}
 	
 	private JSONMap xml2json(InputStream is) {
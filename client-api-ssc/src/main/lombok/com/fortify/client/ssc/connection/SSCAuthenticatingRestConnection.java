@@ -43,6 +43,8 @@ import com.fortify.util.rest.connection.IRestConnectionBuilder;
  */
 public class SSCAuthenticatingRestConnection extends SSCBasicRestConnection {
 	private final ISSCTokenFactory tokenFactory;
+	private final SSCBulkRequestExecutor bulkRequestExecutor;
+	private final boolean useBulkRequestsForOnDemandData;
 	
 	/**
 	 * Construct a new instance of this class based on the given {@link AbstractRestConnectionConfig}
@@ -53,6 +55,9 @@ public class SSCAuthenticatingRestConnection extends SSCBasicRestConnection {
 	protected SSCAuthenticatingRestConnection(SSCRestConnectionConfig<?> config) {
 		super(config);
 		this.tokenFactory = getTokenFactory(config);
+		this.bulkRequestExecutor = new SSCBulkRequestExecutor(this, config.getBulkRequestBatchSize(), 
+				config.getBulkRequestLingerMillis(), config.getBulkRequestMaxConcurrentRequests());
+		this.useBulkRequestsForOnDemandData = config.isUseBulkRequestsForOnDemandData();
 	}
 
 	/**
@@ -83,6 +88,25 @@ public class SSCAuthenticatingRestConnection extends SSCBasicRestConnection {
 				.header("Authorization", "FortifyToken "+tokenFactory.getToken());
 	}
 	
+	/**
+	 * Get the {@link SSCBulkRequestExecutor} instance for this connection, allowing
+	 * for combining many individual requests into a small number of requests to the 
+	 * SSC bulk endpoint.
+	 * @return
+	 */
+	public SSCBulkRequestExecutor getBulkRequestExecutor() {
+		return bulkRequestExecutor;
+	}
+	
+	/**
+	 * Indicate whether prefetched on-demand data should be loaded through
+	 * {@link #getBulkRequestExecutor()}.
+	 * @return
+	 */
+	public boolean isUseBulkRequestsForOnDemandData() {
+		return useBulkRequestsForOnDemandData;
+	}
+	
 	/**
 	 * This method returns an {@link SSCAuthenticatingRestConnectionBuilder} instance
 	 * that allows for building {@link SSCAuthenticatingRestConnection} instances.
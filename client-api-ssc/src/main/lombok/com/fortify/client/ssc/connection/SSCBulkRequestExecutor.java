@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.client.ssc.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+
+import com.fortify.util.rest.connection.BoundedExecutor;
+import com.fortify.util.rest.json.JSONList;
+import com.fortify.util.rest.json.JSONMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>This class allows for combining many individual SSC requests into a small number
+ * of requests to the SSC <code>/api/v1/bulk</code> endpoint. Requests are queued through
+ * {@link #executeRequest(String, WebTarget, Object)} or {@link #get(WebTarget)}, which 
+ * return a {@link CompletableFuture} that is completed with the response for that 
+ * individual request once the corresponding bulk request has finished.</p>
+ * 
+ * <p>Queued requests are sent as soon as the configured batch size has been reached, 
+ * or when the configured linger time has passed since the first request was queued, 
+ * whichever comes first. Callers that need the results immediately can call 
+ * {@link #flush()} to send all queued requests without waiting for the linger time.
+ * Bulk requests are executed on the connection's task executor, with at most the
+ * configured number of concurrent bulk requests; any additional batches are queued
+ * until an outstanding bulk request has completed.</p>
+ * 
+ * <p>Instances of this class can be retrieved through 
+ * {@link SSCAuthenticatingRestConnection#getBulkRequestExecutor()}; batch size, 
+ * linger time and maximum number of concurrent bulk requests can be configured 
+ * through {@link SSCRestConnectionConfig}.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+public final class SSCBulkRequestExecutor {
+	private static final ScheduledExecutorService LINGER_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("ssc-bulk-request-%d").setDaemon(true).build());
+	private final SSCAuthenticatingRestConnection conn;
+	private final int batchSize;
+	private final long lingerMillis;
+	private final BoundedExecutor executor;
+	private List<BulkEntry> queuedEntries = new ArrayList<>();
+	private ScheduledFuture<?> scheduledFlush = null;
+	
+	SSCBulkRequestExecutor(SSCAuthenticatingRestConnection conn, int batchSize, long lingerMillis, int maxConcurrentRequests) {
+		this.conn = conn;
+		this.batchSize = Math.max(1, batchSize);
+		this.lingerMillis = lingerMillis;
+		this.executor = new BoundedExecutor(conn.getTaskExecutor(), Math.max(1, maxConcurrentRequests));
+	}
+	
+	/**
+	 * Queue a GET request for the given {@link WebTarget}.
+	 * @param target
+	 * @return {@link CompletableFuture} that will be completed with the response for this request
+	 */
+	public CompletableFuture<JSONMap> get(WebTarget target) {
+		return executeRequest(HttpMethod.GET, target, null);
+	}
+	
+	/**
+	 * Queue a request with the given HTTP method, {@link WebTarget} and optional post data.
+	 * The returned {@link CompletableFuture} will be completed with the response body for
+	 * this individual request, or completed exceptionally if either the bulk request
+	 * failed, or SSC returned an error response code for this individual request.
+	 * 
+	 * @param httpMethod
+	 * @param target
+	 * @param postData Data to be sent as request body, or null for requests without body
+	 * @return {@link CompletableFuture} that will be completed with the response for this request
+	 */
+	public CompletableFuture<JSONMap> executeRequest(String httpMethod, WebTarget target, Object postData) {
+		BulkEntry entry = new BulkEntry(httpMethod, target.getUri().toString(), postData, new CompletableFuture<>());
+		List<BulkEntry> entriesToSend = null;
+		synchronized (this) {
+			queuedEntries.add(entry);
+			if ( queuedEntries.size() >= batchSize ) {
+				entriesToSend = takeQueuedEntries();
+			} else if ( scheduledFlush == null ) {
+				scheduledFlush = LINGER_SCHEDULER.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		if ( entriesToSend != null ) { send(entriesToSend); }
+		return entry.getResult();
+	}
+	
+	/**
+	 * Send all currently queued requests to SSC.
+	 */
+	public void flush() {
+		List<BulkEntry> entriesToSend;
+		synchronized (this) {
+			entriesToSend = takeQueuedEntries();
+		}
+		if ( !entriesToSend.isEmpty() ) { send(entriesToSend); }
+	}
+	
+	private List<BulkEntry> takeQueuedEntries() {
+		List<BulkEntry> result = queuedEntries;
+		queuedEntries = new ArrayList<>();
+		if ( scheduledFlush != null ) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		return result;
+	}
+	
+	private void send(List<BulkEntry> entries) {
+		JSONList requests = new JSONList(entries.size());
+		for ( BulkEntry entry : entries ) {
+			requests.add(entry.getRequest());
+		}
+		JSONMap data = new JSONMap();
+		data.put("requests", requests);
+		if ( log.isDebugEnabled() ) {
+			log.debug("Sending bulk request containing "+entries.size()+" requests");
+		}
+		executor.execute(() -> {
+			JSONMap response;
+			try {
+				response = conn.executeRequest(HttpMethod.POST, conn.getBaseResource().path("/api/v1/bulk"), 
+						Entity.entity(data, "application/json"), JSONMap.class);
+			} catch (RuntimeException | Error e) {
+				complete(entries, null, e);
+				return;
+			}
+			complete(entries, response, null);
+		});
+	}
+	
+	/**
+	 * Complete the results for all given entries. Failure to process any individual 
+	 * entry only fails the result for that entry; any entries that are still pending 
+	 * after processing the bulk response are always completed exceptionally, to avoid
+	 * callers from waiting indefinitely.
+	 */
+	private void complete(List<BulkEntry> entries, JSONMap response, Throwable throwable) {
+		try {
+			JSONList responses = response==null ? null : response.get("data", JSONList.class);
+			for ( int i = 0 ; i < entries.size() ; i++ ) {
+				BulkEntry entry = entries.get(i);
+				try {
+					if ( throwable != null ) {
+						entry.getResult().completeExceptionally(throwable);
+					} else if ( responses == null || responses.size() <= i ) {
+						entry.getResult().completeExceptionally(new RuntimeException("No response for bulk request entry "+entry.getUri()));
+					} else {
+						entry.complete(responses.asValueType(JSONMap.class).get(i));
+					}
+				} catch ( RuntimeException e ) {
+					entry.getResult().completeExceptionally(new RuntimeException("Error processing response for bulk request entry "+entry.getUri(), e));
+				}
+			}
+		} finally {
+			for ( BulkEntry entry : entries ) {
+				if ( !entry.getResult().isDone() ) {
+					entry.getResult().completeExceptionally(new RuntimeException("Error processing response for bulk request entry "+entry.getUri(), throwable));
+				}
+			}
+		}
+	}
+	
+	@RequiredArgsConstructor
+	private static final class BulkEntry {
+		private final String httpVerb;
+		private final String uri;
+		private final Object postData;
+		private final CompletableFuture<JSONMap> result;
+		
+		public String getUri() { return uri; }
+		public CompletableFuture<JSONMap> getResult() { return result; }
+		
+		public JSONMap getRequest() {
+			JSONMap request = new JSONMap();
+			request.put("httpVerb", httpVerb);
+			request.put("uri", uri);
+			if ( postData != null ) { request.put("postData", postData); }
+			return request;
+		}
+		
+		/**
+		 * Complete the result for this entry based on the given bulk response entry,
+		 * which contains the individual response in responses[0].body.
+		 * @param bulkResponseEntry
+		 */
+		public void complete(JSONMap bulkResponseEntry) {
+			JSONList responses = bulkResponseEntry.get("responses", JSONList.class);
+			JSONMap body = responses==null || responses.isEmpty() ? null : responses.asValueType(JSONMap.class).get(0).get("body", JSONMap.class);
+			Integer responseCode = body==null ? null : body.get("responseCode", Integer.class);
+			if ( body == null ) {
+				result.completeExceptionally(new RuntimeException("No response body for bulk request entry "+uri));
+			} else if ( responseCode != null && responseCode >= 400 ) {
+				result.completeExceptionally(new RuntimeException("Bulk request entry "+uri+" failed with response code "+responseCode+": "+body.get("message")));
+			} else {
+				result.complete(body);
+			}
+		}
+	}
+}
@@ -24,6 +24,8 @@
  ******************************************************************************/
 package com.fortify.client.ssc.connection;
 
+import org.apache.commons.lang.StringUtils;
+
 import com.fortify.util.rest.connection.AbstractRestConnectionWithUsernamePasswordConfig;
 
 import lombok.Data;
@@ -41,6 +43,10 @@ import lombok.EqualsAndHashCode;
 @Data @EqualsAndHashCode(callSuper=true)
 public class SSCRestConnectionConfig<T extends SSCRestConnectionConfig<T>> extends AbstractRestConnectionWithUsernamePasswordConfig<T> {
 	private String authToken;
+	private int bulkRequestBatchSize = 50;
+	private long bulkRequestLingerMillis = 10;
+	private int bulkRequestMaxConcurrentRequests = 4;
+	private boolean useBulkRequestsForOnDemandData = false;
 	
 	@Override
 	protected void parseUriUserInfo(String userInfo) {
@@ -51,7 +57,56 @@ public class SSCRestConnectionConfig<T extends SSCRestConnectionConfig<T>> exten
 		}
 	}
 	
+	@Override
+	protected String getPersistentCacheIdentity() {
+		return StringUtils.isNotBlank(getAuthToken()) ? "authToken:"+getAuthToken() : super.getPersistentCacheIdentity();
+	}
+	
 	public T authToken(String authToken) {
 		setAuthToken(authToken); return getThis();
 	}
+	
+	/**
+	 * Configure the maximum number of requests to be combined into a single request to
+	 * the SSC bulk endpoint by {@link SSCBulkRequestExecutor}; default is 50.
+	 * @param bulkRequestBatchSize
+	 * @return
+	 */
+	public T bulkRequestBatchSize(int bulkRequestBatchSize) {
+		setBulkRequestBatchSize(bulkRequestBatchSize); return getThis();
+	}
+	
+	/**
+	 * Configure the maximum time in milliseconds that {@link SSCBulkRequestExecutor} waits 
+	 * for additional requests to be queued before sending an incomplete batch; default is 10.
+	 * @param bulkRequestLingerMillis
+	 * @return
+	 */
+	public T bulkRequestLingerMillis(long bulkRequestLingerMillis) {
+		setBulkRequestLingerMillis(bulkRequestLingerMillis); return getThis();
+	}
+	
+	/**
+	 * Configure the maximum number of requests to the SSC bulk endpoint that 
+	 * {@link SSCBulkRequestExecutor} sends concurrently; any additional batches are
+	 * queued until one of the outstanding bulk requests has completed. Default is 4.
+	 * @param bulkRequestMaxConcurrentRequests
+	 * @return
+	 */
+	public T bulkRequestMaxConcurrentRequests(int bulkRequestMaxConcurrentRequests) {
+		setBulkRequestMaxConcurrentRequests(bulkRequestMaxConcurrentRequests); return getThis();
+	}
+	
+	/**
+	 * Configure whether on-demand data should be loaded through the SSC bulk endpoint 
+	 * when prefetching on-demand properties (see 
+	 * {@link com.fortify.util.rest.query.AbstractRestConnectionQueryBuilder#prefetchOnDemand(int)}); 
+	 * default is false. For best results, the prefetch window size should be at least
+	 * as large as the configured {@link #bulkRequestBatchSize(int)}.
+	 * @param useBulkRequestsForOnDemandData
+	 * @return
+	 */
+	public T useBulkRequestsForOnDemandData(boolean useBulkRequestsForOnDemandData) {
+		setUseBulkRequestsForOnDemandData(useBulkRequestsForOnDemandData); return getThis();
+	}
 }
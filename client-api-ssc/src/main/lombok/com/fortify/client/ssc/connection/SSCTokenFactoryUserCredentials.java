@@ -42,7 +42,8 @@ import lombok.extern.apachecommons.CommonsLog;
  * SSC REST API. Given an {@link SSCBasicRestConnection} instance
  * and SSC userName and password, it will call the SSC /oauth/token
  * API to request a REST token. The token will be automatically
- * refreshed as required.
+ * refreshed as required. This class is thread-safe; concurrent callers
+ * will share a single token request.
  * 
  * @author Ruud Senden
  *
@@ -53,7 +54,7 @@ public final class SSCTokenFactoryUserCredentials implements ISSCTokenFactory {
 	private final SSCBasicRestConnection conn;
 	private final String userName;
 	private final String password;
-	private SSCTokenFactoryUserCredentials.TokenData tokenData = null;
+	private volatile SSCTokenFactoryUserCredentials.TokenData tokenData = null;
 	public SSCTokenFactoryUserCredentials(SSCBasicRestConnection conn, String userName, String password) {
 		this.conn = conn;
 		this.userName = userName;
@@ -61,14 +62,21 @@ public final class SSCTokenFactoryUserCredentials implements ISSCTokenFactory {
 	}
 	
 	public String getToken() {
-		if ( tokenData == null || tokenData.isExpired() ) {
-			String authHeaderValue = "Basic "+Base64.encodeBase64String((userName+":"+password).getBytes());
-			LogMaskingHelper.maskByPatternGroups().patterns(EXPR_TOKEN).on(() ->
-				tokenData = getTokenData(conn.executeRequest(HttpMethod.POST, conn.getBaseResource().path("/api/v1/auth/obtain_token").request().header("Authorization", authHeaderValue), null, JSONMap.class))
-			);
-			log.info("[SSC] Obtained access token, expiring at "+tokenData.getTerminalDate().toString());
+		TokenData result = tokenData;
+		if ( result == null || result.isExpired() ) {
+			synchronized (this) {
+				result = tokenData;
+				if ( result == null || result.isExpired() ) {
+					String authHeaderValue = "Basic "+Base64.encodeBase64String((userName+":"+password).getBytes());
+					LogMaskingHelper.maskByPatternGroups().patterns(EXPR_TOKEN).on(() ->
+						tokenData = getTokenData(conn.executeRequest(HttpMethod.POST, conn.getBaseResource().path("/api/v1/auth/obtain_token").request().header("Authorization", authHeaderValue), null, JSONMap.class))
+					);
+					result = tokenData;
+					log.info("[SSC] Obtained access token, expiring at "+result.getTerminalDate().toString());
+				}
+			}
 		}
-		return tokenData.getToken();
+		return result.getToken();
 	}
 	
 	private TokenData getTokenData(JSONMap json) {
@@ -24,14 +24,21 @@
  ******************************************************************************/
 package com.fortify.client.ssc.json.ondemand;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.fortify.client.ssc.connection.SSCAuthenticatingRestConnection;
 import com.fortify.util.rest.connection.IRestConnection;
+import com.fortify.util.rest.json.JSONMap;
 import com.fortify.util.rest.json.ondemand.JSONMapOnDemandLoaderRest;
 
 /**
  * This {@link JSONMapOnDemandLoaderRest} implementation allows for loading
  * on-demand data from SSC. Instances of this class can be configured with
  * a path template expression indicating the SSC REST endpoint to load the
- * data from.
+ * data from. If enabled through 
+ * {@link com.fortify.client.ssc.connection.SSCRestConnectionConfig#useBulkRequestsForOnDemandData(boolean)},
+ * prefetched on-demand data is loaded through the SSC bulk endpoint.
  * 
  * @author Ruud Senden
  *
@@ -42,4 +49,14 @@ public class SSCJSONMapOnDemandLoaderRest extends JSONMapOnDemandLoaderRest {
 	public SSCJSONMapOnDemandLoaderRest(IRestConnection conn, String uriTemplateExpression) {
 		super(conn, true, uriTemplateExpression, "data");
 	}
+	
+	@Override
+	public CompletableFuture<Object> getOnDemandAsync(String propertyName, JSONMap parent, Executor executor) {
+		IRestConnection conn = getConnection();
+		if ( conn instanceof SSCAuthenticatingRestConnection && ((SSCAuthenticatingRestConnection)conn).isUseBulkRequestsForOnDemandData() ) {
+			return ((SSCAuthenticatingRestConnection)conn).getBulkRequestExecutor()
+					.get(getWebTarget(conn, parent)).thenApply(this::getResult);
+		}
+		return super.getOnDemandAsync(propertyName, parent, executor);
+	}
 }
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.client.ssc.api;
+
+import static com.fortify.util.rest.test.ConcurrentTestUtils.sleep;
+import static com.fortify.util.rest.test.StubServer.sendJson;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortify.client.ssc.api.SSCAttributeAPI.AttributeUpdateResult;
+import com.fortify.client.ssc.connection.SSCAuthenticatingRestConnection;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for updating the attributes of multiple application versions through
+ * {@link SSCAttributeAPI}, verifying that success or failure is reported for 
+ * each individual application version, and that the number of concurrent bulk
+ * requests is limited to the configured maximum.
+ */
+public class SSCAttributeAPITest {
+	private static final int MAX_CONCURRENT_BULK_REQUESTS = 2;
+	@Rule public final StubServer server = new StubServer(8);
+	private final AtomicInteger runningBulkRequests = new AtomicInteger();
+	private final AtomicInteger maxRunningBulkRequests = new AtomicInteger();
+	private final AtomicInteger bulkRequestCount = new AtomicInteger();
+	
+	@Before
+	public void setUp() {
+		server.handle("/api/v1/attributeDefinitions", exchange -> 
+			sendJson(exchange, 200, "{\"data\":[{\"id\":1,\"name\":\"attr1\",\"type\":\"TEXT\"}],\"count\":1}"));
+		server.handle("/api/v1/bulk", exchange -> {
+			maxRunningBulkRequests.accumulateAndGet(runningBulkRequests.incrementAndGet(), Math::max);
+			bulkRequestCount.incrementAndGet();
+			try {
+				sleep(100);
+				StringBuilder data = new StringBuilder();
+				for ( JsonNode request : new ObjectMapper().readTree(exchange.getRequestBody()).get("requests") ) {
+					String uri = request.get("uri").asText();
+					String value = request.get("postData").get(0).get("value").asText();
+					int responseCode = uri.contains("/projectVersions/404/") ? 404 : 200;
+					if ( data.length() > 0 ) { data.append(","); }
+					data.append("{\"responses\":[{\"body\":{\"responseCode\":"+responseCode+",\"message\":\"Not found\",")
+						.append("\"data\":[{\"attributeDefinitionId\":1,\"value\":\""+value+"\"}]}}]}");
+				}
+				sendJson(exchange, 200, "{\"data\":["+data+"]}");
+			} finally {
+				runningBulkRequests.decrementAndGet();
+			}
+		});
+	}
+	
+	@Test
+	public void testUpdateMultipleApplicationVersions() throws Exception {
+		SSCAuthenticatingRestConnection conn = builder().bulkRequestBatchSize(2).build();
+		try {
+			Map<String, MultiValueMap<String, Object>> updates = new LinkedHashMap<>();
+			updates.put("1", attributes("attr1", "value1"));
+			updates.put("404", attributes("attr1", "value404"));
+			updates.put("2", attributes("unknownAttr", "value2"));
+			updates.put("3", attributes("attr1", "value3"));
+			Map<String, AttributeUpdateResult> results = conn.api(SSCAttributeAPI.class).updateApplicationVersionAttributes(updates);
+			assertEquals(Arrays.asList("1", "404", "2", "3"), new ArrayList<>(results.keySet()));
+			assertSuccess(results.get("1"), "value1");
+			assertFailure(results.get("404"), "response code 404");
+			assertFailure(results.get("2"), "unknownAttr");
+			assertSuccess(results.get("3"), "value3");
+			// The update for application version 2 is never sent
+			assertEquals(2, bulkRequestCount.get());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testMaxConcurrentBulkRequests() throws Exception {
+		SSCAuthenticatingRestConnection conn = builder().bulkRequestBatchSize(1)
+				.bulkRequestMaxConcurrentRequests(MAX_CONCURRENT_BULK_REQUESTS).build();
+		try {
+			List<String> applicationVersionIds = new ArrayList<>();
+			for ( int i = 1 ; i <= 10 ; i++ ) { applicationVersionIds.add(""+i); }
+			Map<String, AttributeUpdateResult> results = conn.api(SSCAttributeAPI.class)
+					.updateApplicationVersionAttributes(applicationVersionIds, attributes("attr1", "value"));
+			assertEquals(applicationVersionIds, new ArrayList<>(results.keySet()));
+			for ( AttributeUpdateResult result : results.values() ) {
+				assertSuccess(result, "value");
+			}
+			assertEquals(10, bulkRequestCount.get());
+			assertTrue("Concurrent bulk requests: "+maxRunningBulkRequests.get(), maxRunningBulkRequests.get() <= MAX_CONCURRENT_BULK_REQUESTS);
+		} finally {
+			conn.close();
+		}
+	}
+	
+	private static void assertSuccess(AttributeUpdateResult result, String expectedValue) {
+		assertTrue(""+result.getError(), result.isSuccess());
+		assertEquals(expectedValue, result.getAttributes().asValueType(JSONMap.class).get(0).get("value", String.class));
+	}
+	
+	private static void assertFailure(AttributeUpdateResult result, String expectedMessage) {
+		assertFalse(result.isSuccess());
+		assertTrue(result.getError().getMessage(), result.getError().getMessage().contains(expectedMessage));
+	}
+	
+	private static MultiValueMap<String, Object> attributes(String name, Object value) {
+		MultiValueMap<String, Object> result = new LinkedMultiValueMap<>();
+		result.add(name, value);
+		return result;
+	}
+	
+	private SSCAuthenticatingRestConnection.SSCAuthenticatingRestConnectionBuilder builder() {
+		return SSCAuthenticatingRestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.authToken("test-token")
+				.bulkRequestLingerMillis(60000)
+				.publishMetricsMBean(false);
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.client.ssc.connection;
+
+import static com.fortify.util.rest.test.StubServer.sendJson;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for {@link SSCBulkRequestExecutor}, verifying that queued requests are sent
+ * once either the batch size or the linger time has been reached, and that the 
+ * individual results reflect the response for each bulk request entry.
+ */
+public class SSCBulkRequestExecutorTest {
+	@Rule public final StubServer server = new StubServer();
+	private final List<Integer> bulkRequestSizes = new CopyOnWriteArrayList<>();
+	private volatile int bulkResponseCode = 200;
+	
+	@Before
+	public void setUp() {
+		server.handle("/api/v1/bulk", exchange -> {
+			JsonNode requests = new ObjectMapper().readTree(exchange.getRequestBody()).get("requests");
+			bulkRequestSizes.add(requests.size());
+			if ( bulkResponseCode != 200 ) {
+				sendJson(exchange, bulkResponseCode, "{\"message\":\"error\"}");
+				return;
+			}
+			StringBuilder data = new StringBuilder();
+			for ( JsonNode request : requests ) {
+				String uri = request.get("uri").asText();
+				if ( data.length() > 0 ) { data.append(","); }
+				if ( uri.endsWith("/malformed") ) {
+					data.append("{\"responses\":\"malformed\"}");
+				} else {
+					int responseCode = uri.endsWith("/missing") ? 404 : 200;
+					data.append("{\"responses\":[{\"body\":{\"responseCode\":"+responseCode+",\"message\":\"msg\",\"data\":\""+uri+"\"}}]}");
+				}
+			}
+			sendJson(exchange, 200, "{\"data\":["+data+"]}");
+		});
+	}
+	
+	@Test
+	public void testFlushOnBatchSize() throws Exception {
+		SSCAuthenticatingRestConnection conn = builder().bulkRequestBatchSize(3).bulkRequestLingerMillis(60000).build();
+		try {
+			SSCBulkRequestExecutor executor = conn.getBulkRequestExecutor();
+			CompletableFuture<JSONMap> first = get(conn, "/api/v1/test/1");
+			CompletableFuture<JSONMap> second = get(conn, "/api/v1/test/2");
+			Thread.sleep(200);
+			assertTrue(bulkRequestSizes.isEmpty());
+			CompletableFuture<JSONMap> third = get(conn, "/api/v1/test/3");
+			assertTrue(first.get(10, TimeUnit.SECONDS).get("data", String.class).endsWith("/api/v1/test/1"));
+			assertTrue(second.get(10, TimeUnit.SECONDS).get("data", String.class).endsWith("/api/v1/test/2"));
+			assertTrue(third.get(10, TimeUnit.SECONDS).get("data", String.class).endsWith("/api/v1/test/3"));
+			assertEquals(1, bulkRequestSizes.size());
+			assertEquals(3, bulkRequestSizes.get(0).intValue());
+			executor.flush();
+			assertEquals(1, bulkRequestSizes.size());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testFlushOnLinger() throws Exception {
+		SSCAuthenticatingRestConnection conn = builder().bulkRequestBatchSize(50).bulkRequestLingerMillis(100).build();
+		try {
+			CompletableFuture<JSONMap> first = get(conn, "/api/v1/test/1");
+			CompletableFuture<JSONMap> second = get(conn, "/api/v1/test/2");
+			assertTrue(first.get(10, TimeUnit.SECONDS).get("data", String.class).endsWith("/api/v1/test/1"));
+			assertTrue(second.get(10, TimeUnit.SECONDS).get("data", String.class).endsWith("/api/v1/test/2"));
+			assertEquals(1, bulkRequestSizes.size());
+			assertEquals(2, bulkRequestSizes.get(0).intValue());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testEntryErrors() throws Exception {
+		SSCAuthenticatingRestConnection conn = builder().bulkRequestBatchSize(3).bulkRequestLingerMillis(60000).build();
+		try {
+			CompletableFuture<JSONMap> missing = get(conn, "/api/v1/test/missing");
+			CompletableFuture<JSONMap> malformed = get(conn, "/api/v1/test/malformed");
+			CompletableFuture<JSONMap> ok = get(conn, "/api/v1/test/ok");
+			assertTrue(ok.get(10, TimeUnit.SECONDS).get("data", String.class).endsWith("/api/v1/test/ok"));
+			assertTrue(getFailureMessage(missing).contains("failed with response code 404"));
+			assertTrue(getFailureMessage(malformed).contains("/api/v1/test/malformed"));
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testBulkRequestError() throws Exception {
+		bulkResponseCode = 500;
+		SSCAuthenticatingRestConnection conn = builder().bulkRequestBatchSize(50).bulkRequestLingerMillis(60000).build();
+		try {
+			CompletableFuture<JSONMap> first = get(conn, "/api/v1/test/1");
+			CompletableFuture<JSONMap> second = get(conn, "/api/v1/test/2");
+			conn.getBulkRequestExecutor().flush();
+			getFailureMessage(first);
+			getFailureMessage(second);
+			assertEquals(1, bulkRequestSizes.size());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	private String getFailureMessage(CompletableFuture<JSONMap> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected request to fail");
+			return null;
+		} catch ( ExecutionException e ) {
+			assertFalse(future.isCancelled());
+			return e.getCause().getMessage();
+		}
+	}
+	
+	private CompletableFuture<JSONMap> get(SSCAuthenticatingRestConnection conn, String path) {
+		return conn.getBulkRequestExecutor().get(conn.getBaseResource().path(path));
+	}
+	
+	private SSCAuthenticatingRestConnection.SSCAuthenticatingRestConnectionBuilder builder() {
+		return SSCAuthenticatingRestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.authToken("test-token")
+				.publishMetricsMBean(false);
+	}
+}
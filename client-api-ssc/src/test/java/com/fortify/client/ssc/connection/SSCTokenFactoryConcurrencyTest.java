@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.client.ssc.connection;
+
+import static com.fortify.util.rest.test.ConcurrentTestUtils.runConcurrently;
+import static com.fortify.util.rest.test.ConcurrentTestUtils.sleep;
+import static com.fortify.util.rest.test.StubServer.sendJson;
+import static org.junit.Assert.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.HttpMethod;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Stress tests for {@link SSCTokenFactoryUserCredentials}, verifying that many threads 
+ * sharing a single {@link SSCAuthenticatingRestConnection} result in a single token 
+ * request, both for the initial token and for refreshing an expired token.
+ */
+public class SSCTokenFactoryConcurrencyTest {
+	private static final int THREADS = 32;
+	private static final long TOKEN_VALIDITY_MILLIS = 1500;
+	@Rule public final StubServer server = new StubServer(THREADS);
+	private final AtomicInteger tokenRequestCount = new AtomicInteger();
+	private final AtomicInteger unauthorizedRequestCount = new AtomicInteger();
+	
+	@Before
+	public void setUp() {
+		server.handle("/api/v1/auth/obtain_token", exchange -> {
+			int tokenNumber = tokenRequestCount.incrementAndGet();
+			sleep(200); // Widen the window in which other threads may request a token
+			String terminalDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(System.currentTimeMillis()+TOKEN_VALIDITY_MILLIS));
+			sendJson(exchange, 200, "{\"data\":{\"token\":\"token-"+tokenNumber+"\",\"terminalDate\":\""+terminalDate+"\"}}");
+		});
+		server.handle("/api/v1/test", exchange -> {
+			String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
+			if ( authHeader == null || !authHeader.startsWith("FortifyToken token-") ) {
+				unauthorizedRequestCount.incrementAndGet();
+			}
+			sendJson(exchange, 200, "{\"data\":\"ok\"}");
+		});
+	}
+	
+	@Test
+	public void testConcurrentTokenRequestAndRefresh() throws Exception {
+		SSCAuthenticatingRestConnection conn = SSCAuthenticatingRestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.userName("user").password("password")
+				.publishMetricsMBean(false)
+				.build();
+		try {
+			Callable<JSONMap> request = () -> conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/api/v1/test"), JSONMap.class);
+			runConcurrently(THREADS, request);
+			assertEquals(1, tokenRequestCount.get());
+			
+			Thread.sleep(TOKEN_VALIDITY_MILLIS+500);
+			runConcurrently(THREADS, request);
+			assertEquals(2, tokenRequestCount.get());
+			assertEquals(0, unauthorizedRequestCount.get());
+		} finally {
+			conn.close();
+		}
+	}
+}
@@ -32,6 +32,7 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 
 import com.fortify.client.wie.connection.WIEAuthenticatingRestConnection;
+import com.fortify.util.rest.connection.transfer.ITransferProgressListener;
 import com.fortify.util.rest.json.JSONMap;
 
 /**
@@ -52,8 +53,12 @@ public class WIEScanAPI extends AbstractWIEAPI {
 	}
 	
 	public String uploadScanSettings(File file) {
+		return uploadScanSettings(file, null);
+	}
+	
+	public String uploadScanSettings(File file, ITransferProgressListener progressListener) {
 		String uuid = UUID.randomUUID().toString();
-		conn().uploadTempFile(uuid, uuid, 5, file);
+		conn().uploadTempFile(uuid, uuid, 5, file, progressListener);
 		return uuid;
 	}
 	
@@ -41,6 +41,7 @@ import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
 import com.fortify.util.rest.connection.AbstractRestConnection;
 import com.fortify.util.rest.connection.AbstractRestConnectionWithUsernamePasswordConfig;
 import com.fortify.util.rest.connection.IRestConnectionBuilder;
+import com.fortify.util.rest.connection.transfer.ITransferProgressListener;
 import com.fortify.util.rest.json.JSONMap;
 
 import lombok.extern.apachecommons.CommonsLog;
@@ -56,7 +57,7 @@ import lombok.extern.apachecommons.CommonsLog;
  */
 @CommonsLog
 public class WIEAuthenticatingRestConnection extends WIEBasicRestConnection {
-	private String apiKey = null;
+	private volatile String apiKey = null;
 	private final WIEBasicRestConnection basicConn;
 	private final JSONMap auth;
 	
@@ -76,15 +77,39 @@ public class WIEAuthenticatingRestConnection extends WIEBasicRestConnection {
 	@Override
 	protected WebTarget updateWebTarget(WebTarget webTarget) {
 		webTarget = super.updateWebTarget(webTarget);
-		if ( apiKey == null ) {
-			apiKey = basicConn.executeRequest(HttpMethod.POST, getBaseResource().path("/api/v1/auth"),
+		return webTarget.queryParam("api_key", getApiKey());
+	}
+	
+	private String getApiKey() {
+		String result = apiKey;
+		if ( result == null ) {
+			synchronized (this) {
+				result = apiKey;
+				if ( result == null ) {
+					result = basicConn.executeRequest(HttpMethod.POST, getBaseResource().path("/api/v1/auth"),
 							Entity.entity(auth, MediaType.APPLICATION_JSON), JSONMap.class)
-					.get("data", String.class);
+						.get("data", String.class);
+					apiKey = result;
+				}
+			}
 		}
-		return webTarget.queryParam("api_key", apiKey);
+		return result;
 	}
 	
 	public void uploadTempFile(String sessionId, String fileId, int fileType, File file) {
+		uploadTempFile(sessionId, fileId, fileType, file, null);
+	}
+	
+	/**
+	 * Upload the given file as a temporary file. The file is streamed from disk while 
+	 * being uploaded, so memory usage doesn't depend on file size.
+	 * @param sessionId
+	 * @param fileId
+	 * @param fileType
+	 * @param file
+	 * @param progressListener Optional {@link ITransferProgressListener} for receiving upload progress updates
+	 */
+	public void uploadTempFile(String sessionId, String fileId, int fileType, File file, ITransferProgressListener progressListener) {
 		JSONMap request = new JSONMap();
 		request.put("sessionID", sessionId);
 		request.put("fileId", fileId);
@@ -99,8 +124,9 @@ public class WIEAuthenticatingRestConnection extends WIEBasicRestConnection {
 		    		Collections.singletonMap(Boundary.BOUNDARY_PARAMETER, Boundary.createBoundary())));
 			//multiPart.bodyPart(new FormDataBodyPart("Filename", file.getName()));
 			multiPart.bodyPart(new FileDataBodyPart("data", file, MediaType.APPLICATION_OCTET_STREAM_TYPE));
-			executeRequest(HttpMethod.POST, getBaseResource().path("/api/v1/tempFile/{id}/fileData")
-					.resolveTemplate("id", fileId), Entity.entity(multiPart, multiPart.getMediaType()), null);
+			executeUploadRequest(HttpMethod.POST, updateWebTarget(getBaseResource().path("/api/v1/tempFile/{id}/fileData")
+					.resolveTemplate("id", fileId)).request(), Entity.entity(multiPart, multiPart.getMediaType()), null,
+					file.length(), progressListener);
         } finally {
         	try {
 				multiPart.close();
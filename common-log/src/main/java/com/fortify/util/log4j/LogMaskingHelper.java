@@ -24,16 +24,21 @@
  ******************************************************************************/
 package com.fortify.util.log4j;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.core.LogEvent;
 
-// TODO Check/update for thread safety (use concurrent map?)
 /**
  * Applications that want to enable log masking must provide an actual 
  * Log4J plugin class that extends from this class, as follows:
@@ -60,85 +65,197 @@ public final class LogMaskingConverterPlugin extends LogEventPatternConverter {
 
  * </pre></code>
  * 
+ * <p>Maskers are registered globally (as log events may be generated on other threads
+ * than the thread that registered the masker), and are reference-counted: registering 
+ * an equal masker multiple times, for example once for each concurrent request, will 
+ * only result in a single active masker, which is removed once all registrations have 
+ * been closed. As registered maskers are used as keys to identify equal maskers, a
+ * {@link PatternGroupMasker} cannot be modified anymore once it has been registered. 
+ * All active {@link PatternGroupMasker} patterns are combined into a single 
+ * regular expression, such that every log message is scanned only once. If all active
+ * patterns start with a literal prefix, messages that don't contain any of these 
+ * prefixes are output without running any regular expression.</p>
+ * 
  * @author Ruud Senden
  *
  */
 public class LogMaskingHelper {
 	public static final String NAME = "mm";
-	private static final Map<UUID, IMasker> MASKS = new HashMap<>();
+	private static final Map<IMasker, Integer> MASKS = new ConcurrentHashMap<>();
+	private static final Map<UUID, MaskerRegistration> LEGACY_REGISTRATIONS = new ConcurrentHashMap<>();
+	private static final Map<Set<IMasker>, MaskingSnapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+	private static final int MAX_SNAPSHOTS = 64;
+	private static final AtomicInteger VERSION = new AtomicInteger();
+	private static volatile MaskingSnapshot snapshot = MaskingSnapshot.EMPTY;
 	
 	public static final PatternGroupMasker maskByPatternGroups() {
 		return new PatternGroupMasker();
 	}
 	
-
+	/**
+	 * Register the given masker. The returned {@link MaskerRegistration} must be
+	 * closed once masking is no longer required.
+	 * @param masker
+	 * @return
+	 */
+	public static final MaskerRegistration register(IMasker masker) {
+		if ( masker instanceof PatternGroupMasker ) {
+			((PatternGroupMasker)masker).freeze();
+		}
+		if ( MASKS.merge(masker, 1, Integer::sum) == 1 ) {
+			// Only increment version after the masker has been added to the map,
+			// to avoid building a snapshot with new version but without new masker
+			VERSION.incrementAndGet();
+		}
+		return new MaskerRegistration(masker);
+	}
+	
+	public static final void remove(MaskerRegistration registration) {
+		if ( registration != null ) {
+			registration.close();
+		}
+	}
+	
+	/**
+	 * Register the given masker, returning a {@link UUID} that must be passed to 
+	 * {@link #remove(UUID)} once masking is no longer required.
+	 * @deprecated Use {@link #register(IMasker)} instead
+	 */
+	@Deprecated
 	public static final UUID add(IMasker masker) {
 		UUID uuid = UUID.randomUUID();
-		MASKS.put(uuid, masker);
+		LEGACY_REGISTRATIONS.put(uuid, register(masker));
 		return uuid;
 	}
 	
+	/**
+	 * Remove the masker registered through {@link #add(IMasker)}.
+	 * @deprecated Use {@link MaskerRegistration#close()} instead
+	 */
+	@Deprecated
 	public static final void remove(UUID uuid) {
-		MASKS.remove(uuid);
+		remove(uuid == null ? null : LEGACY_REGISTRATIONS.remove(uuid));
+	}
+	
+	private static final void release(IMasker masker) {
+		if ( MASKS.computeIfPresent(masker, (k, count) -> count > 1 ? count-1 : null) == null ) {
+			VERSION.incrementAndGet();
+		}
 	}
 
 	public static final void format(LogEvent event, StringBuilder outputMessage) {
-		String message = event.getMessage().getFormattedMessage();
-		for (IMasker masker : MASKS.values()) {
-			message = masker.mask(message);
+		getSnapshot().mask(event.getMessage().getFormattedMessage(), outputMessage);
+	}
+	
+	/**
+	 * Get the {@link MaskingSnapshot} for the currently registered maskers, 
+	 * (re-)building it if the set of registered maskers has changed. Snapshots
+	 * are cached by set of maskers, such that the combined regular expression 
+	 * doesn't need to be recompiled every time a masker is added or removed.
+	 */
+	private static final MaskingSnapshot getSnapshot() {
+		MaskingSnapshot result = snapshot;
+		int version = VERSION.get();
+		if ( result.version != version ) {
+			Set<IMasker> maskers = new HashSet<>(MASKS.keySet());
+			MaskingSnapshot cached = SNAPSHOTS.get(maskers);
+			if ( cached == null ) {
+				if ( SNAPSHOTS.size() >= MAX_SNAPSHOTS ) { SNAPSHOTS.clear(); }
+				cached = SNAPSHOTS.computeIfAbsent(maskers, MaskingSnapshot::new);
+			}
+			result = cached.withVersion(version);
+			snapshot = result;
 		}
-		outputMessage.append(message);
+		return result;
 	}
 	
 	public static interface IMasker {
 		public abstract String mask(String input);
 	}
 	
+	/**
+	 * Handle for a registered {@link IMasker}, used to remove the masker once it's no
+	 * longer needed. Closing a registration more than once has no effect.
+	 */
+	public static final class MaskerRegistration implements AutoCloseable {
+		private final IMasker masker;
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+		
+		private MaskerRegistration(IMasker masker) {
+			this.masker = masker;
+		}
+		
+		@Override
+		public void close() {
+			if ( closed.compareAndSet(false, true) ) {
+				release(masker);
+			}
+		}
+	}
+	
 	public static abstract class AbstractMasker implements IMasker {
+		public MaskerRegistration register() {
+			return LogMaskingHelper.register(this);
+		}
+		
+		/**
+		 * @deprecated Use {@link #register()} instead
+		 */
+		@Deprecated
 		public UUID add() {
 			return LogMaskingHelper.add(this);
 		}
 		
 		public void on(Runnable r) {
-			UUID uuid = add();
-			try {
+			try ( MaskerRegistration registration = register() ) {
 				r.run();
-			} finally {
-				LogMaskingHelper.remove(uuid);
 			}
 		}
-		
-		/*
-		public <R> R on(Callable<R> c) throws Exception {
-			UUID uuid = add();
-			try {
-				return c.call();
-			} finally {
-				LogMaskingConverter.remove(uuid);
-			}
-		}
-		*/
 	}
 	
-	// TODO Replace duplicate expressions only once, across multiple instances of this class (but only for single invocation);
-	//      we need some place to maintain state per invocation of LogMaskingConverter.format()
+	/**
+	 * This {@link IMasker} implementation replaces the first group of each match
+	 * of any of the configured patterns with the configured replacement (or the
+	 * full match if a pattern doesn't define any groups). Instances are considered 
+	 * equal if they have the same patterns and replacement. Once registered, instances
+	 * cannot be modified anymore, as this would change their hash code while being used
+	 * as a key for the registered maskers.
+	 */
 	public static final class PatternGroupMasker extends AbstractMasker {
-		private Pattern[] patterns = null;
+		private Pattern[] patterns = new Pattern[0];
 		private String replacement = "[hidden]";
+		private volatile boolean frozen = false;
 		
 		public PatternGroupMasker patterns(String... regexes) {
 			patterns(Arrays.stream(regexes).map(regex -> Pattern.compile(regex)).toArray(Pattern[]::new));
 			return this;
 		}
 		public PatternGroupMasker patterns(Pattern... patterns) {
-			this.patterns = patterns;
+			checkNotFrozen();
+			this.patterns = patterns.clone();
 			return this;
 		}
 		public PatternGroupMasker replacement(String replacement) {
+			checkNotFrozen();
 			this.replacement = replacement;
 			return this;
 		}
 		
+		private void freeze() {
+			this.frozen = true;
+		}
+		
+		private void checkNotFrozen() {
+			if ( frozen ) {
+				throw new IllegalStateException("PatternGroupMasker cannot be modified after it has been registered");
+			}
+		}
+		
+		/**
+		 * Apply the configured patterns one by one. Note that {@link LogMaskingHelper#format(LogEvent, StringBuilder)}
+		 * doesn't call this method, but instead combines the patterns of all registered 
+		 * {@link PatternGroupMasker} instances.
+		 */
 		@Override
 		public String mask(String input) {
 			for ( Pattern pattern : patterns ) {
@@ -147,19 +264,233 @@ public class LogMaskingHelper {
 			return input;
 		}
 		
-		// Based on https://stackoverflow.com/a/53428097
 		private static final String replace(String input, Pattern pattern, String replacement) {
 			Matcher m = pattern.matcher(input);
-			StringBuffer sb = new StringBuffer();
-			while (m.find()) {
-				Matcher m2 = pattern.matcher(m.group(0));
-				if (m2.find()) {
-					StringBuilder stringBuilder = new StringBuilder(m2.group(0));
-					String result = stringBuilder.replace(m2.start(1), m2.end(1), replacement).toString();
-					m.appendReplacement(sb, result);
+			if ( !m.find() ) { return input; }
+			int group = m.groupCount() == 0 ? 0 : 1;
+			StringBuilder sb = new StringBuilder(input.length());
+			int last = 0;
+			do {
+				if ( m.start(group) >= 0 ) {
+					sb.append(input, last, m.start(group)).append(replacement);
+					last = m.end(group);
+				}
+			} while ( m.find() );
+			return sb.append(input, last, input.length()).toString();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if ( this == obj ) { return true; }
+			if ( !(obj instanceof PatternGroupMasker) ) { return false; }
+			PatternGroupMasker other = (PatternGroupMasker)obj;
+			if ( patterns.length != other.patterns.length || !replacement.equals(other.replacement) ) { return false; }
+			for ( int i = 0 ; i < patterns.length ; i++ ) {
+				if ( !patterns[i].pattern().equals(other.patterns[i].pattern()) || patterns[i].flags() != other.patterns[i].flags() ) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = replacement.hashCode();
+			for ( Pattern pattern : patterns ) {
+				result = 31 * result + pattern.pattern().hashCode() + pattern.flags();
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Immutable snapshot of a set of registered maskers. All {@link PatternGroupMasker}
+	 * patterns are combined into a single alternation, with each alternative wrapped 
+	 * in a capturing group to identify which pattern matched. Any other {@link IMasker}
+	 * implementations are applied one by one before applying the combined pattern.
+	 */
+	private static final class MaskingSnapshot {
+		private static final MaskingSnapshot EMPTY = new MaskingSnapshot(new HashSet<>());
+		private final int version;
+		private final List<IMasker> otherMaskers;
+		private final Pattern combinedPattern;
+		private final int[] alternativeGroups;
+		private final int[] maskGroups;
+		private final String[] replacements;
+		private final String[] literalPrefixes; // null if any alternative doesn't have a literal prefix
+		private final boolean[] ignoreCase;
+		
+		private MaskingSnapshot(Set<IMasker> maskers) {
+			this.version = -1;
+			this.otherMaskers = new ArrayList<>();
+			List<Pattern> patterns = new ArrayList<>();
+			List<String> replacementList = new ArrayList<>();
+			for ( IMasker masker : maskers ) {
+				if ( masker instanceof PatternGroupMasker ) {
+					PatternGroupMasker pgm = (PatternGroupMasker)masker;
+					for ( Pattern pattern : pgm.patterns ) {
+						if ( isCombinable(pattern) ) {
+							if ( !containsPattern(patterns, replacementList, pattern, pgm.replacement) ) {
+								patterns.add(pattern);
+								replacementList.add(pgm.replacement);
+							}
+						} else {
+							otherMaskers.add(new PatternGroupMasker().patterns(pattern).replacement(pgm.replacement));
+						}
+					}
+				} else {
+					otherMaskers.add(masker);
+				}
+			}
+			int size = patterns.size();
+			this.alternativeGroups = new int[size];
+			this.maskGroups = new int[size];
+			this.replacements = replacementList.toArray(new String[size]);
+			this.ignoreCase = new boolean[size];
+			String[] prefixes = new String[size];
+			StringBuilder regex = new StringBuilder();
+			int group = 1;
+			for ( int i = 0 ; i < size ; i++ ) {
+				Pattern pattern = patterns.get(i);
+				int groupCount = pattern.matcher("").groupCount();
+				alternativeGroups[i] = group;
+				maskGroups[i] = groupCount == 0 ? group : group+1;
+				group += groupCount+1;
+				ignoreCase[i] = (pattern.flags() & Pattern.CASE_INSENSITIVE) != 0;
+				prefixes[i] = getLiteralPrefix(pattern);
+				if ( i > 0 ) { regex.append('|'); }
+				regex.append('(').append(getInlineFlags(pattern.flags())).append(pattern.pattern()).append(')');
+			}
+			this.combinedPattern = size == 0 ? null : Pattern.compile(regex.toString());
+			this.literalPrefixes = Arrays.stream(prefixes).anyMatch(p -> p.isEmpty()) ? null : prefixes;
+		}
+		
+		private MaskingSnapshot(MaskingSnapshot other, int version) {
+			this.version = version;
+			this.otherMaskers = other.otherMaskers;
+			this.combinedPattern = other.combinedPattern;
+			this.alternativeGroups = other.alternativeGroups;
+			this.maskGroups = other.maskGroups;
+			this.replacements = other.replacements;
+			this.literalPrefixes = other.literalPrefixes;
+			this.ignoreCase = other.ignoreCase;
+		}
+		
+		private MaskingSnapshot withVersion(int version) {
+			return new MaskingSnapshot(this, version);
+		}
+		
+		private void mask(String message, StringBuilder output) {
+			for ( IMasker masker : otherMaskers ) {
+				message = masker.mask(message);
+			}
+			int from = combinedPattern == null ? -1 : indexOfAnyPrefix(message, 0);
+			if ( from < 0 ) {
+				output.append(message);
+			} else {
+				Matcher m = combinedPattern.matcher(message);
+				int last = 0;
+				// Only run the regular expression from the next position where any of the
+				// literal prefixes occurs, instead of trying to match at every position. 
+				while ( from >= 0 && m.find(from) ) {
+					int alternative = getMatchedAlternative(m);
+					int start = m.start(maskGroups[alternative]);
+					if ( start >= last ) {
+						output.append(message, last, start).append(replacements[alternative]);
+						last = m.end(maskGroups[alternative]);
+					}
+					int next = m.end() > m.start() ? m.end() : m.end()+1;
+					from = next > message.length() ? -1 : indexOfAnyPrefix(message, next);
+				}
+				output.append(message, last, message.length());
+			}
+		}
+		
+		/**
+		 * Get the first index at or after the given index where any of the literal 
+		 * prefixes occurs, or -1 if none of the prefixes occur. If the literal prefixes
+		 * are not known, this method simply returns the given index.
+		 */
+		private int indexOfAnyPrefix(String message, int from) {
+			if ( literalPrefixes == null ) { return from; }
+			int result = -1;
+			for ( int i = 0 ; i < literalPrefixes.length ; i++ ) {
+				int idx = indexOf(message, literalPrefixes[i], ignoreCase[i], from);
+				if ( idx >= 0 && (result < 0 || idx < result) ) { result = idx; }
+			}
+			return result;
+		}
+		
+		private int getMatchedAlternative(Matcher m) {
+			for ( int i = 0 ; i < alternativeGroups.length-1 ; i++ ) {
+				if ( m.start(alternativeGroups[i]) >= 0 ) { return i; }
+			}
+			return alternativeGroups.length-1;
+		}
+		
+		private static final int indexOf(String message, String literal, boolean ignoreCase, int from) {
+			if ( !ignoreCase ) { return message.indexOf(literal, from); }
+			char lower = Character.toLowerCase(literal.charAt(0));
+			char upper = Character.toUpperCase(literal.charAt(0));
+			for ( int i = from, max = message.length()-literal.length() ; i <= max ; i++ ) {
+				char c = message.charAt(i);
+				if ( (c == lower || c == upper) && message.regionMatches(true, i, literal, 0, literal.length()) ) { return i; }
+			}
+			return -1;
+		}
+		
+		private static final boolean containsPattern(List<Pattern> patterns, List<String> replacements, Pattern pattern, String replacement) {
+			for ( int i = 0 ; i < patterns.size() ; i++ ) {
+				Pattern p = patterns.get(i);
+				if ( p.pattern().equals(pattern.pattern()) && p.flags()==pattern.flags() && replacements.get(i).equals(replacement) ) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * Patterns that use back references or named groups cannot be combined, 
+		 * as group numbers change in the combined pattern. The same applies to
+		 * flags that cannot be expressed inline.
+		 */
+		private static final boolean isCombinable(Pattern pattern) {
+			String regex = pattern.pattern();
+			return (pattern.flags() & (Pattern.LITERAL | Pattern.CANON_EQ)) == 0
+					&& !regex.matches("(?s).*\\\\[1-9k].*") && !regex.contains("(?<");
+		}
+		
+		private static final String getInlineFlags(int flags) {
+			StringBuilder sb = new StringBuilder();
+			if ( (flags & Pattern.CASE_INSENSITIVE) != 0 ) { sb.append('i'); }
+			if ( (flags & Pattern.UNIX_LINES) != 0 ) { sb.append('d'); }
+			if ( (flags & Pattern.MULTILINE) != 0 ) { sb.append('m'); }
+			if ( (flags & Pattern.DOTALL) != 0 ) { sb.append('s'); }
+			if ( (flags & Pattern.UNICODE_CASE) != 0 ) { sb.append('u'); }
+			if ( (flags & Pattern.COMMENTS) != 0 ) { sb.append('x'); }
+			if ( (flags & Pattern.UNICODE_CHARACTER_CLASS) != 0 ) { sb.append('U'); }
+			return sb.length()==0 ? "" : "(?"+sb+")";
+		}
+		
+		/**
+		 * Get the literal prefix of the given regular expression, or an empty
+		 * string if the expression doesn't start with any literal characters,
+		 * or if we cannot reliably determine the literal prefix.
+		 */
+		private static final String getLiteralPrefix(Pattern pattern) {
+			String regex = pattern.pattern();
+			if ( regex.indexOf('|') >= 0 || (pattern.flags() & Pattern.COMMENTS) != 0 ) { return ""; }
+			StringBuilder sb = new StringBuilder();
+			for ( int i = 0 ; i < regex.length() ; i++ ) {
+				char c = regex.charAt(i);
+				if ( "?*+{".indexOf(c) >= 0 ) {
+					// Previous character is optional or repeated, so not part of the literal prefix
+					if ( sb.length() > 0 ) { sb.setLength(sb.length()-1); }
+					break;
 				}
+				if ( "\\.[](){}^$|".indexOf(c) >= 0 ) { break; }
+				sb.append(c);
 			}
-			m.appendTail(sb);
 			return sb.toString();
 		}
 	}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.log4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.fortify.util.log4j.LogMaskingHelper.MaskerRegistration;
+import com.fortify.util.log4j.LogMaskingHelper.PatternGroupMasker;
+
+/**
+ * <p>JMH benchmark for the cost of log masking, both per request (registering and 
+ * removing the maskers that are active while executing a request) and per log event 
+ * (masking a formatted log message). The maskers resemble those registered by the REST
+ * connections: a shared authorization header masker that is registered for every
+ * request, and a new token masker instance for every token request.</p>
+ * 
+ * <p>Run using <code>mvn -Pbenchmark -pl common-log verify -DskipTests</code>.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogMaskingBenchmark {
+	private static final Pattern EXPR_AUTH_HEADER = Pattern.compile("Authorization: (.*)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern EXPR_TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+	private static final Pattern EXPR_ACCESS_TOKEN = Pattern.compile("\"access_token\":\"([^\"]+)\"");
+	private static final PatternGroupMasker AUTH_HEADER_MASKER = LogMaskingHelper.maskByPatternGroups().patterns(EXPR_AUTH_HEADER);
+	
+	@Param({"unmasked", "masked"})
+	public String messageType;
+	private LogEvent event;
+	private MaskerRegistration authHeaderRegistration;
+	private MaskerRegistration tokenRegistration;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		String message = "masked".equals(messageType)
+				? "1 * Sending client request on thread main\n1 > GET https://ssc.example.com/api/v1/projectVersions\n1 > Accept: application/json\n1 > Authorization: FortifyToken MDk3ZjRkYzQtNjE2Mi00YjEx\n"
+				: "1 * Client response received on thread main\n1 < 200\n1 < Content-Type: application/json\n{\"data\":[{\"id\":1,\"name\":\"1.0\"}],\"count\":1}\n";
+		event = Log4jLogEvent.newBuilder().setMessage(new SimpleMessage(message)).build();
+		authHeaderRegistration = AUTH_HEADER_MASKER.register();
+		tokenRegistration = LogMaskingHelper.maskByPatternGroups().patterns(EXPR_TOKEN, EXPR_ACCESS_TOKEN).register();
+		// Build the masking snapshot for the registered maskers
+		LogMaskingHelper.format(event, new StringBuilder());
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		tokenRegistration.close();
+		authHeaderRegistration.close();
+	}
+	
+	/**
+	 * Baseline: output the formatted log message without masking.
+	 */
+	@Benchmark
+	public StringBuilder formatWithoutMasking() {
+		return new StringBuilder().append(event.getMessage().getFormattedMessage());
+	}
+	
+	/**
+	 * Per log event: mask the formatted log message using the registered maskers.
+	 */
+	@Benchmark
+	public StringBuilder formatWithMasking() {
+		StringBuilder sb = new StringBuilder();
+		LogMaskingHelper.format(event, sb);
+		return sb;
+	}
+	
+	/**
+	 * Per request: register and remove an already registered, shared masker, as done 
+	 * for the authorization header masker by every request.
+	 */
+	@Benchmark
+	public void registerSharedMasker() {
+		try ( MaskerRegistration registration = AUTH_HEADER_MASKER.register() ) {
+			// Request would be executed here
+		}
+	}
+	
+	/**
+	 * Per request: register and remove a new masker instance that isn't registered yet,
+	 * and log a single event while the masker is active. This includes switching to
+	 * the cached masking snapshot for the changed set of maskers, twice.
+	 */
+	@Benchmark
+	public StringBuilder registerNewMaskerAndFormat() {
+		StringBuilder sb = new StringBuilder();
+		LogMaskingHelper.maskByPatternGroups().patterns("\"password\":\"([^\"]+)\"").on(() -> LogMaskingHelper.format(event, sb));
+		return sb;
+	}
+}
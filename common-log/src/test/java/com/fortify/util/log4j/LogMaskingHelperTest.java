@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.log4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.UUID;
+
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.Test;
+
+import com.fortify.util.log4j.LogMaskingHelper.MaskerRegistration;
+import com.fortify.util.log4j.LogMaskingHelper.PatternGroupMasker;
+
+public class LogMaskingHelperTest {
+	private static final String MESSAGE = "Authorization: secret, token=abc";
+	
+	@Test
+	public void testRegistrationIsReferenceCounted() {
+		PatternGroupMasker masker = LogMaskingHelper.maskByPatternGroups().patterns("Authorization: (\\w+)");
+		MaskerRegistration first = masker.register();
+		MaskerRegistration second = LogMaskingHelper.maskByPatternGroups().patterns("Authorization: (\\w+)").register();
+		assertEquals("Authorization: [hidden], token=abc", format(MESSAGE));
+		first.close();
+		first.close();
+		assertEquals("Authorization: [hidden], token=abc", format(MESSAGE));
+		second.close();
+		assertEquals(MESSAGE, format(MESSAGE));
+	}
+	
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testDeprecatedUUIDRegistration() {
+		UUID uuid = LogMaskingHelper.maskByPatternGroups().patterns("token=(\\w+)").replacement("***").add();
+		assertEquals("Authorization: secret, token=***", format(MESSAGE));
+		LogMaskingHelper.remove(uuid);
+		assertEquals(MESSAGE, format(MESSAGE));
+		LogMaskingHelper.remove(uuid); // Removing twice has no effect
+	}
+	
+	@Test
+	public void testRegisteredMaskerCannotBeModified() {
+		PatternGroupMasker masker = LogMaskingHelper.maskByPatternGroups().patterns("token=(\\w+)");
+		try ( MaskerRegistration registration = masker.register() ) {
+			masker.replacement("***");
+			fail("Registered masker was modified");
+		} catch ( IllegalStateException expected ) {
+			// Expected
+		}
+		assertEquals(MESSAGE, format(MESSAGE));
+	}
+	
+	private static final String format(String message) {
+		StringBuilder sb = new StringBuilder();
+		LogMaskingHelper.format(Log4jLogEvent.newBuilder().setMessage(new SimpleMessage(message)).build(), sb);
+		return sb.toString();
+	}
+}
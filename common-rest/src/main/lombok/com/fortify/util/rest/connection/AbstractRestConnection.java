@@ -26,13 +26,14 @@ package com.fortify.util.rest.connection;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.file.CopyOption;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,20 +41,34 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.UUID;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation.Builder;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Feature;
 import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.Response.Status.Family;
@@ -62,33 +77,62 @@ import javax.ws.rs.core.Response.StatusType;
 import org.apache.commons.lang.CharEncoding;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.reflect.ConstructorUtils;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.ServiceUnavailableRetryStrategy;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.protocol.HttpContext;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.client.ClientResponse;
 import org.glassfish.jersey.client.RequestEntityProcessing;
-import org.glassfish.jersey.logging.LoggingFeature;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
 import com.fortify.util.log4j.LogMaskingHelper;
+import com.fortify.util.log4j.LogMaskingHelper.MaskerRegistration;
+import com.fortify.util.log4j.LogMaskingHelper.PatternGroupMasker;
+import com.fortify.util.rest.connection.cache.PersistentCacheEntry;
+import com.fortify.util.rest.connection.cache.PersistentResponseCache;
 import com.fortify.util.rest.connection.connector.ApacheClientProperties;
 import com.fortify.util.rest.connection.connector.ApacheConnectorProvider;
+import com.fortify.util.rest.connection.connector.Http2ConnectorProvider;
+import com.fortify.util.rest.connection.logging.RestConnectionLoggingFilter;
+import com.fortify.util.rest.connection.metrics.EndpointMetrics;
+import com.fortify.util.rest.connection.metrics.MetricsRecordingRetryStrategy;
+import com.fortify.util.rest.connection.metrics.RestConnectionMetrics;
+import com.fortify.util.rest.connection.metrics.RestConnectionMetricsFilter;
+import com.fortify.util.rest.connection.metrics.RestConnectionMetricsSnapshot;
+import com.fortify.util.rest.connection.resilience.Bulkhead;
+import com.fortify.util.rest.connection.resilience.CircuitBreaker;
+import com.fortify.util.rest.connection.resilience.RateLimitFilter;
+import com.fortify.util.rest.connection.resilience.RateLimiter;
+import com.fortify.util.rest.connection.resilience.RequestRejectedException;
+import com.fortify.util.rest.connection.resilience.RetryPolicy;
+import com.fortify.util.rest.connection.resilience.RetryState;
+import com.fortify.util.rest.connection.transfer.DownloadResult;
+import com.fortify.util.rest.connection.transfer.FileDownloader;
+import com.fortify.util.rest.connection.transfer.ITransferProgressListener;
+import com.fortify.util.rest.connection.transfer.TransferProgressInterceptor;
 import com.fortify.util.rest.json.JSONList;
 import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.json.JSONObjectMapper;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
 import lombok.ToString;
@@ -117,10 +161,46 @@ import lombok.extern.apachecommons.CommonsLog;
  *   <li>[cacheName]:[cacheSpec]<br>
  *       Cache specification for individual caches.</li>
  *  </ul>
+ *  <p>Individual caches can be bounded either by number of entries using <code>maximumSize</code>,
+ *  or by estimated memory usage using <code>maximumWeight</code>. The weight of each cache entry
+ *  is the number of bytes in the response from which the entry was loaded, so for example
+ *  'maximumWeight=50000000,expireAfterWrite=15m' limits a cache to approximately 50MB worth of 
+ *  responses. Statistics like hit rate, evictions and load time are recorded for every cache,
+ *  and can be retrieved through {@link #getCacheStats()}.</p>
+ *  <p>Cached GET responses can optionally be revalidated with the server after a given time, 
+ *  by adding a '[cacheName].revalidateAfter' or 'default.revalidateAfter' entry to the cache
+ *  properties file, for example 'default.revalidateAfter=60s'. Supported time units are ms, s, m, 
+ *  h and d. Once an entry needs to be revalidated, the request is re-executed with the 
+ *  If-None-Match and/or If-Modified-Since headers based on the ETag and Last-Modified headers 
+ *  from the original response. If the server responds with 304 (Not Modified), the cached
+ *  entry is re-used without transferring or parsing the response body again. Note that cache 
+ *  entries are still evicted based on the cache specification, so for example 'expireAfterWrite' 
+ *  should be set to a time larger than 'revalidateAfter'; revalidated entries are re-inserted
+ *  into the cache, restarting their 'expireAfterWrite' period.</p>
+ *  <p>If a persistent cache directory has been configured through 
+ *  {@link AbstractRestConnectionConfig#persistentCacheDir(String)}, cached GET responses of type
+ *  JSONMap, JSONList or String are also stored on disk, allowing them to be re-used by subsequent
+ *  JVM invocations. Persistent cache entries are scoped by base URL and user identity, and are 
+ *  re-used for the time configured through the '[cacheName].persistentTtl' or 'default.persistentTtl' 
+ *  entries in the cache properties file, defaulting to 1 hour. A time-to-live of 0 disables
+ *  persistent caching for the corresponding cache. Expired entries are deleted when read, and
+ *  the persistent cache directory is swept based on {@link AbstractRestConnectionConfig#persistentCacheMaxAge(long)}
+ *  and {@link AbstractRestConnectionConfig#persistentCacheMaxSize(long)} when the connection is created.</p>
  *  <p>The format for the cache specification is described here:
  *  <a href="https://google.github.io/guava/releases/19.0/api/docs/com/google/common/cache/CacheBuilderSpec.html">https://google.github.io/guava/releases/19.0/api/docs/com/google/common/cache/CacheBuilderSpec.html</a>
  *  </p>
  * 
+ * <p>This base class records per-endpoint request metrics like request count, response status,
+ * latency, transferred bytes, retries and cache hits and misses. These metrics can be retrieved
+ * through {@link #getMetrics()}, and are by default also published as a JMX MXBean, see
+ * {@link AbstractRestConnectionConfig#publishMetricsMBean(boolean)}.</p>
+ * 
+ * <p>Requests that fail due to transient errors can be retried by configuring a
+ * {@link RetryPolicy}; retries are disabled by default. Optionally, a {@link CircuitBreaker} can be configured to reject 
+ * requests while the remote system is failing or slow, and a {@link Bulkhead} can be
+ * configured to limit the number of concurrent requests. Both are applied to every
+ * request attempt, and their state is included in the connection metrics.</p>
+ * 
  * <p>This base class allows for serialization of instances using a customized serialization mechanism.
  * This customized serialization mechanism must be enabled using the 
  * {@link AbstractRestConnectionConfig#enableSerializationSingleJVM()} or 
@@ -136,41 +216,96 @@ import lombok.extern.apachecommons.CommonsLog;
 @ToString
 public abstract class AbstractRestConnection implements IRestConnection {
 	private static final Pattern EXPR_AUTH_HEADER = Pattern.compile("Authorization: (.*)", Pattern.CASE_INSENSITIVE);
+	private static final PatternGroupMasker AUTH_HEADER_MASKER = LogMaskingHelper.maskByPatternGroups().patterns(EXPR_AUTH_HEADER);
+	private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("rest-request-retry-%d").setDaemon(true).build());
+	private static final String PROPERTY_REQUEST_PERMIT = AbstractRestConnection.class.getName()+".requestPermit";
 	private static final Set<String> DEFAULT_HTTP_METHODS_TO_PRE_AUTHENTICATE = new HashSet<String>(Arrays.asList("POST","PUT","PATCH"));
 	
 	private Properties cacheProperties; 
-	private LoadingCache<String, Cache<CacheKey, Object>> cacheManager;
-	private final Map<Class<?>, Object> apis = new HashMap<>();
+	private LoadingCache<String, Cache<CacheKey, CacheEntry>> cacheManager;
+	private final Map<String, Long> cacheRevalidateAfterMillis = new ConcurrentHashMap<>();
+	private final Map<String, Long> persistentCacheTtlMillis = new ConcurrentHashMap<>();
+	private final PersistentResponseCache persistentCache;
+	private final Map<CacheKey, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
+	// Keyed by stale CacheEntry instance, which uses identity-based equality
+	private final Map<CacheEntry, CompletableFuture<CacheEntry>> inFlightRevalidations = new ConcurrentHashMap<>();
+	private final boolean coalesceConcurrentRequests;
+	private final RestConnectionLoggingFilter loggingFilter;
+	private final int downloadMaxAttempts;
+	private final int downloadParallelRanges;
+	private final boolean compressionEnabled;
+	private final boolean http2Enabled;
+	@Getter(AccessLevel.PROTECTED) private final RateLimiter rateLimiter;
+	private final RetryPolicy retryPolicy;
+	private final Map<String, RetryPolicy> methodRetryPolicies;
+	private final CircuitBreaker circuitBreaker;
+	private final Bulkhead bulkhead;
+	private final Map<Class<?>, Object> apis = new ConcurrentHashMap<>();
+	// Executes asynchronous requests, including request filters that may block while
+	// waiting for the rate limiter or bulkhead, and other tasks that perform blocking 
+	// requests; shut down when this connection is closed
+	private final ExecutorService taskExecutor = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setNameFormat("rest-connection-task-%d").setDaemon(true).build());
 	
 	@Getter private final URI baseUrl;
 	private final ProxyConfig proxy;
 	private final Map<String, Object> connectionProperties;
+	private final Map<String, Object> connectionPoolProperties;
 	@Getter private final String connectionId;
 	private final CredentialsProvider credentialsProvider;
-	private Client client;
+	private final RestConnectionMetrics metrics = new RestConnectionMetrics();
+	private volatile Client client;
 	
 	protected AbstractRestConnection(AbstractRestConnectionConfig<?> config) {
 		initCache();
 		this.baseUrl = config.getBaseUrl();
 		this.proxy = config.getProxy();
 		this.connectionProperties = config.getConnectionProperties();
+		this.connectionPoolProperties = createConnectionPoolProperties(config);
+		this.coalesceConcurrentRequests = config.isCoalesceConcurrentRequests();
+		this.downloadMaxAttempts = config.getDownloadMaxAttempts();
+		this.downloadParallelRanges = config.getDownloadParallelRanges();
+		this.compressionEnabled = config.isCompressionEnabled();
+		this.http2Enabled = config.isHttp2Enabled();
+		this.loggingFilter = new RestConnectionLoggingFilter(config.getLogSampleRate(), 
+				config.getLogSlowRequestThreshold(), config.isLogFailedRequests(), config.getLogMaxEntitySize());
 		this.connectionId = this.getClass().getName()+config.getConnectionId();
+		this.persistentCache = StringUtils.isBlank(config.getPersistentCacheDir()) ? null
+				: new PersistentResponseCache(Paths.get(config.getPersistentCacheDir()), baseUrl+"\n"+config.getPersistentCacheIdentity(),
+						config.getPersistentCacheMaxAge(), config.getPersistentCacheMaxSize());
 		this.credentialsProvider = createCredentialsProvider(config);
+		this.rateLimiter = createRateLimiter(config);
+		this.retryPolicy = config.getRetryPolicy();
+		this.methodRetryPolicies = new HashMap<>(config.getMethodRetryPolicies());
+		this.circuitBreaker = config.getCircuitBreaker();
+		this.bulkhead = config.getBulkhead();
+		metrics.setCircuitBreaker(circuitBreaker);
+		metrics.setBulkhead(bulkhead);
 		Connections.register(this);
+		if ( config.isPublishMetricsMBean() ) {
+			metrics.registerMBean(this.connectionId);
+		}
 	}
 	
+	/**
+	 * Get the API instance of the given type for this connection. API instances are
+	 * created on first access, and shared by all threads using this connection.
+	 * @param type
+	 * @return
+	 */
 	@SuppressWarnings("unchecked")
 	public <T> T api(Class<T> type) {
 		Object result = apis.get(type);
-		if ( result == null ) {
-			try {
-				result = ConstructorUtils.invokeConstructor(type, new Object[]{this});
-			} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | InstantiationException e) {
-				throw new IllegalArgumentException("Cannot load API class "+type.getName(), e);
-			}
-			apis.put(type, result);
+		return (T) (result != null ? result : apis.computeIfAbsent(type, this::createApi));
+	}
+	
+	private Object createApi(Class<?> type) {
+		try {
+			return ConstructorUtils.invokeConstructor(type, new Object[]{this});
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | InstantiationException e) {
+			throw new IllegalArgumentException("Cannot load API class "+type.getName(), e);
 		}
-		return (T) result;
 	}
 
 	/**
@@ -181,11 +316,80 @@ public abstract class AbstractRestConnection implements IRestConnection {
 	 * 					  is created using {@link #getBaseResource()}.path(...)...
 	 * @param returnType The return type for the data returned by the request.
 	 * @return The result of executing the HTTP request.
+	 * @see AbstractRestConnectionConfig#coalesceConcurrentRequests(boolean)
 	 */
 	public <T> T executeRequest(String httpMethod, WebTarget webResource, Class<T> returnType) {
+		if ( coalesceConcurrentRequests && isCoalescable(httpMethod, returnType) ) {
+			return executeCoalescedRequest(httpMethod, webResource, returnType);
+		}
 		return executeRequest(httpMethod, webResource, null, returnType);
 	}
 	
+	/**
+	 * Execute the given request, unless an identical request is already in progress,
+	 * in which case we wait for the in-flight request to complete and return its result.
+	 * As callers may modify the returned {@link JSONMap} or {@link JSONList} instances 
+	 * (for example through the query processing pipeline), each caller that joined an 
+	 * in-flight request receives its own deep copy of such results.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T executeCoalescedRequest(String httpMethod, WebTarget webResource, Class<T> returnType) {
+		CacheKey key = getCacheKey(httpMethod, webResource, returnType);
+		InFlightRequest[] newRequest = {null};
+		InFlightRequest inFlightRequest = inFlightRequests.compute(key, (k, existing) -> {
+			if ( existing != null ) { existing.joiners++; return existing; }
+			return newRequest[0] = new InFlightRequest();
+		});
+		if ( inFlightRequest != newRequest[0] ) {
+			log.trace("Joining in-flight request: "+webResource.getUri());
+			metrics.getEndpointMetrics(httpMethod, webResource.getUri()).recordCoalescedRequest();
+			return (T)copyResult(join(inFlightRequest.future));
+		}
+		T result;
+		try {
+			result = executeRequest(httpMethod, webResource, null, returnType);
+		} catch ( RuntimeException | Error e ) {
+			inFlightRequests.remove(key, inFlightRequest);
+			inFlightRequest.future.completeExceptionally(e);
+			throw e;
+		}
+		// No other callers can join once the request has been removed, so we only need
+		// to protect the shared result against modification if any callers have joined
+		inFlightRequests.remove(key, inFlightRequest);
+		boolean joined = inFlightRequest.joiners > 0;
+		inFlightRequest.future.complete(result);
+		return joined ? (T)copyResult(result) : result;
+	}
+	
+	/**
+	 * Create a deep copy of the given result if it is a {@link JSONMap} or {@link JSONList},
+	 * such that callers sharing a coalesced result can safely modify their copy. 
+	 * Other results are returned as-is.
+	 */
+	private static Object copyResult(Object result) {
+		if ( result instanceof JSONMap ) {
+			JSONMap copy = new JSONMap();
+			((JSONMap)result).forEach((k,v)->copy.put(k, copyResult(v)));
+			return copy;
+		} else if ( result instanceof JSONList ) {
+			JSONList source = (JSONList)result;
+			JSONList copy = new JSONList(source.size());
+			source.forEach(v->copy.add(copyResult(v)));
+			return copy;
+		}
+		return result;
+	}
+	
+	/**
+	 * Indicate whether requests for the given HTTP method and return type can be
+	 * coalesced. Only requests without side effects, and for which the result can
+	 * be shared between multiple callers, can be coalesced.
+	 */
+	private boolean isCoalescable(String httpMethod, Class<?> returnType) {
+		return (HttpMethod.GET.equals(httpMethod) || HttpMethod.HEAD.equals(httpMethod)) 
+				&& returnType != null && !AutoCloseable.class.isAssignableFrom(returnType);
+	}
+	
 	/**
 	 * Execute a request for the given method using the given web resource and entity.
 	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
@@ -223,36 +427,357 @@ public abstract class AbstractRestConnection implements IRestConnection {
 	 * @return The result of executing the HTTP request.
 	 */
 	public <T> T executeRequest(String httpMethod, Builder builder, Entity<?> entity, Class<T> returnType) {
-		Response response = null;
-		UUID uuidAuthHeader = null;
+		return executeRequest(httpMethod, builder, entity, returnType, false);
+	}
+	
+	/**
+	 * Execute a conditional or range request for the given method using the given builder,
+	 * returning the {@link Response}. Contrary to {@link #executeRequest(String, Builder, Class)},
+	 * this method also returns the {@link Response} if the server responds with 304 (Not Modified) 
+	 * or 416 (Range Not Satisfiable), in which case the caller is expected to handle the response. 
+	 * The caller is responsible for closing the returned {@link Response}.
+	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
+	 *                   in {@link HttpMethod}
+	 * @param builder	 The builder used to execute the request, usually including conditional
+	 *                   and/or range headers
+	 * @return The {@link Response} for the HTTP request.
+	 */
+	public Response executeConditionalRequest(String httpMethod, Builder builder) {
+		return executeRequest(httpMethod, builder, null, Response.class, true);
+	}
+	
+	private <T> T executeRequest(String httpMethod, Builder builder, Entity<?> entity, Class<T> returnType, boolean conditional) {
+		MaskerRegistration authHeaderMasking = null;
 		try {
-			uuidAuthHeader = LogMaskingHelper.maskByPatternGroups().patterns(EXPR_AUTH_HEADER).add();
+			authHeaderMasking = AUTH_HEADER_MASKER.register();
 			initializeConnection(httpMethod);
 			builder = updateBuilder(builder);
-			response = builder.build(httpMethod, entity).invoke();
-			return checkResponseAndGetOutput(httpMethod, builder, response, returnType);
+			RetryState retryState = newRetryState(httpMethod, entity);
+			while ( true ) {
+				Response response = null;
+				long retryDelayMillis = -1;
+				RequestPermit permit = new RequestPermit();
+				builder.property(PROPERTY_REQUEST_PERMIT, permit);
+				try {
+					response = builder.build(httpMethod, entity).invoke();
+					permit.responseReceived(response.getStatus());
+					retryDelayMillis = getRetryDelayMillis(retryState, httpMethod, response.getStatus());
+					if ( retryDelayMillis < 0 ) {
+						return conditional && isConditionalResponse(response) 
+								? returnType.cast(response) 
+								: checkResponseAndGetOutput(httpMethod, builder, response, returnType);
+					}
+				} catch ( ProcessingException e ) {
+					RequestRejectedException rejected = getRequestRejectedException(e);
+					if ( rejected != null ) { throw rejected; }
+					permit.failed();
+					retryDelayMillis = getRetryDelayMillis(retryState, httpMethod, e);
+					if ( retryDelayMillis < 0 ) { throw e; }
+				} finally {
+					permit.release();
+					if ( response != null && (retryDelayMillis >= 0 || returnType==null || !Response.class.isAssignableFrom(returnType)) ) { response.close(); }
+				}
+				RetryState.sleep(retryDelayMillis);
+				builder.property(RestConnectionMetricsFilter.PROPERTY_RETRY, retryState.getRetries());
+			}
 		} catch ( ClientErrorException e ) {
 			throw new RuntimeException("Error accessing remote system:\n"+e.getMessage(), e);
 		} finally {
-			LogMaskingHelper.remove(uuidAuthHeader);
-			if ( response != null && (returnType==null || !Response.class.isAssignableFrom(returnType)) ) { response.close(); }
+			LogMaskingHelper.remove(authHeaderMasking);
+		}
+	}
+	
+	/**
+	 * Execute a request for uploading a (potentially large) entity, like a multipart
+	 * request containing a file. Contrary to the other executeRequest methods, the 
+	 * entity will not be buffered in memory, but is sent using chunked transfer
+	 * encoding while it is being written. As such, memory usage will not depend on
+	 * the entity size. Note that the entity cannot be re-sent, so the request will fail
+	 * if the remote system requires another round trip, for example for authentication
+	 * (see {@link #initializeConnection(String)}).
+	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
+	 *                   in {@link HttpMethod}
+	 * @param builder	 The builder used to execute the request. Usually this builder is created
+	 *                   using {@link #getBaseResource()}.path(...).builder(...)...
+	 * @param entity     The entity to be submitted
+	 * @param returnType The return type for the data returned by the request.
+	 * @param totalBytes The expected number of bytes to be uploaded, or -1 if unknown. This
+	 *                   value is only used for reporting progress. 
+	 * @param progressListener Optional {@link ITransferProgressListener} for receiving progress updates
+	 * @return The result of executing the HTTP request.
+	 */
+	public <T> T executeUploadRequest(String httpMethod, Builder builder, Entity<?> entity, Class<T> returnType, long totalBytes, ITransferProgressListener progressListener) {
+		builder = builder.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
+		if ( entity != null && "multipart".equalsIgnoreCase(entity.getMediaType().getType()) ) {
+			// The multipart writer adds this header while writing the entity, which is too late
+			// when using chunked encoding as headers have already been sent at that point
+			builder = builder.header("MIME-Version", "1.0");
+		}
+		if ( progressListener != null ) {
+			builder = builder
+					.property(TransferProgressInterceptor.PROPERTY_PROGRESS_LISTENER, progressListener)
+					.property(TransferProgressInterceptor.PROPERTY_TOTAL_BYTES, totalBytes);
 		}
+		return executeRequest(httpMethod, builder, entity, returnType);
+	}
+	
+	/**
+	 * Asynchronously execute a request for the given method using the given web resource.
+	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
+	 *                   in {@link HttpMethod}
+	 * @param webResource The web resource used to execute the request. Usually this web resource 
+	 * 					  is created using {@link #getBaseResource()}.path(...)...
+	 * @param returnType The return type for the data returned by the request.
+	 * @return {@link CompletableFuture} providing the result of executing the HTTP request.
+	 */
+	public <T> CompletableFuture<T> executeRequestAsync(String httpMethod, WebTarget webResource, Class<T> returnType) {
+		return executeRequestAsync(httpMethod, webResource, null, returnType);
+	}
+	
+	/**
+	 * Asynchronously execute a request for the given method using the given web resource and entity.
+	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
+	 *                   in {@link HttpMethod}
+	 * @param webResource The web resource used to execute the request. Usually this web resource 
+	 * 					  is created using {@link #getBaseResource()}.path(...)...
+	 * @param entity     The entity to be submitted, may be null
+	 * @param returnType The return type for the data returned by the request.
+	 * @return {@link CompletableFuture} providing the result of executing the HTTP request.
+	 */
+	public <T> CompletableFuture<T> executeRequestAsync(String httpMethod, WebTarget webResource, Entity<?> entity, Class<T> returnType) {
+		return executeRequestAsync(httpMethod, updateWebTarget(webResource).request(), entity, returnType);
 	}
 	
-	public void executeRequestAndSaveResponse(String httpMethod, WebTarget webTarget, Path outputPath, CopyOption... copyOptions) {
-		Response response = executeRequest(httpMethod, webTarget, Response.class);
+	/**
+	 * <p>Asynchronously execute a request for the given method using the given builder. The request is 
+	 * prepared in the same way as for {@link #executeRequest(String, Builder, Entity, Class)}, and then 
+	 * submitted to the non-blocking HTTP client without waiting for the response. The returned 
+	 * {@link CompletableFuture} is completed once the response has been received and processed by
+	 * {@link #checkResponseAndGetOutput(String, Builder, Response, Class)}, or completed exceptionally
+	 * if the request fails.</p>
+	 * 
+	 * <p>Note that the connection may still need to be initialized on the current thread, see
+	 * {@link #initializeConnection(String)}. Waiting for the configured {@link RateLimiter} or 
+	 * {@link Bulkhead}, if any, takes place on a thread pool owned by this connection, so 
+	 * submitting the request doesn't block the current thread. Also note that response processing usually takes 
+	 * place on one of the HTTP client I/O threads, so any dependent actions that perform blocking
+	 * operations should be executed using one of the async methods of {@link CompletableFuture}.</p>
+	 * 
+	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
+	 *                   in {@link HttpMethod}
+	 * @param builder	 The builder used to execute the request. Usually this builder is created
+	 *                   using {@link #getBaseResource()}.path(...).builder(...)...
+	 * @param entity     The entity to be submitted, may be null
+	 * @param returnType The return type for the data returned by the request.
+	 * @return {@link CompletableFuture} providing the result of executing the HTTP request.
+	 */
+	public <T> CompletableFuture<T> executeRequestAsync(final String httpMethod, Builder builder, Entity<?> entity, final Class<T> returnType) {
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final MaskerRegistration authHeaderMasking = AUTH_HEADER_MASKER.register();
 		try {
-			InputStream inputStream = (InputStream)response.getEntity();
-			Files.copy(inputStream, outputPath, copyOptions);
-		} catch (IOException e) {
-			throw new RuntimeException("Error writing response to file", e);
-		} finally {
-			if ( response != null ) {
-				response.close();
+			initializeConnection(httpMethod);
+			submitAsyncRequest(httpMethod, updateBuilder(builder), entity, returnType, newRetryState(httpMethod, entity), result);
+		} catch ( RuntimeException e ) {
+			result.completeExceptionally(e);
+		}
+		return result.whenComplete((output, throwable) -> authHeaderMasking.close());
+	}
+	
+	/**
+	 * Submit an asynchronous request, completing the given {@link CompletableFuture} once
+	 * the response has been processed. If the request fails and should be retried according
+	 * to the given {@link RetryState}, the request is re-submitted after the retry delay,
+	 * without blocking any threads while waiting.
+	 */
+	private <T> void submitAsyncRequest(final String httpMethod, final Builder builder, final Entity<?> entity, final Class<T> returnType, final RetryState retryState, final CompletableFuture<T> result) {
+		final RequestPermit permit = new RequestPermit();
+		builder.property(PROPERTY_REQUEST_PERMIT, permit);
+		InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+			@Override
+			public void completed(Response response) {
+				long retryDelayMillis = -1;
+				T output = null;
+				RuntimeException exception = null;
+				try {
+					permit.responseReceived(response.getStatus());
+					retryDelayMillis = getRetryDelayMillis(retryState, httpMethod, response.getStatus());
+					if ( retryDelayMillis < 0 ) {
+						output = checkResponseAndGetOutput(httpMethod, builder, response, returnType);
+					}
+				} catch ( ProcessingException e ) {
+					permit.failed();
+					retryDelayMillis = getRetryDelayMillis(retryState, httpMethod, e);
+					if ( retryDelayMillis < 0 ) { exception = e; }
+				} catch ( RuntimeException e ) {
+					exception = e;
+				} finally {
+					permit.release();
+					if ( response != null && (retryDelayMillis >= 0 || returnType==null || !Response.class.isAssignableFrom(returnType)) ) { response.close(); }
+				}
+				// Only complete the result once the permit has been released, allowing 
+				// dependent actions to immediately execute another request
+				if ( retryDelayMillis >= 0 ) { 
+					scheduleAsyncRetry(retryDelayMillis); 
+				} else if ( exception != null ) {
+					result.completeExceptionally(exception);
+				} else {
+					result.complete(output);
+				}
+			}
+			
+			@Override
+			public void failed(Throwable throwable) {
+				RequestRejectedException rejected = getRequestRejectedException(throwable);
+				if ( rejected != null ) {
+					result.completeExceptionally(rejected);
+					return;
+				}
+				permit.failed();
+				permit.release();
+				long retryDelayMillis = getRetryDelayMillis(retryState, httpMethod, throwable);
+				if ( retryDelayMillis >= 0 ) {
+					scheduleAsyncRetry(retryDelayMillis);
+				} else {
+					result.completeExceptionally(throwable instanceof ClientErrorException 
+						? new RuntimeException("Error accessing remote system:\n"+throwable.getMessage(), throwable)
+						: throwable);
+				}
+			}
+			
+			private void scheduleAsyncRetry(long retryDelayMillis) {
+				builder.property(RestConnectionMetricsFilter.PROPERTY_RETRY, retryState.getRetries());
+				try {
+					// Submitting the request doesn't block, as any potentially blocking filters
+					// are executed on the taskExecutor owned by this connection
+					RETRY_SCHEDULER.schedule(() -> submitAsyncRequest(httpMethod, builder, entity, returnType, retryState, result), 
+							retryDelayMillis, TimeUnit.MILLISECONDS);
+				} catch ( RuntimeException e ) {
+					result.completeExceptionally(e);
+				}
+			}
+		};
+		try {
+			if ( entity == null ) {
+				builder.async().method(httpMethod, callback);
+			} else {
+				builder.async().method(httpMethod, entity, callback);
 			}
+		} catch ( RuntimeException e ) {
+			permit.release();
+			result.completeExceptionally(e);
+		}
+	}
+	
+	/**
+	 * Get the {@link RequestRejectedException} that caused the given exception, or null 
+	 * if the given exception was not caused by a rejected request. Exceptions thrown by
+	 * {@link RequestPermitFilter} are wrapped in a {@link ProcessingException} by Jersey.
+	 */
+	private static final RequestRejectedException getRequestRejectedException(Throwable throwable) {
+		for ( Throwable t = throwable ; t != null ; t = t.getCause() ) {
+			if ( t instanceof RequestRejectedException ) { return (RequestRejectedException)t; }
+		}
+		return null;
+	}
+	
+	/**
+	 * Create a new {@link RetryState} for tracking retries of a request for the given
+	 * HTTP method and entity, or null if the request should not be retried. Requests 
+	 * are not retried if no {@link RetryPolicy} applies to the given HTTP method, or
+	 * if the given entity cannot be re-sent.
+	 */
+	private RetryState newRetryState(String httpMethod, Entity<?> entity) {
+		if ( entity != null && (entity.getEntity() instanceof InputStream || entity.getEntity() instanceof Reader) ) {
+			return null;
 		}
+		return newRetryState(httpMethod);
 	}
 	
+	/**
+	 * Create a new {@link RetryState} for tracking retries of a request for the given
+	 * HTTP method, or null if no {@link RetryPolicy} applies to the given HTTP method.
+	 * Callers that perform additional processing on a successful response, like 
+	 * processing a streamed response, can use this to retry the request if such 
+	 * processing fails due to a transient error.
+	 * @param httpMethod
+	 * @return
+	 */
+	@Override
+	public RetryState newRetryState(String httpMethod) {
+		RetryPolicy retryPolicy = getRetryPolicy(httpMethod);
+		return retryPolicy == null ? null : retryPolicy.newRetryState();
+	}
+	
+	/**
+	 * Get the {@link RetryPolicy} for the given HTTP method, or null if requests
+	 * for the given HTTP method should not be retried.
+	 * @param httpMethod
+	 * @return
+	 * @see AbstractRestConnectionConfig#retryPolicy(RetryPolicy)
+	 * @see AbstractRestConnectionConfig#retryPolicy(String, RetryPolicy)
+	 */
+	protected RetryPolicy getRetryPolicy(String httpMethod) {
+		if ( methodRetryPolicies.containsKey(httpMethod) ) {
+			return methodRetryPolicies.get(httpMethod);
+		}
+		return retryPolicy != null && retryPolicy.isRetryableMethod(httpMethod) ? retryPolicy : null;
+	}
+	
+	private static final long getRetryDelayMillis(RetryState retryState, String httpMethod, int status) {
+		long result = retryState == null ? -1 : retryState.getRetryDelayMillis(status);
+		if ( result >= 0 ) {
+			log.warn(httpMethod+" request failed with status "+status+", retrying in "+result+" ms");
+		}
+		return result;
+	}
+	
+	private static final long getRetryDelayMillis(RetryState retryState, String httpMethod, Throwable t) {
+		long result = retryState == null ? -1 : retryState.getRetryDelayMillis(t);
+		if ( result >= 0 ) {
+			log.warn(httpMethod+" request failed, retrying in "+result+" ms: "+t.getMessage());
+		}
+		return result;
+	}
+	
+	/**
+	 * Execute a request for the given method using the given web resource, and save the
+	 * response to the given output path. See {@link FileDownloader} for details.
+	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
+	 *                   in {@link HttpMethod}
+	 * @param webTarget  The web resource used to execute the request.
+	 * @param outputPath The path to which the response will be saved
+	 * @param copyOptions Options specifying how to handle an existing output file
+	 * @return {@link DownloadResult} describing the download
+	 */
+	public DownloadResult executeRequestAndSaveResponse(String httpMethod, WebTarget webTarget, Path outputPath, CopyOption... copyOptions) {
+		return fileDownloader(() -> updateWebTarget(webTarget).request()).httpMethod(httpMethod).download(outputPath, copyOptions);
+	}
+	
+	/**
+	 * Create a new {@link FileDownloader} instance for downloading files using this connection,
+	 * configured with the download settings from the connection configuration.
+	 * @param requestSupplier {@link Supplier} that provides a new request {@link Builder} for every request
+	 * @return New {@link FileDownloader} instance
+	 */
+	public FileDownloader fileDownloader(Supplier<Builder> requestSupplier) {
+		return new FileDownloader(this, requestSupplier)
+				.maxAttempts(downloadMaxAttempts)
+				.parallelRanges(downloadParallelRanges);
+	}
+	
+	/**
+	 * Execute a request for the given method using the given web resource, caching the result
+	 * in the cache with the given name. If no cache name is given, the request is executed without 
+	 * caching. Concurrent requests for the same cache key will wait for a single request to load
+	 * the cache entry, instead of all executing the same request.
+	 * @param httpMethod The HTTP method to be used, as specified by one of the constants
+	 *                   in {@link HttpMethod}
+	 * @param webResource The web resource used to execute the request. Usually this web resource 
+	 * 					  is created using {@link #getBaseResource()}.path(...)...
+	 * @param returnType The return type for the data returned by the request.
+	 * @param cacheName The name of the cache to use, may be null
+	 * @return The (possibly cached) result of executing the HTTP request.
+	 */
 	@SuppressWarnings("unchecked")
 	public <T> T executeRequest(String httpMethod, WebTarget webResource, Class<T> returnType, String cacheName) {
 		T result;
@@ -260,16 +785,223 @@ public abstract class AbstractRestConnection implements IRestConnection {
 			log.trace("No cache name specified, not using cache: "+webResource.getUri());
 			result = executeRequest(httpMethod, webResource, returnType);
 		} else {
-			Cache<CacheKey, Object> cache = cacheManager.getUnchecked(cacheName);
+			Cache<CacheKey, CacheEntry> cache = cacheManager.getUnchecked(cacheName);
 			CacheKey cacheKey = getCacheKey(httpMethod, webResource, returnType);
-			result = (T)cache.getIfPresent(cacheKey);
-			if ( result == null ) {
-				log.trace("Cache miss: "+webResource.getUri());
-				result = executeRequest(httpMethod, webResource, returnType);
-				cache.put(cacheKey, result);
+			EndpointMetrics endpointMetrics = metrics.getEndpointMetrics(httpMethod, webResource.getUri());
+			long revalidateAfterMillis = getCacheRevalidateAfterMillis(cacheName, httpMethod);
+			boolean[] loaded = {false};
+			CacheEntry cacheEntry;
+			try {
+				cacheEntry = cache.get(cacheKey, () -> {
+					CacheEntry persistentCacheEntry = getPersistentCacheEntry(cacheName, cacheKey, revalidateAfterMillis);
+					if ( persistentCacheEntry != null ) {
+						log.trace("Persistent cache hit: "+webResource.getUri());
+						return persistentCacheEntry;
+					}
+					log.trace("Cache miss: "+webResource.getUri());
+					loaded[0] = true;
+					return putPersistentCacheEntry(cacheName, cacheKey, 
+							loadCacheEntry(httpMethod, webResource, returnType, null, revalidateAfterMillis));
+				});
+			} catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+				Throwable cause = e.getCause();
+				if ( cause instanceof RuntimeException ) { throw (RuntimeException)cause; }
+				if ( cause instanceof Error ) { throw (Error)cause; }
+				throw new RuntimeException("Error loading cache entry for "+webResource.getUri(), cause);
+			}
+			if ( loaded[0] ) {
+				endpointMetrics.recordCacheMiss();
+			} else if ( cacheEntry.isStale() ) {
+				CacheEntry staleCacheEntry = cacheEntry;
+				cacheEntry = revalidateCacheEntry(cacheName, cache, cacheKey, cacheEntry, httpMethod, webResource, returnType, revalidateAfterMillis);
+				if ( cacheEntry == staleCacheEntry ) { endpointMetrics.recordCacheHit(); } else { endpointMetrics.recordCacheMiss(); }
 			} else {
 				log.trace("Cache hit: "+webResource.getUri());
+				endpointMetrics.recordCacheHit();
 			}
+			result = (T)cacheEntry.getValue();
+		}
+		return result;
+	}
+	
+	/**
+	 * Revalidate the given stale {@link CacheEntry}. Only one of multiple concurrent 
+	 * requests for the same stale entry actually revalidates the entry; the other requests 
+	 * wait for the in-flight revalidation to finish, without holding any locks, and return 
+	 * the same result.
+	 */
+	private CacheEntry revalidateCacheEntry(String cacheName, Cache<CacheKey, CacheEntry> cache, CacheKey cacheKey, CacheEntry cacheEntry, String httpMethod, WebTarget webResource, Class<?> returnType, long revalidateAfterMillis) {
+		CompletableFuture<CacheEntry> future = new CompletableFuture<>();
+		CompletableFuture<CacheEntry> inFlightRevalidation = inFlightRevalidations.putIfAbsent(cacheEntry, future);
+		if ( inFlightRevalidation != null ) {
+			log.trace("Joining in-flight cache entry revalidation: "+webResource.getUri());
+			return join(inFlightRevalidation);
+		}
+		try {
+			CacheEntry result;
+			if ( !cacheEntry.isStale() ) {
+				// Revalidated by another request that finished in the meantime
+				CacheEntry currentEntry = cache.getIfPresent(cacheKey);
+				result = currentEntry != null ? currentEntry : cacheEntry;
+			} else {
+				log.trace("Revalidating cache entry: "+webResource.getUri());
+				result = loadCacheEntry(httpMethod, webResource, returnType, cacheEntry, revalidateAfterMillis);
+				// Mark the original entry as fresh as well, such that any requests that 
+				// obtained the stale entry before it was replaced don't revalidate it again
+				cacheEntry.refresh(revalidateAfterMillis);
+				cache.put(cacheKey, putPersistentCacheEntry(cacheName, cacheKey, result));
+			}
+			future.complete(result);
+			return result;
+		} catch ( RuntimeException | Error e ) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlightRevalidations.remove(cacheEntry, future);
+		}
+	}
+	
+	/**
+	 * Wait for the given {@link CompletableFuture} to complete, and return its result.
+	 * If the future completed exceptionally, the original exception is re-thrown.
+	 */
+	private static final <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch ( CompletionException e ) {
+			Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException ) { throw (RuntimeException)cause; }
+			if ( cause instanceof Error ) { throw (Error)cause; }
+			throw e;
+		}
+	}
+	
+	/**
+	 * Execute the given request and return a new {@link CacheEntry} holding the result, 
+	 * weighted by the number of bytes in the response. If a previous {@link CacheEntry}
+	 * is given, the request is executed as a conditional request based on the validators
+	 * stored in the previous entry. If the server responds with 304 (Not Modified), the
+	 * previous entry is refreshed and returned.
+	 */
+	private CacheEntry loadCacheEntry(String httpMethod, WebTarget webResource, Class<?> returnType, CacheEntry previousEntry, long revalidateAfterMillis) {
+		AtomicLong responseBytes = new AtomicLong();
+		Builder builder = updateWebTarget(webResource).request()
+				.property(RestConnectionMetricsFilter.PROPERTY_RESPONSE_BYTES_COUNTER, responseBytes);
+		if ( previousEntry != null ) {
+			if ( previousEntry.getETag() != null ) { builder.header(HttpHeaders.IF_NONE_MATCH, previousEntry.getETag()); }
+			if ( previousEntry.getLastModified() != null ) { builder.header(HttpHeaders.IF_MODIFIED_SINCE, previousEntry.getLastModified()); }
+		}
+		Response response = previousEntry == null 
+				? executeRequest(httpMethod, builder, null, Response.class)
+				: executeConditionalRequest(httpMethod, builder);
+		try {
+			if ( previousEntry != null && response.getStatus() == Status.NOT_MODIFIED.getStatusCode() ) {
+				log.trace("Cache entry not modified: "+webResource.getUri());
+				previousEntry.refresh(revalidateAfterMillis);
+				return previousEntry;
+			}
+			Object value = getSuccessfulResponse(response, returnType, response.getStatusInfo());
+			return new CacheEntry(value, (int)Math.min(Integer.MAX_VALUE, Math.max(1, responseBytes.get())),
+					response.getHeaderString(HttpHeaders.ETAG), response.getHeaderString(HttpHeaders.LAST_MODIFIED),
+					revalidateAfterMillis);
+		} finally {
+			response.close();
+		}
+	}
+	
+	/**
+	 * Get the {@link CacheEntry} for the given cache name and key from the persistent
+	 * cache, or null if not available from the persistent cache.
+	 */
+	private CacheEntry getPersistentCacheEntry(String cacheName, CacheKey cacheKey, long revalidateAfterMillis) {
+		long ttlMillis = getPersistentCacheTtlMillis(cacheName, cacheKey);
+		if ( ttlMillis <= 0 ) {
+			return null;
+		}
+		PersistentCacheEntry entry = persistentCache.get(cacheName, getPersistentCacheKey(cacheKey), ttlMillis);
+		return entry == null ? null : new CacheEntry(entry.getValue(), Math.max(1, entry.getSize()), 
+				entry.getETag(), entry.getLastModified(), entry.getCreatedMillis(), revalidateAfterMillis);
+	}
+	
+	/**
+	 * Store the given {@link CacheEntry} in the persistent cache if applicable, 
+	 * and return the given {@link CacheEntry}.
+	 */
+	private CacheEntry putPersistentCacheEntry(String cacheName, CacheKey cacheKey, CacheEntry cacheEntry) {
+		if ( getPersistentCacheTtlMillis(cacheName, cacheKey) > 0 ) {
+			persistentCache.put(cacheName, getPersistentCacheKey(cacheKey), new PersistentCacheEntry(cacheEntry.getValue(), 
+					cacheEntry.getWeight(), cacheEntry.getETag(), cacheEntry.getLastModified(), cacheEntry.getLoadedAtMillis()));
+		}
+		return cacheEntry;
+	}
+	
+	private String getPersistentCacheKey(CacheKey cacheKey) {
+		Class<?> returnType = cacheKey.getReturnType();
+		return cacheKey.getHttpMethod()+" "+cacheKey.getUri()+" "+(returnType==null ? null : returnType.getName());
+	}
+	
+	/**
+	 * Get the configured persistent cache time-to-live for the given cache name, or -1
+	 * if the given {@link CacheKey} cannot be stored in the persistent cache.
+	 */
+	private long getPersistentCacheTtlMillis(String cacheName, CacheKey cacheKey) {
+		if ( persistentCache == null || !HttpMethod.GET.equals(cacheKey.getHttpMethod()) 
+				|| !PersistentResponseCache.isSupportedType(cacheKey.getReturnType()) ) {
+			return -1;
+		}
+		return persistentCacheTtlMillis.computeIfAbsent(cacheName, key -> 
+			parseDurationMillis(cacheProperties.getProperty(key+".persistentTtl", cacheProperties.getProperty("default.persistentTtl", "1h"))));
+	}
+	
+	/**
+	 * Get the configured time after which entries in the given cache need to be
+	 * revalidated, or -1 if entries should not be revalidated. Only GET requests
+	 * are revalidated.
+	 */
+	private long getCacheRevalidateAfterMillis(String cacheName, String httpMethod) {
+		if ( !HttpMethod.GET.equals(httpMethod) ) {
+			return -1;
+		}
+		return cacheRevalidateAfterMillis.computeIfAbsent(cacheName, key -> {
+			String value = cacheProperties.getProperty(key+".revalidateAfter", cacheProperties.getProperty("default.revalidateAfter"));
+			return StringUtils.isBlank(value) ? -1 : parseDurationMillis(value);
+		});
+	}
+	
+	/**
+	 * Parse the given duration, consisting of a number followed by one of the 
+	 * time units ms, s, m, h or d, into milliseconds. If no time unit is given,
+	 * the number is interpreted as seconds.
+	 * @param duration
+	 * @return
+	 */
+	protected static final long parseDurationMillis(String duration) {
+		String value = duration.trim().toLowerCase();
+		int unitStart = 0;
+		while ( unitStart < value.length() && Character.isDigit(value.charAt(unitStart)) ) { unitStart++; }
+		if ( unitStart == 0 ) {
+			throw new IllegalArgumentException("Invalid duration: "+duration);
+		}
+		long amount = Long.parseLong(value.substring(0, unitStart));
+		switch ( value.substring(unitStart).trim() ) {
+		case "ms": return amount;
+		case "": case "s": return TimeUnit.SECONDS.toMillis(amount);
+		case "m": return TimeUnit.MINUTES.toMillis(amount);
+		case "h": return TimeUnit.HOURS.toMillis(amount);
+		case "d": return TimeUnit.DAYS.toMillis(amount);
+		default: throw new IllegalArgumentException("Invalid duration: "+duration);
+		}
+	}
+	
+	/**
+	 * Get the statistics for all caches that have been created for this connection,
+	 * like hit rate, eviction count and load time.
+	 * @return {@link Map} containing {@link CacheStats} for each cache name
+	 */
+	public Map<String, CacheStats> getCacheStats() {
+		Map<String, CacheStats> result = new TreeMap<>();
+		for ( Map.Entry<String, Cache<CacheKey, CacheEntry>> entry : cacheManager.asMap().entrySet() ) {
+			result.put(entry.getKey(), entry.getValue().stats());
 		}
 		return result;
 	}
@@ -281,12 +1013,16 @@ public abstract class AbstractRestConnection implements IRestConnection {
 			throw new RuntimeException("Error loading cache properties", e);
 		} 
 		cacheManager = CacheBuilder.from(cacheProperties.getProperty("cacheManager", getDefaultCacheManagerSpec()))
-				.build(new CacheLoader<String, Cache<CacheKey, Object>>() {
+				.build(new CacheLoader<String, Cache<CacheKey, CacheEntry>>() {
 					@Override
-					public Cache<CacheKey, Object> load(String key) throws Exception {
+					public Cache<CacheKey, CacheEntry> load(String key) throws Exception {
 						String cacheSpec = cacheProperties.getProperty(key, cacheProperties.getProperty("default", getDefaultCacheSpec()));
 						log.debug("Creating cache "+key+" with spec "+cacheSpec);
-						return CacheBuilder.from(cacheSpec).build();
+						CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.from(cacheSpec).recordStats();
+						if ( cacheSpec.contains("maximumWeight") ) {
+							return cacheBuilder.weigher((CacheKey cacheKey, CacheEntry cacheEntry) -> cacheEntry.getWeight()).build();
+						}
+						return cacheBuilder.build();
 					}
 				});
 	}
@@ -383,6 +1119,15 @@ public abstract class AbstractRestConnection implements IRestConnection {
 		}
 	}
 
+	/**
+	 * Indicate whether the given response has status 304 (Not Modified) or 416 (Range Not 
+	 * Satisfiable), which should be handled by callers of {@link #executeConditionalRequest(String, Builder)}.
+	 */
+	private static final boolean isConditionalResponse(Response response) {
+		int statusCode = response.getStatus();
+		return statusCode == Status.NOT_MODIFIED.getStatusCode() || statusCode == Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode();
+	}
+
 	/**
 	 * Get the return value for a successful response.
 	 * @param response
@@ -466,14 +1211,22 @@ public abstract class AbstractRestConnection implements IRestConnection {
 	 * Get the cached client for executing requests. If the client
 	 * has not been previously cached, this method will call 
 	 * {@link #createClient()} to create a new client and then
-	 * cache it.
+	 * cache it. This method guarantees that only a single client is created
+	 * for this connection, even if called concurrently from multiple threads.
 	 * @return Cache {@link Client} instance if available, new {@link Client} instance otherwise
 	 */
 	public final Client getClient() {
-		if ( client == null ) {
-			client = createClient();
+		Client result = client;
+		if ( result == null ) {
+			synchronized (this) {
+				result = client;
+				if ( result == null ) {
+					result = createClient();
+					client = result;
+				}
+			}
 		}
-		return client;
+		return result;
 	}
 	
 	/**
@@ -482,11 +1235,70 @@ public abstract class AbstractRestConnection implements IRestConnection {
 	 */
 	public void close() {
 		Connections.unRegister(this);
-		getClient().close();
+		metrics.unregisterMBean();
+		Client client = this.client;
+		if ( client != null ) { client.close(); }
+		taskExecutor.shutdown();
 		cacheManager.invalidateAll();
 		apis.clear();
 	}
 	
+	/**
+	 * Get the {@link Executor} owned by this connection, for executing tasks that perform 
+	 * blocking requests on this connection, like loading cached data in the background. 
+	 * The number of threads is not limited; callers should limit the number of concurrent 
+	 * tasks, for example through {@link BoundedExecutor}. Tasks are rejected once this 
+	 * connection has been closed.
+	 * @return {@link Executor} owned by this connection
+	 */
+	public Executor getTaskExecutor() {
+		return taskExecutor;
+	}
+	
+	/**
+	 * Get statistics for the connection pool used for executing synchronous requests
+	 * on this connection. This can for example be used to check for pool starvation,
+	 * indicated by a non-zero number of pending connection requests.
+	 * @return {@link ConnectionPoolStats} instance, or null if not supported by the 
+	 *         underlying client, for example if requests are multiplexed over HTTP/2 
+	 *         connections
+	 */
+	public ConnectionPoolStats getConnectionPoolStats() {
+		return http2Enabled 
+				? Http2ConnectorProvider.getConnectionPoolStats(getClient())
+				: ApacheConnectorProvider.getConnectionPoolStats(getClient());
+	}
+	
+	/**
+	 * Get statistics for the connection pool used for executing asynchronous requests
+	 * on this connection.
+	 * @return {@link ConnectionPoolStats} instance, or null if no asynchronous requests
+	 *         have been executed yet, or if HTTP/2 has been enabled (in which case synchronous
+	 *         and asynchronous requests share the same connections)
+	 */
+	public ConnectionPoolStats getAsyncConnectionPoolStats() {
+		return http2Enabled ? null : ApacheConnectorProvider.getAsyncConnectionPoolStats(getClient());
+	}
+	
+	/**
+	 * Get a snapshot of the per-endpoint request metrics recorded for this connection.
+	 * @return {@link RestConnectionMetricsSnapshot} instance
+	 */
+	public RestConnectionMetricsSnapshot getMetrics() {
+		return metrics.getSnapshot();
+	}
+	
+	/**
+	 * Get the {@link EndpointMetrics} instance for the given HTTP method and URI, allowing
+	 * subclasses to record additional metrics.
+	 * @param httpMethod
+	 * @param uri
+	 * @return
+	 */
+	protected final EndpointMetrics getEndpointMetrics(String httpMethod, URI uri) {
+		return metrics.getEndpointMetrics(httpMethod, uri);
+	}
+	
 	public String getBaseUrlStringWithoutTrailingSlash() {
 		return StringUtils.removeEnd(getBaseUrl().toASCIIString(), "/");
 	}
@@ -517,7 +1329,7 @@ public abstract class AbstractRestConnection implements IRestConnection {
 	 */
 	protected Client createClient() {
 		ClientConfig config = createClientConfig();
-		Client client = ClientBuilder.newClient(config);
+		Client client = ClientBuilder.newBuilder().withConfig(config).executorService(taskExecutor).build();
 		return client;
 	}
 	
@@ -530,20 +1342,58 @@ public abstract class AbstractRestConnection implements IRestConnection {
 		}
 		clientConfig.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED);
 		clientConfig.property(ApacheClientProperties.CREDENTIALS_PROVIDER, credentialsProvider);
-		clientConfig.property(ApacheClientProperties.SERVICE_UNAVAILABLE_RETRY_STRATEGY, getServiceUnavailableRetryStrategy());
+		ServiceUnavailableRetryStrategy serviceUnavailableRetryStrategy = getServiceUnavailableRetryStrategy();
+		if ( serviceUnavailableRetryStrategy != null ) {
+			clientConfig.property(ApacheClientProperties.SERVICE_UNAVAILABLE_RETRY_STRATEGY, 
+					new RequestPermitRetryStrategy(new MetricsRecordingRetryStrategy(serviceUnavailableRetryStrategy, metrics)));
+		}
 		clientConfig.property(ApacheClientProperties.PREEMPTIVE_BASIC_AUTHENTICATION, doPreemptiveBasicAuthentication());
+		// Content decoding is handled by the Jersey encoders registered below, allowing
+		// metrics to record both compressed and decompressed response sizes
+		clientConfig.property(ApacheClientProperties.DISABLE_CONTENT_COMPRESSION, true);
+		for ( Map.Entry<String,Object> property : connectionPoolProperties.entrySet() ) {
+			clientConfig.property(property.getKey(), property.getValue());
+		}
 		if ( connectionProperties != null ) {
 			for ( Map.Entry<String,Object> property : connectionProperties.entrySet() ) {
 				clientConfig.property(property.getKey(), property.getValue());
 			}
 		}
-		clientConfig.connectorProvider(new ApacheConnectorProvider());
+		clientConfig.connectorProvider(http2Enabled ? new Http2ConnectorProvider() : new ApacheConnectorProvider());
+		if ( rateLimiter != null ) {
+			clientConfig.register(new RateLimitFilter(rateLimiter), RateLimitFilter.PRIORITY);
+		}
+		clientConfig.register(new RequestPermitFilter(), RequestPermitFilter.PRIORITY);
 		clientConfig.register(JacksonFeature.class);
 		clientConfig.register(MultiPartFeature.class);
-		clientConfig.register(new LoggingFeature(Logger.getLogger(LoggingFeature.DEFAULT_LOGGER_NAME), Level.FINE, LoggingFeature.Verbosity.PAYLOAD_ANY, 10000));
+		clientConfig.register(new RestConnectionMetricsFilter(metrics));
+		clientConfig.register(loggingFilter);
+		clientConfig.register(TransferProgressInterceptor.class);
+		if ( compressionEnabled ) {
+			clientConfig.register(new AcceptEncodingFilter());
+			clientConfig.register(GZipEncoder.class);
+			clientConfig.register(DeflateEncoder.class);
+		}
 		return clientConfig;
 	}
 	
+	/**
+	 * Get the connection pool properties for the given configuration. These properties
+	 * are added to the client configuration by {@link #createClientConfig()}, and may
+	 * be overridden through {@link AbstractRestConnectionConfig#connectionProperties(String)}.
+	 * @param config
+	 * @return
+	 */
+	private static final Map<String, Object> createConnectionPoolProperties(AbstractRestConnectionConfig<?> config) {
+		Map<String, Object> result = new HashMap<>();
+		result.put(ApacheClientProperties.MAX_TOTAL_CONNECTIONS, config.getMaxTotalConnections());
+		result.put(ApacheClientProperties.MAX_CONNECTIONS_PER_ROUTE, config.getMaxConnectionsPerRoute());
+		result.put(ApacheClientProperties.VALIDATE_AFTER_INACTIVITY, config.getValidateAfterInactivity());
+		result.put(ApacheClientProperties.IDLE_CONNECTION_TIMEOUT, config.getIdleConnectionTimeout());
+		result.put(ApacheClientProperties.CONNECTION_TIME_TO_LIVE, config.getConnectionTimeToLive());
+		return result;
+	}
+	
 	/**
 	 * Create a {@link CredentialsProvider} for the given configuration.
 	 * @param config
@@ -568,6 +1418,19 @@ public abstract class AbstractRestConnection implements IRestConnection {
 		return new BasicCredentialsProvider();
 	}
 	
+	/**
+	 * Create the {@link RateLimiter} for pacing requests. This default implementation
+	 * returns the {@link RateLimiter} configured through 
+	 * {@link AbstractRestConnectionConfig#rateLimiter(RateLimiter)}, if any. Subclasses 
+	 * can override this method to enable rate limiting by default. If this method returns 
+	 * null, requests will not be rate-limited.
+	 * @param config
+	 * @return
+	 */
+	protected RateLimiter createRateLimiter(AbstractRestConnectionConfig<?> config) {
+		return config.getRateLimiter();
+	}
+	
 	protected ServiceUnavailableRetryStrategy getServiceUnavailableRetryStrategy() {
 		return null;
 	}
@@ -647,27 +1510,226 @@ public abstract class AbstractRestConnection implements IRestConnection {
 		}
 	}
 	
+	/**
+	 * This class represents the permission to execute a single request attempt. A new instance
+	 * is stored in the {@link #PROPERTY_REQUEST_PERMIT} request property for every attempt, 
+	 * and is acquired by {@link RequestPermitFilter} once the request has been admitted by
+	 * the {@link RateLimiter} (if any). This way, time spent waiting for the {@link RateLimiter}
+	 * doesn't occupy a {@link Bulkhead} slot, and isn't recorded as {@link CircuitBreaker} 
+	 * latency. Once {@link #release()} is called, the request outcome is recorded in the 
+	 * configured {@link CircuitBreaker} and the {@link Bulkhead} permit is released. All 
+	 * methods other than {@link #acquire()} do nothing if the permit was never acquired, 
+	 * for example because the request was rejected.
+	 */
+	private final class RequestPermit {
+		private long startNanos;
+		private long excludedNanos = 0;
+		private long durationNanos = -1;
+		private boolean acquired = false;
+		private boolean failed = false;
+		private boolean released = false;
+		
+		/**
+		 * Wait until the configured {@link Bulkhead} (if any) allows for another request
+		 * to be started, and check whether the configured {@link CircuitBreaker} (if any)
+		 * permits the request.
+		 * @throws RequestRejectedException if the request is rejected
+		 */
+		public void acquire() {
+			if ( bulkhead != null ) {
+				bulkhead.acquire();
+			}
+			if ( circuitBreaker != null && !circuitBreaker.tryAcquirePermission() ) {
+				if ( bulkhead != null ) { bulkhead.release(); }
+				throw new RequestRejectedException("Request to "+baseUrl+" rejected; circuit breaker is open");
+			}
+			synchronized (this) {
+				acquired = true;
+				startNanos = System.nanoTime();
+			}
+		}
+		
+		/**
+		 * Exclude the given amount of time, usually spent waiting before retrying
+		 * a rate-limited request, from the request duration.
+		 */
+		public synchronized void excludeNanos(long nanos) {
+			excludedNanos += nanos;
+		}
+		
+		public synchronized void responseReceived(int status) {
+			if ( acquired ) {
+				durationNanos = getElapsedNanos();
+				failed = status >= 500;
+			}
+		}
+		
+		public synchronized void failed() {
+			failed = true;
+		}
+		
+		public synchronized void release() {
+			if ( acquired && !released ) {
+				released = true;
+				if ( circuitBreaker != null ) {
+					circuitBreaker.onResult(failed, durationNanos >= 0 ? durationNanos : getElapsedNanos());
+				}
+				if ( bulkhead != null ) { bulkhead.release(); }
+			}
+		}
+		
+		private long getElapsedNanos() {
+			return Math.max(0, System.nanoTime()-startNanos-excludedNanos);
+		}
+	}
+	
+	/**
+	 * JAX-RS client filter that requests gzip- or deflate-encoded responses, to be decoded 
+	 * by the registered {@link GZipEncoder} and {@link DeflateEncoder}. Contrary to Jersey's
+	 * EncodingFilter, this filter doesn't touch requests that already specify an 
+	 * Accept-Encoding header, for example range requests that explicitly request the
+	 * identity encoding because ranges apply to the encoded content.
+	 */
+	private static final class AcceptEncodingFilter implements ClientRequestFilter {
+		private static final String ACCEPT_ENCODING = "gzip, deflate";
+		
+		@Override
+		public void filter(ClientRequestContext requestContext) throws IOException {
+			if ( !requestContext.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING) ) {
+				requestContext.getHeaders().add(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+			}
+		}
+	}
+	
+	/**
+	 * JAX-RS client filter that acquires the {@link RequestPermit} stored in the 
+	 * {@link #PROPERTY_REQUEST_PERMIT} request property. This filter is registered
+	 * with a lower priority than {@link RateLimitFilter}, such that the permit is
+	 * only acquired once the request has been admitted by the {@link RateLimiter}.
+	 */
+	private static final class RequestPermitFilter implements ClientRequestFilter {
+		public static final int PRIORITY = RateLimitFilter.PRIORITY+1;
+		
+		@Override
+		public void filter(ClientRequestContext requestContext) throws IOException {
+			Object permit = requestContext.getProperty(PROPERTY_REQUEST_PERMIT);
+			if ( permit instanceof RequestPermit ) {
+				((RequestPermit)permit).acquire();
+			}
+		}
+	}
+	
+	/**
+	 * {@link ServiceUnavailableRetryStrategy} implementation that excludes the retry interval
+	 * from the duration of the current {@link RequestPermit}, such that waiting before retrying 
+	 * a rate-limited request isn't recorded as {@link CircuitBreaker} latency. Note that the
+	 * rate-limited request keeps its {@link Bulkhead} slot while waiting; other requests wait
+	 * in {@link RateLimitFilter} before acquiring a slot, as the {@link RateLimiter} is paused.
+	 */
+	private static final class RequestPermitRetryStrategy implements ServiceUnavailableRetryStrategy {
+		private final ServiceUnavailableRetryStrategy delegate;
+		// HttpClient calls getRetryInterval() on the same thread directly after retryRequest(),
+		// and the delegate may only return the correct interval once
+		private final ThreadLocal<Long> interval = new ThreadLocal<Long>();
+		
+		public RequestPermitRetryStrategy(ServiceUnavailableRetryStrategy delegate) {
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
+			boolean result = delegate.retryRequest(response, executionCount, context);
+			if ( result ) {
+				long retryInterval = delegate.getRetryInterval();
+				interval.set(retryInterval);
+				Object request = context.getAttribute(ApacheClientProperties.CLIENT_REQUEST_CONTEXT_ATTRIBUTE);
+				if ( retryInterval > 0 && request instanceof ClientRequestContext ) {
+					Object permit = ((ClientRequestContext)request).getProperty(PROPERTY_REQUEST_PERMIT);
+					if ( permit instanceof RequestPermit ) {
+						((RequestPermit)permit).excludeNanos(TimeUnit.MILLISECONDS.toNanos(retryInterval));
+					}
+				}
+			}
+			return result;
+		}
+		
+		@Override
+		public long getRetryInterval() {
+			Long result = interval.get();
+			interval.remove();
+			return result==null ? delegate.getRetryInterval() : result;
+		}
+	}
+	
+	/**
+	 * In-flight coalesced request, together with the number of callers that joined
+	 * this request. The number of joiners is only updated while holding the lock for
+	 * the corresponding {@link #inFlightRequests} entry.
+	 */
+	private static final class InFlightRequest {
+		private final CompletableFuture<Object> future = new CompletableFuture<>();
+		private int joiners = 0;
+	}
+	
 	@Data
 	protected static class CacheKey {
 		private final String httpMethod;
 		private final URI uri;
 		private final Class<?> returnType;
 	}
+	
+	/**
+	 * Cached value, together with the weight and validators of the response
+	 * from which the value was loaded.
+	 */
+	@Getter
+	protected static class CacheEntry {
+		private final Object value;
+		private final int weight;
+		private final String eTag;
+		private final String lastModified;
+		private volatile long loadedAtMillis;
+		private volatile long revalidateAtMillis;
+		
+		public CacheEntry(Object value, int weight, String eTag, String lastModified, long revalidateAfterMillis) {
+			this(value, weight, eTag, lastModified, System.currentTimeMillis(), revalidateAfterMillis);
+		}
+		
+		public CacheEntry(Object value, int weight, String eTag, String lastModified, long loadedAtMillis, long revalidateAfterMillis) {
+			this.value = value;
+			this.weight = weight;
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			refresh(loadedAtMillis, revalidateAfterMillis);
+		}
+		
+		/**
+		 * Mark this entry as fresh for the given number of milliseconds, 
+		 * or indefinitely if the given value is negative.
+		 * @param revalidateAfterMillis
+		 */
+		public void refresh(long revalidateAfterMillis) {
+			refresh(System.currentTimeMillis(), revalidateAfterMillis);
+		}
+		
+		private void refresh(long loadedAtMillis, long revalidateAfterMillis) {
+			this.loadedAtMillis = loadedAtMillis;
+			this.revalidateAtMillis = revalidateAfterMillis < 0 ? Long.MAX_VALUE : loadedAtMillis+revalidateAfterMillis;
+		}
+		
+		/**
+		 * @return true if this entry needs to be revalidated, false otherwise
+		 */
+		public boolean isStale() {
+			return System.currentTimeMillis() >= revalidateAtMillis;
+		}
+	}
 
 	protected static class JacksonFeature implements Feature {
 
-	    @SuppressWarnings("serial")
-		private static final ObjectMapper mapper =
-	        new ObjectMapper(){{
-	        	final SimpleModule module = new SimpleModule("treemaps");
-	            module.addAbstractTypeMapping(Map.class, JSONMap.class);
-	            module.addAbstractTypeMapping(List.class, JSONList.class);
-	            registerModule(module);
-	        }};
-	 
 	    private static final JacksonJaxbJsonProvider provider =
 	        new JacksonJaxbJsonProvider(){{
-	            setMapper(mapper);
+	            setMapper(JSONObjectMapper.getInstance());
 	        }};
 	 
 	    public boolean configure(FeatureContext context) {
@@ -30,10 +30,16 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 import org.glassfish.jersey.client.ClientProperties;
 
+import com.fortify.util.rest.connection.connector.ApacheClientProperties;
+import com.fortify.util.rest.connection.resilience.Bulkhead;
+import com.fortify.util.rest.connection.resilience.CircuitBreaker;
+import com.fortify.util.rest.connection.resilience.RateLimiter;
+import com.fortify.util.rest.connection.resilience.RetryPolicy;
 import com.fortify.util.rest.json.ondemand.AbstractJSONMapOnDemandLoaderWithConnection;
 import com.google.common.base.Splitter;
 
@@ -42,7 +48,8 @@ import lombok.EqualsAndHashCode;
 
 /**
  * This abstract base class allows for configuring {@link AbstractRestConnection} instances
- * by setting properties like base URL, proxy configuration and additional connection properties.
+ * by setting properties like base URL, proxy configuration, connection pool settings and 
+ * additional connection properties.
  * 
  * @author Ruud Senden
  *
@@ -54,6 +61,29 @@ public abstract class AbstractRestConnectionConfig<T extends AbstractRestConnect
 	private ProxyConfig proxy = new ProxyConfig();
 	private Map<String, Object> connectionProperties;
 	private String connectionId = UUID.randomUUID().toString();
+	private int maxTotalConnections = 50;
+	private int maxConnectionsPerRoute = 20;
+	private int validateAfterInactivity = 2000;
+	private long idleConnectionTimeout = 60000;
+	private long connectionTimeToLive = -1;
+	private boolean publishMetricsMBean = true;
+	private String persistentCacheDir;
+	private long persistentCacheMaxAge = TimeUnit.DAYS.toMillis(7);
+	private long persistentCacheMaxSize = 100L*1024*1024;
+	private boolean coalesceConcurrentRequests = false;
+	private int logSampleRate = 1;
+	private long logSlowRequestThreshold = -1;
+	private boolean logFailedRequests = false;
+	private int logMaxEntitySize = 10000;
+	private int downloadMaxAttempts = 3;
+	private int downloadParallelRanges = 1;
+	private boolean compressionEnabled = true;
+	private boolean http2Enabled = false;
+	private RateLimiter rateLimiter;
+	private RetryPolicy retryPolicy;
+	private Map<String, RetryPolicy> methodRetryPolicies = new HashMap<>();
+	private CircuitBreaker circuitBreaker;
+	private Bulkhead bulkhead;
 	
 	public T baseUrl(String baseUrl) {
 		setBaseUrl(baseUrl);
@@ -75,6 +105,312 @@ public abstract class AbstractRestConnectionConfig<T extends AbstractRestConnect
 		return getThis();
 	}
 	
+	/**
+	 * Configure the maximum total number of pooled HTTP connections; default is 50.
+	 * @param maxTotalConnections
+	 * @return
+	 */
+	public T maxTotalConnections(int maxTotalConnections) {
+		setMaxTotalConnections(maxTotalConnections);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the maximum number of pooled HTTP connections per route (target host); 
+	 * default is 20. This effectively limits the number of concurrent requests to the
+	 * target system.
+	 * @param maxConnectionsPerRoute
+	 * @return
+	 */
+	public T maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the period of inactivity in milliseconds after which pooled connections 
+	 * are re-validated before being re-used; default is 2000. A non-positive value 
+	 * disables connection validation.
+	 * @param validateAfterInactivity
+	 * @return
+	 */
+	public T validateAfterInactivity(int validateAfterInactivity) {
+		setValidateAfterInactivity(validateAfterInactivity);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the time in milliseconds after which idle pooled connections are
+	 * closed by a background thread, which also closes expired connections; default 
+	 * is 60000. A non-positive value disables idle and expired connection eviction.
+	 * @param idleConnectionTimeout
+	 * @return
+	 */
+	public T idleConnectionTimeout(long idleConnectionTimeout) {
+		setIdleConnectionTimeout(idleConnectionTimeout);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the total time to live in milliseconds for pooled connections; by 
+	 * default (-1) connections can be re-used indefinitely.
+	 * @param connectionTimeToLive
+	 * @return
+	 */
+	public T connectionTimeToLive(long connectionTimeToLive) {
+		setConnectionTimeToLive(connectionTimeToLive);
+		return getThis();
+	}
+	
+	/**
+	 * Configure whether the request metrics for this connection should be published
+	 * as a JMX MXBean; default is true.
+	 * @param publishMetricsMBean
+	 * @return
+	 */
+	public T publishMetricsMBean(boolean publishMetricsMBean) {
+		setPublishMetricsMBean(publishMetricsMBean);
+		return getThis();
+	}
+	
+	/**
+	 * Configure a directory for storing cached responses, allowing cached responses to be
+	 * re-used across JVM invocations. By default, cached responses are only kept in memory.
+	 * See {@link AbstractRestConnection} for details.
+	 * @param persistentCacheDir
+	 * @return
+	 */
+	public T persistentCacheDir(String persistentCacheDir) {
+		setPersistentCacheDir(persistentCacheDir);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the maximum age in milliseconds of files in the persistent cache directory;
+	 * older files are deleted when the connection is created. Default is 7 days, -1 disables
+	 * deleting files based on their age.
+	 * @param persistentCacheMaxAge
+	 * @return
+	 */
+	public T persistentCacheMaxAge(long persistentCacheMaxAge) {
+		setPersistentCacheMaxAge(persistentCacheMaxAge);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the maximum total size in bytes of the entries in the persistent cache 
+	 * directory; if exceeded, the oldest entries are deleted when the connection is created.
+	 * Default is 100MB, -1 disables deleting files based on total size.
+	 * @param persistentCacheMaxSize
+	 * @return
+	 */
+	public T persistentCacheMaxSize(long persistentCacheMaxSize) {
+		setPersistentCacheMaxSize(persistentCacheMaxSize);
+		return getThis();
+	}
+	
+	/**
+	 * Configure whether concurrent identical GET and HEAD requests should be coalesced;
+	 * default is false. If enabled, concurrent calls to 
+	 * {@link AbstractRestConnection#executeRequest(String, javax.ws.rs.client.WebTarget, Class)}
+	 * for the same HTTP method, URI and return type will share a single HTTP request and 
+	 * its result. Callers that joined an in-flight request receive their own copy of
+	 * {@link com.fortify.util.rest.json.JSONMap} and {@link com.fortify.util.rest.json.JSONList}
+	 * results; other result objects are shared between callers, so callers should not 
+	 * modify such objects. Requests that use a named cache are always coalesced, 
+	 * independent of this setting.
+	 * @param coalesceConcurrentRequests
+	 * @return
+	 */
+	public T coalesceConcurrentRequests(boolean coalesceConcurrentRequests) {
+		setCoalesceConcurrentRequests(coalesceConcurrentRequests);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the request/response logging sample rate; default is 1. Requests and
+	 * responses are logged to the Jersey LoggingFeature logger if that logger is enabled
+	 * for log level FINE. If the sample rate is set to N, only 1 in N requests will be logged,
+	 * in addition to slow and failed requests if enabled through {@link #logSlowRequestThreshold(long)}
+	 * and {@link #logFailedRequests(boolean)}. A sample rate of 0 disables logging of 
+	 * regular requests.
+	 * @param logSampleRate
+	 * @return
+	 */
+	public T logSampleRate(int logSampleRate) {
+		setLogSampleRate(logSampleRate);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the number of milliseconds after which a request is considered slow,
+	 * causing the request to be logged independent of the configured sample rate.
+	 * Default is -1, meaning slow requests will not be logged unless sampled.
+	 * @param logSlowRequestThreshold
+	 * @return
+	 */
+	public T logSlowRequestThreshold(long logSlowRequestThreshold) {
+		setLogSlowRequestThreshold(logSlowRequestThreshold);
+		return getThis();
+	}
+	
+	/**
+	 * Configure whether requests resulting in a 4xx or 5xx response should be logged
+	 * independent of the configured sample rate; default is false.
+	 * @param logFailedRequests
+	 * @return
+	 */
+	public T logFailedRequests(boolean logFailedRequests) {
+		setLogFailedRequests(logFailedRequests);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the maximum number of request and response entity bytes to be
+	 * logged; default is 10000.
+	 * @param logMaxEntitySize
+	 * @return
+	 */
+	public T logMaxEntitySize(int logMaxEntitySize) {
+		setLogMaxEntitySize(logMaxEntitySize);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the maximum number of attempts for file downloads; default is 3.
+	 * Failed downloads are resumed from where they failed if the remote system
+	 * supports range requests.
+	 * @param downloadMaxAttempts
+	 * @return
+	 */
+	public T downloadMaxAttempts(int downloadMaxAttempts) {
+		setDownloadMaxAttempts(downloadMaxAttempts);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the maximum number of ranges to download in parallel for large 
+	 * file downloads; default is 1 (no parallel range requests).
+	 * @param downloadParallelRanges
+	 * @return
+	 */
+	public T downloadParallelRanges(int downloadParallelRanges) {
+		setDownloadParallelRanges(downloadParallelRanges);
+		return getThis();
+	}
+	
+	/**
+	 * Configure whether gzip and deflate response compression should be negotiated
+	 * with the remote system; default is true. Compressed responses are decompressed
+	 * on the fly while the response is being read, for both synchronous and asynchronous
+	 * requests, without buffering the full decompressed response.
+	 * @param compressionEnabled
+	 * @return
+	 */
+	public T compressionEnabled(boolean compressionEnabled) {
+		setCompressionEnabled(compressionEnabled);
+		return getThis();
+	}
+	
+	/**
+	 * Configure whether requests should be executed using HTTP/2; default is false.
+	 * If enabled, concurrent requests to the same host are multiplexed over a single 
+	 * HTTP/2 connection, avoiding the overhead of establishing a new TCP and TLS 
+	 * connection for every concurrent request. This requires the remote system to
+	 * support HTTP/2, and the optional <code>org.apache.httpcomponents.client5:httpclient5</code> 
+	 * dependency to be available on the class path. See 
+	 * {@link com.fortify.util.rest.connection.connector.Http2ConnectorProvider} 
+	 * for details and limitations.
+	 * @param http2Enabled
+	 * @return
+	 */
+	public T http2Enabled(boolean http2Enabled) {
+		setHttp2Enabled(http2Enabled);
+		return getThis();
+	}
+	
+	/**
+	 * Configure a {@link RateLimiter} for pacing requests based on the rate limit headers
+	 * returned by the remote system; by default, requests are not rate-limited unless 
+	 * enabled by the system-specific connection implementation. The same {@link RateLimiter} 
+	 * instance can be configured on multiple connections that share a single rate limit,
+	 * for example by using {@link RateLimiter#shared(String)}.
+	 * @param rateLimiter
+	 * @return
+	 */
+	public T rateLimiter(RateLimiter rateLimiter) {
+		setRateLimiter(rateLimiter);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the {@link RetryPolicy} for retrying requests that fail due to transient
+	 * errors; by default, requests are not retried. For example, use <code>new RetryPolicy()</code> 
+	 * to retry GET, HEAD and PUT requests using the default retry settings. This policy is 
+	 * only applied to requests for the HTTP methods configured in the policy (see 
+	 * {@link RetryPolicy#httpMethods(String...)}), unless a policy has been configured for 
+	 * a specific HTTP method through {@link #retryPolicy(String, RetryPolicy)}. Use null 
+	 * to disable retries.
+	 * @param retryPolicy
+	 * @return
+	 */
+	public T retryPolicy(RetryPolicy retryPolicy) {
+		setRetryPolicy(retryPolicy);
+		return getThis();
+	}
+	
+	/**
+	 * Configure the {@link RetryPolicy} for requests using the given HTTP method, 
+	 * overriding the policy configured through {@link #retryPolicy(RetryPolicy)}. 
+	 * The given policy is applied to all requests for the given HTTP method, 
+	 * independent of the HTTP methods configured in the policy. Use null to disable
+	 * retries for the given HTTP method.
+	 * @param httpMethod
+	 * @param retryPolicy
+	 * @return
+	 */
+	public T retryPolicy(String httpMethod, RetryPolicy retryPolicy) {
+		methodRetryPolicies.put(httpMethod, retryPolicy);
+		return getThis();
+	}
+	
+	/**
+	 * Configure a {@link CircuitBreaker} that rejects requests while the remote system is 
+	 * failing or responding slowly; by default, no circuit breaker is used. Circuit breakers 
+	 * are stateful, so every connection should be configured with a new {@link CircuitBreaker} 
+	 * instance, unless multiple connections target the same remote system.
+	 * @param circuitBreaker
+	 * @return
+	 */
+	public T circuitBreaker(CircuitBreaker circuitBreaker) {
+		setCircuitBreaker(circuitBreaker);
+		return getThis();
+	}
+	
+	/**
+	 * Configure a {@link Bulkhead} that limits the number of concurrent in-flight requests; 
+	 * by default, no bulkhead is used, meaning the number of concurrent requests is only 
+	 * limited by the connection pool settings. Contrary to the connection pool, the bulkhead
+	 * limits the time that requests wait, and the number of waiting requests. 
+	 * @param bulkhead
+	 * @return
+	 */
+	public T bulkhead(Bulkhead bulkhead) {
+		setBulkhead(bulkhead);
+		return getThis();
+	}
+	
+	/**
+	 * Get the identity of the user for which the connection is being configured.
+	 * This is used to make sure that persistently cached responses are not shared 
+	 * between users. Subclasses that support authentication should override this
+	 * method; the default implementation returns an empty string.
+	 * @return
+	 */
+	protected String getPersistentCacheIdentity() {
+		return "";
+	}
+	
 	/**
 	 * @see #setConnectionId(String)
 	 * @param connectionId
@@ -118,8 +454,8 @@ public abstract class AbstractRestConnectionConfig<T extends AbstractRestConnect
 			for ( Map.Entry<String, Object> entry : orgProperties.entrySet() ) {
 				connectionProperties.put(propertyKeyReplacementMap.getOrDefault(entry.getKey(),  entry.getKey()), entry.getValue());
 			}
+			setConnectionProperties(connectionProperties);
 		}
-		setConnectionProperties(connectionProperties);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -182,6 +518,12 @@ public abstract class AbstractRestConnectionConfig<T extends AbstractRestConnect
 		Map<String, String> result = new HashMap<String, String>();
 		result.put("connectTimeout", ClientProperties.CONNECT_TIMEOUT);
 		result.put("readTimeout", ClientProperties.READ_TIMEOUT);
+		result.put("maxTotalConnections", ApacheClientProperties.MAX_TOTAL_CONNECTIONS);
+		result.put("maxConnectionsPerRoute", ApacheClientProperties.MAX_CONNECTIONS_PER_ROUTE);
+		result.put("validateAfterInactivity", ApacheClientProperties.VALIDATE_AFTER_INACTIVITY);
+		result.put("idleConnectionTimeout", ApacheClientProperties.IDLE_CONNECTION_TIMEOUT);
+		result.put("connectionTimeToLive", ApacheClientProperties.CONNECTION_TIME_TO_LIVE);
+		result.put("chunkedEncodingSize", ClientProperties.CHUNKED_ENCODING_SIZE);
 		return result;
 	}
 }
\ No newline at end of file
@@ -39,14 +39,25 @@ import lombok.Getter;
  * @param <BuilderType> Concrete connection builder type, extending from {@link AbstractRestConnectionConfig} and implementing {@link IRestConnectionBuilder}
  */
 public abstract class AbstractRestConnectionRetriever<ConnType extends IRestConnection, BuilderType extends AbstractRestConnectionConfig<?> & IRestConnectionBuilder<ConnType>> implements IRestConnectionRetriever<ConnType> {
-	private ConnType connection;
+	private volatile ConnType connection;
 	@Getter private final BuilderType config = createConfig();
 	
+	/**
+	 * Get the connection, building it from the configuration on first access. 
+	 * Concurrent callers are guaranteed to receive the same connection instance.
+	 */
 	public final ConnType getConnection() {
-		if ( connection == null ) {
-			connection = config.build();
+		ConnType result = connection;
+		if ( result == null ) {
+			synchronized (this) {
+				result = connection;
+				if ( result == null ) {
+					result = config.build();
+					connection = result;
+				}
+			}
 		}
-		return connection;
+		return result;
 	}
 	
 	protected abstract BuilderType createConfig();
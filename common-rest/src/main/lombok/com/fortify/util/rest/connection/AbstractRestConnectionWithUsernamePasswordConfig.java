@@ -24,6 +24,7 @@
  ******************************************************************************/
 package com.fortify.util.rest.connection;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.http.auth.UsernamePasswordCredentials;
 
 import lombok.Data;
@@ -51,6 +52,11 @@ public abstract class AbstractRestConnectionWithUsernamePasswordConfig<T extends
 		setPassword(password); return getThis();
 	}
 	
+	@Override
+	protected String getPersistentCacheIdentity() {
+		return StringUtils.defaultString(getUserName());
+	}
+	
 	@SuppressWarnings("deprecation")
 	@Override
 	protected void parseUriUserInfo(String userInfo) {
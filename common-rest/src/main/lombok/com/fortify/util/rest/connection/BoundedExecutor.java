@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Executor} implementation that executes tasks on a shared delegate {@link Executor},
+ * like {@link IRestConnection#getTaskExecutor()}, while running at most the configured number 
+ * of tasks concurrently. Tasks that exceed this limit are queued in the order in which they 
+ * were submitted, without occupying any threads while waiting. As no threads are owned by this 
+ * class, instances don't need to be shut down. If the delegate rejects a task, for example 
+ * because the connection has been closed, the task is executed on the submitting thread.
+ * 
+ * <p>This class is thread-safe.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class BoundedExecutor implements Executor {
+	private final Executor delegate;
+	private final int maxConcurrentTasks;
+	private final Queue<Runnable> queuedTasks = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger runningTasks = new AtomicInteger();
+	
+	public BoundedExecutor(Executor delegate, int maxConcurrentTasks) {
+		if ( maxConcurrentTasks < 1 ) {
+			throw new IllegalArgumentException("Maximum number of concurrent tasks must be at least 1");
+		}
+		this.delegate = delegate;
+		this.maxConcurrentTasks = maxConcurrentTasks;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		queuedTasks.add(task);
+		startQueuedTasks();
+	}
+	
+	/**
+	 * Get the number of tasks that are currently running
+	 * @return
+	 */
+	public int getRunningTasks() {
+		return runningTasks.get();
+	}
+	
+	/**
+	 * Get the number of tasks waiting for other tasks to complete
+	 * @return
+	 */
+	public int getQueuedTasks() {
+		return queuedTasks.size();
+	}
+	
+	private void startQueuedTasks() {
+		while ( !queuedTasks.isEmpty() ) {
+			int running = runningTasks.get();
+			if ( running >= maxConcurrentTasks ) { return; }
+			if ( !runningTasks.compareAndSet(running, running+1) ) { continue; }
+			Runnable task = queuedTasks.poll();
+			if ( task == null ) {
+				// Another thread started the last queued task
+				runningTasks.decrementAndGet();
+			} else {
+				start(task);
+			}
+		}
+	}
+	
+	private void start(Runnable task) {
+		Runnable wrappedTask = () -> {
+			try {
+				task.run();
+			} finally {
+				runningTasks.decrementAndGet();
+				startQueuedTasks();
+			}
+		};
+		try {
+			delegate.execute(wrappedTask);
+		} catch ( RejectedExecutionException e ) {
+			// The delegate has been shut down, for example because the connection was closed;
+			// run the task on the current thread such that it completes (usually with an error)
+			// rather than never being executed at all
+			wrappedTask.run();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * This class holds a point-in-time snapshot of connection pool statistics, both for the 
+ * pool as a whole and for each individual route (target host). Each {@link PoolStats} 
+ * instance provides the number of leased, available and pending connections, and the 
+ * maximum number of connections. A non-zero number of pending connections indicates 
+ * that requests are waiting for a connection to become available, in which case you 
+ * may want to increase the configured maximum number of connections.
+ * 
+ * @author Ruud Senden
+ *
+ */
+@Getter @ToString
+public final class ConnectionPoolStats {
+	private final PoolStats totalStats;
+	private final Map<String, PoolStats> routeStats;
+	
+	private ConnectionPoolStats(PoolStats totalStats, Map<String, PoolStats> routeStats) {
+		this.totalStats = totalStats;
+		this.routeStats = Collections.unmodifiableMap(routeStats);
+	}
+	
+	/**
+	 * Create a new {@link ConnectionPoolStats} instance for the given connection pool.
+	 * Route statistics are keyed by the string representation of each {@link HttpRoute}.
+	 * @param pool
+	 * @param routes
+	 * @return
+	 */
+	public static final ConnectionPoolStats create(ConnPoolControl<HttpRoute> pool, Set<HttpRoute> routes) {
+		Map<String, PoolStats> routeStats = new LinkedHashMap<>();
+		for ( HttpRoute route : routes ) {
+			routeStats.put(route.toString(), pool.getStats(route));
+		}
+		return new ConnectionPoolStats(pool.getTotalStats(), routeStats);
+	}
+	
+	/**
+	 * Create a new {@link ConnectionPoolStats} instance for the given total and 
+	 * per-route statistics. This can be used for connection pools that don't
+	 * implement {@link ConnPoolControl}.
+	 * @param totalStats
+	 * @param routeStats
+	 * @return
+	 */
+	public static final ConnectionPoolStats create(PoolStats totalStats, Map<String, PoolStats> routeStats) {
+		return new ConnectionPoolStats(totalStats, new LinkedHashMap<>(routeStats));
+	}
+	
+	public int getLeased() {
+		return totalStats.getLeased();
+	}
+	
+	public int getAvailable() {
+		return totalStats.getAvailable();
+	}
+	
+	public int getPending() {
+		return totalStats.getPending();
+	}
+	
+	public int getMax() {
+		return totalStats.getMax();
+	}
+}
@@ -24,11 +24,11 @@
  ******************************************************************************/
 package com.fortify.util.rest.connection;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Connections {
-	private static final Map<String, IRestConnection> CONNECTIONS = new HashMap<>();
+	private static final Map<String, IRestConnection> CONNECTIONS = new ConcurrentHashMap<>();
 
 	private Connections() {}
 	
@@ -25,10 +25,19 @@
 package com.fortify.util.rest.connection;
 
 import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation.Builder;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import com.fortify.util.rest.connection.metrics.RestConnectionMetricsSnapshot;
+import com.fortify.util.rest.connection.resilience.RetryState;
+import com.fortify.util.rest.connection.transfer.ITransferProgressListener;
+import com.google.common.cache.CacheStats;
 
 /**
  * Interface providing low-level methods for building and executing REST requests.
@@ -41,9 +50,20 @@ public interface IRestConnection {
 	public abstract <T> T executeRequest(String httpMethod, WebTarget webResource, Class<T> returnType);
 	public abstract <T> T executeRequest(String httpMethod, WebTarget webResource, Class<T> returnType, String cacheName);
 	public abstract <T> T executeRequest(String httpMethod, WebTarget webResource, Entity<?> entity, Class<T> returnType);
+	public abstract Response executeConditionalRequest(String httpMethod, Builder builder);
+	public abstract <T> T executeUploadRequest(String httpMethod, Builder builder, Entity<?> entity, Class<T> returnType, long totalBytes, ITransferProgressListener progressListener);
+	public abstract <T> CompletableFuture<T> executeRequestAsync(String httpMethod, Builder builder, Entity<?> entity, Class<T> returnType);
+	public abstract <T> CompletableFuture<T> executeRequestAsync(String httpMethod, WebTarget webResource, Class<T> returnType);
+	public abstract <T> CompletableFuture<T> executeRequestAsync(String httpMethod, WebTarget webResource, Entity<?> entity, Class<T> returnType);
+	public abstract RetryState newRetryState(String httpMethod);
 	public abstract URI getBaseUrl();
 	public abstract WebTarget getBaseResource();
 	public abstract WebTarget getResource(String url);
 	public abstract String getConnectionId();
+	public abstract Executor getTaskExecutor();
+	public abstract ConnectionPoolStats getConnectionPoolStats();
+	public abstract ConnectionPoolStats getAsyncConnectionPoolStats();
+	public abstract RestConnectionMetricsSnapshot getMetrics();
+	public abstract Map<String, CacheStats> getCacheStats();
 	public abstract void close();
 }
@@ -26,12 +26,16 @@ package com.fortify.util.rest.connection;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ServiceUnavailableRetryStrategy;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.fortify.util.rest.connection.resilience.RateLimiter;
 
 /**
- * This class implements an Apache HttpClient 4.x {@link ServiceUnavailableRetryStrategy}
+ * <p>This class implements an Apache HttpClient 4.x {@link ServiceUnavailableRetryStrategy}
  * that will retry a request if the server responds with an HTTP 429 (TOO_MANY_REQUESTS)
  * response. This can be enabled on {@link AbstractRestConnection} instances by overriding
  * {@link AbstractRestConnection#getServiceUnavailableRetryStrategy()} as follows:
@@ -39,14 +43,22 @@ import org.apache.http.protocol.HttpContext;
  *  protected ServiceUnavailableRetryStrategy getServiceUnavailableRetryStrategy() {
  *		return new TooManyRequestsRetryStrategy();
  *	}
- * </code>
+ * </code></p>
+ * 
+ * <p>The rate-limited response is consumed before waiting for the retry, allowing the 
+ * underlying connection to be re-used by other requests while waiting. If a {@link RateLimiter} 
+ * has been configured through {@link #rateLimiter(RateLimiter)}, the {@link RateLimiter} will
+ * be paused for the retry interval, so other requests will wait as well instead of being 
+ * rejected.</p>
  * 
  */
 public final class TooManyRequestsRetryStrategy implements ServiceUnavailableRetryStrategy {
 	private static final Log LOG = LogFactory.getLog(TooManyRequestsRetryStrategy.class);
 	private String retryAfterHeaderName = "X-Retry-After";
 	private String logPrefix = "";
-	private ThreadLocal<Long> interval = null;
+	private RateLimiter rateLimiter = null;
+	// HttpClient calls getRetryInterval() on the same thread directly after retryRequest()
+	private final ThreadLocal<Long> interval = new ThreadLocal<Long>();
 	
 	public TooManyRequestsRetryStrategy() {}
 	
@@ -59,26 +71,53 @@ public final class TooManyRequestsRetryStrategy implements ServiceUnavailableRet
 		this.logPrefix = logPrefix+" ";
 		return this;
 	}
+	
+	/**
+	 * Configure the {@link RateLimiter} to be paused if a request is rate-limited.
+	 * @param rateLimiter
+	 * @return
+	 */
+	public TooManyRequestsRetryStrategy rateLimiter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+		return this;
+	}
 
 	public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
 		// TODO Temporary executionCount work-around for FoD issues; should check executionCount<2 
 		if ( executionCount < 5 && response.getStatusLine().getStatusCode()==429 ) {
-			int retrySeconds = Integer.parseInt(response.getFirstHeader(retryAfterHeaderName).getValue());
-			// TODO Temporary work-around for FoD returning negative numbers
-			if ( retrySeconds < 0 ) {
-				retrySeconds = 1;
-			}
+			int retrySeconds = getRetrySeconds(response);
 			LOG.info(logPrefix+"Rate-limited request will be retried after "+retrySeconds+" seconds");
-			interval = new ThreadLocal<Long>();
-			interval.set((long)retrySeconds*1000);
+			EntityUtils.consumeQuietly(response.getEntity());
+			if ( rateLimiter != null ) {
+				rateLimiter.update(name -> getHeaderValue(response, name));
+				rateLimiter.pause(retrySeconds*1000L);
+			}
+			interval.set(retrySeconds*1000L);
 			return true;
 		}
 		return false;
 	}
 
+	private int getRetrySeconds(HttpResponse response) {
+		String retryAfter = getHeaderValue(response, retryAfterHeaderName);
+		int retrySeconds = 1;
+		try {
+			retrySeconds = retryAfter==null ? 1 : Integer.parseInt(retryAfter.trim());
+		} catch ( NumberFormatException e ) {
+			LOG.warn(logPrefix+"Ignoring invalid "+retryAfterHeaderName+" header value "+retryAfter);
+		}
+		// TODO Temporary work-around for FoD returning negative numbers
+		return retrySeconds < 0 ? 1 : retrySeconds;
+	}
+	
+	private static final String getHeaderValue(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header==null ? null : header.getValue();
+	}
+
 	public long getRetryInterval() {
-		long result = interval==null ? -1 : interval.get();
-		interval = null;
-		return result;
+		Long result = interval.get();
+		interval.remove();
+		return result==null ? -1 : result;
 	}
 }
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import com.fortify.util.rest.json.JSONList;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.json.JSONObjectMapper;
+import com.google.common.hash.Hashing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>File-based store for cached REST responses, allowing cached responses to be re-used
+ * across JVM invocations. Each instance stores its entries in a sub-directory of the configured
+ * base directory, named after a hash of the given scope. The scope would usually consist of 
+ * the base URL and user identity of a connection, such that cached responses are never shared
+ * between different target systems or users.</p>
+ * 
+ * <p>Only {@link JSONMap}, {@link JSONList} and {@link String} values are supported. Each entry 
+ * is stored in a separate file, consisting of a small binary header followed by the deflate-compressed
+ * JSON or {@link String} representation of the value. Files are read using memory-mapped I/O, and 
+ * written to a temporary file that is then atomically moved to the target file name, such that 
+ * multiple processes on the same host can safely share the same cache directory; readers will always
+ * see either a complete old entry or a complete new entry. Any unreadable or expired entries are
+ * treated as cache misses, and deleted from disk.</p>
+ * 
+ * <p>As entries may never be read again once expired, the cache directory is also swept
+ * when a new instance is created: any files older than the configured maximum age are deleted,
+ * after which the oldest entries are deleted until the total size of the remaining entries
+ * no longer exceeds the configured maximum size.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+public final class PersistentResponseCache {
+	private static final int MAGIC = 0x46524331;
+	private static final int FORMAT_VERSION = 1;
+	private static final byte TYPE_JSON_MAP = 1;
+	private static final byte TYPE_JSON_LIST = 2;
+	private static final byte TYPE_STRING = 3;
+	private static final String ENTRY_SUFFIX = ".entry";
+	@Getter private final Path directory;
+	
+	/**
+	 * Create a new {@link PersistentResponseCache} instance that stores its entries 
+	 * in a sub-directory of the given base directory, based on the given scope. 
+	 * Existing files are never swept.
+	 * @param baseDirectory
+	 * @param scope
+	 */
+	public PersistentResponseCache(Path baseDirectory, String scope) {
+		this(baseDirectory, scope, -1, -1);
+	}
+	
+	/**
+	 * Create a new {@link PersistentResponseCache} instance that stores its entries 
+	 * in a sub-directory of the given base directory, based on the given scope. Any
+	 * existing files older than the given maximum age are deleted, after which the 
+	 * oldest entries are deleted until the total size of all entries doesn't exceed 
+	 * the given maximum size. A negative maximum age or size disables the corresponding
+	 * sweep.
+	 * @param baseDirectory
+	 * @param scope
+	 * @param maxAgeMillis
+	 * @param maxSizeBytes
+	 */
+	public PersistentResponseCache(Path baseDirectory, String scope, long maxAgeMillis, long maxSizeBytes) {
+		this.directory = baseDirectory.resolve(sha256(scope));
+		if ( maxAgeMillis >= 0 || maxSizeBytes >= 0 ) {
+			sweep(maxAgeMillis, maxSizeBytes);
+		}
+	}
+	
+	/**
+	 * Indicate whether values of the given type can be stored in this cache
+	 * @param type
+	 * @return
+	 */
+	public static final boolean isSupportedType(Class<?> type) {
+		return type==JSONMap.class || type==JSONList.class || type==String.class;
+	}
+	
+	/**
+	 * Get the entry for the given cache name and key, if available and not older than the 
+	 * given time-to-live. 
+	 * @param cacheName
+	 * @param key
+	 * @param ttlMillis
+	 * @return {@link PersistentCacheEntry} instance, or null if not available
+	 */
+	public PersistentCacheEntry get(String cacheName, String key, long ttlMillis) {
+		Path file = getFile(cacheName, key);
+		boolean delete = false;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if ( buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ) {
+				delete = true;
+				return null;
+			}
+			long createdMillis = buffer.getLong();
+			if ( System.currentTimeMillis()-createdMillis > ttlMillis ) {
+				delete = true;
+				return null;
+			}
+			if ( !key.equals(readString(buffer)) ) {
+				return null;
+			}
+			String eTag = readString(buffer);
+			String lastModified = readString(buffer);
+			byte type = buffer.get();
+			int size = buffer.getInt();
+			byte[] compressed = new byte[checkLength(buffer, buffer.getInt())];
+			buffer.get(compressed);
+			if ( size < 0 ) {
+				throw new DataFormatException("Invalid entry size");
+			}
+			return new PersistentCacheEntry(deserialize(type, inflate(compressed, size)), size, eTag, lastModified, createdMillis);
+		} catch ( NoSuchFileException e ) {
+			return null;
+		} catch ( IOException | BufferUnderflowException | DataFormatException | IllegalArgumentException e ) {
+			log.debug("Ignoring unreadable persistent cache entry "+file, e);
+			delete = true;
+			return null;
+		} finally {
+			// Channel has been closed at this point, so the file can be deleted on all platforms
+			if ( delete ) { delete(file); }
+		}
+	}
+	
+	/**
+	 * Store the given entry under the given cache name and key. If the entry value type
+	 * is not supported, the entry is silently ignored. Any errors writing the entry are
+	 * logged and otherwise ignored.
+	 * @param cacheName
+	 * @param key
+	 * @param entry
+	 */
+	public void put(String cacheName, String key, PersistentCacheEntry entry) {
+		Object value = entry.getValue();
+		if ( value == null || !isSupportedType(value.getClass()) ) {
+			return;
+		}
+		Path file = getFile(cacheName, key);
+		Path tempFile = null;
+		try {
+			byte[] serialized = serialize(value);
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(serialized.length/4+64);
+			try ( DeflaterOutputStream out = new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED)) ) {
+				out.write(serialized);
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.size()+key.length()+128);
+			try ( DataOutputStream out = new DataOutputStream(bytes) ) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(entry.getCreatedMillis());
+				writeString(out, key);
+				writeString(out, entry.getETag());
+				writeString(out, entry.getLastModified());
+				out.writeByte(getType(value));
+				out.writeInt(serialized.length);
+				out.writeInt(compressed.size());
+				compressed.writeTo(out);
+			}
+			Files.createDirectories(file.getParent());
+			tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+			Files.write(tempFile, bytes.toByteArray());
+			try {
+				Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch ( AtomicMoveNotSupportedException e ) {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			tempFile = null;
+		} catch ( IOException | RuntimeException e ) {
+			log.debug("Error writing persistent cache entry "+file, e);
+		} finally {
+			if ( tempFile != null ) {
+				try { Files.deleteIfExists(tempFile); } catch ( IOException ignore ) {}
+			}
+		}
+	}
+	
+	private Path getFile(String cacheName, String key) {
+		return directory.resolve(cacheName.replaceAll("[^A-Za-z0-9._-]", "_")).resolve(sha256(key)+ENTRY_SUFFIX);
+	}
+	
+	/**
+	 * Delete all files in the cache directory that are older than the given maximum age, 
+	 * then delete the oldest entries until the total size of all entries doesn't exceed the 
+	 * given maximum size. Files are aged by their last modified time, which corresponds to the
+	 * time the entry was written, so entries don't need to be read. Temporary files are swept 
+	 * by age only, as they may be in the process of being written by another process.
+	 */
+	private void sweep(long maxAgeMillis, long maxSizeBytes) {
+		if ( !Files.isDirectory(directory) ) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<SweepFile> entries = new ArrayList<>();
+		long totalSize = 0;
+		int deleted = 0;
+		try (DirectoryStream<Path> cacheDirs = Files.newDirectoryStream(directory, Files::isDirectory)) {
+			for ( Path cacheDir : cacheDirs ) {
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+					for ( Path file : files ) {
+						BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+						long lastModified = attrs.lastModifiedTime().toMillis();
+						if ( maxAgeMillis >= 0 && now-lastModified > maxAgeMillis ) {
+							if ( delete(file) ) { deleted++; }
+						} else if ( file.getFileName().toString().endsWith(ENTRY_SUFFIX) ) {
+							entries.add(new SweepFile(file, lastModified, attrs.size()));
+							totalSize += attrs.size();
+						}
+					}
+				}
+			}
+		} catch ( IOException | RuntimeException e ) {
+			log.debug("Error sweeping persistent cache directory "+directory, e);
+			return;
+		}
+		if ( maxSizeBytes >= 0 && totalSize > maxSizeBytes ) {
+			entries.sort(Comparator.comparingLong(SweepFile::getLastModified));
+			for ( SweepFile entry : entries ) {
+				if ( totalSize <= maxSizeBytes ) { break; }
+				if ( delete(entry.getFile()) ) { deleted++; }
+				totalSize -= entry.getSize();
+			}
+		}
+		if ( deleted > 0 ) {
+			log.debug("Deleted "+deleted+" files from persistent cache directory "+directory);
+		}
+	}
+	
+	private static final boolean delete(Path file) {
+		try {
+			return Files.deleteIfExists(file);
+		} catch ( IOException e ) {
+			log.debug("Error deleting persistent cache file "+file, e);
+			return false;
+		}
+	}
+	
+	@Getter @RequiredArgsConstructor
+	private static final class SweepFile {
+		private final Path file;
+		private final long lastModified;
+		private final long size;
+	}
+	
+	private static final byte getType(Object value) {
+		if ( value instanceof JSONMap ) { return TYPE_JSON_MAP; }
+		if ( value instanceof JSONList ) { return TYPE_JSON_LIST; }
+		return TYPE_STRING;
+	}
+	
+	private static final byte[] serialize(Object value) throws IOException {
+		if ( value instanceof String ) {
+			return ((String)value).getBytes(StandardCharsets.UTF_8);
+		}
+		return JSONObjectMapper.getInstance().writeValueAsBytes(value);
+	}
+	
+	private static final Object deserialize(byte type, byte[] bytes) throws IOException {
+		switch (type) {
+		case TYPE_JSON_MAP: return JSONObjectMapper.getInstance().readValue(bytes, JSONMap.class);
+		case TYPE_JSON_LIST: return JSONObjectMapper.getInstance().readValue(bytes, JSONList.class);
+		case TYPE_STRING: return new String(bytes, StandardCharsets.UTF_8);
+		default: throw new IllegalArgumentException("Unknown entry type "+type);
+		}
+	}
+	
+	private static final byte[] inflate(byte[] compressed, int size) throws DataFormatException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] result = new byte[size];
+			int length = 0;
+			while ( length < size && !inflater.finished() ) {
+				int inflated = inflater.inflate(result, length, size-length);
+				if ( inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()) ) {
+					break;
+				}
+				length += inflated;
+			}
+			if ( length != size ) {
+				throw new DataFormatException("Unexpected entry size");
+			}
+			return result;
+		} finally {
+			inflater.end();
+		}
+	}
+	
+	private static final void writeString(DataOutputStream out, String value) throws IOException {
+		if ( value == null ) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+	
+	private static final String readString(MappedByteBuffer buffer) {
+		int length = buffer.getInt();
+		if ( length < 0 ) {
+			return null;
+		}
+		byte[] bytes = new byte[checkLength(buffer, length)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static final int checkLength(MappedByteBuffer buffer, int length) {
+		if ( length < 0 || length > buffer.remaining() ) {
+			throw new BufferUnderflowException();
+		}
+		return length;
+	}
+	
+	private static final String sha256(String value) {
+		return Hashing.sha256().hashString(value, StandardCharsets.UTF_8).toString();
+	}
+}
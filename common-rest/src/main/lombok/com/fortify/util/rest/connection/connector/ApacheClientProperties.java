@@ -177,6 +177,116 @@ public final class ApacheClientProperties {
      */
     public static final String SERVICE_UNAVAILABLE_RETRY_STRATEGY = "jersey.config.apache.client.serviceUnavailableRetryStrategy";
 
+    /**
+     * <p>Name of the {@link org.apache.http.protocol.HttpContext} attribute that holds the
+     * Jersey {@link org.glassfish.jersey.client.ClientRequest} being executed. This allows 
+     * for example a {@link org.apache.http.client.ServiceUnavailableRetryStrategy} to access
+     * request properties.
+     * </p><p>
+     * The name of the context attribute is <tt>{@value}</tt>.
+     * </p>
+     */
+    public static final String CLIENT_REQUEST_CONTEXT_ATTRIBUTE = "jersey.config.apache.client.clientRequest";
+
+    /**
+     * <p>Maximum total number of connections in the connection pool created by the connector.
+     * </p><p>
+     * This property is ignored if a custom {@link #CONNECTION_MANAGER} has been configured.
+     * </p><p>
+     * The value MUST be an instance of {@link java.lang.Integer}, or a {@link java.lang.String}
+     * that can be converted to an {@link java.lang.Integer}.
+     * </p><p>
+     * If the property is absent, the Apache HttpClient default (20) will be used.
+     * </p><p>
+     * The name of the configuration property is <tt>{@value}</tt>.
+     * </p>
+     */
+    public static final String MAX_TOTAL_CONNECTIONS = "jersey.config.apache.client.maxTotalConnections";
+
+    /**
+     * <p>Maximum number of connections per route in the connection pool created by the connector.
+     * </p><p>
+     * This property is ignored if a custom {@link #CONNECTION_MANAGER} has been configured.
+     * </p><p>
+     * The value MUST be an instance of {@link java.lang.Integer}, or a {@link java.lang.String}
+     * that can be converted to an {@link java.lang.Integer}.
+     * </p><p>
+     * If the property is absent, the Apache HttpClient default (2) will be used.
+     * </p><p>
+     * The name of the configuration property is <tt>{@value}</tt>.
+     * </p>
+     */
+    public static final String MAX_CONNECTIONS_PER_ROUTE = "jersey.config.apache.client.maxConnectionsPerRoute";
+
+    /**
+     * <p>Period of inactivity in milliseconds after which pooled connections must be 
+     * re-validated before being leased to a request. A non-positive value disables 
+     * connection validation.
+     * </p><p>
+     * This property is ignored if a custom {@link #CONNECTION_MANAGER} has been configured.
+     * </p><p>
+     * The value MUST be an instance of {@link java.lang.Integer}, or a {@link java.lang.String}
+     * that can be converted to an {@link java.lang.Integer}.
+     * </p><p>
+     * If the property is absent, the Apache HttpClient default (2000) will be used.
+     * </p><p>
+     * The name of the configuration property is <tt>{@value}</tt>.
+     * </p>
+     */
+    public static final String VALIDATE_AFTER_INACTIVITY = "jersey.config.apache.client.validateAfterInactivity";
+
+    /**
+     * <p>Maximum time in milliseconds that pooled connections may remain idle. If set to a 
+     * positive value, a background thread will periodically close connections that have been 
+     * idle for longer than this time, and connections that have expired.
+     * </p><p>
+     * This property is ignored if a custom {@link #CONNECTION_MANAGER} has been configured,
+     * or if {@link #CONNECTION_MANAGER_SHARED} is {@code true}.
+     * </p><p>
+     * The value MUST be an instance of {@link java.lang.Long}, or a {@link java.lang.String}
+     * that can be converted to a {@link java.lang.Long}.
+     * </p><p>
+     * If the property is absent, idle connections will not be evicted.
+     * </p><p>
+     * The name of the configuration property is <tt>{@value}</tt>.
+     * </p>
+     */
+    public static final String IDLE_CONNECTION_TIMEOUT = "jersey.config.apache.client.idleConnectionTimeout";
+
+    /**
+     * <p>Total time to live in milliseconds for pooled connections. Connections will not be
+     * re-used after this time, regardless of any keep-alive duration sent by the server.
+     * A non-positive value indicates that connections may be re-used indefinitely.
+     * </p><p>
+     * This property is ignored if a custom {@link #CONNECTION_MANAGER} has been configured.
+     * </p><p>
+     * The value MUST be an instance of {@link java.lang.Long}, or a {@link java.lang.String}
+     * that can be converted to a {@link java.lang.Long}.
+     * </p><p>
+     * If the property is absent, connections may be re-used indefinitely.
+     * </p><p>
+     * The name of the configuration property is <tt>{@value}</tt>.
+     * </p>
+     */
+    public static final String CONNECTION_TIME_TO_LIVE = "jersey.config.apache.client.connectionTimeToLive";
+
+    /**
+     * <p>A value of {@code true} disables transparent response content decompression
+     * by the Apache HttpClient used for synchronous requests. HttpClient by default 
+     * advertises support for gzip and deflate content encodings, and decompresses 
+     * encoded responses before passing them to Jersey. Disabling this allows content
+     * decoding to be handled by Jersey entity interceptors instead, which are applied 
+     * to both synchronous and asynchronous requests.
+     * </p><p>
+     * The value MUST be an instance of {@link java.lang.Boolean}.
+     * </p><p>
+     * The default value is {@code false}.
+     * </p><p>
+     * The name of the configuration property is <tt>{@value}</tt>.
+     * </p>
+     */
+    public static final String DISABLE_CONTENT_COMPRESSION = "jersey.config.apache.client.disableContentCompression";
+
     /**
      * Get the value of the specified property.
      *
@@ -52,8 +52,13 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -71,6 +76,7 @@ import javax.ws.rs.core.Response;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
@@ -85,11 +91,14 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.config.ConnectionConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.SchemePortResolver;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
@@ -109,7 +118,18 @@ import org.apache.http.impl.conn.DefaultManagedHttpClientConnection;
 import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.io.ChunkedOutputStream;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.io.SessionOutputBuffer;
+import org.apache.http.util.EntityUtils;
 import org.apache.http.util.TextUtils;
 import org.apache.http.util.VersionInfo;
 import org.glassfish.jersey.apache.connector.LocalizationMessages;
@@ -125,6 +145,9 @@ import org.glassfish.jersey.message.internal.OutboundMessageContext;
 import org.glassfish.jersey.message.internal.ReaderWriter;
 import org.glassfish.jersey.message.internal.Statuses;
 
+import com.fortify.util.rest.connection.ConnectionPoolStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * A {@link Connector} that utilizes the Apache HTTP Client to send and receive
  * HTTP request and responses.
@@ -176,6 +199,16 @@ import org.glassfish.jersey.message.internal.Statuses;
  * <p>
  * The following methods are currently supported: HEAD, GET, POST, PUT, DELETE, OPTIONS, PATCH and TRACE.
  * </p>
+ * <p>
+ * Asynchronous requests are executed through a separate, lazily initialized Apache HttpAsyncClient
+ * instance that shares credentials, cookies, proxy and request configuration with the synchronous
+ * client. Request entities for asynchronous requests are always buffered, and response entities are 
+ * fully read into memory before the response is passed to the asynchronous callback. The configured
+ * {@link ApacheClientProperties#SERVICE_UNAVAILABLE_RETRY_STRATEGY} is also applied to asynchronous
+ * requests; retries are scheduled without blocking any threads. Contrary to the synchronous client,
+ * the asynchronous client doesn't decompress content-encoded responses; this can be handled by 
+ * Jersey content encoders instead (see {@link ApacheClientProperties#DISABLE_CONTENT_COMPRESSION}).
+ * </p>
  *
  * @author jorgeluisw@mac.com
  * @author Paul Sandoz
@@ -197,9 +230,18 @@ class ApacheConnector implements Connector {
     }
 
     private final CloseableHttpClient client;
+    private final HttpClientConnectionManager connectionManager;
     private final CookieStore cookieStore;
     private final boolean preemptiveBasicAuth;
     private final RequestConfig requestConfig;
+    private final SSLContext sslContext;
+    private final HostnameVerifier hostnameVerifier;
+    private final ServiceUnavailableRetryStrategy serviceUnavailableRetryStrategy;
+    private final HttpAsyncClientBuilder asyncClientBuilder;
+    private final Map<String, Object> poolProperties;
+    private volatile CloseableHttpAsyncClient asyncClient;
+    private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+    private volatile ScheduledExecutorService asyncRetryScheduler;
 
     /**
      * Create the new Apache HTTP Client connector.
@@ -235,19 +277,35 @@ class ApacheConnector implements Connector {
             }
         }
 
-        final SSLContext sslContext = client.getSslContext();
+        this.sslContext = client.getSslContext();
+        this.hostnameVerifier = client.getHostnameVerifier();
         final HttpClientBuilder clientBuilder = HttpClientBuilder.create();
+        this.asyncClientBuilder = HttpAsyncClientBuilder.create();
+        this.poolProperties = config.getProperties();
 
-        clientBuilder.setConnectionManager(getConnectionManager(client, config, sslContext));
+        this.connectionManager = getConnectionManager(client, config, sslContext);
+        clientBuilder.setConnectionManager(this.connectionManager);
         clientBuilder.setConnectionManagerShared(
                 PropertiesHelper.getValue(config.getProperties(), ApacheClientProperties.CONNECTION_MANAGER_SHARED, false, null));
         clientBuilder.setSslcontext(sslContext);
 
+        final Long idleConnectionTimeout = PropertiesHelper.getValue(config.getProperties(), 
+                ApacheClientProperties.IDLE_CONNECTION_TIMEOUT, Long.class, null);
+        if (idleConnectionTimeout != null && idleConnectionTimeout > 0) {
+            clientBuilder.evictExpiredConnections();
+            clientBuilder.evictIdleConnections(idleConnectionTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        if (PropertiesHelper.isProperty(config.getProperties(), ApacheClientProperties.DISABLE_CONTENT_COMPRESSION)) {
+            clientBuilder.disableContentCompression();
+        }
+
         final RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
 
         final Object credentialsProvider = config.getProperty(ApacheClientProperties.CREDENTIALS_PROVIDER);
         if (credentialsProvider != null && (credentialsProvider instanceof CredentialsProvider)) {
             clientBuilder.setDefaultCredentialsProvider((CredentialsProvider) credentialsProvider);
+            asyncClientBuilder.setDefaultCredentialsProvider((CredentialsProvider) credentialsProvider);
         }
 
         final Object retryHandler = config.getProperties().get(ApacheClientProperties.RETRY_HANDLER);
@@ -257,7 +315,10 @@ class ApacheConnector implements Connector {
         
         final Object serviceUnavailableRetryStrategy = config.getProperties().get(ApacheClientProperties.SERVICE_UNAVAILABLE_RETRY_STRATEGY);
         if (serviceUnavailableRetryStrategy != null && (serviceUnavailableRetryStrategy instanceof ServiceUnavailableRetryStrategy)) {
-            clientBuilder.setServiceUnavailableRetryStrategy((ServiceUnavailableRetryStrategy) serviceUnavailableRetryStrategy);
+            this.serviceUnavailableRetryStrategy = (ServiceUnavailableRetryStrategy) serviceUnavailableRetryStrategy;
+            clientBuilder.setServiceUnavailableRetryStrategy(this.serviceUnavailableRetryStrategy);
+        } else {
+            this.serviceUnavailableRetryStrategy = null;
         }
 
         final Object proxyUri;
@@ -278,9 +339,11 @@ class ApacheConnector implements Connector {
                             new UsernamePasswordCredentials(userName, password)
                     );
                     clientBuilder.setDefaultCredentialsProvider(credsProvider);
+                    asyncClientBuilder.setDefaultCredentialsProvider(credsProvider);
                 }
             }
             clientBuilder.setProxy(proxy);
+            asyncClientBuilder.setProxy(proxy);
         }
 
         final Boolean preemptiveBasicAuthProperty = (Boolean) config.getProperties()
@@ -305,12 +368,79 @@ class ApacheConnector implements Connector {
         if (requestConfig.getCookieSpec() == null || !requestConfig.getCookieSpec().equals(CookieSpecs.IGNORE_COOKIES)) {
             this.cookieStore = new BasicCookieStore();
             clientBuilder.setDefaultCookieStore(cookieStore);
+            asyncClientBuilder.setDefaultCookieStore(cookieStore);
         } else {
             this.cookieStore = null;
         }
         clientBuilder.setDefaultRequestConfig(requestConfig);
+        asyncClientBuilder.setDefaultRequestConfig(requestConfig);
         this.client = clientBuilder.build();
     }
+    
+    /**
+     * Get the {@link CloseableHttpAsyncClient} used for executing asynchronous requests,
+     * creating and starting it if this is the first asynchronous request for this connector.
+     */
+    private CloseableHttpAsyncClient getAsyncClient() {
+        CloseableHttpAsyncClient result = asyncClient;
+        if (result == null) {
+            synchronized (this) {
+                result = asyncClient;
+                if (result == null) {
+                    asyncConnectionManager = createAsyncConnectionManager();
+                    result = asyncClientBuilder.setConnectionManager(asyncConnectionManager)
+                            .setThreadFactory(createAsyncThreadFactory("http-async-client-%d")).build();
+                    result.start();
+                    asyncClient = result;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Create a daemon {@link ThreadFactory} for the asynchronous client and its I/O reactor,
+     * to avoid these threads from keeping the JVM alive if the connector is never closed.
+     */
+    private static ThreadFactory createAsyncThreadFactory(String nameFormat) {
+        return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+    }
+    
+    private PoolingNHttpClientConnectionManager createAsyncConnectionManager() {
+        final SSLContext asyncSslContext = sslContext != null ? sslContext : org.apache.http.ssl.SSLContexts.createDefault();
+        final Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", new SSLIOSessionStrategy(asyncSslContext, hostnameVerifier))
+                .build();
+        try {
+            final PoolingNHttpClientConnectionManager result = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT, createAsyncThreadFactory("http-async-dispatcher-%d")), null, registry, 
+                    (SchemePortResolver) null, (DnsResolver) null, getConnectionTimeToLive(poolProperties), TimeUnit.MILLISECONDS);
+            configurePoolSize(result, poolProperties);
+            return result;
+        } catch (final IOReactorException e) {
+            throw new ProcessingException("Error initializing asynchronous HTTP client", e);
+        }
+    }
+    
+    /**
+     * Get the {@link ScheduledExecutorService} used for scheduling retries of asynchronous requests,
+     * creating it if this is the first retry for this connector.
+     */
+    private ScheduledExecutorService getAsyncRetryScheduler() {
+        ScheduledExecutorService result = asyncRetryScheduler;
+        if (result == null) {
+            synchronized (this) {
+                result = asyncRetryScheduler;
+                if (result == null) {
+                    result = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                            .setNameFormat("http-async-retry-%d").setDaemon(true).build());
+                    asyncRetryScheduler = result;
+                }
+            }
+        }
+        return result;
+    }
 
     private HttpClientConnectionManager getConnectionManager(final Client client,
                                                              final Configuration config,
@@ -378,7 +508,14 @@ class ApacheConnector implements Connector {
                 ClientProperties.CHUNKED_ENCODING_SIZE, ClientProperties.DEFAULT_CHUNK_SIZE, Integer.class);
 
         final PoolingHttpClientConnectionManager connectionManager =
-                new PoolingHttpClientConnectionManager(registry, new ConnectionFactory(chunkSize));
+                new PoolingHttpClientConnectionManager(registry, new ConnectionFactory(chunkSize), null, null,
+                        getConnectionTimeToLive(config.getProperties()), TimeUnit.MILLISECONDS);
+        configurePoolSize(connectionManager, config.getProperties());
+        final Integer validateAfterInactivity = PropertiesHelper.getValue(config.getProperties(), 
+                ApacheClientProperties.VALIDATE_AFTER_INACTIVITY, Integer.class, null);
+        if (validateAfterInactivity != null) {
+            connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+        }
 
         if (useSystemProperties) {
             String s = System.getProperty("http.keepAlive", "true");
@@ -393,6 +530,22 @@ class ApacheConnector implements Connector {
         return connectionManager;
     }
 
+    private static long getConnectionTimeToLive(final Map<String, Object> properties) {
+        final Long ttl = PropertiesHelper.getValue(properties, ApacheClientProperties.CONNECTION_TIME_TO_LIVE, Long.class, null);
+        return ttl == null ? -1 : ttl;
+    }
+
+    private static void configurePoolSize(final ConnPoolControl<HttpRoute> pool, final Map<String, Object> properties) {
+        final Integer maxTotal = PropertiesHelper.getValue(properties, ApacheClientProperties.MAX_TOTAL_CONNECTIONS, Integer.class, null);
+        if (maxTotal != null) {
+            pool.setMaxTotal(maxTotal);
+        }
+        final Integer maxPerRoute = PropertiesHelper.getValue(properties, ApacheClientProperties.MAX_CONNECTIONS_PER_ROUTE, Integer.class, null);
+        if (maxPerRoute != null) {
+            pool.setDefaultMaxPerRoute(maxPerRoute);
+        }
+    }
+
     private static String[] split(final String s) {
         if (TextUtils.isBlank(s)) {
             return null;
@@ -420,6 +573,32 @@ class ApacheConnector implements Connector {
         return cookieStore;
     }
 
+    /**
+     * Get statistics for the connection pool used for synchronous requests.
+     *
+     * @return {@link ConnectionPoolStats} for the synchronous connection pool, or {@code null} if 
+     * a custom {@link ApacheClientProperties#CONNECTION_MANAGER} that doesn't provide pool 
+     * statistics has been configured.
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        if (connectionManager instanceof PoolingHttpClientConnectionManager) {
+            final PoolingHttpClientConnectionManager pool = (PoolingHttpClientConnectionManager) connectionManager;
+            return ConnectionPoolStats.create(pool, pool.getRoutes());
+        }
+        return null;
+    }
+
+    /**
+     * Get statistics for the connection pool used for asynchronous requests.
+     *
+     * @return {@link ConnectionPoolStats} for the asynchronous connection pool, or {@code null} if 
+     * no asynchronous requests have been executed yet.
+     */
+    public ConnectionPoolStats getAsyncConnectionPoolStats() {
+        final PoolingNHttpClientConnectionManager pool = asyncConnectionManager;
+        return pool == null ? null : ConnectionPoolStats.create(pool, pool.getRoutes());
+    }
+
     private static URI getProxyUri(final Object proxy) {
         if (proxy instanceof URI) {
             return (URI) proxy;
@@ -431,87 +610,132 @@ class ApacheConnector implements Connector {
     }
 
     public ClientResponse apply(final ClientRequest clientRequest) throws ProcessingException {
-        final HttpUriRequest request = getUriHttpRequest(clientRequest);
+        final HttpUriRequest request = getUriHttpRequest(clientRequest, false);
         final Map<String, String> clientHeadersSnapshot = writeOutBoundHeaders(clientRequest.getHeaders(), request);
 
         try {
-            final CloseableHttpResponse response;
-            final HttpClientContext context = HttpClientContext.create();
-            if (preemptiveBasicAuth) {
-                final AuthCache authCache = new BasicAuthCache();
-                final BasicScheme basicScheme = new BasicScheme();
-                authCache.put(getHost(request), basicScheme);
-                context.setAuthCache(authCache);
-            }
+            final HttpClientContext context = createHttpClientContext(clientRequest, request);
+            final CloseableHttpResponse response = client.execute(getHost(request), request, context);
+            HeaderUtils.checkHeaderChanges(clientHeadersSnapshot, clientRequest.getHeaders(), this.getClass().getName());
+            return toClientResponse(clientRequest, response, context, getInputStream(response));
+        } catch (final Exception e) {
+            throw new ProcessingException(e);
+        }
+    }
+    
+    private HttpClientContext createHttpClientContext(final ClientRequest clientRequest, final HttpUriRequest request) {
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(ApacheClientProperties.CLIENT_REQUEST_CONTEXT_ATTRIBUTE, clientRequest);
+        if (preemptiveBasicAuth) {
+            final AuthCache authCache = new BasicAuthCache();
+            final BasicScheme basicScheme = new BasicScheme();
+            authCache.put(getHost(request), basicScheme);
+            context.setAuthCache(authCache);
+        }
 
-            // If a request-specific CredentialsProvider exists, use it instead of the default one
-            CredentialsProvider credentialsProvider =
-                    clientRequest.resolveProperty(ApacheClientProperties.CREDENTIALS_PROVIDER, CredentialsProvider.class);
-            if (credentialsProvider != null) {
-                context.setCredentialsProvider(credentialsProvider);
-            }
+        // If a request-specific CredentialsProvider exists, use it instead of the default one
+        CredentialsProvider credentialsProvider =
+                clientRequest.resolveProperty(ApacheClientProperties.CREDENTIALS_PROVIDER, CredentialsProvider.class);
+        if (credentialsProvider != null) {
+            context.setCredentialsProvider(credentialsProvider);
+        }
+        return context;
+    }
+    
+    private ClientResponse toClientResponse(final ClientRequest clientRequest, final HttpResponse response,
+                                            final HttpClientContext context, final InputStream entityStream) throws IOException {
+        final Response.StatusType status = response.getStatusLine().getReasonPhrase() == null
+                ? Statuses.from(response.getStatusLine().getStatusCode())
+                : Statuses.from(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
+
+        final ClientResponse responseContext = new ClientResponse(status, clientRequest);
+        final List<URI> redirectLocations = context.getRedirectLocations();
+        if (redirectLocations != null && !redirectLocations.isEmpty()) {
+            responseContext.setResolvedRequestUri(redirectLocations.get(redirectLocations.size() - 1));
+        }
 
-            response = client.execute(getHost(request), request, context);
-            HeaderUtils.checkHeaderChanges(clientHeadersSnapshot, clientRequest.getHeaders(), this.getClass().getName());
+        final Header[] respHeaders = response.getAllHeaders();
+        final MultivaluedMap<String, String> headers = responseContext.getHeaders();
+        for (final Header header : respHeaders) {
+            final String headerName = header.getName();
+            List<String> list = headers.get(headerName);
+            if (list == null) {
+                list = new ArrayList<String>();
+            }
+            list.add(header.getValue());
+            headers.put(headerName, list);
+        }
 
-            final Response.StatusType status = response.getStatusLine().getReasonPhrase() == null
-                    ? Statuses.from(response.getStatusLine().getStatusCode())
-                    : Statuses.from(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
+        final HttpEntity entity = response.getEntity();
 
-            final ClientResponse responseContext = new ClientResponse(status, clientRequest);
-            final List<URI> redirectLocations = context.getRedirectLocations();
-            if (redirectLocations != null && !redirectLocations.isEmpty()) {
-                responseContext.setResolvedRequestUri(redirectLocations.get(redirectLocations.size() - 1));
+        if (entity != null) {
+            if (headers.get(HttpHeaders.CONTENT_LENGTH) == null) {
+                headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(entity.getContentLength()));
             }
 
-            final Header[] respHeaders = response.getAllHeaders();
-            final MultivaluedMap<String, String> headers = responseContext.getHeaders();
-            for (final Header header : respHeaders) {
-                final String headerName = header.getName();
-                List<String> list = headers.get(headerName);
-                if (list == null) {
-                    list = new ArrayList<String>();
-                }
-                list.add(header.getValue());
-                headers.put(headerName, list);
+            final Header contentEncoding = entity.getContentEncoding();
+            if (headers.get(HttpHeaders.CONTENT_ENCODING) == null && contentEncoding != null) {
+                headers.add(HttpHeaders.CONTENT_ENCODING, contentEncoding.getValue());
             }
+        }
 
-            final HttpEntity entity = response.getEntity();
+        responseContext.setEntityStream(new HttpClientResponseInputStream(entityStream));
 
-            if (entity != null) {
-                if (headers.get(HttpHeaders.CONTENT_LENGTH) == null) {
-                    headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(entity.getContentLength()));
-                }
+        return responseContext;
+    }
 
-                final Header contentEncoding = entity.getContentEncoding();
-                if (headers.get(HttpHeaders.CONTENT_ENCODING) == null && contentEncoding != null) {
-                    headers.add(HttpHeaders.CONTENT_ENCODING, contentEncoding.getValue());
+    public Future<?> apply(final ClientRequest clientRequest, final AsyncConnectorCallback callback) {
+        final CompletableFuture<ClientResponse> result = new CompletableFuture<ClientResponse>();
+        try {
+            final HttpUriRequest request = getUriHttpRequest(clientRequest, true);
+            final Map<String, String> clientHeadersSnapshot = writeOutBoundHeaders(clientRequest.getHeaders(), request);
+            final HttpClientContext context = createHttpClientContext(clientRequest, request);
+            HeaderUtils.checkHeaderChanges(clientHeadersSnapshot, clientRequest.getHeaders(), this.getClass().getName());
+            executeAsync(clientRequest, request, context, 1, callback, result);
+        } catch (final Throwable t) {
+            failAsync(t, callback, result);
+        }
+        return result;
+    }
+    
+    private void executeAsync(final ClientRequest clientRequest, final HttpUriRequest request, final HttpClientContext context, 
+            final int executionCount, final AsyncConnectorCallback callback, final CompletableFuture<ClientResponse> result) {
+        getAsyncClient().execute(request, context, new FutureCallback<HttpResponse>() {
+            public void completed(final HttpResponse response) {
+                final ClientResponse responseContext;
+                try {
+                    if (serviceUnavailableRetryStrategy != null 
+                            && serviceUnavailableRetryStrategy.retryRequest(response, executionCount, context)) {
+                        final long interval = serviceUnavailableRetryStrategy.getRetryInterval();
+                        EntityUtils.consumeQuietly(response.getEntity());
+                        getAsyncRetryScheduler().schedule(
+                                () -> executeAsync(clientRequest, request, context, executionCount + 1, callback, result),
+                                interval, TimeUnit.MILLISECONDS);
+                        return;
+                    }
+                    responseContext = toClientResponse(clientRequest, response, context, getBufferedInputStream(response));
+                } catch (final Throwable t) {
+                    failAsync(t, callback, result);
+                    return;
                 }
+                callback.response(responseContext);
+                result.complete(responseContext);
             }
 
-            try {
-                responseContext.setEntityStream(new HttpClientResponseInputStream(getInputStream(response)));
-            } catch (final IOException e) {
-                LOGGER.log(Level.SEVERE, null, e);
+            public void failed(final Exception ex) {
+                failAsync(ex, callback, result);
             }
 
-            return responseContext;
-        } catch (final Exception e) {
-            throw new ProcessingException(e);
-        }
+            public void cancelled() {
+                failAsync(new CancellationException("Request cancelled"), callback, result);
+            }
+        });
     }
-
-    public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
-        try {
-            ClientResponse response = apply(request);
-            callback.response(response);
-            return CompletableFuture.completedFuture(response);
-        } catch (Throwable t) {
-            callback.failure(t);
-            CompletableFuture<Object> future = new CompletableFuture<Object>();
-            future.completeExceptionally(t);
-            return future;
-        }
+    
+    private static void failAsync(final Throwable t, final AsyncConnectorCallback callback, final CompletableFuture<ClientResponse> result) {
+        final Throwable failure = (t instanceof ProcessingException) ? t : new ProcessingException(t);
+        callback.failure(failure);
+        result.completeExceptionally(failure);
     }
 
     public String getName() {
@@ -521,8 +745,15 @@ class ApacheConnector implements Connector {
     public void close() {
         try {
             client.close();
+            if (asyncClient != null) {
+                asyncClient.close();
+            }
         } catch (final IOException e) {
             throw new ProcessingException(LocalizationMessages.FAILED_TO_STOP_CLIENT(), e);
+        } finally {
+            if (asyncRetryScheduler != null) {
+                asyncRetryScheduler.shutdownNow();
+            }
         }
     }
 
@@ -530,7 +761,7 @@ class ApacheConnector implements Connector {
         return new HttpHost(request.getURI().getHost(), request.getURI().getPort(), request.getURI().getScheme());
     }
 
-    private HttpUriRequest getUriHttpRequest(final ClientRequest clientRequest) {
+    private HttpUriRequest getUriHttpRequest(final ClientRequest clientRequest, final boolean forceBuffering) {
         final RequestConfig.Builder requestConfigBuilder = RequestConfig.copy(requestConfig);
 
         final int connectTimeout = clientRequest.resolveProperty(ClientProperties.CONNECT_TIMEOUT, -1);
@@ -547,7 +778,7 @@ class ApacheConnector implements Connector {
                 clientRequest.resolveProperty(ClientProperties.FOLLOW_REDIRECTS, requestConfig.isRedirectsEnabled());
         requestConfigBuilder.setRedirectsEnabled(redirectsEnabled);
 
-        final Boolean bufferingEnabled = clientRequest.resolveProperty(ClientProperties.REQUEST_ENTITY_PROCESSING,
+        final Boolean bufferingEnabled = forceBuffering || clientRequest.resolveProperty(ClientProperties.REQUEST_ENTITY_PROCESSING,
                 RequestEntityProcessing.class) == RequestEntityProcessing.BUFFERED;
         final HttpEntity entity = getHttpEntity(clientRequest, bufferingEnabled);
 
@@ -633,6 +864,17 @@ class ApacheConnector implements Connector {
     }
 
     private static InputStream getInputStream(final CloseableHttpResponse response) throws IOException {
+        final InputStream inputStream = getBufferedInputStream(response);
+        return new FilterInputStream(inputStream) {
+            @Override
+            public void close() throws IOException {
+                response.close();
+                super.close();
+            }
+        };
+    }
+
+    private static InputStream getBufferedInputStream(final HttpResponse response) throws IOException {
 
         final InputStream inputStream;
 
@@ -647,13 +889,7 @@ class ApacheConnector implements Connector {
             }
         }
 
-        return new FilterInputStream(inputStream) {
-            @Override
-            public void close() throws IOException {
-                response.close();
-                super.close();
-            }
-        };
+        return inputStream;
     }
 
     private static class ConnectionFactory extends ManagedHttpClientConnectionFactory {
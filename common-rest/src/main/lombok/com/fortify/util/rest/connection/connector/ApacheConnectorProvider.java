@@ -50,6 +50,8 @@ import org.glassfish.jersey.client.Initializable;
 import org.glassfish.jersey.client.spi.Connector;
 import org.glassfish.jersey.client.spi.ConnectorProvider;
 
+import com.fortify.util.rest.connection.ConnectionPoolStats;
+
 /**
  * <p>Connector provider for Jersey {@link Connector connectors} that utilize
  * Apache HTTP Client to send and receive HTTP request and responses.
@@ -67,6 +69,11 @@ import org.glassfish.jersey.client.spi.ConnectorProvider;
  * - default value is {@link org.glassfish.jersey.client.RequestEntityProcessing#CHUNKED}</li>
  * <li>{@link ApacheClientProperties#PREEMPTIVE_BASIC_AUTHENTICATION}</li>
  * <li>{@link ApacheClientProperties#RETRY_HANDLER}</li>
+ * <li>{@link ApacheClientProperties#MAX_TOTAL_CONNECTIONS}</li>
+ * <li>{@link ApacheClientProperties#MAX_CONNECTIONS_PER_ROUTE}</li>
+ * <li>{@link ApacheClientProperties#VALIDATE_AFTER_INACTIVITY}</li>
+ * <li>{@link ApacheClientProperties#IDLE_CONNECTION_TIMEOUT}</li>
+ * <li>{@link ApacheClientProperties#CONNECTION_TIME_TO_LIVE}</li>
  * </ul>
  * 
  * <p>
@@ -150,6 +157,40 @@ public class ApacheConnectorProvider implements ConnectorProvider {
         return getConnector(component).getCookieStore();
     }
 
+    /**
+     * Retrieve statistics for the connection pool used by the underlying Apache {@link HttpClient} 
+     * instance from {@link org.glassfish.jersey.client.JerseyClient} or {@link org.glassfish.jersey.client.JerseyWebTarget}
+     * configured to use {@code ApacheConnectorProvider}.
+     *
+     * @param component {@code JerseyClient} or {@code JerseyWebTarget} instance that is configured to use
+     *                  {@code ApacheConnectorProvider}.
+     * @return {@link ConnectionPoolStats} instance, or {@code null} if the configured connection manager
+     *         doesn't provide pool statistics.
+     * @throws java.lang.IllegalArgumentException in case the {@code component} is neither {@code JerseyClient}
+     *                                            nor {@code JerseyWebTarget} instance or in case the component
+     *                                            is not configured to use a {@code ApacheConnectorProvider}.
+     */
+    public static ConnectionPoolStats getConnectionPoolStats(final Configurable<?> component) {
+        return getConnector(component).getConnectionPoolStats();
+    }
+
+    /**
+     * Retrieve statistics for the connection pool used for asynchronous requests from 
+     * {@link org.glassfish.jersey.client.JerseyClient} or {@link org.glassfish.jersey.client.JerseyWebTarget}
+     * configured to use {@code ApacheConnectorProvider}.
+     *
+     * @param component {@code JerseyClient} or {@code JerseyWebTarget} instance that is configured to use
+     *                  {@code ApacheConnectorProvider}.
+     * @return {@link ConnectionPoolStats} instance, or {@code null} if no asynchronous requests have
+     *         been executed yet.
+     * @throws java.lang.IllegalArgumentException in case the {@code component} is neither {@code JerseyClient}
+     *                                            nor {@code JerseyWebTarget} instance or in case the component
+     *                                            is not configured to use a {@code ApacheConnectorProvider}.
+     */
+    public static ConnectionPoolStats getAsyncConnectionPoolStats(final Configurable<?> component) {
+        return getConnector(component).getAsyncConnectionPoolStats();
+    }
+
     private static ApacheConnector getConnector(final Configurable<?> component) {
         if (!(component instanceof Initializable)) {
             throw new IllegalArgumentException(
@@ -0,0 +1,668 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.connector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.Credentials;
+import org.apache.hc.client5.http.auth.CredentialsProvider;
+import org.apache.hc.client5.http.auth.NTCredentials;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.cookie.CookieStore;
+import org.apache.hc.client5.http.cookie.StandardCookieSpec;
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.auth.BasicScheme;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.protocol.RedirectLocations;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.nio.support.BasicResponseConsumer;
+import org.apache.hc.core5.http.nio.support.classic.ContentInputStream;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.internal.util.PropertiesHelper;
+import org.glassfish.jersey.message.internal.HeaderUtils;
+import org.glassfish.jersey.message.internal.Statuses;
+
+import com.fortify.util.rest.connection.ConnectionPoolStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>Jersey {@link Connector} based on the Apache HttpClient 5.x asynchronous client,
+ * allowing many concurrent requests to be multiplexed over a single HTTP/2 connection 
+ * per target host. Both synchronous and asynchronous requests are executed through 
+ * the same client; synchronous requests block until the response headers have been
+ * received, after which the response entity is streamed to the caller.</p>
+ * 
+ * <p>This connector honors the same configuration properties as {@link ApacheConnector}
+ * wherever applicable; credentials providers, preemptive basic authentication, cookie 
+ * handling, proxy settings and the {@link ApacheClientProperties#SERVICE_UNAVAILABLE_RETRY_STRATEGY}
+ * behave the same. The Apache HttpClient 4.x credentials provider and retry strategy 
+ * are adapted to their HttpClient 5.x equivalents.</p>
+ * 
+ * <p>Note the following limitations:</p>
+ * <ul>
+ *  <li>The target system must support HTTP/2; for https URLs this is negotiated using
+ *      TLS ALPN (requires Java 8u252 or later), for plain http URLs HTTP/2 is used without 
+ *      prior upgrade</li>
+ *  <li>HttpClient 5.x doesn't support HTTP/2 tunneling, so if a proxy has been configured,
+ *      requests are executed over a pool of HTTP/1.1 connections instead</li>
+ *  <li>Request entities are always buffered, independent of the configured
+ *      {@link ClientProperties#REQUEST_ENTITY_PROCESSING} mode</li>
+ *  <li>Response entities for asynchronous requests are fully read into memory before the
+ *      response is passed to the asynchronous callback</li>
+ * </ul>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+class Http2Connector implements Connector {
+	private static final int RESPONSE_BUFFER_SIZE = 64*1024;
+	/** Connection-specific headers that are not allowed in HTTP/2 requests, or that are generated by HttpClient */
+	private static final Set<String> EXCLUDED_REQUEST_HEADERS = new HashSet<>(Arrays.asList(
+			"connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "host", "content-length"));
+	private final CloseableHttpAsyncClient client;
+	private final PoolingAsyncClientConnectionManager connectionManager;
+	private final CookieStore cookieStore;
+	private final org.apache.http.client.CredentialsProvider credentialsProvider;
+	private final ServiceUnavailableRetryStrategy serviceUnavailableRetryStrategy;
+	private final boolean preemptiveBasicAuth;
+	private final HttpHost proxy;
+	private final Credentials proxyCredentials;
+	private volatile ScheduledExecutorService retryScheduler;
+	
+	Http2Connector(Client client, Configuration config) {
+		Map<String, Object> properties = config.getProperties();
+		this.credentialsProvider = getProperty(config, ApacheClientProperties.CREDENTIALS_PROVIDER, org.apache.http.client.CredentialsProvider.class);
+		this.serviceUnavailableRetryStrategy = getProperty(config, ApacheClientProperties.SERVICE_UNAVAILABLE_RETRY_STRATEGY, ServiceUnavailableRetryStrategy.class);
+		this.preemptiveBasicAuth = PropertiesHelper.isProperty(properties, ApacheClientProperties.PREEMPTIVE_BASIC_AUTHENTICATION);
+		this.cookieStore = PropertiesHelper.isProperty(properties, ApacheClientProperties.DISABLE_COOKIES) ? null : new BasicCookieStore();
+		Object proxyUri = config.getProperty(ClientProperties.PROXY_URI);
+		if ( proxyUri == null ) {
+			this.proxy = null;
+			this.proxyCredentials = null;
+		} else {
+			URI uri = proxyUri instanceof URI ? (URI)proxyUri : URI.create(proxyUri.toString());
+			String userName = ClientProperties.getValue(properties, ClientProperties.PROXY_USERNAME, String.class);
+			String password = ClientProperties.getValue(properties, ClientProperties.PROXY_PASSWORD, String.class);
+			this.proxy = new HttpHost(uri.getScheme(), uri.getHost(), uri.getPort());
+			this.proxyCredentials = userName == null || password == null ? null : new UsernamePasswordCredentials(userName, password.toCharArray());
+		}
+		
+		TlsStrategy tlsStrategy = ClientTlsStrategyBuilder.create()
+				.setSslContext(client.getSslContext())
+				.setHostnameVerifier(client.getHostnameVerifier())
+				.build();
+		RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
+		if ( cookieStore == null ) {
+			requestConfigBuilder.setCookieSpec(StandardCookieSpec.IGNORE);
+		}
+		Long idleConnectionTimeout = PropertiesHelper.getValue(properties, ApacheClientProperties.IDLE_CONNECTION_TIMEOUT, Long.class, null);
+		if ( proxy == null ) {
+			this.connectionManager = null;
+			H2AsyncClientBuilder builder = H2AsyncClientBuilder.create()
+					.setTlsStrategy(tlsStrategy)
+					.setDefaultCredentialsProvider(new CredentialsProviderAdapter(credentialsProvider))
+					.setDefaultRequestConfig(requestConfigBuilder.build())
+					.setRetryStrategy(new IOExceptionRetryStrategy())
+					.setThreadFactory(new ThreadFactoryBuilder().setNameFormat("http2-client-%d").setDaemon(true).build());
+			if ( cookieStore == null ) {
+				builder.disableCookieManagement();
+			} else {
+				builder.setDefaultCookieStore(cookieStore);
+			}
+			if ( idleConnectionTimeout != null && idleConnectionTimeout > 0 ) {
+				builder.evictIdleConnections(TimeValue.ofMilliseconds(idleConnectionTimeout));
+			}
+			this.client = builder.build();
+		} else {
+			log.info("HTTP/2 is not supported through proxy "+proxy+"; using HTTP/1.1 connection pool instead");
+			this.connectionManager = createConnectionManager(properties, tlsStrategy);
+			HttpAsyncClientBuilder builder = HttpAsyncClientBuilder.create()
+					.setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_1)
+					.setConnectionManager(connectionManager)
+					.setProxy(proxy)
+					.setDefaultCredentialsProvider(new CredentialsProviderAdapter(credentialsProvider))
+					.setDefaultRequestConfig(requestConfigBuilder.build())
+					.setRetryStrategy(new IOExceptionRetryStrategy())
+					.setThreadFactory(new ThreadFactoryBuilder().setNameFormat("http2-client-%d").setDaemon(true).build());
+			if ( cookieStore == null ) {
+				builder.disableCookieManagement();
+			} else {
+				builder.setDefaultCookieStore(cookieStore);
+			}
+			if ( idleConnectionTimeout != null && idleConnectionTimeout > 0 ) {
+				builder.evictIdleConnections(TimeValue.ofMilliseconds(idleConnectionTimeout));
+			}
+			this.client = builder.build();
+		}
+		this.client.start();
+	}
+	
+	private static PoolingAsyncClientConnectionManager createConnectionManager(Map<String, Object> properties, TlsStrategy tlsStrategy) {
+		PoolingAsyncClientConnectionManagerBuilder builder = PoolingAsyncClientConnectionManagerBuilder.create().setTlsStrategy(tlsStrategy);
+		Integer maxTotal = PropertiesHelper.getValue(properties, ApacheClientProperties.MAX_TOTAL_CONNECTIONS, Integer.class, null);
+		if ( maxTotal != null ) { builder.setMaxConnTotal(maxTotal); }
+		Integer maxPerRoute = PropertiesHelper.getValue(properties, ApacheClientProperties.MAX_CONNECTIONS_PER_ROUTE, Integer.class, null);
+		if ( maxPerRoute != null ) { builder.setMaxConnPerRoute(maxPerRoute); }
+		Integer validateAfterInactivity = PropertiesHelper.getValue(properties, ApacheClientProperties.VALIDATE_AFTER_INACTIVITY, Integer.class, null);
+		if ( validateAfterInactivity != null ) { builder.setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivity)); }
+		Long ttl = PropertiesHelper.getValue(properties, ApacheClientProperties.CONNECTION_TIME_TO_LIVE, Long.class, null);
+		if ( ttl != null && ttl > 0 ) { builder.setConnectionTimeToLive(TimeValue.ofMilliseconds(ttl)); }
+		return builder.build();
+	}
+	
+	private static <T> T getProperty(Configuration config, String name, Class<T> type) {
+		Object value = config.getProperty(name);
+		return type.isInstance(value) ? type.cast(value) : null;
+	}
+	
+	/**
+	 * Get the {@link CookieStore}.
+	 * @return the {@link CookieStore} instance or {@code null} when {@value ApacheClientProperties#DISABLE_COOKIES} set to
+	 * {@code true}.
+	 */
+	public CookieStore getCookieStore() {
+		return cookieStore;
+	}
+	
+	/**
+	 * Get statistics for the HTTP/1.1 connection pool that is used if a proxy has been configured.
+	 * @return {@link ConnectionPoolStats} instance, or {@code null} if requests are multiplexed
+	 *         over HTTP/2 connections
+	 */
+	public ConnectionPoolStats getConnectionPoolStats() {
+		if ( connectionManager == null ) { return null; }
+		Map<String, org.apache.http.pool.PoolStats> routeStats = new LinkedHashMap<>();
+		for ( HttpRoute route : connectionManager.getRoutes() ) {
+			routeStats.put(route.toString(), toPoolStats(connectionManager.getStats(route)));
+		}
+		return ConnectionPoolStats.create(toPoolStats(connectionManager.getTotalStats()), routeStats);
+	}
+	
+	private static org.apache.http.pool.PoolStats toPoolStats(PoolStats stats) {
+		return new org.apache.http.pool.PoolStats(stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+	}
+	
+	@Override
+	public ClientResponse apply(ClientRequest clientRequest) throws ProcessingException {
+		PreparedRequest request = new PreparedRequest(clientRequest);
+		try {
+			for ( int executionCount = 1 ; ; executionCount++ ) {
+				HttpClientContext context = request.createContext();
+				StreamingResponseConsumer consumer = new StreamingResponseConsumer();
+				Future<HttpResponse> future = client.execute(request.createProducer(), consumer, null, context, consumer);
+				HttpResponse response = consumer.awaitResponse(future);
+				if ( retryRequest(request, response, executionCount) ) {
+					long interval = serviceUnavailableRetryStrategy.getRetryInterval();
+					future.cancel(true);
+					if ( interval > 0 ) { Thread.sleep(interval); }
+				} else {
+					return toClientResponse(clientRequest, response, context, consumer.getEntityStream(future));
+				}
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new ProcessingException(e);
+		} catch ( ProcessingException e ) {
+			throw e;
+		} catch ( Exception e ) {
+			throw new ProcessingException(e);
+		}
+	}
+	
+	@Override
+	public Future<?> apply(ClientRequest clientRequest, AsyncConnectorCallback callback) {
+		CompletableFuture<ClientResponse> result = new CompletableFuture<>();
+		try {
+			executeAsync(new PreparedRequest(clientRequest), 1, callback, result);
+		} catch ( Throwable t ) {
+			failAsync(t, callback, result);
+		}
+		return result;
+	}
+	
+	private void executeAsync(PreparedRequest request, int executionCount, AsyncConnectorCallback callback, CompletableFuture<ClientResponse> result) {
+		HttpClientContext context = request.createContext();
+		client.execute(request.createProducer(), new BasicResponseConsumer<>(new BasicAsyncEntityConsumer()), null, context, 
+				new FutureCallback<Message<HttpResponse, byte[]>>() {
+			@Override
+			public void completed(Message<HttpResponse, byte[]> message) {
+				ClientResponse responseContext;
+				try {
+					if ( retryRequest(request, message.getHead(), executionCount) ) {
+						getRetryScheduler().schedule(() -> executeAsync(request, executionCount + 1, callback, result), 
+								serviceUnavailableRetryStrategy.getRetryInterval(), TimeUnit.MILLISECONDS);
+						return;
+					}
+					byte[] body = message.getBody();
+					responseContext = toClientResponse(request.clientRequest, message.getHead(), context, 
+							new ByteArrayInputStream(body == null ? new byte[0] : body));
+				} catch ( Throwable t ) {
+					failAsync(t, callback, result);
+					return;
+				}
+				callback.response(responseContext);
+				result.complete(responseContext);
+			}
+			
+			@Override
+			public void failed(Exception ex) {
+				failAsync(ex, callback, result);
+			}
+			
+			@Override
+			public void cancelled() {
+				failAsync(new CancellationException("Request cancelled"), callback, result);
+			}
+		});
+	}
+	
+	private static void failAsync(Throwable t, AsyncConnectorCallback callback, CompletableFuture<ClientResponse> result) {
+		Throwable failure = (t instanceof ProcessingException) ? t : new ProcessingException(t);
+		callback.failure(failure);
+		result.completeExceptionally(failure);
+	}
+	
+	/**
+	 * Evaluate the configured Apache HttpClient 4.x {@link ServiceUnavailableRetryStrategy}
+	 * against an HttpClient 4.x representation of the given response.
+	 */
+	private boolean retryRequest(PreparedRequest request, HttpResponse response, int executionCount) {
+		if ( serviceUnavailableRetryStrategy == null ) { return false; }
+		BasicHttpContext context = new BasicHttpContext();
+		context.setAttribute(HttpCoreContext.HTTP_REQUEST, RequestBuilder.create(request.method).setUri(request.uri).build());
+		context.setAttribute(ApacheClientProperties.CLIENT_REQUEST_CONTEXT_ATTRIBUTE, request.clientRequest);
+		BasicHttpResponse legacyResponse = new BasicHttpResponse(org.apache.http.HttpVersion.HTTP_1_1, response.getCode(), response.getReasonPhrase());
+		for ( Header header : response.getHeaders() ) {
+			legacyResponse.addHeader(header.getName(), header.getValue());
+		}
+		return serviceUnavailableRetryStrategy.retryRequest(legacyResponse, executionCount, context);
+	}
+	
+	private ScheduledExecutorService getRetryScheduler() {
+		ScheduledExecutorService result = retryScheduler;
+		if ( result == null ) {
+			synchronized (this) {
+				result = retryScheduler;
+				if ( result == null ) {
+					result = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+							.setNameFormat("http2-retry-%d").setDaemon(true).build());
+					retryScheduler = result;
+				}
+			}
+		}
+		return result;
+	}
+	
+	private static ClientResponse toClientResponse(ClientRequest clientRequest, HttpResponse response, HttpClientContext context, InputStream entityStream) {
+		Response.StatusType status = response.getReasonPhrase() == null
+				? Statuses.from(response.getCode())
+				: Statuses.from(response.getCode(), response.getReasonPhrase());
+		ClientResponse responseContext = new ClientResponse(status, clientRequest);
+		RedirectLocations redirectLocations = context.getRedirectLocations();
+		if ( redirectLocations != null && redirectLocations.size() > 0 ) {
+			responseContext.setResolvedRequestUri(redirectLocations.get(redirectLocations.size() - 1));
+		}
+		for ( Header header : response.getHeaders() ) {
+			responseContext.getHeaders().add(header.getName(), header.getValue());
+		}
+		responseContext.setEntityStream(entityStream);
+		return responseContext;
+	}
+	
+	@Override
+	public String getName() {
+		return "Apache HttpClient 5 (HTTP/2)";
+	}
+	
+	@Override
+	public void close() {
+		try {
+			client.close(CloseMode.GRACEFUL);
+		} finally {
+			if ( retryScheduler != null ) {
+				retryScheduler.shutdownNow();
+			}
+		}
+	}
+	
+	/**
+	 * This class holds all information needed to (re-)execute a request. The request 
+	 * entity is buffered, allowing the request to be re-sent if it needs to be retried.
+	 */
+	private final class PreparedRequest {
+		private final ClientRequest clientRequest;
+		private final String method;
+		private final URI uri;
+		private final HttpHost target;
+		private final byte[] entity;
+		private final ContentType contentType;
+		private final Map<String, String> headers;
+		private final RequestConfig requestConfig;
+		private final CredentialsProvider requestCredentialsProvider;
+		
+		public PreparedRequest(ClientRequest clientRequest) {
+			this.clientRequest = clientRequest;
+			this.method = clientRequest.getMethod();
+			this.uri = clientRequest.getUri();
+			this.target = new HttpHost(uri.getScheme(), uri.getHost(), uri.getPort());
+			// Entity must be written before collecting headers, as entity providers may update the headers
+			this.entity = bufferEntity(clientRequest);
+			this.headers = HeaderUtils.asStringHeadersSingleValue(clientRequest.getHeaders());
+			String contentTypeHeader = headers.get(HttpHeaders.CONTENT_TYPE);
+			this.contentType = contentTypeHeader == null ? null : ContentType.parse(contentTypeHeader);
+			this.requestConfig = createRequestConfig(clientRequest);
+			org.apache.http.client.CredentialsProvider requestCredentialsProvider = 
+					clientRequest.resolveProperty(ApacheClientProperties.CREDENTIALS_PROVIDER, org.apache.http.client.CredentialsProvider.class);
+			this.requestCredentialsProvider = requestCredentialsProvider == null ? null : new CredentialsProviderAdapter(requestCredentialsProvider);
+		}
+		
+		private byte[] bufferEntity(ClientRequest clientRequest) {
+			if ( clientRequest.getEntity() == null ) { return null; }
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+			clientRequest.setStreamProvider(contentLength -> buffer);
+			try {
+				clientRequest.writeEntity();
+			} catch (IOException e) {
+				throw new ProcessingException("Error buffering request entity", e);
+			}
+			return buffer.toByteArray();
+		}
+		
+		private RequestConfig createRequestConfig(ClientRequest clientRequest) {
+			RequestConfig.Builder builder = RequestConfig.custom();
+			if ( cookieStore == null ) {
+				builder.setCookieSpec(StandardCookieSpec.IGNORE);
+			}
+			int connectTimeout = clientRequest.resolveProperty(ClientProperties.CONNECT_TIMEOUT, -1);
+			if ( connectTimeout >= 0 ) {
+				builder.setConnectTimeout(Timeout.ofMilliseconds(connectTimeout));
+			}
+			int readTimeout = clientRequest.resolveProperty(ClientProperties.READ_TIMEOUT, -1);
+			if ( readTimeout >= 0 ) {
+				builder.setResponseTimeout(Timeout.ofMilliseconds(readTimeout));
+			}
+			builder.setRedirectsEnabled(clientRequest.resolveProperty(ClientProperties.FOLLOW_REDIRECTS, true));
+			return builder.build();
+		}
+		
+		public AsyncRequestProducer createProducer() {
+			AsyncRequestBuilder builder = AsyncRequestBuilder.create(method).setUri(uri);
+			for ( Map.Entry<String, String> header : headers.entrySet() ) {
+				if ( !EXCLUDED_REQUEST_HEADERS.contains(header.getKey().toLowerCase()) ) {
+					builder.addHeader(header.getKey(), header.getValue());
+				}
+			}
+			if ( entity != null ) {
+				builder.setEntity(AsyncEntityProducers.create(entity, contentType));
+			}
+			return builder.build();
+		}
+		
+		public HttpClientContext createContext() {
+			HttpClientContext context = HttpClientContext.create();
+			context.setRequestConfig(requestConfig);
+			CredentialsProvider contextCredentialsProvider = requestCredentialsProvider;
+			if ( contextCredentialsProvider != null ) {
+				context.setCredentialsProvider(contextCredentialsProvider);
+			} else {
+				contextCredentialsProvider = new CredentialsProviderAdapter(credentialsProvider);
+			}
+			if ( preemptiveBasicAuth ) {
+				Credentials credentials = contextCredentialsProvider.getCredentials(new AuthScope(target), context);
+				if ( credentials != null ) {
+					BasicScheme basicScheme = new BasicScheme();
+					basicScheme.initPreemptive(credentials);
+					context.resetAuthExchange(target, basicScheme);
+				}
+			}
+			return context;
+		}
+	}
+	
+	/**
+	 * HttpClient 5.x {@link CredentialsProvider} implementation that returns the configured
+	 * proxy credentials for the proxy host, and delegates to an HttpClient 4.x 
+	 * {@link org.apache.http.client.CredentialsProvider} for all other hosts.
+	 */
+	private final class CredentialsProviderAdapter implements CredentialsProvider {
+		private final org.apache.http.client.CredentialsProvider delegate;
+		
+		public CredentialsProviderAdapter(org.apache.http.client.CredentialsProvider delegate) {
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public Credentials getCredentials(AuthScope authScope, HttpContext context) {
+			if ( proxyCredentials != null && new AuthScope(proxy).match(authScope) >= 0 ) {
+				return proxyCredentials;
+			}
+			if ( delegate == null ) { return null; }
+			return toCredentials(delegate.getCredentials(new org.apache.http.auth.AuthScope(
+					authScope.getHost(), authScope.getPort(), authScope.getRealm(), authScope.getSchemeName())));
+		}
+		
+		private Credentials toCredentials(org.apache.http.auth.Credentials credentials) {
+			if ( credentials == null ) {
+				return null;
+			}
+			char[] password = credentials.getPassword() == null ? null : credentials.getPassword().toCharArray();
+			if ( credentials instanceof org.apache.http.auth.NTCredentials ) {
+				org.apache.http.auth.NTCredentials ntCredentials = (org.apache.http.auth.NTCredentials)credentials;
+				return new NTCredentials(ntCredentials.getUserName(), password, ntCredentials.getWorkstation(), ntCredentials.getDomain());
+			}
+			return new UsernamePasswordCredentials(credentials.getUserPrincipal().getName(), password);
+		}
+	}
+	
+	/**
+	 * Retry strategy that retries idempotent requests that failed due to an I/O error, similar 
+	 * to the default HttpClient 4.x retry handler. Contrary to the HttpClient 5.x default, this
+	 * strategy doesn't retry any HTTP responses, as this is handled by the configured
+	 * {@link ServiceUnavailableRetryStrategy}.
+	 */
+	private static final class IOExceptionRetryStrategy extends DefaultHttpRequestRetryStrategy {
+		public IOExceptionRetryStrategy() {
+			super(3, TimeValue.ZERO_MILLISECONDS, Arrays.asList(InterruptedIOException.class, UnknownHostException.class,
+					ConnectException.class, ConnectionClosedException.class, NoRouteToHostException.class, SSLException.class),
+					Collections.<Integer>emptyList());
+		}
+	}
+	
+	/**
+	 * {@link AsyncResponseConsumer} that completes as soon as the response headers have been
+	 * received, and makes the response entity available as an {@link InputStream}. Data is 
+	 * read from the connection only as fast as the caller consumes the entity stream.
+	 */
+	private static final class StreamingResponseConsumer implements AsyncResponseConsumer<HttpResponse>, FutureCallback<HttpResponse> {
+		private final SharedInputBuffer buffer = new SharedInputBuffer(RESPONSE_BUFFER_SIZE);
+		private final CompletableFuture<HttpResponse> responseFuture = new CompletableFuture<>();
+		private volatile HttpResponse response;
+		private volatile FutureCallback<HttpResponse> resultCallback;
+		private volatile Exception failure;
+		
+		public HttpResponse awaitResponse(Future<HttpResponse> future) throws Exception {
+			try {
+				return responseFuture.get();
+			} catch ( InterruptedException e ) {
+				future.cancel(true);
+				throw e;
+			} catch ( ExecutionException e ) {
+				throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+			}
+		}
+		
+		public InputStream getEntityStream(Future<HttpResponse> future) {
+			return new FilterInputStream(new ContentInputStream(buffer)) {
+				@Override
+				public int read() throws IOException {
+					return checkFailure(super.read());
+				}
+				
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					return checkFailure(super.read(b, off, len));
+				}
+				
+				private int checkFailure(int result) throws IOException {
+					if ( result < 0 && failure != null ) {
+						throw new IOException("Error reading response entity", failure);
+					}
+					return result;
+				}
+				
+				@Override
+				public void close() throws IOException {
+					// Cancel the exchange if not completed yet, instead of draining the remaining entity 
+					if ( !future.isDone() ) { future.cancel(true); }
+				}
+			};
+		}
+		
+		@Override
+		public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context, FutureCallback<HttpResponse> resultCallback) {
+			this.response = response;
+			if ( entityDetails == null ) {
+				buffer.markEndStream();
+				resultCallback.completed(response);
+			} else {
+				this.resultCallback = resultCallback;
+			}
+			responseFuture.complete(response);
+		}
+		
+		@Override
+		public void informationResponse(HttpResponse response, HttpContext context) {}
+		
+		@Override
+		public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+			buffer.updateCapacity(capacityChannel);
+		}
+		
+		@Override
+		public void consume(ByteBuffer src) {
+			buffer.fill(src);
+		}
+		
+		@Override
+		public void streamEnd(List<? extends Header> trailers) {
+			buffer.markEndStream();
+			if ( resultCallback != null ) { resultCallback.completed(response); }
+		}
+		
+		@Override
+		public void failed(Exception cause) {
+			this.failure = cause;
+			buffer.abort();
+			responseFuture.completeExceptionally(cause);
+		}
+		
+		@Override
+		public void releaseResources() {}
+		
+		// FutureCallback methods, called by the client on request completion, failure or cancellation
+		
+		@Override
+		public void completed(HttpResponse result) {}
+		
+		@Override
+		public void cancelled() {
+			failed(new CancellationException("Request cancelled"));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.connector;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configurable;
+import javax.ws.rs.core.Configuration;
+
+import org.glassfish.jersey.client.Initializable;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import com.fortify.util.rest.connection.ConnectionPoolStats;
+
+/**
+ * <p>{@link ConnectorProvider} for the HTTP/2-capable {@link Http2Connector}, based on 
+ * Apache HttpClient 5.x. HttpClient 5.x is an optional dependency; applications that 
+ * want to use this connector provider need to explicitly add the 
+ * <code>org.apache.httpcomponents.client5:httpclient5</code> artifact as a dependency.</p>
+ * 
+ * <p>This connector provider can be enabled for {@link com.fortify.util.rest.connection.AbstractRestConnection}
+ * instances through {@link com.fortify.util.rest.connection.AbstractRestConnectionConfig#http2Enabled(boolean)}.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class Http2ConnectorProvider implements ConnectorProvider {
+	private static final String HTTP_CLIENT_5_CLASS = "org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder";
+	
+	@Override
+	public Connector getConnector(Client client, Configuration runtimeConfig) {
+		try {
+			Class.forName(HTTP_CLIENT_5_CLASS, false, Http2ConnectorProvider.class.getClassLoader());
+		} catch ( ClassNotFoundException e ) {
+			throw new ProcessingException("HTTP/2 support requires org.apache.httpcomponents.client5:httpclient5 to be available on the class path", e);
+		}
+		return new Http2Connector(client, runtimeConfig);
+	}
+	
+	/**
+	 * Retrieve connection pool statistics from the {@link Http2Connector} used by the given
+	 * {@link org.glassfish.jersey.client.JerseyClient} or {@link org.glassfish.jersey.client.JerseyWebTarget}.
+	 * 
+	 * @param component {@code JerseyClient} or {@code JerseyWebTarget} instance that is configured to use
+	 *                  {@code Http2ConnectorProvider}.
+	 * @return {@link ConnectionPoolStats} instance, or {@code null} if requests are multiplexed over
+	 *         HTTP/2 connections.
+	 */
+	public static ConnectionPoolStats getConnectionPoolStats(Configurable<?> component) {
+		return getConnector(component).getConnectionPoolStats();
+	}
+	
+	private static Http2Connector getConnector(Configurable<?> component) {
+		if ( !(component instanceof Initializable) ) {
+			throw new IllegalArgumentException("Invalid configurable component type: "+component.getClass().getName());
+		}
+		Initializable<?> initializable = (Initializable<?>) component;
+		Connector connector = initializable.getConfiguration().getConnector();
+		if ( connector == null ) {
+			initializable.preInitialize();
+			connector = initializable.getConfiguration().getConnector();
+		}
+		if ( connector instanceof Http2Connector ) {
+			return (Http2Connector) connector;
+		} else {
+			throw new IllegalArgumentException("The client is not configured to use Http2ConnectorProvider");
+		}
+	}
+}
@@ -24,6 +24,7 @@
  ******************************************************************************/
 /**
  * <p>This package contains a modified version of the Jersey Apache HttpClient Connector,
- *    adding functionality for using HttpClient ServiceUnavailableRetryStrategy.</p>
+ *    adding functionality for using HttpClient ServiceUnavailableRetryStrategy, and an
+ *    alternative HTTP/2-capable connector based on Apache HttpClient 5.x.</p>
  */
 package com.fortify.util.rest.connection.connector;
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.logging;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Priority;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.glassfish.jersey.logging.LoggingFeature;
+
+/**
+ * <p>JAX-RS client filter and interceptor that logs requests and responses, including
+ * headers and (part of) the request and response payloads, at {@link Level#FINE} level
+ * to the standard Jersey {@link LoggingFeature} logger. Contrary to Jersey's 
+ * {@link LoggingFeature}, this filter supports sampling: if a sample rate N larger than 1 
+ * is configured, only 1 in N requests will be logged, in addition to any requests that
+ * take longer than the configured slow request threshold or that result in an error
+ * response, if configured.</p>
+ * 
+ * <p>The logger level is checked for every request, so logging can be enabled or disabled
+ * at runtime. If the logger is not enabled for {@link Level#FINE}, or if a request is not 
+ * sampled and neither slow nor failed request logging has been enabled, this filter doesn't
+ * capture any payloads.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@Priority(Integer.MAX_VALUE)
+public final class RestConnectionLoggingFilter implements ClientRequestFilter, ClientResponseFilter, WriterInterceptor {
+	private static final Logger LOG = Logger.getLogger(LoggingFeature.DEFAULT_LOGGER_NAME);
+	private static final String PROPERTY_REQUEST_LOG = RestConnectionLoggingFilter.class.getName()+".requestLog";
+	private final AtomicLong requestCounter = new AtomicLong();
+	private final int sampleRate;
+	private final long slowRequestThresholdNanos;
+	private final boolean logFailedRequests;
+	private final int maxEntitySize;
+	
+	/**
+	 * Create a new {@link RestConnectionLoggingFilter} instance.
+	 * @param sampleRate Log 1 in N requests; 1 to log all requests, 0 to only log slow or failed requests
+	 * @param slowRequestThresholdMillis Log all requests that take at least the given number of milliseconds,
+	 *        or -1 to disable slow request logging
+	 * @param logFailedRequests Log all requests that result in a 4xx or 5xx response
+	 * @param maxEntitySize Maximum number of entity bytes to be logged 
+	 */
+	public RestConnectionLoggingFilter(int sampleRate, long slowRequestThresholdMillis, boolean logFailedRequests, int maxEntitySize) {
+		this.sampleRate = sampleRate;
+		this.slowRequestThresholdNanos = slowRequestThresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(slowRequestThresholdMillis);
+		this.logFailedRequests = logFailedRequests;
+		this.maxEntitySize = maxEntitySize;
+	}
+
+	@Override
+	public void filter(ClientRequestContext requestContext) throws IOException {
+		if ( !LOG.isLoggable(Level.FINE) ) { return; }
+		long id = requestCounter.incrementAndGet();
+		boolean sampled = sampleRate == 1 || (sampleRate > 1 && id % sampleRate == 0);
+		if ( sampled || slowRequestThresholdNanos >= 0 || logFailedRequests ) {
+			RequestLog requestLog = new RequestLog(id, sampled);
+			StringBuilder sb = requestLog.request;
+			sb.append(id).append(" * Sending client request on thread ").append(Thread.currentThread().getName()).append('\n');
+			sb.append(id).append(" > ").append(requestContext.getMethod()).append(' ').append(requestContext.getUri().toASCIIString()).append('\n');
+			appendHeaders(sb, id, " > ", requestContext.getStringHeaders());
+			requestContext.setProperty(PROPERTY_REQUEST_LOG, requestLog);
+			if ( sampled && !requestContext.hasEntity() ) {
+				log(sb);
+			}
+		}
+	}
+	
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		Object requestLog = context.getProperty(PROPERTY_REQUEST_LOG);
+		if ( !(requestLog instanceof RequestLog) ) {
+			context.proceed();
+		} else {
+			CapturingOutputStream capturingOutputStream = new CapturingOutputStream(context.getOutputStream(), maxEntitySize);
+			context.setOutputStream(capturingOutputStream);
+			try {
+				context.proceed();
+			} finally {
+				RequestLog log = (RequestLog)requestLog;
+				appendEntity(log.request, capturingOutputStream.captured.toByteArray(), capturingOutputStream.count > maxEntitySize, getCharset(context.getMediaType()));
+				if ( log.sampled ) { log(log.request); }
+			}
+		}
+	}
+
+	@Override
+	public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+		Object property = requestContext.getProperty(PROPERTY_REQUEST_LOG);
+		if ( !(property instanceof RequestLog) || !LOG.isLoggable(Level.FINE) ) { return; }
+		RequestLog requestLog = (RequestLog)property;
+		long durationNanos = System.nanoTime()-requestLog.startNanos;
+		boolean slow = slowRequestThresholdNanos >= 0 && durationNanos >= slowRequestThresholdNanos;
+		boolean failed = logFailedRequests && responseContext.getStatus() >= 400;
+		if ( requestLog.sampled || slow || failed ) {
+			long id = requestLog.id;
+			if ( !requestLog.sampled ) {
+				// Request wasn't logged yet
+				log(requestLog.request);
+			}
+			StringBuilder sb = new StringBuilder();
+			sb.append(id).append(" * Client response received on thread ").append(Thread.currentThread().getName())
+				.append(" after ").append(TimeUnit.NANOSECONDS.toMillis(durationNanos)).append(" ms");
+			if ( slow ) { sb.append(" (slow request)"); }
+			if ( failed ) { sb.append(" (failed request)"); }
+			sb.append('\n');
+			sb.append(id).append(" < ").append(responseContext.getStatus()).append('\n');
+			appendHeaders(sb, id, " < ", responseContext.getHeaders());
+			String contentEncoding = responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+			if ( responseContext.hasEntity() && contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding) ) {
+				// Entity hasn't been decoded yet at this point, so we don't log the raw encoded bytes
+				sb.append(id).append(" < (").append(contentEncoding).append("-encoded entity not logged)\n");
+			} else if ( responseContext.hasEntity() ) {
+				responseContext.setEntityStream(captureEntity(sb, responseContext.getEntityStream(), getCharset(responseContext.getMediaType())));
+			}
+			log(sb);
+		}
+	}
+	
+	private InputStream captureEntity(StringBuilder sb, InputStream stream, Charset charset) throws IOException {
+		if ( !stream.markSupported() ) {
+			stream = new BufferedInputStream(stream);
+		}
+		stream.mark(maxEntitySize + 1);
+		byte[] entity = new byte[maxEntitySize + 1];
+		int length = 0, read;
+		while ( length < entity.length && (read = stream.read(entity, length, entity.length - length)) >= 0 ) {
+			length += read;
+		}
+		appendEntity(sb, entity, Math.min(length, maxEntitySize), length > maxEntitySize, charset);
+		stream.reset();
+		return stream;
+	}
+	
+	private static void appendHeaders(StringBuilder sb, long id, String prefix, Map<String, List<String>> headers) {
+		for ( Map.Entry<String, List<String>> header : headers.entrySet() ) {
+			sb.append(id).append(prefix).append(header.getKey()).append(": ");
+			List<String> values = header.getValue();
+			for ( int i = 0 ; i < values.size() ; i++ ) {
+				if ( i > 0 ) { sb.append(','); }
+				sb.append(values.get(i));
+			}
+			sb.append('\n');
+		}
+	}
+	
+	private static void appendEntity(StringBuilder sb, byte[] entity, boolean truncated, Charset charset) {
+		appendEntity(sb, entity, entity.length, truncated, charset);
+	}
+	
+	private static void appendEntity(StringBuilder sb, byte[] entity, int length, boolean truncated, Charset charset) {
+		sb.append(new String(entity, 0, length, charset));
+		if ( truncated ) { sb.append("...more..."); }
+		sb.append('\n');
+	}
+	
+	private static Charset getCharset(MediaType mediaType) {
+		String charset = mediaType == null ? null : mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
+		try {
+			return charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+		} catch ( RuntimeException e ) {
+			return StandardCharsets.UTF_8;
+		}
+	}
+	
+	private static void log(StringBuilder sb) {
+		LOG.log(Level.FINE, sb.toString());
+	}
+	
+	private static final class RequestLog {
+		private final long id;
+		private final boolean sampled;
+		private final long startNanos = System.nanoTime();
+		private final StringBuilder request = new StringBuilder();
+		
+		public RequestLog(long id, boolean sampled) {
+			this.id = id;
+			this.sampled = sampled;
+		}
+	}
+	
+	/**
+	 * {@link FilterOutputStream} that captures up to the given maximum number of 
+	 * bytes written to the underlying stream, while counting the total number of
+	 * bytes written.
+	 */
+	private static final class CapturingOutputStream extends FilterOutputStream {
+		private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		private final int maxCaptureSize;
+		private long count = 0;
+		
+		public CapturingOutputStream(OutputStream out, int maxCaptureSize) {
+			super(out);
+			this.maxCaptureSize = maxCaptureSize;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			if ( count++ < maxCaptureSize ) { captured.write(b); }
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			if ( count < maxCaptureSize ) {
+				captured.write(b, off, (int)Math.min(len, maxCaptureSize-count));
+			}
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * This class holds the live metrics for a single endpoint, identified by HTTP method
+ * and normalized path. All counters are lock-free, allowing metrics to be recorded 
+ * concurrently by many request threads with minimal overhead. Use {@link #getSnapshot()}
+ * to get a consistent, immutable view of the current metrics.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class EndpointMetrics {
+	@Getter private final String httpMethod;
+	@Getter private final String path;
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder responses = new LongAdder();
+	private final LongAdder[] statusClasses = new LongAdder[] {
+			new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()
+	};
+	private final LongAdder requestBytes = new LongAdder();
+	private final LongAdder responseBytes = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LongAdder coalescedRequests = new LongAdder();
+	private final LongAdder compressedResponseBytes = new LongAdder();
+	private final LongAdder decompressedResponseBytes = new LongAdder();
+	private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+	
+	EndpointMetrics(String httpMethod, String path) {
+		this.httpMethod = httpMethod;
+		this.path = path;
+	}
+	
+	public void recordRequest() {
+		requests.increment();
+	}
+	
+	public void recordResponse(int status, long durationNanos) {
+		responses.increment();
+		int statusClass = status / 100;
+		if ( statusClass >= 1 && statusClass <= 5 ) {
+			statusClasses[statusClass-1].increment();
+		}
+		latencyHistogram.recordNanos(durationNanos);
+	}
+	
+	public void recordRequestBytes(long bytes) {
+		requestBytes.add(bytes);
+	}
+	
+	public void recordResponseBytes(long bytes) {
+		responseBytes.add(bytes);
+	}
+	
+	public void recordRetry() {
+		retries.increment();
+	}
+	
+	public void recordCacheHit() {
+		cacheHits.increment();
+	}
+	
+	public void recordCacheMiss() {
+		cacheMisses.increment();
+	}
+	
+	public void recordCoalescedRequest() {
+		coalescedRequests.increment();
+	}
+	
+	public void recordCompressedResponseBytes(long bytes) {
+		compressedResponseBytes.add(bytes);
+	}
+	
+	public void recordDecompressedResponseBytes(long bytes) {
+		decompressedResponseBytes.add(bytes);
+	}
+	
+	/**
+	 * Get an immutable snapshot of the current metrics for this endpoint
+	 * @return
+	 */
+	public EndpointMetricsSnapshot getSnapshot() {
+		double[] percentiles = latencyHistogram.getPercentilesMillis(50, 95, 99);
+		long requestCount = requests.sum();
+		long responseCount = responses.sum();
+		return new EndpointMetricsSnapshot(httpMethod, path, requestCount, 
+				Math.max(0, requestCount-responseCount),
+				statusClasses[0].sum(), statusClasses[1].sum(), statusClasses[2].sum(), 
+				statusClasses[3].sum(), statusClasses[4].sum(),
+				percentiles[0], percentiles[1], percentiles[2],
+				requestBytes.sum(), responseBytes.sum(), retries.sum(), cacheHits.sum(), cacheMisses.sum(),
+				coalescedRequests.sum(), compressedResponseBytes.sum(), decompressedResponseBytes.sum());
+	}
+	
+	/**
+	 * Reset all metrics for this endpoint
+	 */
+	public void reset() {
+		requests.reset(); responses.reset();
+		for ( LongAdder statusClass : statusClasses ) { statusClass.reset(); }
+		requestBytes.reset(); responseBytes.reset();
+		retries.reset(); cacheHits.reset(); cacheMisses.reset(); coalescedRequests.reset();
+		compressedResponseBytes.reset(); decompressedResponseBytes.reset();
+		latencyHistogram.reset();
+	}
+}
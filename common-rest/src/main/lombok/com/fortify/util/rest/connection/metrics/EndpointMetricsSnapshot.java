@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Immutable snapshot of the metrics for a single endpoint, as returned by 
+ * {@link EndpointMetrics#getSnapshot()}. Latency percentiles are approximate
+ * and expressed in milliseconds. Requests without response include both
+ * requests that are still in progress, and requests that failed without
+ * receiving a response, for example due to connection errors or time-outs.
+ * Coalesced requests are requests that didn't result in an HTTP request, but
+ * instead shared the result of an identical in-flight request. Compressed and
+ * decompressed response bytes only include content-encoded (for example gzip) 
+ * responses, counting the number of bytes as received and after decoding.
+ * 
+ * @author Ruud Senden
+ *
+ */
+@Getter @ToString @AllArgsConstructor
+public final class EndpointMetricsSnapshot {
+	private final String httpMethod;
+	private final String path;
+	private final long requestCount;
+	private final long requestsWithoutResponse;
+	private final long informationalResponses;
+	private final long successfulResponses;
+	private final long redirectionResponses;
+	private final long clientErrorResponses;
+	private final long serverErrorResponses;
+	private final double latencyP50Millis;
+	private final double latencyP95Millis;
+	private final double latencyP99Millis;
+	private final long requestBytes;
+	private final long responseBytes;
+	private final long retries;
+	private final long cacheHits;
+	private final long cacheMisses;
+	private final long coalescedRequests;
+	private final long compressedResponseBytes;
+	private final long decompressedResponseBytes;
+}
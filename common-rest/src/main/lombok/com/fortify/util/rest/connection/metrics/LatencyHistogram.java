@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Lock-free histogram for recording request latencies. Latencies are recorded in
+ * microseconds into log-linear buckets; each power of two is divided into 8 buckets,
+ * resulting in a relative error of at most 6.25% for calculated percentiles. Recording 
+ * a value doesn't allocate any objects.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class LatencyHistogram {
+	private static final int LINEAR_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40; // ~12 days in microseconds
+	private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	
+	/**
+	 * Record the given duration in nanoseconds
+	 * @param durationNanos
+	 */
+	public void recordNanos(long durationNanos) {
+		buckets.incrementAndGet(getBucketIndex(TimeUnit.NANOSECONDS.toMicros(durationNanos)));
+	}
+	
+	/**
+	 * Reset all recorded values
+	 */
+	public void reset() {
+		for ( int i = 0 ; i < BUCKET_COUNT ; i++ ) {
+			buckets.set(i, 0);
+		}
+	}
+	
+	/**
+	 * Get the approximate latency in milliseconds for each of the given percentiles, 
+	 * based on a single consistent copy of the histogram buckets.
+	 * @param percentiles Percentiles between 0 and 100
+	 * @return Latency in milliseconds for each of the given percentiles, or 0 if no values
+	 *         have been recorded
+	 */
+	public double[] getPercentilesMillis(double... percentiles) {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for ( int i = 0 ; i < BUCKET_COUNT ; i++ ) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		double[] result = new double[percentiles.length];
+		if ( total > 0 ) {
+			for ( int p = 0 ; p < percentiles.length ; p++ ) {
+				long threshold = Math.max(1, (long)Math.ceil(total * percentiles[p] / 100.0));
+				long cumulative = 0;
+				for ( int i = 0 ; i < BUCKET_COUNT ; i++ ) {
+					cumulative += counts[i];
+					if ( cumulative >= threshold ) {
+						result[p] = getBucketMidpoint(i) / 1000.0;
+						break;
+					}
+				}
+			}
+		}
+		return result;
+	}
+	
+	private static final int getBucketIndex(long micros) {
+		if ( micros < LINEAR_BUCKETS ) {
+			return (int)Math.max(0, micros);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if ( exponent > MAX_EXPONENT ) {
+			return BUCKET_COUNT - 1;
+		}
+		int subBucket = (int)(micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+	}
+	
+	private static final double getBucketMidpoint(int index) {
+		if ( index < LINEAR_BUCKETS ) {
+			return index;
+		}
+		int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+		int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long bucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+		long lowerBound = (SUB_BUCKETS + subBucket) * bucketWidth;
+		return lowerBound + bucketWidth / 2.0;
+	}
+}
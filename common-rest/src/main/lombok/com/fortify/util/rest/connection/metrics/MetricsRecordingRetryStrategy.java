@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import java.net.URI;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+/**
+ * {@link ServiceUnavailableRetryStrategy} implementation that delegates to another 
+ * {@link ServiceUnavailableRetryStrategy} instance, recording every retry in the 
+ * configured {@link RestConnectionMetrics} instance.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class MetricsRecordingRetryStrategy implements ServiceUnavailableRetryStrategy {
+	private final ServiceUnavailableRetryStrategy delegate;
+	private final RestConnectionMetrics metrics;
+	
+	public MetricsRecordingRetryStrategy(ServiceUnavailableRetryStrategy delegate, RestConnectionMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
+		boolean result = delegate.retryRequest(response, executionCount, context);
+		if ( result ) {
+			HttpRequest request = HttpCoreContext.adapt(context).getRequest();
+			if ( request != null ) {
+				String path = getPath(request);
+				if ( path != null ) {
+					metrics.getEndpointMetrics(request.getRequestLine().getMethod(), path).recordRetry();
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public long getRetryInterval() {
+		return delegate.getRetryInterval();
+	}
+	
+	private static final String getPath(HttpRequest request) {
+		if ( request instanceof HttpUriRequest ) {
+			return ((HttpUriRequest)request).getURI().getRawPath();
+		}
+		try {
+			return URI.create(request.getRequestLine().getUri()).getRawPath();
+		} catch ( IllegalArgumentException e ) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.fortify.util.rest.connection.resilience.Bulkhead;
+import com.fortify.util.rest.connection.resilience.CircuitBreaker;
+
+import lombok.Setter;
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>This class holds per-endpoint request metrics for a single connection. Endpoints
+ * are identified by HTTP method and normalized path; path segments that look like 
+ * identifiers (numbers or UUID's) are replaced by <code>{id}</code>, such that for example 
+ * <code>/api/v1/issues/123/comments</code> and <code>/api/v1/issues/456/comments</code>
+ * are both recorded as <code>/api/v1/issues/{id}/comments</code>. To avoid unbounded
+ * memory usage, requests for any new paths after the maximum number of endpoints has been 
+ * reached are recorded under the <code>{other}</code> path.</p>
+ * 
+ * <p>If a {@link CircuitBreaker} or {@link Bulkhead} has been configured through 
+ * {@link #setCircuitBreaker(CircuitBreaker)} or {@link #setBulkhead(Bulkhead)}, their
+ * state is included in the connection metrics as well.</p>
+ * 
+ * <p>Metrics can be retrieved through {@link #getSnapshot()}, and published as a JMX MXBean
+ * through {@link #registerMBean(String)}.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+public final class RestConnectionMetrics implements RestConnectionMetricsMXBean {
+	private static final String OBJECT_NAME_PREFIX = "com.fortify.util.rest:type=RestConnectionMetrics,name=";
+	private static final String ID_SEGMENT = "{id}";
+	private static final String OTHER_PATH = "{other}";
+	private static final int DEFAULT_MAX_ENDPOINTS = 1000;
+	
+	private final ConcurrentMap<String, ConcurrentMap<String, EndpointMetrics>> endpointsByMethod = new ConcurrentHashMap<>();
+	private final AtomicInteger endpointCount = new AtomicInteger();
+	private final int maxEndpoints;
+	private volatile ObjectName objectName;
+	@Setter private volatile CircuitBreaker circuitBreaker;
+	@Setter private volatile Bulkhead bulkhead;
+	
+	public RestConnectionMetrics() {
+		this(DEFAULT_MAX_ENDPOINTS);
+	}
+	
+	public RestConnectionMetrics(int maxEndpoints) {
+		this.maxEndpoints = maxEndpoints;
+	}
+	
+	/**
+	 * Get the {@link EndpointMetrics} instance for the given HTTP method and URI
+	 * @param httpMethod
+	 * @param uri
+	 * @return
+	 */
+	public EndpointMetrics getEndpointMetrics(String httpMethod, URI uri) {
+		return getEndpointMetrics(httpMethod, uri.getRawPath());
+	}
+	
+	/**
+	 * Get the {@link EndpointMetrics} instance for the given HTTP method and path
+	 * @param httpMethod
+	 * @param rawPath
+	 * @return
+	 */
+	public EndpointMetrics getEndpointMetrics(String httpMethod, String rawPath) {
+		ConcurrentMap<String, EndpointMetrics> endpoints = endpointsByMethod.get(httpMethod);
+		if ( endpoints == null ) {
+			endpoints = endpointsByMethod.computeIfAbsent(httpMethod, key -> new ConcurrentHashMap<>());
+		}
+		String path = normalizePath(rawPath);
+		EndpointMetrics result = endpoints.get(path);
+		if ( result == null ) {
+			if ( endpointCount.get() >= maxEndpoints ) {
+				path = OTHER_PATH;
+			}
+			result = endpoints.computeIfAbsent(path, key -> {
+				endpointCount.incrementAndGet();
+				return new EndpointMetrics(httpMethod, key);
+			});
+		}
+		return result;
+	}
+	
+	/**
+	 * Get an immutable snapshot of the metrics for all endpoints
+	 * @return
+	 */
+	public RestConnectionMetricsSnapshot getSnapshot() {
+		return new RestConnectionMetricsSnapshot(getEndpoints(), 
+				circuitBreaker==null ? null : circuitBreaker.getState(), getCircuitBreakerRejectedRequests(), 
+				getBulkheadInFlightRequests(), getBulkheadQueuedRequests(), getBulkheadRejectedRequests());
+	}
+	
+	@Override
+	public Map<String, EndpointMetricsSnapshot> getEndpoints() {
+		Map<String, EndpointMetricsSnapshot> result = new TreeMap<>();
+		for ( Map<String, EndpointMetrics> endpoints : endpointsByMethod.values() ) {
+			for ( EndpointMetrics endpoint : endpoints.values() ) {
+				result.put(endpoint.getHttpMethod()+" "+endpoint.getPath(), endpoint.getSnapshot());
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	public long getRequestCount() {
+		return getSnapshot().getRequestCount();
+	}
+	
+	@Override
+	public String getCircuitBreakerState() {
+		CircuitBreaker circuitBreaker = this.circuitBreaker;
+		return circuitBreaker==null ? null : circuitBreaker.getState().name();
+	}
+	
+	@Override
+	public long getCircuitBreakerRejectedRequests() {
+		CircuitBreaker circuitBreaker = this.circuitBreaker;
+		return circuitBreaker==null ? 0 : circuitBreaker.getRejectedRequests();
+	}
+	
+	@Override
+	public int getBulkheadInFlightRequests() {
+		Bulkhead bulkhead = this.bulkhead;
+		return bulkhead==null ? 0 : bulkhead.getInFlightRequests();
+	}
+	
+	@Override
+	public int getBulkheadQueuedRequests() {
+		Bulkhead bulkhead = this.bulkhead;
+		return bulkhead==null ? 0 : bulkhead.getQueuedRequests();
+	}
+	
+	@Override
+	public long getBulkheadRejectedRequests() {
+		Bulkhead bulkhead = this.bulkhead;
+		return bulkhead==null ? 0 : bulkhead.getRejectedRequests();
+	}
+	
+	@Override
+	public void reset() {
+		for ( Map<String, EndpointMetrics> endpoints : endpointsByMethod.values() ) {
+			for ( EndpointMetrics endpoint : endpoints.values() ) {
+				endpoint.reset();
+			}
+		}
+	}
+	
+	/**
+	 * Register this instance as a JMX MXBean with the platform MBean server, using
+	 * the given name. Any errors are logged and otherwise ignored.
+	 * @param name
+	 */
+	public void registerMBean(String name) {
+		try {
+			ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX+ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch ( JMException | RuntimeException e ) {
+			log.warn("Error registering connection metrics MBean "+name, e);
+		}
+	}
+	
+	/**
+	 * Unregister this instance from the platform MBean server, if previously 
+	 * registered through {@link #registerMBean(String)}.
+	 */
+	public void unregisterMBean() {
+		ObjectName objectName = this.objectName;
+		if ( objectName != null ) {
+			this.objectName = null;
+			try {
+				MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+				if ( mBeanServer.isRegistered(objectName) ) {
+					mBeanServer.unregisterMBean(objectName);
+				}
+			} catch ( JMException | RuntimeException e ) {
+				log.warn("Error unregistering connection metrics MBean "+objectName, e);
+			}
+		}
+	}
+	
+	/**
+	 * Replace any path segments that look like identifiers with {id}. If the
+	 * given path doesn't contain any such segments, the given path is returned 
+	 * as-is.
+	 * @param path
+	 * @return
+	 */
+	static final String normalizePath(String path) {
+		if ( path == null || path.isEmpty() ) {
+			return "/";
+		}
+		StringBuilder sb = null;
+		int segmentStart = 0;
+		int length = path.length();
+		for ( int i = 0 ; i <= length ; i++ ) {
+			if ( i == length || path.charAt(i) == '/' ) {
+				if ( isIdSegment(path, segmentStart, i) ) {
+					if ( sb == null ) {
+						sb = new StringBuilder(length).append(path, 0, segmentStart);
+					}
+					sb.append(ID_SEGMENT);
+				} else if ( sb != null ) {
+					sb.append(path, segmentStart, i);
+				}
+				if ( sb != null && i < length ) { sb.append('/'); }
+				segmentStart = i+1;
+			}
+		}
+		return sb == null ? path : sb.toString();
+	}
+	
+	private static final boolean isIdSegment(String path, int start, int end) {
+		int length = end - start;
+		if ( length == 0 ) { return false; }
+		if ( length == 36 && isUuid(path, start) ) { return true; }
+		for ( int i = start ; i < end ; i++ ) {
+			if ( !Character.isDigit(path.charAt(i)) ) { return false; }
+		}
+		return true;
+	}
+	
+	private static final boolean isUuid(String path, int start) {
+		for ( int i = 0 ; i < 36 ; i++ ) {
+			char c = path.charAt(start+i);
+			if ( i == 8 || i == 13 || i == 18 || i == 23 ) {
+				if ( c != '-' ) { return false; }
+			} else if ( Character.digit(c, 16) < 0 ) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * <p>JAX-RS client filter and interceptor that records request count, response status, 
+ * latency and the number of request and response entity bytes for every request into 
+ * the configured {@link RestConnectionMetrics} instance. Latency is measured until the 
+ * response headers have been received.</p>
+ * 
+ * <p>For content-encoded responses, like gzip-compressed responses, this filter additionally
+ * records the number of response bytes as received from the server, and the number of
+ * response bytes after decoding. Note that response entity bytes are counted while the
+ * entity is being read, so bytes are recorded only for entities that are actually read.</p>
+ * 
+ * <p>If a request has an {@link AtomicLong} property named {@link #PROPERTY_RESPONSE_BYTES_COUNTER},
+ * the number of response entity bytes read for that request will also be added to that counter. 
+ * If a request has a positive {@link Integer} property named {@link #PROPERTY_RETRY}, the request
+ * will be recorded as a retry.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class RestConnectionMetricsFilter implements ClientRequestFilter, ClientResponseFilter, WriterInterceptor, ReaderInterceptor {
+	public static final String PROPERTY_RESPONSE_BYTES_COUNTER = RestConnectionMetricsFilter.class.getName()+".responseBytesCounter";
+	public static final String PROPERTY_RETRY = RestConnectionMetricsFilter.class.getName()+".retry";
+	private static final String PROPERTY_ENDPOINT_METRICS = RestConnectionMetricsFilter.class.getName()+".endpointMetrics";
+	private static final String PROPERTY_START_NANOS = RestConnectionMetricsFilter.class.getName()+".startNanos";
+	private static final String PROPERTY_CONTENT_ENCODED = RestConnectionMetricsFilter.class.getName()+".contentEncoded";
+	private final RestConnectionMetrics metrics;
+	
+	public RestConnectionMetricsFilter(RestConnectionMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void filter(ClientRequestContext requestContext) throws IOException {
+		EndpointMetrics endpointMetrics = metrics.getEndpointMetrics(requestContext.getMethod(), requestContext.getUri());
+		endpointMetrics.recordRequest();
+		Object retry = requestContext.getProperty(PROPERTY_RETRY);
+		if ( retry instanceof Integer && (Integer)retry > 0 ) {
+			endpointMetrics.recordRetry();
+		}
+		requestContext.setProperty(PROPERTY_ENDPOINT_METRICS, endpointMetrics);
+		requestContext.setProperty(PROPERTY_START_NANOS, System.nanoTime());
+	}
+	
+	@Override
+	public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+		Object endpointMetrics = requestContext.getProperty(PROPERTY_ENDPOINT_METRICS);
+		Object startNanos = requestContext.getProperty(PROPERTY_START_NANOS);
+		if ( endpointMetrics instanceof EndpointMetrics && startNanos instanceof Long ) {
+			((EndpointMetrics)endpointMetrics).recordResponse(responseContext.getStatus(), System.nanoTime()-(Long)startNanos);
+		}
+		if ( endpointMetrics instanceof EndpointMetrics && responseContext.hasEntity() && isContentEncoded(responseContext) ) {
+			// Count the encoded bytes here, before any content decoders are applied by the entity reader interceptors
+			requestContext.setProperty(PROPERTY_CONTENT_ENCODED, Boolean.TRUE);
+			responseContext.setEntityStream(new CountingInputStream(responseContext.getEntityStream(), 
+					((EndpointMetrics)endpointMetrics)::recordCompressedResponseBytes));
+		}
+	}
+	
+	private static boolean isContentEncoded(ClientResponseContext responseContext) {
+		String contentEncoding = responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+		return contentEncoding != null && !contentEncoding.isEmpty() && !"identity".equalsIgnoreCase(contentEncoding);
+	}
+	
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		Object endpointMetrics = context.getProperty(PROPERTY_ENDPOINT_METRICS);
+		if ( endpointMetrics instanceof EndpointMetrics ) {
+			context.setOutputStream(new CountingOutputStream(context.getOutputStream(), (EndpointMetrics)endpointMetrics));
+		}
+		context.proceed();
+	}
+	
+	@Override
+	public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+		Object endpointMetrics = context.getProperty(PROPERTY_ENDPOINT_METRICS);
+		if ( endpointMetrics instanceof EndpointMetrics ) {
+			LongConsumer counter = ((EndpointMetrics)endpointMetrics)::recordResponseBytes;
+			if ( Boolean.TRUE.equals(context.getProperty(PROPERTY_CONTENT_ENCODED)) ) {
+				counter = counter.andThen(((EndpointMetrics)endpointMetrics)::recordDecompressedResponseBytes);
+			}
+			Object responseBytesCounter = context.getProperty(PROPERTY_RESPONSE_BYTES_COUNTER);
+			if ( responseBytesCounter instanceof AtomicLong ) {
+				counter = counter.andThen(((AtomicLong)responseBytesCounter)::addAndGet);
+			}
+			context.setInputStream(new CountingInputStream(context.getInputStream(), counter));
+		}
+		return context.proceed();
+	}
+	
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private final EndpointMetrics endpointMetrics;
+		
+		public CountingOutputStream(OutputStream out, EndpointMetrics endpointMetrics) {
+			super(out);
+			this.endpointMetrics = endpointMetrics;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			endpointMetrics.recordRequestBytes(1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			endpointMetrics.recordRequestBytes(len);
+		}
+	}
+	
+	private static final class CountingInputStream extends FilterInputStream {
+		private final LongConsumer counter;
+		
+		public CountingInputStream(InputStream in, LongConsumer counter) {
+			super(in);
+			this.counter = counter;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int result = in.read();
+			if ( result >= 0 ) { count(1); }
+			return result;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int result = in.read(b, off, len);
+			if ( result > 0 ) { count(result); }
+			return result;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long result = in.skip(n);
+			if ( result > 0 ) { count(result); }
+			return result;
+		}
+		
+		private void count(long bytes) {
+			counter.accept(bytes);
+		}
+		
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
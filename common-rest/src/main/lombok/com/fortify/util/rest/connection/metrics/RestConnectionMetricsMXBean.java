@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX MXBean interface for publishing {@link RestConnectionMetrics}.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public interface RestConnectionMetricsMXBean {
+	/**
+	 * @return Snapshots for all endpoints for which metrics have been recorded,
+	 *         keyed by HTTP method and normalized path
+	 */
+	public Map<String, EndpointMetricsSnapshot> getEndpoints();
+	
+	/**
+	 * @return Total number of requests for all endpoints
+	 */
+	public long getRequestCount();
+	
+	/**
+	 * @return Current circuit breaker state, or null if no circuit breaker has been configured
+	 */
+	public String getCircuitBreakerState();
+	
+	/**
+	 * @return Number of requests rejected by the circuit breaker
+	 */
+	public long getCircuitBreakerRejectedRequests();
+	
+	/**
+	 * @return Number of requests currently in progress according to the bulkhead
+	 */
+	public int getBulkheadInFlightRequests();
+	
+	/**
+	 * @return Number of requests currently waiting in the bulkhead queue
+	 */
+	public int getBulkheadQueuedRequests();
+	
+	/**
+	 * @return Number of requests rejected by the bulkhead
+	 */
+	public long getBulkheadRejectedRequests();
+	
+	/**
+	 * Reset the metrics for all endpoints
+	 */
+	public void reset();
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.fortify.util.rest.connection.resilience.CircuitBreaker;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Immutable snapshot of all metrics recorded for a connection, as returned
+ * by {@link RestConnectionMetrics#getSnapshot()}. The circuit breaker state is 
+ * null, and bulkhead metrics are zero, if no circuit breaker or bulkhead has 
+ * been configured for the connection.
+ * 
+ * @author Ruud Senden
+ *
+ */
+@Getter @ToString
+public final class RestConnectionMetricsSnapshot {
+	private final Map<String, EndpointMetricsSnapshot> endpoints;
+	private final CircuitBreaker.State circuitBreakerState;
+	private final long circuitBreakerRejectedRequests;
+	private final int bulkheadInFlightRequests;
+	private final int bulkheadQueuedRequests;
+	private final long bulkheadRejectedRequests;
+	
+	RestConnectionMetricsSnapshot(Map<String, EndpointMetricsSnapshot> endpoints, CircuitBreaker.State circuitBreakerState, 
+			long circuitBreakerRejectedRequests, int bulkheadInFlightRequests, int bulkheadQueuedRequests, long bulkheadRejectedRequests) {
+		this.endpoints = Collections.unmodifiableMap(endpoints);
+		this.circuitBreakerState = circuitBreakerState;
+		this.circuitBreakerRejectedRequests = circuitBreakerRejectedRequests;
+		this.bulkheadInFlightRequests = bulkheadInFlightRequests;
+		this.bulkheadQueuedRequests = bulkheadQueuedRequests;
+		this.bulkheadRejectedRequests = bulkheadRejectedRequests;
+	}
+	
+	/**
+	 * @return Total number of requests for all endpoints
+	 */
+	public long getRequestCount() {
+		long result = 0;
+		for ( EndpointMetricsSnapshot endpoint : endpoints.values() ) {
+			result += endpoint.getRequestCount();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Bulkhead that limits the number of concurrent in-flight requests. Requests that 
+ * exceed this limit wait in a bounded queue, in the order in which they arrived, until
+ * another request completes. Requests are rejected with a {@link RequestRejectedException} 
+ * if the queue is full, or if they couldn't be started within the configured maximum wait
+ * time. This can be enabled for {@link com.fortify.util.rest.connection.AbstractRestConnection}
+ * instances through {@link com.fortify.util.rest.connection.AbstractRestConnectionConfig#bulkhead(Bulkhead)}.</p>
+ * 
+ * <p>This class is thread-safe.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class Bulkhead {
+	private final int maxConcurrentRequests;
+	private final Semaphore permits;
+	private final AtomicInteger queuedRequests = new AtomicInteger();
+	private final LongAdder rejectedRequests = new LongAdder();
+	private int maxQueuedRequests = 100;
+	private long maxWaitMillis = 60000;
+	
+	/**
+	 * Create a new {@link Bulkhead} instance allowing for the given
+	 * maximum number of concurrent requests.
+	 * @param maxConcurrentRequests
+	 */
+	public Bulkhead(int maxConcurrentRequests) {
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.permits = new Semaphore(maxConcurrentRequests, true);
+	}
+	
+	/**
+	 * Configure the maximum number of requests waiting for another request
+	 * to complete; default is 100. 
+	 * @param maxQueuedRequests
+	 * @return
+	 */
+	public Bulkhead maxQueuedRequests(int maxQueuedRequests) {
+		this.maxQueuedRequests = maxQueuedRequests;
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum time in milliseconds that a request may wait for
+	 * another request to complete; default is 60000.
+	 * @param maxWaitMillis
+	 * @return
+	 */
+	public Bulkhead maxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+		return this;
+	}
+	
+	/**
+	 * Wait until a request can be started. If this method returns normally,
+	 * the caller must call {@link #release()} once the request has completed.
+	 * @throws RequestRejectedException if the request cannot be started
+	 */
+	public void acquire() {
+		boolean queued = false;
+		try {
+			// Timed tryAcquire respects fairness, contrary to the untimed variant
+			if ( permits.tryAcquire(0, TimeUnit.MILLISECONDS) ) {
+				return;
+			}
+			if ( queuedRequests.incrementAndGet() > maxQueuedRequests ) {
+				queuedRequests.decrementAndGet();
+				reject("Too many queued requests");
+			}
+			queued = true;
+			if ( !permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS) ) {
+				reject("Timed out waiting for other requests to complete");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reject("Interrupted while waiting for other requests to complete");
+		} finally {
+			if ( queued ) { queuedRequests.decrementAndGet(); }
+		}
+	}
+	
+	/**
+	 * Release the permit acquired through {@link #acquire()}
+	 */
+	public void release() {
+		permits.release();
+	}
+	
+	/**
+	 * Get the number of requests currently in progress
+	 * @return
+	 */
+	public int getInFlightRequests() {
+		return maxConcurrentRequests-permits.availablePermits();
+	}
+	
+	/**
+	 * Get the number of requests currently waiting for other requests to complete
+	 * @return
+	 */
+	public int getQueuedRequests() {
+		return queuedRequests.get();
+	}
+	
+	/**
+	 * Get the number of requests that were rejected by this bulkhead
+	 * @return
+	 */
+	public long getRejectedRequests() {
+		return rejectedRequests.sum();
+	}
+	
+	private void reject(String reason) {
+		rejectedRequests.increment();
+		throw new RequestRejectedException("Request rejected by bulkhead: "+reason);
+	}
+}
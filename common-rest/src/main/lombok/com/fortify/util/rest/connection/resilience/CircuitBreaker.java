@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>Circuit breaker that stops sending requests to a remote system that is failing or 
+ * responding slowly, allowing the remote system to recover instead of piling up more
+ * requests. This can be enabled for {@link com.fortify.util.rest.connection.AbstractRestConnection}
+ * instances through {@link com.fortify.util.rest.connection.AbstractRestConnectionConfig#circuitBreaker(CircuitBreaker)}.</p>
+ * 
+ * <p>The circuit breaker records the outcome of the most recent requests in a sliding window
+ * (see {@link #slidingWindowSize(int)}). A request is considered failed if it results in an
+ * exception like a connection error or time-out, or in a 5xx response, and is considered slow 
+ * if it takes longer than the configured slow request duration to receive the response headers.
+ * Once the sliding window contains the minimum number of requests, the circuit breaker opens 
+ * if either the failure rate or the slow request rate reaches the configured threshold.</p>
+ * 
+ * <p>While the circuit breaker is open, requests are rejected immediately with a 
+ * {@link RequestRejectedException}. After the configured open duration, the circuit breaker
+ * becomes half-open, allowing a limited number of probe requests. If any of these probe requests
+ * fails or is slow, the circuit breaker opens again; otherwise it closes, and requests are 
+ * processed normally.</p>
+ * 
+ * <p>This class is thread-safe.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+public final class CircuitBreaker {
+	public static enum State { CLOSED, OPEN, HALF_OPEN }
+	private final LongAdder rejectedRequests = new LongAdder();
+	private int failureRateThreshold = 50;
+	private int slowRequestRateThreshold = 100;
+	private long slowRequestDurationMillis = 60000;
+	private int minimumNumberOfRequests = 10;
+	private long openDurationMillis = 30000;
+	private int permittedProbeRequests = 3;
+	private String name = "";
+	
+	// State below is guarded by this instance's monitor
+	private volatile State state = State.CLOSED;
+	private boolean[] failedOutcomes = new boolean[20];
+	private boolean[] slowOutcomes = new boolean[20];
+	private int outcomeIndex, outcomeCount, failedCount, slowCount;
+	private long openedAtNanos;
+	private int remainingProbeRequests, completedProbeRequests;
+	
+	public CircuitBreaker() {}
+	
+	/**
+	 * Configure the failure rate percentage at which the circuit breaker opens; default is 50.
+	 * @param failureRateThreshold
+	 * @return
+	 */
+	public CircuitBreaker failureRateThreshold(int failureRateThreshold) {
+		this.failureRateThreshold = failureRateThreshold;
+		return this;
+	}
+	
+	/**
+	 * Configure the slow request rate percentage at which the circuit breaker opens; default 
+	 * is 100, meaning that the circuit breaker opens if all requests in the sliding window
+	 * are slow.
+	 * @param slowRequestRateThreshold
+	 * @return
+	 */
+	public CircuitBreaker slowRequestRateThreshold(int slowRequestRateThreshold) {
+		this.slowRequestRateThreshold = slowRequestRateThreshold;
+		return this;
+	}
+	
+	/**
+	 * Configure the time in milliseconds after which a request is considered slow; 
+	 * default is 60000.
+	 * @param slowRequestDurationMillis
+	 * @return
+	 */
+	public CircuitBreaker slowRequestDurationMillis(long slowRequestDurationMillis) {
+		this.slowRequestDurationMillis = slowRequestDurationMillis;
+		return this;
+	}
+	
+	/**
+	 * Configure the number of most recent requests to be taken into account
+	 * for calculating failure and slow request rates; default is 20.
+	 * @param slidingWindowSize
+	 * @return
+	 */
+	public synchronized CircuitBreaker slidingWindowSize(int slidingWindowSize) {
+		this.failedOutcomes = new boolean[slidingWindowSize];
+		this.slowOutcomes = new boolean[slidingWindowSize];
+		resetOutcomes();
+		return this;
+	}
+	
+	/**
+	 * Configure the minimum number of requests in the sliding window before
+	 * failure and slow request rates are evaluated; default is 10.
+	 * @param minimumNumberOfRequests
+	 * @return
+	 */
+	public CircuitBreaker minimumNumberOfRequests(int minimumNumberOfRequests) {
+		this.minimumNumberOfRequests = minimumNumberOfRequests;
+		return this;
+	}
+	
+	/**
+	 * Configure the time in milliseconds that the circuit breaker stays open
+	 * before allowing probe requests; default is 30000.
+	 * @param openDurationMillis
+	 * @return
+	 */
+	public CircuitBreaker openDurationMillis(long openDurationMillis) {
+		this.openDurationMillis = openDurationMillis;
+		return this;
+	}
+	
+	/**
+	 * Configure the number of probe requests allowed while the circuit breaker
+	 * is half-open; default is 3.
+	 * @param permittedProbeRequests
+	 * @return
+	 */
+	public CircuitBreaker permittedProbeRequests(int permittedProbeRequests) {
+		this.permittedProbeRequests = permittedProbeRequests;
+		return this;
+	}
+	
+	/**
+	 * Configure the name of this circuit breaker, used for logging state changes.
+	 * @param name
+	 * @return
+	 */
+	public CircuitBreaker name(String name) {
+		this.name = name+" ";
+		return this;
+	}
+	
+	/**
+	 * Get the current state of this circuit breaker
+	 * @return
+	 */
+	public State getState() {
+		return state;
+	}
+	
+	/**
+	 * Get the number of requests that were rejected by this circuit breaker
+	 * @return
+	 */
+	public long getRejectedRequests() {
+		return rejectedRequests.sum();
+	}
+	
+	/**
+	 * Check whether a request is permitted. If this method returns true, the caller 
+	 * must call {@link #onResult(boolean, long)} once the request has completed.
+	 * @return true if the request is permitted, false if it should be rejected
+	 */
+	public synchronized boolean tryAcquirePermission() {
+		if ( state == State.OPEN && System.nanoTime()-openedAtNanos >= TimeUnit.MILLISECONDS.toNanos(openDurationMillis) ) {
+			transitionTo(State.HALF_OPEN);
+		}
+		if ( state == State.CLOSED || (state == State.HALF_OPEN && remainingProbeRequests-- > 0) ) {
+			return true;
+		}
+		rejectedRequests.increment();
+		return false;
+	}
+	
+	/**
+	 * Record the result of a request for which {@link #tryAcquirePermission()} returned true.
+	 * @param failed Whether the request failed
+	 * @param durationNanos Time in nanoseconds until the response headers were received,
+	 *                      or until the request failed
+	 */
+	public synchronized void onResult(boolean failed, long durationNanos) {
+		boolean slow = durationNanos >= TimeUnit.MILLISECONDS.toNanos(slowRequestDurationMillis);
+		switch ( state ) {
+		case CLOSED:
+			recordOutcome(failed, slow);
+			if ( outcomeCount >= minimumNumberOfRequests && isThresholdReached() ) {
+				transitionTo(State.OPEN);
+			}
+			break;
+		case HALF_OPEN:
+			if ( failed || slow ) {
+				transitionTo(State.OPEN);
+			} else if ( ++completedProbeRequests >= permittedProbeRequests ) {
+				transitionTo(State.CLOSED);
+			}
+			break;
+		default:
+			// Ignore results for requests that were started before the circuit breaker opened
+		}
+	}
+	
+	private boolean isThresholdReached() {
+		return failedCount*100 >= failureRateThreshold*outcomeCount
+			|| slowCount*100 >= slowRequestRateThreshold*outcomeCount;
+	}
+	
+	private void recordOutcome(boolean failed, boolean slow) {
+		if ( outcomeCount == failedOutcomes.length ) {
+			if ( failedOutcomes[outcomeIndex] ) { failedCount--; }
+			if ( slowOutcomes[outcomeIndex] ) { slowCount--; }
+		} else {
+			outcomeCount++;
+		}
+		failedOutcomes[outcomeIndex] = failed;
+		slowOutcomes[outcomeIndex] = slow;
+		if ( failed ) { failedCount++; }
+		if ( slow ) { slowCount++; }
+		outcomeIndex = (outcomeIndex+1) % failedOutcomes.length;
+	}
+	
+	private void resetOutcomes() {
+		outcomeIndex = outcomeCount = failedCount = slowCount = 0;
+		Arrays.fill(failedOutcomes, false);
+		Arrays.fill(slowOutcomes, false);
+	}
+	
+	private void transitionTo(State newState) {
+		switch ( newState ) {
+		case OPEN:
+			log.warn(name+"Circuit breaker opened; rejecting requests for "+openDurationMillis+" ms");
+			openedAtNanos = System.nanoTime();
+			break;
+		case HALF_OPEN:
+			log.info(name+"Circuit breaker half-open; allowing "+permittedProbeRequests+" probe requests");
+			remainingProbeRequests = permittedProbeRequests;
+			completedProbeRequests = 0;
+			break;
+		case CLOSED:
+			log.info(name+"Circuit breaker closed");
+			resetOutcomes();
+			break;
+		}
+		state = newState;
+	}
+}
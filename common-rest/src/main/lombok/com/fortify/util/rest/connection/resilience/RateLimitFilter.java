@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.resilience;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+
+/**
+ * JAX-RS client filter that waits for the configured {@link RateLimiter} to admit
+ * each request before the request is sent, and updates the {@link RateLimiter} 
+ * based on the rate limit headers returned with each response. 
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class RateLimitFilter implements ClientRequestFilter, ClientResponseFilter {
+	/**
+	 * Priority for registering this filter. This filter should be executed before any 
+	 * other request filters, to avoid the time spent waiting for the rate limiter to
+	 * be included in request metrics and logging.
+	 */
+	public static final int PRIORITY = Priorities.AUTHENTICATION-100;
+	private final RateLimiter rateLimiter;
+	
+	public RateLimitFilter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	@Override
+	public void filter(ClientRequestContext requestContext) throws IOException {
+		try {
+			rateLimiter.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for rate limiter");
+		}
+	}
+	
+	@Override
+	public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+		rateLimiter.update(responseContext::getHeaderString);
+	}
+}
@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.resilience;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.lang.StringUtils;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>Client-side token bucket rate limiter that learns its rate from the rate limit headers
+ * returned by the remote system, pacing requests before they get rejected with an HTTP 429 
+ * (TOO_MANY_REQUESTS) response. This can be enabled for an {@link com.fortify.util.rest.connection.AbstractRestConnection}
+ * through {@link com.fortify.util.rest.connection.AbstractRestConnectionConfig#rateLimiter(RateLimiter)}.</p>
+ * 
+ * <p>Until the remote system has returned any rate limit headers, requests are not limited.
+ * Once the remaining number of requests in the current rate limit window drops below the
+ * configured pacing threshold (see {@link #pacingThreshold(double)}), the remaining requests 
+ * are evenly spread over the time left until the rate limit window resets. If no requests
+ * are remaining, no further requests are admitted until the rate limit window resets.
+ * Similarly, no requests are admitted for the period given to {@link #pause(long)}, for 
+ * example after a request has been rejected.</p>
+ * 
+ * <p>Waiting threads are admitted in the order in which they called {@link #acquire()}.
+ * As the wait takes place before a request is sent, waiting requests do not hold a
+ * pooled connection.</p>
+ * 
+ * <p>A single instance can be shared between multiple connections, for example if the
+ * remote system applies rate limits per tenant instead of per connection; see 
+ * {@link #shared(String)}. This class is thread-safe.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+public final class RateLimiter {
+	private static final Map<String, RateLimiter> SHARED = new ConcurrentHashMap<>();
+	private final ReentrantLock admissionLock = new ReentrantLock(true);
+	private final AtomicLong throttledRequests = new AtomicLong();
+	private final AtomicLong throttledNanos = new AtomicLong();
+	private final LongSupplier nanoClock;
+	private String limitHeaderName = "X-Rate-Limit-Limit";
+	private String remainingHeaderName = "X-Rate-Limit-Remaining";
+	private String resetHeaderName = "X-Rate-Limit-Reset";
+	private double pacingThreshold = 0.5;
+	private int maxBurst = 1;
+	private String logPrefix = "";
+	
+	// State below is guarded by this instance's monitor
+	private long intervalNanos = 0;
+	private double storedPermits = 1;
+	private long lastRefillNanos;
+	private long pausedUntilNanos;
+	
+	public RateLimiter() {
+		this(System::nanoTime);
+	}
+	
+	/**
+	 * Constructor allowing for a custom clock, used by unit tests
+	 * @param nanoClock
+	 */
+	RateLimiter(LongSupplier nanoClock) {
+		this.nanoClock = nanoClock;
+		this.lastRefillNanos = nanoClock.getAsLong();
+		this.pausedUntilNanos = lastRefillNanos;
+	}
+	
+	/**
+	 * Get the {@link RateLimiter} instance registered under the given key, creating
+	 * a new instance if no instance has been registered yet. This allows for sharing
+	 * a single {@link RateLimiter} between connections that are subject to the same
+	 * rate limit, like all connections for a single tenant.
+	 * @param key
+	 * @return
+	 */
+	public static final RateLimiter shared(String key) {
+		return SHARED.computeIfAbsent(key, k -> new RateLimiter());
+	}
+	
+	/**
+	 * Configure the name of the response header that specifies the maximum number of 
+	 * requests in a rate limit window; default is X-Rate-Limit-Limit.
+	 * @param limitHeaderName
+	 * @return
+	 */
+	public RateLimiter limitHeaderName(String limitHeaderName) {
+		this.limitHeaderName = limitHeaderName;
+		return this;
+	}
+	
+	/**
+	 * Configure the name of the response header that specifies the number of 
+	 * requests remaining in the current rate limit window; default is X-Rate-Limit-Remaining.
+	 * @param remainingHeaderName
+	 * @return
+	 */
+	public RateLimiter remainingHeaderName(String remainingHeaderName) {
+		this.remainingHeaderName = remainingHeaderName;
+		return this;
+	}
+	
+	/**
+	 * Configure the name of the response header that specifies the number of seconds 
+	 * until the current rate limit window resets; default is X-Rate-Limit-Reset.
+	 * @param resetHeaderName
+	 * @return
+	 */
+	public RateLimiter resetHeaderName(String resetHeaderName) {
+		this.resetHeaderName = resetHeaderName;
+		return this;
+	}
+	
+	/**
+	 * Configure the fraction of the rate limit below which requests are paced; default is 0.5, 
+	 * meaning that requests are paced once less than half of the requests in the current rate 
+	 * limit window are remaining. A value of 1 means that requests are always paced. If the 
+	 * remote system doesn't return the limit header, requests are always paced.
+	 * @param pacingThreshold
+	 * @return
+	 */
+	public RateLimiter pacingThreshold(double pacingThreshold) {
+		this.pacingThreshold = pacingThreshold;
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum number of requests that may be sent in a burst while requests
+	 * are being paced; default is 1, meaning requests are evenly spaced.
+	 * @param maxBurst
+	 * @return
+	 */
+	public synchronized RateLimiter maxBurst(int maxBurst) {
+		this.maxBurst = Math.max(1, maxBurst);
+		this.storedPermits = Math.min(storedPermits, this.maxBurst);
+		return this;
+	}
+	
+	public RateLimiter logPrefix(String logPrefix) {
+		this.logPrefix = logPrefix+" ";
+		return this;
+	}
+	
+	/**
+	 * Wait until a request may be sent. Callers are admitted in the order in which 
+	 * they called this method.
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		long startNanos = nanoClock.getAsLong();
+		admissionLock.lockInterruptibly();
+		try {
+			synchronized (this) {
+				long waitNanos;
+				while ( (waitNanos = refillAndGetWaitNanos(nanoClock.getAsLong())) > 0 ) {
+					TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+				}
+				if ( intervalNanos > 0 ) { storedPermits -= 1; }
+			}
+		} finally {
+			admissionLock.unlock();
+		}
+		long waitedNanos = nanoClock.getAsLong()-startNanos;
+		if ( waitedNanos > TimeUnit.MILLISECONDS.toNanos(1) ) {
+			throttledRequests.incrementAndGet();
+			throttledNanos.addAndGet(waitedNanos);
+		}
+	}
+	
+	/**
+	 * Update the rate based on the rate limit headers returned by the remote system.
+	 * The given function should return the value for the given header name, or null 
+	 * if the header is not present. This method does nothing if the remaining or 
+	 * reset header is not present.
+	 * @param headers
+	 */
+	public void update(Function<String, String> headers) {
+		long limit = parseLong(headers.apply(limitHeaderName));
+		long remaining = parseLong(headers.apply(remainingHeaderName));
+		long resetSeconds = parseLong(headers.apply(resetHeaderName));
+		if ( remaining >= 0 && resetSeconds != Long.MIN_VALUE ) {
+			// Some systems may return zero or negative values once the window has reset
+			long resetNanos = TimeUnit.SECONDS.toNanos(Math.max(1, resetSeconds));
+			if ( remaining == 0 ) {
+				pauseNanos(resetNanos, false);
+			} else {
+				boolean pace = limit <= 0 || remaining < limit*pacingThreshold;
+				setIntervalNanos(pace ? resetNanos/remaining : 0);
+			}
+		}
+	}
+	
+	/**
+	 * Stop admitting requests for the given number of milliseconds, for example 
+	 * because a request was rejected by the remote system.
+	 * @param millis
+	 */
+	public void pause(long millis) {
+		pauseNanos(TimeUnit.MILLISECONDS.toNanos(millis), true);
+	}
+	
+	private synchronized void pauseNanos(long nanos, boolean rejected) {
+		long now = nanoClock.getAsLong();
+		if ( now+nanos-pausedUntilNanos > 0 ) {
+			pausedUntilNanos = now+nanos;
+			storedPermits = 0;
+			if ( rejected ) {
+				log.info(logPrefix+"Request was rate-limited; pausing requests for "+TimeUnit.NANOSECONDS.toMillis(nanos)+" ms");
+			} else {
+				// A new rate limit window starts after the pause; the rate for that 
+				// window will be learned from subsequent responses 
+				intervalNanos = 0;
+				log.debug(logPrefix+"Rate limit reached; pausing requests for "+TimeUnit.NANOSECONDS.toMillis(nanos)+" ms");
+			}
+			notifyAll();
+		}
+	}
+	
+	private synchronized void setIntervalNanos(long intervalNanos) {
+		if ( intervalNanos != this.intervalNanos ) {
+			refillAndGetWaitNanos(nanoClock.getAsLong());
+			if ( this.intervalNanos == 0 ) {
+				// Start pacing with a full bucket
+				storedPermits = maxBurst;
+			}
+			if ( log.isDebugEnabled() && (intervalNanos==0) != (this.intervalNanos==0) ) {
+				log.debug(logPrefix+(intervalNanos==0 ? "Stopped pacing requests" 
+						: "Pacing requests at "+TimeUnit.NANOSECONDS.toMillis(intervalNanos)+" ms intervals"));
+			}
+			this.intervalNanos = intervalNanos;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Get the number of nanoseconds until a request may be sent, used by unit tests
+	 * @return
+	 */
+	synchronized long getWaitNanos() {
+		return refillAndGetWaitNanos(nanoClock.getAsLong());
+	}
+	
+	/**
+	 * Add any permits that have accumulated since the last refill, and return
+	 * the number of nanoseconds until a permit is available. Must be called
+	 * while holding this instance's monitor.
+	 * @param now
+	 * @return
+	 */
+	private long refillAndGetWaitNanos(long now) {
+		long pausedNanos = pausedUntilNanos-now;
+		if ( pausedNanos > 0 ) {
+			lastRefillNanos = pausedUntilNanos;
+			return pausedNanos;
+		}
+		if ( intervalNanos == 0 ) {
+			lastRefillNanos = now;
+			return 0;
+		}
+		storedPermits = Math.min(maxBurst, storedPermits + (double)(now-lastRefillNanos)/intervalNanos);
+		lastRefillNanos = now;
+		return storedPermits >= 1 ? 0 : (long)Math.ceil((1-storedPermits)*intervalNanos);
+	}
+	
+	/**
+	 * Get the number of requests that had to wait before being admitted.
+	 * @return
+	 */
+	public long getThrottledRequests() {
+		return throttledRequests.get();
+	}
+	
+	/**
+	 * Get the total time in milliseconds that requests had to wait before being admitted.
+	 * @return
+	 */
+	public long getThrottledMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+	}
+	
+	private static final long parseLong(String value) {
+		if ( StringUtils.isNotBlank(value) ) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch ( NumberFormatException e ) {
+				log.debug("Ignoring invalid rate limit header value "+value);
+			}
+		}
+		return Long.MIN_VALUE;
+	}
+}
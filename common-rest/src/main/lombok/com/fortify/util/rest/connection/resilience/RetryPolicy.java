@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.resilience;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.ws.rs.HttpMethod;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * <p>This class describes how requests that fail due to transient errors, like connection 
+ * resets, read time-outs or 502 (Bad Gateway), 503 (Service Unavailable) and 504 (Gateway 
+ * Timeout) responses, should be retried. This can be configured for 
+ * {@link com.fortify.util.rest.connection.AbstractRestConnection} instances through
+ * {@link com.fortify.util.rest.connection.AbstractRestConnectionConfig#retryPolicy(RetryPolicy)}.</p>
+ * 
+ * <p>By default, only idempotent GET, HEAD and PUT requests are retried, for at most 3 attempts 
+ * in total. Retries are delayed using exponential back-off with full jitter, meaning that the delay
+ * before every retry is a random value between zero and the exponentially growing back-off, to 
+ * avoid many clients retrying at the same time. Requests are no longer retried once the maximum 
+ * elapsed time since the first attempt would be exceeded.</p>
+ * 
+ * <p>Each {@link RetryPolicy} instance maintains a retry budget that limits the number of retries 
+ * relative to the number of requests, avoiding retries from overloading a remote system that is 
+ * already failing. Every request adds a fraction of a retry (see {@link #retryBudgetRatio(double)}) 
+ * to the budget, up to the configured maximum (see {@link #retryBudgetMax(int)}), and every retry 
+ * consumes one retry from the budget. Requests are not retried if the budget is exhausted. Note 
+ * that the budget is shared by all connections that use the same {@link RetryPolicy} instance.</p>
+ * 
+ * <p>Use {@link #newRetryState()} to track the retries for a single request.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class RetryPolicy {
+	/**
+	 * Default classifier for retryable exceptions, accepting any {@link IOException} in the
+	 * cause chain except for errors that are unlikely to be resolved by retrying, like unknown 
+	 * hosts, SSL handshake failures and JSON parsing errors, and except for interrupted I/O 
+	 * operations.
+	 */
+	public static final Predicate<Throwable> DEFAULT_RETRY_ON_EXCEPTION = RetryPolicy::isTransientIOException;
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder retriesExhausted = new LongAdder();
+	private final LongAdder budgetExhausted = new LongAdder();
+	private Set<String> httpMethods = new HashSet<>(Arrays.asList(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.PUT));
+	private Set<Integer> retryOnStatus = new HashSet<>(Arrays.asList(502, 503, 504));
+	private Predicate<Throwable> retryOnException = DEFAULT_RETRY_ON_EXCEPTION;
+	private int maxAttempts = 3;
+	private long initialBackoffMillis = 500;
+	private long maxBackoffMillis = 30000;
+	private long maxElapsedMillis = 120000;
+	private double retryBudgetRatio = 0.2;
+	private int retryBudgetMax = 10;
+	
+	// Guarded by this instance's monitor
+	private double retryBudget = retryBudgetMax;
+	
+	public RetryPolicy() {}
+	
+	/**
+	 * Configure the HTTP methods for which requests may be retried; default is
+	 * GET, HEAD and PUT. Only idempotent methods should be configured here, unless
+	 * the remote system is known to safely handle duplicate requests.
+	 * @param httpMethods
+	 * @return
+	 */
+	public RetryPolicy httpMethods(String... httpMethods) {
+		this.httpMethods = new HashSet<>(Arrays.asList(httpMethods));
+		return this;
+	}
+	
+	/**
+	 * Configure the HTTP response status codes for which requests will be retried; 
+	 * default is 502, 503 and 504.
+	 * @param statusCodes
+	 * @return
+	 */
+	public RetryPolicy retryOnStatus(Integer... statusCodes) {
+		this.retryOnStatus = new HashSet<>(Arrays.asList(statusCodes));
+		return this;
+	}
+	
+	/**
+	 * Configure the classifier that determines whether requests failing with 
+	 * a given exception will be retried; default is {@link #DEFAULT_RETRY_ON_EXCEPTION}.
+	 * @param retryOnException
+	 * @return
+	 */
+	public RetryPolicy retryOnException(Predicate<Throwable> retryOnException) {
+		this.retryOnException = retryOnException;
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum number of attempts, including the initial attempt; 
+	 * default is 3. A value of 1 disables retries.
+	 * @param maxAttempts
+	 * @return
+	 */
+	public RetryPolicy maxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+	
+	/**
+	 * Configure the back-off in milliseconds for the first retry; default is 500.
+	 * The back-off doubles for every subsequent retry.
+	 * @param initialBackoffMillis
+	 * @return
+	 */
+	public RetryPolicy initialBackoffMillis(long initialBackoffMillis) {
+		this.initialBackoffMillis = initialBackoffMillis;
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum back-off in milliseconds; default is 30000.
+	 * @param maxBackoffMillis
+	 * @return
+	 */
+	public RetryPolicy maxBackoffMillis(long maxBackoffMillis) {
+		this.maxBackoffMillis = maxBackoffMillis;
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum time in milliseconds since the initial attempt within 
+	 * which retries may be started; default is 120000.
+	 * @param maxElapsedMillis
+	 * @return
+	 */
+	public RetryPolicy maxElapsedMillis(long maxElapsedMillis) {
+		this.maxElapsedMillis = maxElapsedMillis;
+		return this;
+	}
+	
+	/**
+	 * Configure the fraction of a retry that is added to the retry budget for every 
+	 * request; default is 0.2, meaning that in the long run, at most one retry is 
+	 * allowed for every 5 requests.
+	 * @param retryBudgetRatio
+	 * @return
+	 */
+	public RetryPolicy retryBudgetRatio(double retryBudgetRatio) {
+		this.retryBudgetRatio = retryBudgetRatio;
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum number of retries in the retry budget; default is 10.
+	 * The budget initially contains this number of retries.
+	 * @param retryBudgetMax
+	 * @return
+	 */
+	public synchronized RetryPolicy retryBudgetMax(int retryBudgetMax) {
+		this.retryBudgetMax = retryBudgetMax;
+		this.retryBudget = retryBudgetMax;
+		return this;
+	}
+	
+	/**
+	 * Indicate whether requests for the given HTTP method may be retried
+	 * @param httpMethod
+	 * @return
+	 */
+	public boolean isRetryableMethod(String httpMethod) {
+		return httpMethods.contains(httpMethod);
+	}
+	
+	/**
+	 * Create a new {@link RetryState} instance for tracking the retries for a single 
+	 * request. This also adds to the retry budget, so this method should be called
+	 * once for every request.
+	 * @return
+	 */
+	public RetryState newRetryState() {
+		synchronized (this) {
+			retryBudget = Math.min(retryBudgetMax, retryBudget+retryBudgetRatio);
+		}
+		return new RetryState(this);
+	}
+	
+	/**
+	 * Get the total number of retries allowed by this {@link RetryPolicy}.
+	 * @return
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+	
+	/**
+	 * Get the number of failed requests that were not retried (any further) because
+	 * either the maximum number of attempts, the maximum elapsed time or the retry 
+	 * budget had been exhausted.
+	 * @return
+	 */
+	public long getRetriesExhausted() {
+		return retriesExhausted.sum();
+	}
+	
+	/**
+	 * Get the number of retries that were denied because the retry budget was exhausted.
+	 * @return
+	 */
+	public long getRetryBudgetExhausted() {
+		return budgetExhausted.sum();
+	}
+	
+	void recordRetriesExhausted() {
+		retriesExhausted.increment();
+	}
+	
+	boolean isRetryableStatus(int status) {
+		return retryOnStatus.contains(status);
+	}
+	
+	boolean isRetryableException(Throwable t) {
+		return retryOnException.test(t);
+	}
+	
+	/**
+	 * Get the delay before the given retry, or -1 if the retry would
+	 * exceed the maximum number of attempts or maximum elapsed time.
+	 * @param retry Retry number, starting at 1 for the first retry
+	 * @param elapsedMillis Time elapsed since the initial attempt
+	 * @return
+	 */
+	long getRetryDelayMillis(int retry, long elapsedMillis) {
+		if ( retry >= maxAttempts ) { return -1; }
+		long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retry-1, 30));
+		long delay = ThreadLocalRandom.current().nextLong(backoff+1);
+		return elapsedMillis+delay > maxElapsedMillis ? -1 : delay;
+	}
+	
+	/**
+	 * Consume a retry from the retry budget
+	 * @return true if a retry was available in the budget, false otherwise
+	 */
+	boolean acquireRetry() {
+		synchronized (this) {
+			if ( retryBudget < 1 ) {
+				budgetExhausted.increment();
+				return false;
+			}
+			retryBudget -= 1;
+		}
+		retries.increment();
+		return true;
+	}
+	
+	private static final boolean isTransientIOException(Throwable t) {
+		for ( Throwable cause = t; cause != null; cause = cause.getCause()==cause ? null : cause.getCause() ) {
+			if ( cause instanceof UnknownHostException 
+					|| cause instanceof SSLHandshakeException 
+					|| cause instanceof SSLPeerUnverifiedException
+					|| cause instanceof JsonProcessingException ) {
+				return false;
+			}
+			if ( cause instanceof InterruptedIOException ) {
+				return cause instanceof SocketTimeoutException || cause instanceof ConnectTimeoutException;
+			}
+			if ( cause instanceof IOException ) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
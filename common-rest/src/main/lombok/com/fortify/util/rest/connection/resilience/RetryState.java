@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.resilience;
+
+/**
+ * This class tracks the retries for a single request according to the {@link RetryPolicy}
+ * from which it was created. Callers should call either {@link #getRetryDelayMillis(int)} 
+ * or {@link #getRetryDelayMillis(Throwable)} after every failed attempt, and retry the
+ * request after the returned delay if the returned delay is not negative. Instances 
+ * of this class are not thread-safe.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class RetryState {
+	private final RetryPolicy policy;
+	private final long startMillis = System.currentTimeMillis();
+	private int retries = 0;
+	
+	RetryState(RetryPolicy policy) {
+		this.policy = policy;
+	}
+	
+	/**
+	 * Get the delay in milliseconds before retrying a request that resulted in a response
+	 * with the given status code, or -1 if the request should not be retried.
+	 * @param status
+	 * @return
+	 */
+	public long getRetryDelayMillis(int status) {
+		return policy.isRetryableStatus(status) ? nextRetryDelayMillis() : -1;
+	}
+	
+	/**
+	 * Get the delay in milliseconds before retrying a request that failed with
+	 * the given exception, or -1 if the request should not be retried.
+	 * @param t
+	 * @return
+	 */
+	public long getRetryDelayMillis(Throwable t) {
+		return !Thread.currentThread().isInterrupted() && policy.isRetryableException(t) ? nextRetryDelayMillis() : -1;
+	}
+	
+	/**
+	 * Get the number of retries so far
+	 * @return
+	 */
+	public int getRetries() {
+		return retries;
+	}
+	
+	/**
+	 * Wait for the given number of milliseconds before retrying
+	 * @param delayMillis
+	 */
+	public static final void sleep(long delayMillis) {
+		try {
+			Thread.sleep(delayMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting to retry request", e);
+		}
+	}
+	
+	private long nextRetryDelayMillis() {
+		long result = policy.getRetryDelayMillis(retries+1, System.currentTimeMillis()-startMillis);
+		if ( result >= 0 && policy.acquireRetry() ) {
+			retries++;
+			return result;
+		}
+		policy.recordRetriesExhausted();
+		return -1;
+	}
+}
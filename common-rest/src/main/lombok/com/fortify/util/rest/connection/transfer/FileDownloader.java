@@ -0,0 +1,506 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Invocation.Builder;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import com.fortify.util.rest.connection.IRestConnection;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * <p>This class downloads the response of a request to a file. Data is written to
+ * a temporary <code>.part</code> file next to the target file using a {@link FileChannel},
+ * which is moved to the target file once the download has completed.</p>
+ * 
+ * <p>For GET requests, the following features are supported if the server supports
+ * HTTP range requests:</p>
+ * <ul>
+ *  <li>If the download fails, it is retried (up to the configured maximum number 
+ *      of attempts), continuing from the data that was downloaded so far.</li>
+ *  <li>If a <code>.part</code> file exists from a previous download, the download 
+ *      continues from the end of this file (unless disabled through {@link #resume(boolean)}).
+ *      This requires the previous download to have recorded a validator (strong ETag or
+ *      Last-Modified response header) in a <code>.part.validator</code> file; otherwise 
+ *      the download restarts from the beginning.</li>
+ *  <li>Large downloads can be split into multiple ranges that are downloaded in parallel,
+ *      see {@link #parallelRanges(int)}. Note that a parallel download cannot be resumed
+ *      after the download has failed; failed ranges are retried individually though.</li>
+ * </ul>
+ * 
+ * <p>Range requests include an <code>If-Range</code> header with the known validator,
+ * such that the remote system returns the full, current content instead of a partial
+ * range if the remote file has changed in the meantime.</p>
+ * 
+ * <p>As a new request is built for every attempt and every range, the request 
+ * {@link Builder} is provided through a {@link Supplier}. This allows for example
+ * for generating a new single-use download token for every request.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+public final class FileDownloader {
+	private static final ThreadFactory RANGE_REQUEST_THREAD_FACTORY = new ThreadFactoryBuilder()
+			.setNameFormat("file-download-range-request-%d").setDaemon(true).build();
+	private static final Pattern EXPR_CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+	private static final long TRANSFER_CHUNK_SIZE = 1024*1024;
+	private static final long REPORTING_INTERVAL = 1024*1024;
+	private final IRestConnection conn;
+	private final Supplier<Builder> requestSupplier;
+	private String httpMethod = HttpMethod.GET;
+	private int maxAttempts = 3;
+	private int parallelRanges = 1;
+	private long minRangeSize = 16*1024*1024;
+	private boolean resume = true;
+	private ITransferProgressListener progressListener;
+	
+	/**
+	 * Create a new {@link FileDownloader} instance.
+	 * @param conn {@link IRestConnection} used to execute requests
+	 * @param requestSupplier {@link Supplier} that provides a new request {@link Builder} for every request
+	 */
+	public FileDownloader(IRestConnection conn, Supplier<Builder> requestSupplier) {
+		this.conn = conn;
+		this.requestSupplier = requestSupplier;
+	}
+	
+	/**
+	 * Configure the HTTP method; default is GET. Resuming and parallel range requests
+	 * are only supported for GET requests.
+	 */
+	public FileDownloader httpMethod(String httpMethod) {
+		this.httpMethod = httpMethod;
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum number of attempts for the download, or for each range
+	 * if parallel range downloads are enabled; default is 3.
+	 */
+	public FileDownloader maxAttempts(int maxAttempts) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+		return this;
+	}
+	
+	/**
+	 * Configure the maximum number of ranges to be downloaded in parallel; default is 1.
+	 * The actual number of ranges depends on the file size and {@link #minRangeSize(long)}.
+	 */
+	public FileDownloader parallelRanges(int parallelRanges) {
+		this.parallelRanges = Math.max(1, parallelRanges);
+		return this;
+	}
+	
+	/**
+	 * Configure the minimum size of ranges downloaded in parallel; default is 16MB.
+	 */
+	public FileDownloader minRangeSize(long minRangeSize) {
+		this.minRangeSize = Math.max(1, minRangeSize);
+		return this;
+	}
+	
+	/**
+	 * Configure whether an existing <code>.part</code> file from a previous, failed
+	 * download should be resumed; default is true. 
+	 */
+	public FileDownloader resume(boolean resume) {
+		this.resume = resume;
+		return this;
+	}
+	
+	/**
+	 * Configure an {@link ITransferProgressListener} for receiving download progress updates.
+	 */
+	public FileDownloader progressListener(ITransferProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+	
+	/**
+	 * Download the response to the given target file.
+	 * @param target Target file
+	 * @param copyOptions Options specifying how the downloaded file is moved to the target
+	 *        file; if {@link StandardCopyOption#REPLACE_EXISTING} is not specified, the
+	 *        download will fail if the target file already exists.
+	 * @return {@link DownloadResult} describing the download
+	 */
+	public DownloadResult download(Path target, CopyOption... copyOptions) {
+		boolean replaceExisting = Arrays.asList(copyOptions).contains(StandardCopyOption.REPLACE_EXISTING);
+		if ( !replaceExisting && Files.exists(target) ) {
+			throw new RuntimeException("Error writing response to file", new FileAlreadyExistsException(target.toString()));
+		}
+		Path partFile = target.resolveSibling(target.getFileName()+".part");
+		Path validatorFile = target.resolveSibling(target.getFileName()+".part.validator");
+		long startNanos = System.nanoTime();
+		try ( FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE) ) {
+			String validator = isRangeSupported() && resume && parallelRanges == 1 ? readValidator(validatorFile) : null;
+			long offset = validator != null ? channel.size() : 0;
+			if ( offset == 0 ) { 
+				if ( channel.size() > 0 ) { log.debug("Not resuming "+partFile+" as no validator is available"); }
+				channel.truncate(0);
+				Files.deleteIfExists(validatorFile);
+				validator = null;
+			}
+			Download download = new Download(channel, validatorFile, offset, validator);
+			download.run();
+			channel.force(false);
+			channel.close();
+			move(partFile, target, copyOptions);
+			Files.deleteIfExists(validatorFile);
+			DownloadResult result = new DownloadResult(target, download.position.get(), download.bytesTransferred, download.resumedFrom, 
+					download.requests.get(), download.ranges, TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-startNanos));
+			log.debug("Downloaded "+target+": "+result);
+			return result;
+		} catch ( IOException e ) {
+			throw new RuntimeException("Error downloading file "+target, e);
+		}
+	}
+
+	private boolean isRangeSupported() {
+		return HttpMethod.GET.equals(httpMethod);
+	}
+	
+	private static String readValidator(Path validatorFile) throws IOException {
+		if ( !Files.exists(validatorFile) ) { return null; }
+		String result = new String(Files.readAllBytes(validatorFile), StandardCharsets.UTF_8).trim();
+		return result.isEmpty() ? null : result;
+	}
+	
+	/**
+	 * Get the validator for the given response that can be used in an <code>If-Range</code>
+	 * header, or null if the response doesn't provide a strong validator. 
+	 */
+	private static String getValidator(Response response) {
+		String etag = response.getHeaderString("ETag");
+		if ( etag != null && !etag.startsWith("W/") ) { return etag; }
+		return response.getHeaderString("Last-Modified");
+	}
+	
+	private void move(Path partFile, Path target, CopyOption... copyOptions) throws IOException {
+		try {
+			Files.move(partFile, target, copyOptions);
+		} catch ( AtomicMoveNotSupportedException e ) {
+			List<CopyOption> options = new ArrayList<>(Arrays.asList(copyOptions));
+			options.remove(StandardCopyOption.ATOMIC_MOVE);
+			Files.move(partFile, target, options.toArray(new CopyOption[options.size()]));
+		}
+	}
+	
+	/**
+	 * This class holds the state of a single download.
+	 */
+	private final class Download {
+		private final FileChannel channel;
+		private final Path validatorFile;
+		private final AtomicInteger requests = new AtomicInteger();
+		private final Position position;
+		private long totalSize = -1;
+		private int ranges = 1;
+		private long resumedFrom;
+		private long bytesTransferred = 0; // Total number of bytes received, for calculating throughput
+		private long bytesAvailable; // Number of bytes available in the part file, for reporting progress
+		private long nextProgressReport = REPORTING_INTERVAL;
+		private volatile String validator; // Sent as If-Range header with any range request
+		
+		public Download(FileChannel channel, Path validatorFile, long offset, String validator) {
+			this.channel = channel;
+			this.validatorFile = validatorFile;
+			this.validator = validator;
+			this.position = new Position(offset, -1);
+			this.bytesAvailable = offset;
+			this.resumedFrom = offset;
+		}
+		
+		public void run() throws IOException {
+			for ( int attempt = 1 ; ; attempt++ ) {
+				Response response = null;
+				try {
+					response = request(position.get(), -1);
+					int status = response.getStatus();
+					if ( status == Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode() ) {
+						// Either the part file is already complete, or it doesn't match the remote file
+						if ( getTotalSize(response) == position.get() ) { reportProgress(); return; }
+						restart("requested range not satisfiable");
+						attempt--; continue;
+					} else if ( status == Status.PARTIAL_CONTENT.getStatusCode() ) {
+						long[] contentRange = getContentRange(response);
+						if ( contentRange[0] != position.get() ) { 
+							throw new IOException("Unexpected content range: "+response.getHeaderString("Content-Range"));
+						}
+						if ( validator == null ) { updateValidator(response); }
+						totalSize = contentRange[2];
+						if ( isParallelDownload() ) {
+							downloadParallel(response);
+							return;
+						}
+					} else {
+						if ( position.get() > 0 ) { restart("remote file has changed, or remote system doesn't support range requests"); }
+						updateValidator(response);
+						totalSize = response.getLength();
+					}
+					copy(response, position);
+					if ( totalSize >= 0 && position.get() != totalSize ) {
+						throw new IOException("Incomplete download; received "+position.get()+" of "+totalSize+" bytes");
+					}
+					reportProgress();
+					return;
+				} catch ( IOException | ProcessingException e ) {
+					handleFailure(attempt, e);
+					if ( !isRangeSupported() ) { restart(e.getMessage()); }
+				} finally {
+					if ( response != null ) { response.close(); }
+				}
+			}
+		}
+		
+		private boolean isParallelDownload() {
+			return parallelRanges > 1 && totalSize > 0 && totalSize - position.get() >= 2*minRangeSize;
+		}
+		
+		/**
+		 * Split the remaining data into multiple ranges and download these in parallel.
+		 * The first range is downloaded from the given response (which was requested
+		 * as an open-ended range), the other ranges are requested separately.
+		 */
+		private void downloadParallel(Response firstResponse) throws IOException {
+			long start = position.get();
+			long remaining = totalSize - start;
+			ranges = (int)Math.min(parallelRanges, remaining / minRangeSize);
+			long rangeSize = (remaining + ranges - 1) / ranges;
+			// Pre-allocate the file, as FileChannel.transferFrom() cannot write beyond the end of the file 
+			channel.write(ByteBuffer.wrap(new byte[1]), totalSize-1);
+			ExecutorService executor = Executors.newFixedThreadPool(ranges-1, RANGE_REQUEST_THREAD_FACTORY);
+			try {
+				List<Future<?>> futures = new ArrayList<>(ranges-1);
+				for ( int i = 1 ; i < ranges ; i++ ) {
+					Position rangePosition = new Position(start+i*rangeSize, Math.min(start+(i+1)*rangeSize, totalSize)-1);
+					futures.add(executor.submit(() -> { downloadRange(null, rangePosition); return null; }));
+				}
+				Position firstRangePosition = new Position(start, start+rangeSize-1);
+				downloadRange(firstResponse, firstRangePosition);
+				for ( Future<?> future : futures ) {
+					future.get();
+				}
+				position.set(totalSize);
+				reportProgress();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Download interrupted", e);
+			} catch ( ExecutionException e ) {
+				Throwable cause = e.getCause();
+				if ( cause instanceof IOException ) { throw (IOException)cause; }
+				if ( cause instanceof RuntimeException ) { throw (RuntimeException)cause; }
+				throw new IOException(cause);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		
+		private void downloadRange(Response response, Position rangePosition) throws IOException {
+			for ( int attempt = 1 ; ; attempt++ ) {
+				try {
+					if ( response == null ) {
+						response = request(rangePosition.get(), rangePosition.end);
+						if ( response.getStatus() != Status.PARTIAL_CONTENT.getStatusCode() ) {
+							throw new IOException("Remote system didn't return partial content for range request");
+						}
+					}
+					copy(response, rangePosition);
+					if ( rangePosition.get() != rangePosition.end+1 ) {
+						throw new IOException("Incomplete range download; received up to "+rangePosition.get()+" of "+(rangePosition.end+1)+" bytes");
+					}
+					return;
+				} catch ( IOException | ProcessingException e ) {
+					handleFailure(attempt, e);
+				} finally {
+					if ( response != null ) { response.close(); response = null; }
+				}
+			}
+		}
+		
+		private Response request(long start, long end) {
+			requests.incrementAndGet();
+			Builder builder = requestSupplier.get();
+			if ( isRangeSupported() ) {
+				// Range requests apply to the encoded content, so we disable content encoding
+				builder = builder.header("Accept-Encoding", "identity");
+				if ( start > 0 || end >= 0 || parallelRanges > 1 ) {
+					builder = builder.header("Range", "bytes="+start+"-"+(end >= 0 ? end : ""));
+					String validator = this.validator;
+					if ( validator != null ) { builder = builder.header("If-Range", validator); }
+				}
+			}
+			return conn.executeConditionalRequest(httpMethod, builder);
+		}
+		
+		private void copy(Response response, Position position) throws IOException {
+			boolean rangeComplete = false;
+			try ( ReadableByteChannel source = Channels.newChannel(response.readEntity(InputStream.class)) ) {
+				long transferred;
+				do {
+					long count = position.end < 0 ? TRANSFER_CHUNK_SIZE : Math.min(TRANSFER_CHUNK_SIZE, position.end+1-position.get());
+					if ( count <= 0 ) { break; }
+					transferred = channel.transferFrom(source, position.get(), count);
+					position.add(transferred);
+					addProgress(transferred);
+				} while ( transferred > 0 );
+				rangeComplete = position.end >= 0 && position.get() > position.end;
+			} catch ( IOException | ProcessingException e ) {
+				// The first of multiple parallel ranges is read from an open-ended range response,
+				// which may fail to close as the remaining content hasn't been read. As all data 
+				// for the range has been received, this shouldn't fail the range.
+				if ( !rangeComplete ) { throw e; }
+				log.debug("Ignoring error closing response for completed range: "+e.getMessage());
+			}
+		}
+		
+		private void restart(String reason) throws IOException {
+			log.debug("Restarting download from start: "+reason);
+			channel.truncate(0);
+			position.set(0);
+			synchronized (this) { bytesAvailable = 0; }
+			resumedFrom = 0;
+			updateValidator(null);
+		}
+		
+		/**
+		 * Update the validator from the given response (or clear it if the given response 
+		 * is null), and record it next to the part file such that a later download can 
+		 * safely resume the part file.
+		 */
+		private void updateValidator(Response response) throws IOException {
+			String newValidator = response == null ? null : getValidator(response);
+			if ( !Objects.equals(validator, newValidator) ) {
+				validator = newValidator;
+				if ( newValidator == null ) {
+					Files.deleteIfExists(validatorFile);
+				} else if ( isRangeSupported() ) {
+					Files.write(validatorFile, newValidator.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		}
+		
+		private void handleFailure(int attempt, Exception e) throws IOException {
+			if ( attempt >= maxAttempts ) {
+				throw e instanceof IOException ? (IOException)e : new IOException(e);
+			}
+			log.warn("Download attempt "+attempt+" failed, retrying: "+e.getMessage());
+			try {
+				Thread.sleep(1000L*attempt);
+			} catch ( InterruptedException ie ) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Download interrupted", e);
+			}
+		}
+		
+		private synchronized void addProgress(long bytes) {
+			bytesTransferred += bytes;
+			bytesAvailable += bytes;
+			if ( bytesTransferred >= nextProgressReport ) {
+				reportProgress();
+				nextProgressReport = bytesTransferred + REPORTING_INTERVAL;
+			}
+		}
+		
+		private synchronized void reportProgress() {
+			if ( progressListener != null ) {
+				progressListener.progress(bytesAvailable, totalSize);
+			}
+		}
+	}
+	
+	private static long[] getContentRange(Response response) throws IOException {
+		String contentRange = response.getHeaderString("Content-Range");
+		Matcher m = contentRange == null ? null : EXPR_CONTENT_RANGE.matcher(contentRange);
+		if ( m == null || !m.matches() ) {
+			throw new IOException("Invalid content range: "+contentRange);
+		}
+		return new long[] {Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), "*".equals(m.group(3)) ? -1 : Long.parseLong(m.group(3))};
+	}
+	
+	private static long getTotalSize(Response response) {
+		String contentRange = response.getHeaderString("Content-Range");
+		if ( contentRange != null && contentRange.startsWith("bytes */") ) {
+			try {
+				return Long.parseLong(contentRange.substring("bytes */".length()).trim());
+			} catch ( NumberFormatException e ) {
+				// Fall through
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Mutable position within the target file, optionally with an inclusive end position.
+	 */
+	private static final class Position {
+		private volatile long position;
+		private final long end;
+		
+		public Position(long position, long end) {
+			this.position = position;
+			this.end = end;
+		}
+		
+		public long get() { return position; }
+		public void set(long position) { this.position = position; }
+		public void add(long bytes) { this.position += bytes; }
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.transfer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * JAX-RS {@link WriterInterceptor} that reports upload progress to the 
+ * {@link ITransferProgressListener} configured through the 
+ * {@link #PROPERTY_PROGRESS_LISTENER} request property. The total number
+ * of bytes to be uploaded can optionally be specified through the 
+ * {@link #PROPERTY_TOTAL_BYTES} request property. Progress is reported
+ * whenever another {@link #REPORTING_INTERVAL} bytes have been written,
+ * and once after the full entity has been written.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class TransferProgressInterceptor implements WriterInterceptor {
+	public static final String PROPERTY_PROGRESS_LISTENER = TransferProgressInterceptor.class.getName()+".progressListener";
+	public static final String PROPERTY_TOTAL_BYTES = TransferProgressInterceptor.class.getName()+".totalBytes";
+	public static final long REPORTING_INTERVAL = 1024*1024;
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		Object listener = context.getProperty(PROPERTY_PROGRESS_LISTENER);
+		if ( !(listener instanceof ITransferProgressListener) ) {
+			context.proceed();
+		} else {
+			Object totalBytes = context.getProperty(PROPERTY_TOTAL_BYTES);
+			ProgressOutputStream progressOutputStream = new ProgressOutputStream(context.getOutputStream(), 
+					(ITransferProgressListener)listener, totalBytes instanceof Long ? (Long)totalBytes : -1L);
+			context.setOutputStream(progressOutputStream);
+			context.proceed();
+			progressOutputStream.reportProgress();
+		}
+	}
+	
+	private static final class ProgressOutputStream extends FilterOutputStream {
+		private final ITransferProgressListener listener;
+		private final long totalBytes;
+		private long bytesWritten = 0;
+		private long nextReport = REPORTING_INTERVAL;
+		
+		public ProgressOutputStream(OutputStream out, ITransferProgressListener listener, long totalBytes) {
+			super(out);
+			this.listener = listener;
+			this.totalBytes = totalBytes;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count(1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count(len);
+		}
+		
+		private void count(long bytes) {
+			bytesWritten += bytes;
+			if ( bytesWritten >= nextReport ) {
+				reportProgress();
+				nextReport = bytesWritten + REPORTING_INTERVAL;
+			}
+		}
+		
+		private void reportProgress() {
+			listener.progress(bytesWritten, totalBytes);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+import org.springframework.core.convert.ConversionFailedException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
+
+/**
+ * <p>{@link ConversionService} implementation used by {@link JSONMap} and {@link JSONList}
+ * for converting JSON values to the requested types. A shared, thread-safe instance can be
+ * retrieved through the {@link #getInstance()} method.</p>
+ * 
+ * <p>Conversions for common JSON value types (values that already have the requested type,
+ * and conversions between {@link String}, {@link Number} and {@link Boolean} types) are 
+ * handled directly, with the same semantics as Spring's {@link DefaultConversionService}.
+ * Strings are converted to {@link Date} instances using cached {@link DateTimeFormatter}
+ * instances, supporting the SSC timestamp format (<code>yyyy-MM-dd'T'HH:mm:ss.SSSZ</code>), 
+ * ISO date/time values with offset, and ISO local date/time values, which are interpreted
+ * as UTC. All other conversions are delegated to a shared {@link DefaultConversionService}.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+public final class JSONConversionService implements ConversionService {
+	private static final JSONConversionService INSTANCE = new JSONConversionService();
+	private static final String SSC_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+	private static final DateTimeFormatter SSC_DATE_FORMATTER = DateTimeFormatter.ofPattern(SSC_DATE_FORMAT);
+	private static final ThreadLocal<SimpleDateFormat> SSC_SIMPLE_DATE_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat(SSC_DATE_FORMAT));
+	private final DefaultConversionService delegate;
+	
+	private JSONConversionService() {
+		this.delegate = new DefaultConversionService();
+		this.delegate.addConverter(new Converter<String, Date>() {
+			@Override
+			public Date convert(String source) {
+				return parseDate(source);
+			}
+		});
+	}
+	
+	/**
+	 * Get the shared {@link JSONConversionService} instance
+	 * @return
+	 */
+	public static final JSONConversionService getInstance() {
+		return INSTANCE;
+	}
+	
+	@Override
+	public boolean canConvert(Class<?> sourceType, Class<?> targetType) {
+		return delegate.canConvert(sourceType, targetType);
+	}
+
+	@Override
+	public boolean canConvert(TypeDescriptor sourceType, TypeDescriptor targetType) {
+		return delegate.canConvert(sourceType, targetType);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T convert(Object source, Class<T> targetType) {
+		Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(targetType);
+		if ( source == null ) {
+			if ( !targetType.isPrimitive() ) { return null; }
+		} else if ( type.isInstance(source) ) {
+			return (T)source;
+		} else if ( type == String.class && (source instanceof Number || source instanceof Boolean) ) {
+			return (T)source.toString();
+		} else if ( source instanceof String && (type == Integer.class || type == Long.class || type == Boolean.class || type == Date.class) ) {
+			Object result = convertString((String)source, type, targetType);
+			// Let our delegate throw the appropriate exception for null primitive values
+			if ( result != null || !targetType.isPrimitive() ) { return (T)result; }
+		} else if ( source instanceof Number && (type == Integer.class || type == Long.class) ) {
+			return (T)convertNumber((Number)source, type, targetType);
+		}
+		return delegate.convert(source, targetType);
+	}
+
+	@Override
+	public Object convert(Object source, TypeDescriptor sourceType, TypeDescriptor targetType) {
+		return delegate.convert(source, sourceType, targetType);
+	}
+	
+	private Object convertString(String source, Class<?> type, Class<?> targetType) {
+		try {
+			if ( type == Boolean.class ) {
+				return parseBoolean(source.trim());
+			} else if ( type == Date.class ) {
+				return parseDate(source);
+			} else {
+				return source.isEmpty() ? null : NumberUtils.parseNumber(source, type.asSubclass(Number.class));
+			}
+		} catch ( RuntimeException e ) {
+			throw new ConversionFailedException(TypeDescriptor.valueOf(String.class), TypeDescriptor.valueOf(targetType), source, e);
+		}
+	}
+	
+	private Object convertNumber(Number source, Class<?> type, Class<?> targetType) {
+		try {
+			return NumberUtils.convertNumberToTargetClass(source, type.asSubclass(Number.class));
+		} catch ( RuntimeException e ) {
+			throw new ConversionFailedException(TypeDescriptor.forObject(source), TypeDescriptor.valueOf(targetType), source, e);
+		}
+	}
+	
+	/**
+	 * Parse the given boolean value, using the same values as Spring's
+	 * String-to-Boolean converter.
+	 */
+	private static Boolean parseBoolean(String value) {
+		switch ( value.toLowerCase() ) {
+		case "": return null;
+		case "true": case "on": case "yes": case "1": return Boolean.TRUE;
+		case "false": case "off": case "no": case "0": return Boolean.FALSE;
+		default: throw new IllegalArgumentException("Invalid boolean value '" + value + "'");
+		}
+	}
+	
+	/**
+	 * Parse the given date string, trying the cached SSC and ISO date/time formatters 
+	 * first. For compatibility, any values that cannot be parsed by these formatters
+	 * are parsed using a lenient {@link SimpleDateFormat} with the SSC date format.
+	 */
+	private static Date parseDate(String source) {
+		try {
+			return Date.from(OffsetDateTime.parse(source, SSC_DATE_FORMATTER).toInstant());
+		} catch ( DateTimeParseException ignore ) {}
+		try {
+			return Date.from(OffsetDateTime.parse(source, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant());
+		} catch ( DateTimeParseException ignore ) {}
+		try {
+			return Date.from(LocalDateTime.parse(source, DateTimeFormatter.ISO_LOCAL_DATE_TIME).toInstant(ZoneOffset.UTC));
+		} catch ( DateTimeParseException ignore ) {}
+		try {
+			return SSC_SIMPLE_DATE_FORMAT.get().parse(source);
+		} catch ( ParseException e ) {
+			throw new RuntimeException("Error parsing date format pattern", e);
+		}
+	}
+}
@@ -31,7 +31,6 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.springframework.core.convert.support.DefaultConversionService;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -147,7 +146,7 @@ public class JSONList extends ArrayList<Object> {
 		if ( matchExpression == null ) { return null; }
 		for ( Object value : this ) {
 			if ( isMatching(value, matchExpression, matchValue) ) {
-				return new DefaultConversionService().convert(value, type);
+				return JSONConversionService.getInstance().convert(value, type);
 			}
 		}
 		return null;
@@ -24,11 +24,8 @@
  ******************************************************************************/
 package com.fortify.util.rest.json;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,14 +34,11 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.core.convert.converter.Converter;
-import org.springframework.core.convert.support.DefaultConversionService;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fortify.util.rest.json.ondemand.IJSONMapOnDemandLoader;
-import com.fortify.util.spring.SpringExpressionUtil;
 
 /**
  * This class represents JSON objects as a standard Java
@@ -146,10 +140,11 @@ public class JSONMap extends LinkedHashMap<String, Object> {
 	
 	/**
 	 * This method allows for getting the value for the given property
-	 * path.
+	 * path. Simple property paths like <code>a.b.c</code> or <code>a[0].b</code>
+	 * are navigated directly; any other paths are evaluated as SpEL expressions.
 	 */
 	public Object getPath(String path) {
-		return SpringExpressionUtil.evaluateExpression(this, path, Object.class);
+		return JSONMapPath.getValue(this, path);
 	}
 	
 	/**
@@ -264,18 +259,7 @@ public class JSONMap extends LinkedHashMap<String, Object> {
 	}
 	
 	private ConversionService getConversionService() {
-		DefaultConversionService result = new DefaultConversionService();
-		result.addConverter(new Converter<String, Date>() {
-			@Override
-			public Date convert(String source) {
-				try {
-					return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse(source);
-				} catch ( ParseException e ) {
-					throw new RuntimeException("Error parsing date format pattern", e);
-				}
-			}
-		});
-		return result;
+		return JSONConversionService.getInstance();
 	}
 	
 	/**
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fortify.util.spring.SpringExpressionUtil;
+
+/**
+ * <p>This package-private class is used by {@link JSONMap#getPath(String)} to 
+ * efficiently navigate simple property paths like <code>a.b.c</code> or 
+ * <code>a.b[0].c</code>, without the overhead of evaluating these paths as 
+ * SpEL expressions. Paths are compiled once into a list of property names 
+ * and list indexes, and compiled paths are cached by path string.</p>
+ * 
+ * <p>Navigation uses {@link Map#get(Object)} and {@link List#get(int)}, so 
+ * on-demand properties in {@link JSONMap} instances are loaded as usual. 
+ * Paths containing SpEL keywords, or names of {@link JSONMap} bean properties 
+ * like <code>empty</code> (which SpEL resolves through getter methods), are
+ * not compiled. 
+ * If a path is not a simple property path, or if the path cannot be navigated
+ * because an intermediate value is null, is not a {@link Map} or {@link List},
+ * or a list index is out of bounds, the path is evaluated as a SpEL expression 
+ * instead. This guarantees that results (and exceptions) are the same as 
+ * before paths were being compiled.</p>
+ * 
+ * @author Ruud Senden
+ *
+ */
+final class JSONMapPath {
+	private static final int MAX_CACHED_PATHS = 10000;
+	private static final Pattern SEGMENT_PATTERN = Pattern.compile("([A-Za-z_$][A-Za-z0-9_$]*)((?:\\[\\d{1,9}\\])*)");
+	private static final Pattern INDEX_PATTERN = Pattern.compile("\\[(\\d+)\\]");
+	/** SpEL literals and textual operators that can't be used as simple property names */
+	private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList(
+			"true", "false", "null", "new", "t", "and", "or", "not", "eq", "ne", "lt", "le", "gt", "ge", 
+			"div", "mod", "instanceof", "matches", "between"));
+	/** Bean properties of {@link JSONMap}, which SpEL reads through getter methods instead of map entries */
+	private static final Set<String> JSONMAP_BEAN_PROPERTIES = getBeanPropertyNames(JSONMap.class);
+	private static final ConcurrentMap<String, JSONMapPath> CACHE = new ConcurrentHashMap<>();
+	private static final JSONMapPath NOT_COMPILABLE = new JSONMapPath(null, null);
+	private static final Object UNRESOLVED = new Object();
+	
+	/** Property name for every step, or null if the step is a list index */
+	private final String[] names;
+	/** List index for every step that doesn't have a property name */
+	private final int[] indexes;
+	
+	private JSONMapPath(String[] names, int[] indexes) {
+		this.names = names;
+		this.indexes = indexes;
+	}
+	
+	/**
+	 * Get the value for the given path from the given {@link JSONMap}.
+	 * @param json
+	 * @param path
+	 * @return
+	 */
+	static Object getValue(JSONMap json, String path) {
+		JSONMapPath compiledPath = getCompiledPath(path);
+		Object result = compiledPath==NOT_COMPILABLE ? UNRESOLVED : compiledPath.navigate(json);
+		return result!=UNRESOLVED ? result : SpringExpressionUtil.evaluateExpression(json, path, Object.class);
+	}
+	
+	private static JSONMapPath getCompiledPath(String path) {
+		if ( path==null ) { return NOT_COMPILABLE; }
+		JSONMapPath result = CACHE.get(path);
+		if ( result == null ) {
+			result = compile(path);
+			if ( CACHE.size() >= MAX_CACHED_PATHS ) { CACHE.clear(); }
+			CACHE.putIfAbsent(path, result);
+		}
+		return result;
+	}
+	
+	private static JSONMapPath compile(String path) {
+		List<String> names = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		for ( String segment : path.split("\\.", -1) ) {
+			Matcher matcher = SEGMENT_PATTERN.matcher(segment);
+			if ( !matcher.matches() || RESERVED_WORDS.contains(matcher.group(1).toLowerCase()) 
+					|| JSONMAP_BEAN_PROPERTIES.contains(matcher.group(1)) ) {
+				return NOT_COMPILABLE;
+			}
+			names.add(matcher.group(1)); indexes.add(-1);
+			Matcher indexMatcher = INDEX_PATTERN.matcher(matcher.group(2));
+			while ( indexMatcher.find() ) {
+				names.add(null); indexes.add(Integer.parseInt(indexMatcher.group(1)));
+			}
+		}
+		int[] indexesArray = new int[indexes.size()];
+		for ( int i = 0 ; i < indexesArray.length ; i++ ) { indexesArray[i] = indexes.get(i); }
+		return new JSONMapPath(names.toArray(new String[names.size()]), indexesArray);
+	}
+	
+	private static Set<String> getBeanPropertyNames(Class<?> clazz) {
+		Set<String> result = new HashSet<>();
+		try {
+			for ( PropertyDescriptor descriptor : Introspector.getBeanInfo(clazz).getPropertyDescriptors() ) {
+				if ( descriptor.getReadMethod() != null ) { result.add(descriptor.getName()); }
+			}
+		} catch (IntrospectionException e) {
+			throw new RuntimeException("Error introspecting "+clazz.getName(), e);
+		}
+		return result;
+	}
+	
+	private Object navigate(JSONMap json) {
+		Object current = json;
+		for ( int i = 0 ; i < names.length ; i++ ) {
+			String name = names[i];
+			if ( name != null && current instanceof Map ) {
+				current = ((Map<?,?>)current).get(name);
+			} else if ( name == null && current instanceof List && indexes[i] < ((List<?>)current).size() ) {
+				current = ((List<?>)current).get(indexes[i]);
+			} else {
+				return UNRESOLVED;
+			}
+		}
+		return current;
+	}
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * {@link ObjectMapper} implementation that deserializes JSON objects
+ * to {@link JSONMap} instances, and JSON arrays to {@link JSONList}
+ * instances. A shared instance can be retrieved through the 
+ * {@link #getInstance()} method; this shared instance must not be 
+ * re-configured.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class JSONObjectMapper extends ObjectMapper {
+	private static final long serialVersionUID = 1L;
+	private static final JSONObjectMapper INSTANCE = new JSONObjectMapper();
+	
+	public JSONObjectMapper() {
+		final SimpleModule module = new SimpleModule("treemaps");
+		module.addAbstractTypeMapping(Map.class, JSONMap.class);
+		module.addAbstractTypeMapping(List.class, JSONList.class);
+		registerModule(module);
+	}
+	
+	/**
+	 * Get the shared {@link JSONObjectMapper} instance
+	 * @return
+	 */
+	public static final JSONObjectMapper getInstance() {
+		return INSTANCE;
+	}
+}
@@ -26,6 +26,8 @@ package com.fortify.util.rest.json.ondemand;
 
 import com.fortify.util.rest.json.JSONMap;
 
+import lombok.Getter;
+
 /**
  * This abstract {@link IJSONMapOnDemandLoader} implementation allows
  * for optionally replacing the on-demand loader with the actual on-demand
@@ -36,7 +38,7 @@ import com.fortify.util.rest.json.JSONMap;
  */
 public abstract class AbstractJSONMapOnDemandLoader implements IJSONMapOnDemandLoader {
 	private static final long serialVersionUID = 1L;
-	private final boolean storeValue;
+	@Getter private final boolean storeValue;
 	public AbstractJSONMapOnDemandLoader(boolean storeValue) {
 		this.storeValue = storeValue;
 	}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json.ondemand;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.fortify.util.rest.json.JSONMap;
+
+/**
+ * This interface extends {@link IJSONMapOnDemandLoader} to allow for asynchronously
+ * loading on-demand data before the corresponding property is being accessed. This
+ * is used for prefetching on-demand properties, see 
+ * {@link com.fortify.util.rest.query.AbstractRestConnectionQueryBuilder#prefetchOnDemand(int)}.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public interface IJSONMapOnDemandLoaderAsync extends IJSONMapOnDemandLoader {
+	/**
+	 * This method asynchronously retrieves the value for the given property 
+	 * name in the given parent {@link JSONMap}. Contrary to
+	 * {@link #getAndStoreOnDemand(String, JSONMap)}, this method must not
+	 * update the parent {@link JSONMap}; callers are responsible for storing 
+	 * the retrieved value if necessary. Implementations that need to perform
+	 * blocking operations must execute these on the given {@link Executor},
+	 * which limits the number of concurrent operations.
+	 * 
+	 * @param propertyName
+	 * @param parent
+	 * @param executor
+	 * @return
+	 */
+	public CompletableFuture<Object> getOnDemandAsync(String propertyName, JSONMap parent, Executor executor);
+	
+	/**
+	 * Indicate whether the retrieved value replaces this on-demand loader in the
+	 * parent {@link JSONMap}. Values are only prefetched for loaders that return 
+	 * true; for other loaders, the value would be loaded again on every access.
+	 * @return
+	 */
+	public boolean isStoreValue();
+}
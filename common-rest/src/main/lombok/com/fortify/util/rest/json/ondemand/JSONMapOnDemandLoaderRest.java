@@ -24,6 +24,9 @@
  ******************************************************************************/
 package com.fortify.util.rest.json.ondemand;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.client.WebTarget;
 
@@ -34,12 +37,13 @@ import com.fortify.util.spring.SpringExpressionUtil;
 /**
  * This {@link AbstractJSONMapOnDemandLoaderWithConnection} implementation allows for
  * dynamically loading on-demand data from the configured REST endpoint when a given 
- * JSON property is being accessed.
+ * JSON property is being accessed. Data can also be loaded asynchronously through
+ * {@link #getOnDemandAsync(String, JSONMap, Executor)}, allowing for prefetching on-demand data.
  *  
  * @author Ruud Senden
  *
  */
-public class JSONMapOnDemandLoaderRest extends AbstractJSONMapOnDemandLoaderWithIRestConnection {
+public class JSONMapOnDemandLoaderRest extends AbstractJSONMapOnDemandLoaderWithIRestConnection implements IJSONMapOnDemandLoaderAsync {
 	private static final long serialVersionUID = 1L;
 	private final String uriTemplateExpression;
 	private final String resultExpression;
@@ -60,6 +64,19 @@ public class JSONMapOnDemandLoaderRest extends AbstractJSONMapOnDemandLoaderWith
 	public Object getOnDemand(IRestConnection conn, String propertyName, JSONMap parent) {
 		return getResult(conn.executeRequest(HttpMethod.GET, getWebTarget(conn, parent), JSONMap.class, cacheName));
 	}
+	
+	/**
+	 * Asynchronously load the on-demand data for the given parent {@link JSONMap}.
+	 * The data is loaded synchronously on the given {@link Executor}, such that the
+	 * number of concurrent requests is limited by that executor, and the configured
+	 * cache (if any) is used.
+	 */
+	@Override
+	public CompletableFuture<Object> getOnDemandAsync(String propertyName, JSONMap parent, Executor executor) {
+		IRestConnection conn = getConnection();
+		WebTarget target = getWebTarget(conn, parent);
+		return CompletableFuture.supplyAsync(() -> getResult(conn.executeRequest(HttpMethod.GET, target, JSONMap.class, cacheName)), executor);
+	}
 
 	protected Object getResult(JSONMap restResult) {
 		if ( resultExpression == null ) {
@@ -24,20 +24,36 @@
  ******************************************************************************/
 package com.fortify.util.rest.query;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fortify.util.rest.connection.BoundedExecutor;
 import com.fortify.util.rest.connection.IRestConnection;
+import com.fortify.util.rest.connection.resilience.RetryState;
 import com.fortify.util.rest.json.JSONList;
 import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.json.JSONObjectMapper;
 import com.fortify.util.rest.json.preprocessor.IJSONMapPreProcessor;
 import com.fortify.util.rest.json.processor.IJSONMapProcessor;
 import com.fortify.util.rest.json.processor.JSONMapsToJSONListProcessor;
 import com.fortify.util.rest.webtarget.IWebTargetUpdater;
 
+import lombok.extern.apachecommons.CommonsLog;
+
 /**
  * <p>This abstract class provides an implementation for {@link IRestConnectionQuery} to allow for
  * querying REST API's. Usually for each target system, you would have one (or a limited number of) 
@@ -45,7 +61,9 @@ import com.fortify.util.rest.webtarget.IWebTargetUpdater;
  * various methods to handle things like paging ({@link #updatePagingDataFromResponse(PagingData, Object)}
  * and {@link #updateWebTargetWithPagingData(WebTarget, PagingData)}, and getting the necessary
  * {@link JSONList} instance from the REST response ({@link #getResponseTypeClass()} and 
- * {@link #getJSONListFromResponse(Object)}.</p>
+ * {@link #getJSONListFromResponse(Object)}. Implementations that return {@link JSONMap} responses 
+ * can additionally override {@link #getStreamingRecordsPropertyName()} to allow for streaming 
+ * response processing.</p>
  * 
  * <p>This class is configured through a {@link AbstractRestConnectionQueryBuilder} instance, which allows for
  * configuring the various details for building the actual REST requests and processing responses. This
@@ -54,6 +72,7 @@ import com.fortify.util.rest.webtarget.IWebTargetUpdater;
  * 
  * @author Ruud Senden
  */
+@CommonsLog
 public abstract class AbstractRestConnectionQuery<ResponseType> implements IRestConnectionQuery {
 	private final IRestConnection conn;
 	private final List<IWebTargetUpdater> webTargetUpdaters;
@@ -64,6 +83,9 @@ public abstract class AbstractRestConnectionQuery<ResponseType> implements IRest
 	private final Entity<?> entity;
 	private final String httpMethod;
 	private final IRequestInitializer requestInitializer;
+	private final int maxConcurrentPageRequests;
+	private final boolean useStreaming;
+	private final int onDemandPrefetchWindowSize;
 	
 	protected AbstractRestConnectionQuery(AbstractRestConnectionQueryBuilder<?, ?> config) {
 		this.conn = config.getConn();
@@ -75,6 +97,9 @@ public abstract class AbstractRestConnectionQuery<ResponseType> implements IRest
 		this.entity = config.getEntity();
 		this.httpMethod = config.getHttpMethod();
 		this.requestInitializer = config.getRequestInitializer();
+		this.maxConcurrentPageRequests = config.getMaxConcurrentPageRequests();
+		this.useStreaming = config.isUseStreaming();
+		this.onDemandPrefetchWindowSize = config.getOnDemandPrefetchWindowSize();
 	}
 	
 	/* (non-Javadoc)
@@ -121,14 +146,18 @@ public abstract class AbstractRestConnectionQuery<ResponseType> implements IRest
 	}
 	
 	protected ResponseType executeRequest(WebTarget target) {
+		if ( entity == null && useCache ) {
+			return conn.executeRequest(httpMethod, target, getResponseTypeClass(), getCacheName());
+		} else {
+			return executeRequest(target, getResponseTypeClass());
+		}
+	}
+	
+	private <T> T executeRequest(WebTarget target, Class<T> returnType) {
 		if ( entity == null ) {
-			if ( useCache ) {
-				return conn.executeRequest(httpMethod, target, getResponseTypeClass(), getCacheName());
-			} else {
-				return conn.executeRequest(httpMethod, target, getResponseTypeClass());
-			}
+			return conn.executeRequest(httpMethod, target, returnType);
 		} else {
-			return conn.executeRequest(httpMethod, target, entity, getResponseTypeClass());
+			return conn.executeRequest(httpMethod, target, entity, returnType);
 		}
 	}
 	
@@ -174,24 +203,130 @@ public abstract class AbstractRestConnectionQuery<ResponseType> implements IRest
 	 */
 	protected abstract JSONList getJSONListFromResponse(ResponseType responseData);
 	
+	/**
+	 * Implementations that return {@link JSONMap} responses can override this method
+	 * to return the name of the top-level response property that contains the
+	 * records to be processed, in order to support streaming response processing.
+	 * The default implementation returns null, indicating that streaming is not
+	 * supported.
+	 * @return
+	 */
+	protected String getStreamingRecordsPropertyName() {
+		return null;
+	}
+	
+	/**
+	 * Indicate whether responses should be processed in streaming mode. This requires
+	 * streaming to be enabled on the query builder, caching to be disabled, and the 
+	 * implementation to provide a {@link JSONMap} response type and a streaming records
+	 * property name.
+	 * @return
+	 */
+	private boolean isStreamingEnabled() {
+		return useStreaming && !useCache 
+				&& getStreamingRecordsPropertyName()!=null 
+				&& JSONMap.class.equals(getResponseTypeClass());
+	}
+	
 	/**
 	 * Process all results returned by the given {@link WebTarget} by calling the given {@link IJSONMapProcessor}.
 	 * Depending on the return value of {@link #isPagingSupported()}, this method will either directly invoke
 	 * the given web target (paging not supported), or retrieve all data page by page (paging is supported).
-	 * 
+	 * If more than one concurrent page request has been configured, and the first page response 
+	 * provided the total number of available results, the remaining pages will be loaded by
+	 * {@link #processRemainingPagesConcurrently(WebTarget, IJSONMapProcessor, PagingData)}.
+	 * If on-demand prefetching has been enabled, records are passed to the given processor
+	 * through a {@link JSONMapProcessorWithOnDemandPrefetch} instance.
 	 */
 	private void processAll(WebTarget target, PagingData pagingData, IJSONMapProcessor processor) {
 		if ( requestInitializer != null ) { requestInitializer.initRequest(); }
-		processor = new JSONMapProcessorWithPreProcessorsAndPagingSupport(preProcessors, processor, pagingData);
-		if ( !pagingSupported ) {
-			processSingleRequest(target, processor, pagingData);
-		} else {
+		JSONMapProcessorWithOnDemandPrefetch prefetchProcessor = onDemandPrefetchWindowSize <= 0 
+				? null : new JSONMapProcessorWithOnDemandPrefetch(processor, onDemandPrefetchWindowSize, conn.getTaskExecutor());
+		processor = new JSONMapProcessorWithPreProcessorsAndPagingSupport(preProcessors, prefetchProcessor==null ? processor : prefetchProcessor, pagingData);
+		try {
+			if ( !pagingSupported ) {
+				processSingleRequest(target, processor, pagingData);
+			} else {
+				while (pagingData.calculateNextPageSize() > 0) {
+					processor.notifyNextPage(pagingData);
+					WebTarget pagingTarget = updateWebTargetWithPagingData(target, pagingData);
+					ResponseType response = processSingleRequest(pagingTarget, processor, pagingData);
+					updatePagingDataFromResponse(pagingData, response);
+					if ( maxConcurrentPageRequests > 1 && pagingData.getTotalAvailable() > pagingData.getNextPageStart() ) {
+						processRemainingPagesConcurrently(target, processor, pagingData);
+						break;
+					}
+				}
+			}
+			if ( prefetchProcessor != null ) { prefetchProcessor.flush(); }
+		} finally {
+			if ( prefetchProcessor != null ) { prefetchProcessor.cancel(); }
+		}
+	}
+	
+	/**
+	 * Load all remaining pages using at most {@link #maxConcurrentPageRequests} concurrent
+	 * requests, based on the total number of available results as returned by the first
+	 * page. Page responses are processed on the current thread in page order, using the 
+	 * same {@link PagingData} calculations as for sequential paging; as such maximum results 
+	 * and filtering behave exactly the same. Any page requests that are still pending once 
+	 * processing has finished (for example because the maximum number of results has been 
+	 * reached) are cancelled. Page requests are executed on the connection's 
+	 * {@link IRestConnection#getTaskExecutor()}, so no threads are created for 
+	 * individual queries.
+	 */
+	private void processRemainingPagesConcurrently(WebTarget target, IJSONMapProcessor processor, PagingData pagingData) {
+		Executor executor = new BoundedExecutor(conn.getTaskExecutor(), maxConcurrentPageRequests);
+		Deque<Future<ResponseType>> pendingPages = new ArrayDeque<>(maxConcurrentPageRequests);
+		int nextPageStart = pagingData.getNextPageStart();
+		try {
 			while (pagingData.calculateNextPageSize() > 0) {
+				nextPageStart = submitPageRequests(executor, pendingPages, target, pagingData, nextPageStart);
+				Future<ResponseType> nextPage = pendingPages.poll();
+				if ( nextPage == null ) { break; }
 				processor.notifyNextPage(pagingData);
-				WebTarget pagingTarget = updateWebTargetWithPagingData(target, pagingData);
-				ResponseType response = processSingleRequest(pagingTarget, processor, pagingData);
+				ResponseType response = getPageResponse(nextPage);
+				processResponse(response, processor, pagingData);
 				updatePagingDataFromResponse(pagingData, response);
 			}
+		} finally {
+			pendingPages.forEach(page -> page.cancel(true));
+		}
+	}
+
+	/**
+	 * Submit requests for subsequent pages until either the maximum number of concurrent 
+	 * page requests is pending, or all pages up to the total number of available results
+	 * (or maximum number of results if no pre-processors have been configured) have been
+	 * requested.
+	 * @return Start position of the first page that hasn't been requested yet
+	 */
+	private int submitPageRequests(Executor executor, Deque<Future<ResponseType>> pendingPages, WebTarget target, PagingData pagingData, int nextPageStart) {
+		int end = pagingData.getTotalAvailable();
+		if ( pagingData.getMaxResults() >= 0 && preProcessors.isEmpty() ) {
+			end = Math.min(end, pagingData.getMaxResults());
+		}
+		while ( pendingPages.size() < maxConcurrentPageRequests && nextPageStart < end ) {
+			final WebTarget pagingTarget = updateWebTargetWithPagingData(target, pagingData.forPageStart(nextPageStart));
+			FutureTask<ResponseType> page = new FutureTask<>(() -> executeRequest(pagingTarget));
+			pendingPages.add(page);
+			executor.execute(page);
+			nextPageStart += pagingData.getPageSize();
+		}
+		return nextPageStart;
+	}
+	
+	private ResponseType getPageResponse(Future<ResponseType> page) {
+		try {
+			return page.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for page response", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException ) { throw (RuntimeException)cause; }
+			if ( cause instanceof Error ) { throw (Error)cause; }
+			throw new RuntimeException("Error loading page", cause);
 		}
 	}
 	
@@ -199,7 +334,18 @@ public abstract class AbstractRestConnectionQuery<ResponseType> implements IRest
 	 * Process all results returned by the given {@link WebTarget} by calling the given {@link IJSONMapProcessor}.
 	 */
 	private ResponseType processSingleRequest(WebTarget target, IJSONMapProcessor processor, PagingData pagingData) {
+		if ( isStreamingEnabled() ) {
+			return getResponseTypeClass().cast(processStreamingRequest(target, processor, pagingData));
+		}
 		ResponseType data = executeRequest(target);
+		processResponse(data, processor, pagingData);
+		return data;
+	}
+
+	/**
+	 * Process all results contained in the given response data by calling the given {@link IJSONMapProcessor}.
+	 */
+	private void processResponse(ResponseType data, IJSONMapProcessor processor, PagingData pagingData) {
 		JSONList list = getJSONListFromResponse(data);
 		if ( processor != null ) {
 			for ( JSONMap obj : list.asValueType(JSONMap.class) ) {
@@ -207,6 +353,71 @@ public abstract class AbstractRestConnectionQuery<ResponseType> implements IRest
 				processor.process(obj);
 			}
 		}
-		return data;
+	}
+	
+	/**
+	 * Process all results returned by the given {@link WebTarget} while the response is 
+	 * being parsed, by calling the given {@link IJSONMapProcessor} for each record as soon
+	 * as it has been read from the records array. All other top-level response properties
+	 * are returned as a {@link JSONMap} instance, allowing for regular paging data processing. 
+	 * Once the maximum number of results has been reached, any remaining records are skipped 
+	 * without being deserialized. If reading the response fails due to a transient error, 
+	 * the request for this page is retried according to the connection's retry policy, 
+	 * skipping any records that have already been processed.
+	 */
+	private JSONMap processStreamingRequest(WebTarget target, IJSONMapProcessor processor, PagingData pagingData) {
+		RetryState retryState = conn.newRetryState(httpMethod);
+		int[] recordsRead = {0};
+		while ( true ) {
+			int recordsToSkip = recordsRead[0];
+			try {
+				return processStreamingResponse(target, processor, pagingData, recordsToSkip, recordsRead);
+			} catch (IOException e) {
+				long retryDelayMillis = retryState == null ? -1 : retryState.getRetryDelayMillis(e);
+				if ( retryDelayMillis < 0 ) {
+					throw new RuntimeException("Error processing response from "+target.getUri(), e);
+				}
+				log.warn("Error processing response from "+target.getUri()+" after "+recordsRead[0]+" records, retrying page in "+retryDelayMillis+" ms: "+e.getMessage());
+				RetryState.sleep(retryDelayMillis);
+			}
+		}
+	}
+	
+	private JSONMap processStreamingResponse(WebTarget target, IJSONMapProcessor processor, PagingData pagingData, int recordsToSkip, int[] recordsRead) throws IOException {
+		String recordsPropertyName = getStreamingRecordsPropertyName();
+		JSONObjectMapper mapper = JSONObjectMapper.getInstance();
+		JSONMap envelope = new JSONMap();
+		int recordIndex = 0;
+		try ( Response response = executeRequest(target, Response.class);
+			  InputStream is = response.readEntity(InputStream.class);
+			  JsonParser parser = mapper.getFactory().createParser(is) ) {
+			if ( parser.nextToken() != JsonToken.START_OBJECT ) {
+				throw new RuntimeException("Expected JSON object in response from "+target.getUri());
+			}
+			while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+				String name = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if ( recordsPropertyName.equals(name) && token == JsonToken.START_ARRAY ) {
+					while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+						processStreamingRecord(parser, mapper, recordIndex++ < recordsToSkip ? null : processor, pagingData);
+						recordsRead[0] = Math.max(recordsRead[0], recordIndex);
+					}
+				} else if ( recordsPropertyName.equals(name) && token == JsonToken.START_OBJECT ) {
+					processStreamingRecord(parser, mapper, recordIndex++ < recordsToSkip ? null : processor, pagingData);
+					recordsRead[0] = Math.max(recordsRead[0], recordIndex);
+				} else {
+					envelope.put(name, mapper.readValue(parser, Object.class));
+				}
+			}
+		}
+		return envelope;
+	}
+
+	private void processStreamingRecord(JsonParser parser, JSONObjectMapper mapper, IJSONMapProcessor processor, PagingData pagingData) throws IOException {
+		if ( processor == null || pagingData.isMaxResultsReached() ) {
+			parser.skipChildren();
+		} else {
+			processor.process(mapper.readValue(parser, JSONMap.class));
+		}
 	}
 }
@@ -33,6 +33,7 @@ import javax.ws.rs.client.Entity;
 
 import com.fortify.util.rest.connection.IRestConnection;
 import com.fortify.util.rest.json.ondemand.IJSONMapOnDemandLoader;
+import com.fortify.util.rest.json.ondemand.IJSONMapOnDemandLoaderAsync;
 import com.fortify.util.rest.json.preprocessor.IJSONMapPreProcessor;
 import com.fortify.util.rest.json.preprocessor.enrich.JSONMapEnrichWithOnDemandProperty;
 import com.fortify.util.rest.webtarget.IWebTargetUpdater;
@@ -90,6 +91,9 @@ public abstract class AbstractRestConnectionQueryBuilder<ConnType extends IRestC
 	private final List<IJSONMapPreProcessor> preProcessors = new ArrayList<>();
 	private int maxResults = -1;
 	private boolean useCache;
+	private int maxConcurrentPageRequests = 1;
+	private boolean useStreaming;
+	private int onDemandPrefetchWindowSize = 0;
 	private final boolean pagingSupported;
 	@Setter(AccessLevel.PROTECTED) private String httpMethod = HttpMethod.GET;
 	@Setter(AccessLevel.PROTECTED) private Entity<?> entity = null;
@@ -120,6 +124,52 @@ public abstract class AbstractRestConnectionQueryBuilder<ConnType extends IRestC
 		return _this();
 	}
 	
+	/**
+	 * Configure the maximum number of concurrent page requests. If set to a value larger
+	 * than 1, all pages following the first page will be loaded concurrently, based on the 
+	 * total number of available results returned with the first page. Results will still
+	 * be processed in page order. This setting is ignored if paging is not supported, or 
+	 * if the target system doesn't return the total number of available results.
+	 * @param maxConcurrentPageRequests
+	 * @return
+	 */
+	public T maxConcurrentPageRequests(int maxConcurrentPageRequests) {
+		this.maxConcurrentPageRequests = maxConcurrentPageRequests;
+		return _this();
+	}
+	
+	/**
+	 * Configure whether responses should be processed in streaming mode. In streaming mode,
+	 * each record is passed to the configured pre-processors and processor as soon as it has
+	 * been parsed, instead of first loading the full response into memory. This setting is 
+	 * ignored if caching is enabled, or if the query implementation doesn't support streaming.
+	 * Pages that are loaded concurrently (see {@link #maxConcurrentPageRequests(int)}) are
+	 * not streamed.
+	 * @param useStreaming
+	 * @return
+	 */
+	public T useStreaming(boolean useStreaming) {
+		this.useStreaming = useStreaming;
+		return _this();
+	}
+	
+	/**
+	 * Configure whether on-demand properties (see {@link #onDemand(String, String)}) should
+	 * be prefetched. If set to a value larger than 0, on-demand properties are loaded 
+	 * asynchronously as soon as a record has been read, and stored in the record before 
+	 * it is passed to the processor. The given window size specifies the maximum number of
+	 * records for which on-demand properties are being loaded concurrently; this limits both
+	 * memory usage and the number of concurrent requests. Only on-demand properties with an
+	 * {@link IJSONMapOnDemandLoaderAsync} loader that stores the loaded value are prefetched; 
+	 * other on-demand properties are still loaded when accessed. By default, on-demand properties are not prefetched.
+	 * @param windowSize
+	 * @return
+	 */
+	public T prefetchOnDemand(int windowSize) {
+		this.onDemandPrefetchWindowSize = windowSize;
+		return _this();
+	}
+	
 	@SuppressWarnings("unchecked")
 	protected T _this() {
 		return (T)this;
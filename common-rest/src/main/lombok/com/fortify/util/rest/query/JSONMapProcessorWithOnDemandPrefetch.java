@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import com.fortify.util.rest.connection.BoundedExecutor;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.json.ondemand.IJSONMapOnDemandLoaderAsync;
+import com.fortify.util.rest.json.processor.IJSONMapProcessor;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * This package-private class is used by {@link AbstractRestConnectionQuery} to
+ * prefetch on-demand properties before records are passed to the configured 
+ * {@link IJSONMapProcessor}. For every record, all properties that hold an 
+ * {@link IJSONMapOnDemandLoaderAsync} instance that stores the loaded value are 
+ * loaded asynchronously, and the record is held back until these properties have
+ * been loaded and stored in the record. Loaders that don't store the loaded value
+ * are left in place, as they would load the value again on every access anyway.
+ * At most the configured window size of records is held back at any time, limiting
+ * memory usage, and at most the configured window size of blocking on-demand loads 
+ * are executed concurrently on the given {@link Executor}. 
+ * Records are passed to the configured {@link IJSONMapProcessor} in their original 
+ * order; all pending records are flushed before the next page is being processed.
+ * 
+ * If prefetching a property fails, the on-demand loader is left in place, so the 
+ * property will be loaded (and any errors will be reported) when it is accessed.
+ * 
+ * @author Ruud Senden
+ *
+ */
+@CommonsLog
+class JSONMapProcessorWithOnDemandPrefetch implements IJSONMapProcessor {
+	private final IJSONMapProcessor processor;
+	private final int windowSize;
+	private final Executor executor;
+	private final Deque<PendingRecord> pendingRecords;
+	
+	/**
+	 * Constructor for configuring the {@link IJSONMapProcessor} to which records
+	 * are passed once all on-demand properties have been loaded, the maximum
+	 * number of records for which on-demand properties are being loaded concurrently,
+	 * and the shared {@link Executor} for performing blocking on-demand loads.
+	 * 
+	 * @param processor
+	 * @param windowSize
+	 * @param executor
+	 */
+	public JSONMapProcessorWithOnDemandPrefetch(IJSONMapProcessor processor, int windowSize, Executor executor) {
+		this.processor = processor;
+		this.windowSize = windowSize;
+		this.executor = new BoundedExecutor(executor, windowSize);
+		this.pendingRecords = new ArrayDeque<>(windowSize);
+	}
+
+	/**
+	 * Start loading all on-demand properties for the given {@link JSONMap}, and pass
+	 * the oldest pending record to the configured {@link IJSONMapProcessor} if the 
+	 * window is full.
+	 */
+	@Override
+	public void process(JSONMap json) {
+		Map<String, IJSONMapOnDemandLoaderAsync> loaders = new LinkedHashMap<>();
+		for ( Map.Entry<String, Object> entry : json.entrySet() ) {
+			if ( entry.getValue() instanceof IJSONMapOnDemandLoaderAsync && ((IJSONMapOnDemandLoaderAsync)entry.getValue()).isStoreValue() ) {
+				loaders.put(entry.getKey(), (IJSONMapOnDemandLoaderAsync)entry.getValue());
+			}
+		}
+		// Loaders may access other (on-demand) properties, so we can't start loading while iterating over the record
+		List<PendingProperty> properties = new ArrayList<>(loaders.size());
+		for ( Map.Entry<String, IJSONMapOnDemandLoaderAsync> entry : loaders.entrySet() ) {
+			try {
+				properties.add(new PendingProperty(entry.getKey(), entry.getValue(), entry.getValue().getOnDemandAsync(entry.getKey(), json, executor)));
+			} catch (RuntimeException e) {
+				log.warn("Error prefetching on-demand property "+entry.getKey()+", property will be loaded when accessed: "+e);
+			}
+		}
+		if ( properties.isEmpty() && pendingRecords.isEmpty() ) {
+			processor.process(json);
+		} else {
+			pendingRecords.add(new PendingRecord(json, properties));
+			while ( pendingRecords.size() >= windowSize ) {
+				processNextPendingRecord();
+			}
+		}
+	}
+	
+	/**
+	 * Pass all pending records to the configured {@link IJSONMapProcessor} before
+	 * notifying the configured {@link IJSONMapProcessor} about the next page.
+	 */
+	@Override
+	public void notifyNextPage(PagingData pagingData) {
+		flush();
+		processor.notifyNextPage(pagingData);
+	}
+	
+	/**
+	 * Wait for all pending records to be loaded, and pass them to the 
+	 * configured {@link IJSONMapProcessor}.
+	 */
+	public void flush() {
+		while ( !pendingRecords.isEmpty() ) {
+			processNextPendingRecord();
+		}
+	}
+	
+	/**
+	 * Cancel loading on-demand properties for all pending records, and 
+	 * discard these records. This is used if processing has been aborted.
+	 */
+	public void cancel() {
+		for ( PendingRecord record : pendingRecords ) {
+			for ( PendingProperty property : record.getProperties() ) {
+				property.getFuture().cancel(true);
+			}
+		}
+		pendingRecords.clear();
+	}
+	
+	private void processNextPendingRecord() {
+		PendingRecord record = pendingRecords.poll();
+		JSONMap json = record.getJson();
+		for ( PendingProperty property : record.getProperties() ) {
+			try {
+				Object value = property.getFuture().get();
+				// Only store the value if the on-demand loader hasn't been replaced yet
+				json.replace(property.getName(), property.getLoader(), value);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while prefetching on-demand property "+property.getName(), e);
+			} catch (ExecutionException e) {
+				log.warn("Error prefetching on-demand property "+property.getName()+", property will be loaded when accessed: "+e.getCause());
+			}
+		}
+		processor.process(json);
+	}
+	
+	@RequiredArgsConstructor @Getter
+	private static final class PendingRecord {
+		private final JSONMap json;
+		private final List<PendingProperty> properties;
+	}
+	
+	@RequiredArgsConstructor @Getter
+	private static final class PendingProperty {
+		private final String name;
+		private final IJSONMapOnDemandLoaderAsync loader;
+		private final CompletableFuture<Object> future;
+	}
+}
@@ -76,9 +76,11 @@ public class PagingData {
 	
 	/**
 	 * Set the available total number of results. This is used for
-	 * information purposes only (for example to be printed/logged
+	 * information purposes (for example to be printed/logged
 	 * in the {@link IJSONMapProcessor#notifyNextPage(PagingData)}
-	 * method).
+	 * method), and for determining which pages to load when
+	 * concurrent page requests have been enabled through
+	 * {@link AbstractRestConnectionQueryBuilder#maxConcurrentPageRequests(int)}.
 	 * 
 	 * @param totalAvailable
 	 */
@@ -128,6 +130,22 @@ public class PagingData {
 		processedTotalNotFiltered += count;
 	}
 	
+	/**
+	 * Package-private method for creating a {@link PagingData} instance 
+	 * describing a full page starting at the given position. This is used 
+	 * to generate requests for pages that are loaded ahead of the page that
+	 * is currently being processed.
+	 * @param pageStart
+	 * @return
+	 */
+	PagingData forPageStart(int pageStart) {
+		PagingData result = new PagingData().pageSize(pageSize).maxResults(maxResults);
+		result.processedTotal = pageStart;
+		result.totalAvailable = totalAvailable;
+		result.nextPageSize = pageSize;
+		return result;
+	}
+	
 	/**
 	 * Configure the maximum number of results to
 	 * be loaded.
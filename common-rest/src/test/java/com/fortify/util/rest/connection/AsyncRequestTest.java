@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.HttpMethod;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.resilience.Bulkhead;
+import com.fortify.util.rest.connection.resilience.RetryPolicy;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for {@link AbstractRestConnection#executeRequestAsync(String, javax.ws.rs.client.WebTarget, Class)},
+ * verifying that submitting requests never blocks the calling thread, and that
+ * retries are executed on threads owned by the connection.
+ */
+public class AsyncRequestTest {
+	@Rule public final StubServer server = new StubServer();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final CountDownLatch responseLatch = new CountDownLatch(1);
+	private volatile int failedRequests = 0;
+	
+	@Before
+	public void setUp() {
+		server.handle("/", exchange -> {
+			int count = requestCount.incrementAndGet();
+			try {
+				responseLatch.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			StubServer.sendJson(exchange, count <= failedRequests ? 503 : 200, "{\"result\":\"ok\"}");
+		});
+	}
+	
+	@Test
+	public void testSubmitDoesNotBlockOnFullBulkhead() throws Exception {
+		Bulkhead bulkhead = new Bulkhead(1);
+		RestConnection conn = builder().bulkhead(bulkhead).build();
+		try {
+			// Initialize the client before measuring submission time
+			conn.getClient();
+			long startMillis = System.currentTimeMillis();
+			CompletableFuture<JSONMap> first = request(conn);
+			CompletableFuture<JSONMap> second = request(conn);
+			assertTrue(System.currentTimeMillis()-startMillis < 1000);
+			Thread.sleep(300);
+			assertEquals(1, bulkhead.getInFlightRequests());
+			assertEquals(1, bulkhead.getQueuedRequests());
+			assertFalse(second.isDone());
+			// The queued request should be waiting on a thread owned by the connection
+			assertTrue(Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().startsWith("rest-connection-task-")));
+			responseLatch.countDown();
+			assertEquals("ok", first.get(10, TimeUnit.SECONDS).get("result"));
+			assertEquals("ok", second.get(10, TimeUnit.SECONDS).get("result"));
+			assertEquals(0, bulkhead.getInFlightRequests());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testRetry() throws Exception {
+		failedRequests = 1;
+		responseLatch.countDown();
+		RestConnection conn = builder().retryPolicy(new RetryPolicy().retryOnStatus(503).initialBackoffMillis(10)).build();
+		try {
+			assertEquals("ok", request(conn).get(10, TimeUnit.SECONDS).get("result"));
+			assertEquals(2, requestCount.get());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testAsyncClientThreadsAreDaemonThreads() throws Exception {
+		responseLatch.countDown();
+		RestConnection conn = builder().build();
+		try {
+			assertEquals("ok", request(conn).get(10, TimeUnit.SECONDS).get("result"));
+			Set<Thread> asyncThreads = Thread.getAllStackTraces().keySet().stream()
+					.filter(t -> t.getName().startsWith("http-async-"))
+					.collect(Collectors.toSet());
+			assertFalse(asyncThreads.isEmpty());
+			for ( Thread thread : asyncThreads ) {
+				assertTrue(thread.getName(), thread.isDaemon());
+			}
+		} finally {
+			conn.close();
+		}
+	}
+	
+	private CompletableFuture<JSONMap> request(RestConnection conn) {
+		return conn.executeRequestAsync(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class);
+	}
+	
+	private RestConnection.RestConnectionBuilder builder() {
+		return RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.publishMetricsMBean(false);
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BoundedExecutor}
+ */
+public class BoundedExecutorTest {
+	private final ExecutorService delegate = Executors.newCachedThreadPool();
+	
+	@After
+	public void shutdown() {
+		delegate.shutdownNow();
+	}
+	
+	@Test
+	public void testMaxConcurrentTasks() throws Exception {
+		BoundedExecutor executor = new BoundedExecutor(delegate, 3);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch completed = new CountDownLatch(50);
+		for ( int i = 0 ; i < 50 ; i++ ) {
+			executor.execute(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+					completed.countDown();
+				}
+			});
+		}
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		assertEquals(3, maxRunning.get());
+		assertEquals(0, executor.getQueuedTasks());
+	}
+	
+	@Test
+	public void testQueuedTasksDoNotOccupyThreads() throws Exception {
+		BoundedExecutor executor = new BoundedExecutor(delegate, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch completed = new CountDownLatch(3);
+		for ( int i = 0 ; i < 3 ; i++ ) {
+			executor.execute(() -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				completed.countDown();
+			});
+		}
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertEquals(1, executor.getRunningTasks());
+		assertEquals(2, executor.getQueuedTasks());
+		assertEquals(1, ((ThreadPoolExecutor)delegate).getActiveCount());
+		release.countDown();
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testRejectedTasksAreExecuted() throws Exception {
+		delegate.shutdown();
+		BoundedExecutor executor = new BoundedExecutor(delegate, 2);
+		AtomicInteger executed = new AtomicInteger();
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			executor.execute(executed::incrementAndGet);
+		}
+		assertEquals(5, executed.get());
+		assertEquals(0, executor.getRunningTasks());
+	}
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import static com.fortify.util.rest.test.ConcurrentTestUtils.sleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.HttpMethod;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for revalidating stale cache entries, verifying that concurrent requests for
+ * the same stale entry result in a single conditional request, and that requests 
+ * waiting for this conditional request don't block on any monitor.
+ */
+public class CacheRevalidationTest {
+	private static final String CACHE_NAME = "test";
+	private static final int THREADS = 8;
+	@Rule public final StubServer server = new StubServer(THREADS);
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final AtomicInteger conditionalRequestCount = new AtomicInteger();
+	
+	@Before
+	public void setUp() {
+		server.handle("/", exchange -> {
+			requestCount.incrementAndGet();
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+			if ( exchange.getRequestHeaders().getFirst("If-None-Match") != null ) {
+				conditionalRequestCount.incrementAndGet();
+				sleep(500);
+				StubServer.sendStatus(exchange, 304);
+			} else {
+				StubServer.sendJson(exchange, 200, "{\"result\":\"ok\"}");
+			}
+		});
+	}
+	
+	@Test
+	public void testConcurrentRevalidation() throws Exception {
+		RestConnection conn = new RestConnection(RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.publishMetricsMBean(false)) {
+			@Override
+			protected String getCachePropertiesResourceName() {
+				return "CacheRevalidationTestCache.properties";
+			}
+		};
+		try {
+			assertEquals("ok", request(conn).get("result"));
+			sleep(200);
+			List<Thread> threads = new ArrayList<>();
+			List<JSONMap> results = new ArrayList<>();
+			for ( int i = 0 ; i < THREADS ; i++ ) {
+				Thread thread = new Thread(() -> {
+					JSONMap result = request(conn);
+					synchronized (results) { results.add(result); }
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			sleep(250);
+			for ( Thread thread : threads ) {
+				assertNotEquals(Thread.State.BLOCKED, thread.getState());
+			}
+			for ( Thread thread : threads ) {
+				thread.join(10000);
+			}
+			assertEquals(THREADS, results.size());
+			for ( JSONMap result : results ) {
+				assertEquals("ok", result.get("result"));
+			}
+			assertEquals(1, conditionalRequestCount.get());
+			assertEquals(2, requestCount.get());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	private JSONMap request(RestConnection conn) {
+		return conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class, CACHE_NAME);
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.HttpMethod;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.RestConnection.RestConnectionBuilder;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.ConcurrentTestUtils;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Stress tests for sharing a single {@link RestConnection} between many threads.
+ * All tests start their worker threads at the same time to maximize contention
+ * on lazily initialized connection state, and verify that every thread observes
+ * the same instances.
+ */
+public class ConcurrentConnectionAccessTest {
+	static final int THREADS = 32;
+	@Rule public final StubServer server = new StubServer(THREADS);
+	private final AtomicInteger requestCount = new AtomicInteger();
+	
+	@Before
+	public void setUp() {
+		server.handle("/", exchange -> {
+			requestCount.incrementAndGet();
+			StubServer.sendJson(exchange, 200, "{\"result\":\"ok\"}");
+		});
+	}
+	
+	@Test
+	public void testConcurrentGetClient() throws Exception {
+		RestConnection conn = builder().build();
+		try {
+			assertSingleInstance(runConcurrently(conn::getClient));
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testConcurrentApi() throws Exception {
+		RestConnection conn = builder().build();
+		try {
+			List<TestApi> apis = runConcurrently(() -> conn.api(TestApi.class));
+			assertSingleInstance(apis);
+			assertSame(conn, apis.get(0).conn);
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		RestConnection conn = builder().build();
+		try {
+			List<JSONMap> results = runConcurrently(() -> conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class));
+			for ( JSONMap result : results ) {
+				assertEquals("ok", result.get("result"));
+			}
+			assertEquals(THREADS, requestCount.get());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testConcurrentRegisterAndGet() throws Exception {
+		List<RestConnection> conns = runConcurrently(() -> {
+			RestConnection conn = builder().build();
+			assertSame(conn, Connections.get(conn.getConnectionId(), RestConnection.class));
+			return conn;
+		});
+		assertEquals(THREADS, identitySet(conns).size());
+		for ( RestConnection conn : conns ) {
+			assertSame(conn, Connections.get(conn.getConnectionId(), RestConnection.class));
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testConcurrentRetrieverGetConnection() throws Exception {
+		TestRetriever retriever = new TestRetriever(server.getBaseUrl());
+		List<RestConnection> conns = runConcurrently(retriever::getConnection);
+		try {
+			assertSingleInstance(conns);
+			assertSame(conns.get(0), Connections.get(conns.get(0).getConnectionId(), RestConnection.class));
+		} finally {
+			conns.get(0).close();
+		}
+	}
+	
+	private RestConnectionBuilder builder() {
+		return RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.publishMetricsMBean(false);
+	}
+	
+	/**
+	 * Invoke the given {@link Callable} from {@link #THREADS} threads that are released
+	 * at the same time, and return the results in thread order.
+	 */
+	static final <T> List<T> runConcurrently(Callable<T> callable) throws Exception {
+		return ConcurrentTestUtils.runConcurrently(THREADS, callable);
+	}
+	
+	static final <T> Set<T> identitySet(List<T> values) {
+		Set<T> result = Collections.newSetFromMap(new IdentityHashMap<>());
+		result.addAll(values);
+		return result;
+	}
+	
+	static final void assertSingleInstance(List<?> values) {
+		assertEquals(THREADS, values.size());
+		assertEquals(1, identitySet(values).size());
+	}
+	
+	public static final class TestApi {
+		private final RestConnection conn;
+		public TestApi(RestConnection conn) {
+			this.conn = conn;
+		}
+	}
+	
+	private static final class TestRetriever extends AbstractRestConnectionRetriever<RestConnection, RestConnectionBuilder> {
+		public TestRetriever(String baseUrl) {
+			getConfig().baseUrl(baseUrl).publishMetricsMBean(false);
+		}
+		
+		@Override
+		protected RestConnectionBuilder createConfig() {
+			return RestConnection.builder();
+		}
+	}
+}
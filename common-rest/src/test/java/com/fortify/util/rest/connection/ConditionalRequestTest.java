@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.Response;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for {@link AbstractRestConnection#executeConditionalRequest(String, javax.ws.rs.client.Invocation.Builder)},
+ * verifying that 304 (Not Modified) and 416 (Range Not Satisfiable) responses are only
+ * returned to callers that explicitly execute a conditional or range request.
+ */
+public class ConditionalRequestTest {
+	@Rule public final StubServer server = new StubServer()
+			.handle("/notModified", exchange -> StubServer.sendStatus(exchange, 304))
+			.handle("/rangeNotSatisfiable", exchange -> StubServer.sendStatus(exchange, 416));
+	private RestConnection conn;
+	
+	@Before
+	public void setUp() {
+		conn = RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.publishMetricsMBean(false).build();
+	}
+	
+	@After
+	public void tearDown() {
+		conn.close();
+	}
+	
+	@Test
+	public void testConditionalRequest() {
+		for ( String path : new String[] {"/notModified", "/rangeNotSatisfiable"} ) {
+			try ( Response response = conn.executeConditionalRequest(HttpMethod.GET, conn.getBaseResource().path(path).request()) ) {
+				assertEquals(path.equals("/notModified") ? 304 : 416, response.getStatus());
+			}
+		}
+	}
+	
+	@Test
+	public void testRegularRequest() {
+		for ( String path : new String[] {"/notModified", "/rangeNotSatisfiable"} ) {
+			try {
+				conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path(path).request(), Response.class).close();
+				fail("Expected request to "+path+" to fail");
+			} catch ( RuntimeException expected ) {}
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.ws.rs.HttpMethod;
+
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.resilience.Bulkhead;
+import com.fortify.util.rest.connection.resilience.CircuitBreaker;
+import com.fortify.util.rest.connection.resilience.RateLimiter;
+import com.fortify.util.rest.connection.resilience.RequestRejectedException;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for the interaction between {@link RateLimiter}, {@link Bulkhead} and 
+ * {@link CircuitBreaker}: time spent waiting for the {@link RateLimiter}, or 
+ * waiting before retrying a rate-limited request, should neither occupy a 
+ * {@link Bulkhead} slot nor count as slow requests for the {@link CircuitBreaker}.
+ */
+public class RequestPermitTest {
+	@Rule public final StubServer server = new StubServer();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private volatile int status = 200;
+	private volatile int rateLimitedRequests = 0;
+	
+	@Before
+	public void setUp() {
+		server.handle("/", exchange -> {
+			if ( requestCount.incrementAndGet() <= rateLimitedRequests ) {
+				exchange.getResponseHeaders().add("X-Retry-After", "1");
+				StubServer.sendStatus(exchange, 429);
+			} else {
+				StubServer.sendJson(exchange, status, "{\"result\":\"ok\"}");
+			}
+		});
+	}
+	
+	@Test
+	public void testRateLimiterWaitDoesNotHoldBulkheadSlot() throws Exception {
+		RateLimiter rateLimiter = new RateLimiter();
+		Bulkhead bulkhead = new Bulkhead(1);
+		CircuitBreaker circuitBreaker = slowRequestCircuitBreaker();
+		RestConnection conn = builder().rateLimiter(rateLimiter).bulkhead(bulkhead).circuitBreaker(circuitBreaker).build();
+		try {
+			// Initialize the client before pausing the rate limiter
+			request(conn).get();
+			rateLimiter.pause(1000);
+			CompletableFuture<JSONMap> result = CompletableFuture.supplyAsync(request(conn));
+			Thread.sleep(300);
+			assertEquals(0, bulkhead.getInFlightRequests());
+			assertEquals("ok", result.get(10, TimeUnit.SECONDS).get("result"));
+			assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testRateLimitedRetryIsNotSlowRequest() throws Exception {
+		rateLimitedRequests = 1;
+		CircuitBreaker circuitBreaker = slowRequestCircuitBreaker();
+		RestConnection conn = new RestConnection(builder().circuitBreaker(circuitBreaker)) {
+			@Override
+			protected ServiceUnavailableRetryStrategy getServiceUnavailableRetryStrategy() {
+				return new TooManyRequestsRetryStrategy();
+			}
+		};
+		try {
+			long startMillis = System.currentTimeMillis();
+			assertEquals("ok", request(conn).get().get("result"));
+			assertTrue(System.currentTimeMillis()-startMillis >= 1000);
+			assertEquals(2, requestCount.get());
+			assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testRejectedRequest() throws Exception {
+		status = 500;
+		CircuitBreaker circuitBreaker = new CircuitBreaker().minimumNumberOfRequests(1).openDurationMillis(60000);
+		RestConnection conn = builder().circuitBreaker(circuitBreaker).build();
+		try {
+			try {
+				request(conn).get();
+				fail("Expected request to fail");
+			} catch ( RuntimeException e ) {
+				if ( e instanceof RequestRejectedException ) { throw e; }
+			}
+			assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+			try {
+				request(conn).get();
+				fail("Expected request to be rejected");
+			} catch ( RequestRejectedException expected ) {}
+			try {
+				conn.executeRequestAsync(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class).get(10, TimeUnit.SECONDS);
+				fail("Expected request to be rejected");
+			} catch ( ExecutionException e ) {
+				assertTrue(e.getCause() instanceof RequestRejectedException);
+			}
+			assertEquals(1, requestCount.get());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	private Supplier<JSONMap> request(RestConnection conn) {
+		return () -> conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class);
+	}
+	
+	private CircuitBreaker slowRequestCircuitBreaker() {
+		return new CircuitBreaker().minimumNumberOfRequests(1).slowRequestRateThreshold(100).slowRequestDurationMillis(500);
+	}
+	
+	private RestConnection.RestConnectionBuilder builder() {
+		return RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.publishMetricsMBean(false);
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Tests for {@link PersistentResponseCache}
+ */
+public class PersistentResponseCacheTest {
+	private static final String SCOPE = "http://localhost/\nuser";
+	@Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+	
+	@Test
+	public void testExpiredEntryDeletedOnRead() throws Exception {
+		Path baseDirectory = tempFolder.getRoot().toPath();
+		PersistentResponseCache cache = new PersistentResponseCache(baseDirectory, SCOPE);
+		cache.put("test", "expired", entry("value", System.currentTimeMillis()-TimeUnit.HOURS.toMillis(2)));
+		cache.put("test", "valid", entry("value", System.currentTimeMillis()));
+		assertEquals(2, listEntries(cache).size());
+		
+		assertNull(cache.get("test", "expired", TimeUnit.HOURS.toMillis(1)));
+		assertNotNull(cache.get("test", "valid", TimeUnit.HOURS.toMillis(1)));
+		assertEquals(1, listEntries(cache).size());
+	}
+	
+	@Test
+	public void testUnreadableEntryDeletedOnRead() throws Exception {
+		Path baseDirectory = tempFolder.getRoot().toPath();
+		PersistentResponseCache cache = new PersistentResponseCache(baseDirectory, SCOPE);
+		cache.put("test", "corrupt", entry("value", System.currentTimeMillis()));
+		Path file = listEntries(cache).get(0);
+		Files.write(file, new byte[] {1, 2, 3});
+		
+		assertNull(cache.get("test", "corrupt", TimeUnit.HOURS.toMillis(1)));
+		assertFalse(Files.exists(file));
+	}
+	
+	@Test
+	public void testSweepByAgeOnOpen() throws Exception {
+		Path baseDirectory = tempFolder.getRoot().toPath();
+		PersistentResponseCache cache = new PersistentResponseCache(baseDirectory, SCOPE);
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			cache.put("test", "key"+i, entry("value"+i, System.currentTimeMillis()));
+		}
+		Path staleTempFile = Files.createTempFile(listEntries(cache).get(0).getParent(), "stale", ".tmp");
+		setAge(staleTempFile, TimeUnit.DAYS.toMillis(2));
+		setAge(getFile(cache, "key0"), TimeUnit.DAYS.toMillis(2));
+		setAge(getFile(cache, "key1"), TimeUnit.DAYS.toMillis(2));
+		
+		cache = new PersistentResponseCache(baseDirectory, SCOPE, TimeUnit.DAYS.toMillis(1), -1);
+		assertEquals(3, listFiles(cache).size());
+		assertFalse(Files.exists(staleTempFile));
+		assertNull(cache.get("test", "key0", Long.MAX_VALUE));
+		assertNull(cache.get("test", "key1", Long.MAX_VALUE));
+		assertNotNull(cache.get("test", "key2", Long.MAX_VALUE));
+	}
+	
+	@Test
+	public void testSweepBySizeOnOpen() throws Exception {
+		Path baseDirectory = tempFolder.getRoot().toPath();
+		PersistentResponseCache cache = new PersistentResponseCache(baseDirectory, SCOPE);
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			cache.put("test", "key"+i, entry("value"+i, System.currentTimeMillis()));
+			setAge(getFile(cache, "key"+i), TimeUnit.MINUTES.toMillis(10-i));
+		}
+		long entrySize = Files.size(getFile(cache, "key0"));
+		
+		cache = new PersistentResponseCache(baseDirectory, SCOPE, -1, 2*entrySize);
+		assertEquals(2, listEntries(cache).size());
+		assertNull(cache.get("test", "key2", Long.MAX_VALUE));
+		assertEquals("value3", cache.get("test", "key3", Long.MAX_VALUE).getValue());
+		assertEquals("value4", cache.get("test", "key4", Long.MAX_VALUE).getValue());
+	}
+	
+	@Test
+	public void testNoSweepWithinLimits() throws Exception {
+		Path baseDirectory = tempFolder.getRoot().toPath();
+		PersistentResponseCache cache = new PersistentResponseCache(baseDirectory, SCOPE);
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			cache.put("test"+i, "key", entry("value"+i, System.currentTimeMillis()));
+		}
+		cache = new PersistentResponseCache(baseDirectory, SCOPE, TimeUnit.DAYS.toMillis(1), 1024*1024);
+		assertEquals(5, listEntries(cache).size());
+		assertFalse(Files.exists(new PersistentResponseCache(baseDirectory, "other", 0, 0).getDirectory()));
+	}
+	
+	private static final PersistentCacheEntry entry(String value, long createdMillis) {
+		return new PersistentCacheEntry(value, value.length(), "\"etag\"", null, createdMillis);
+	}
+	
+	private static final Path getFile(PersistentResponseCache cache, String key) {
+		return cache.getDirectory().resolve("test").resolve(Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString()+".entry");
+	}
+	
+	private static final void setAge(Path file, long ageMillis) throws IOException {
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()-ageMillis));
+	}
+	
+	private static final List<Path> listEntries(PersistentResponseCache cache) throws IOException {
+		return listFiles(cache).stream().filter(p->p.toString().endsWith(".entry")).collect(Collectors.toList());
+	}
+	
+	private static final List<Path> listFiles(PersistentResponseCache cache) throws IOException {
+		try ( Stream<Path> files = Files.walk(cache.getDirectory()) ) {
+			return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+	}
+}
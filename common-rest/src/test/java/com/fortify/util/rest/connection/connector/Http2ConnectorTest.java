@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.Entity;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.ProtocolVersion;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.ProxyConfig;
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for {@link Http2Connector}, verifying synchronous and asynchronous round trips
+ * against a local HTTP/2 server, and that requests are executed over HTTP/1.1 through
+ * the configured proxy if a proxy has been configured.
+ */
+public class Http2ConnectorTest {
+	@Rule public final StubServer proxyServer = new StubServer();
+	private HttpAsyncServer server;
+	private String baseUrl;
+	private volatile ProtocolVersion lastProtocolVersion;
+	private volatile String lastProxiedUri;
+	
+	@Before
+	public void setUp() throws Exception {
+		server = H2ServerBootstrap.bootstrap()
+				.setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+				.register("*", new EchoHandler())
+				.create();
+		server.start();
+		InetSocketAddress address = (InetSocketAddress)server.listen(new InetSocketAddress("localhost", 0)).get(10, TimeUnit.SECONDS).getAddress();
+		baseUrl = "http://localhost:"+address.getPort();
+		proxyServer.handle("/", exchange -> {
+			lastProxiedUri = exchange.getRequestURI().toString();
+			StubServer.sendJson(exchange, 200, "{\"protocol\":\""+exchange.getProtocol()+"\"}");
+		});
+	}
+	
+	@After
+	public void tearDown() {
+		server.close(CloseMode.IMMEDIATE);
+	}
+	
+	@Test
+	public void testSyncRequest() throws Exception {
+		RestConnection conn = builder().build();
+		try {
+			JSONMap result = conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class);
+			assertEquals("GET /test", result.get("request"));
+			assertEquals(HttpVersion.HTTP_2, lastProtocolVersion);
+			assertNull(conn.getConnectionPoolStats());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testSyncRequestWithEntity() throws Exception {
+		RestConnection conn = builder().build();
+		try {
+			JSONMap data = new JSONMap();
+			data.put("name", "value");
+			JSONMap result = conn.executeRequest(HttpMethod.POST, conn.getBaseResource().path("/test"), Entity.entity(data, "application/json"), JSONMap.class);
+			assertEquals("POST /test", result.get("request"));
+			assertEquals("value", result.getPath("body.name"));
+			assertEquals(HttpVersion.HTTP_2, lastProtocolVersion);
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testAsyncRequest() throws Exception {
+		RestConnection conn = builder().build();
+		try {
+			JSONMap result = conn.executeRequestAsync(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class).get(10, TimeUnit.SECONDS);
+			assertEquals("GET /test", result.get("request"));
+			assertEquals(HttpVersion.HTTP_2, lastProtocolVersion);
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testProxySelection() throws Exception {
+		ProxyConfig proxy = new ProxyConfig();
+		proxy.setUrl(proxyServer.getBaseUrl());
+		RestConnection conn = builder().baseUrl("http://h2-target.invalid:8080").proxy(proxy).build();
+		try {
+			JSONMap result = conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/test"), JSONMap.class);
+			assertEquals("HTTP/1.1", result.get("protocol"));
+			assertEquals("http://h2-target.invalid:8080/test", lastProxiedUri);
+			assertNotNull(conn.getConnectionPoolStats());
+			assertNull(lastProtocolVersion);
+		} finally {
+			conn.close();
+		}
+	}
+	
+	private RestConnection.RestConnectionBuilder builder() {
+		return RestConnection.builder()
+				.baseUrl(baseUrl)
+				.http2Enabled(true)
+				.publishMetricsMBean(false);
+	}
+	
+	/**
+	 * Handler that echoes the request method, path and body as a JSON response,
+	 * recording the protocol version of the incoming request.
+	 */
+	private final class EchoHandler implements AsyncServerRequestHandler<Message<HttpRequest, String>> {
+		@Override
+		public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(HttpRequest request, EntityDetails entityDetails, HttpContext context) {
+			return new BasicRequestConsumer<>(StringAsyncEntityConsumer::new);
+		}
+		
+		@Override
+		public void handle(Message<HttpRequest, String> message, ResponseTrigger responseTrigger, HttpContext context) throws HttpException, IOException {
+			lastProtocolVersion = context.getProtocolVersion();
+			HttpRequest request = message.getHead();
+			String body = message.getBody() == null ? "null" : message.getBody();
+			String json = "{\"request\":\""+request.getMethod()+" "+request.getPath()+"\",\"body\":"+body+"}";
+			responseTrigger.submitResponse(new BasicResponseProducer(200, json, ContentType.APPLICATION_JSON), context);
+		}
+	}
+}
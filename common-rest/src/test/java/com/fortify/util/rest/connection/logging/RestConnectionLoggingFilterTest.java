@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.logging;
+
+import static com.fortify.util.rest.test.ConcurrentTestUtils.sleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.Entity;
+
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.glassfish.jersey.logging.LoggingFeature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.log4j.LogMaskingHelper;
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for {@link RestConnectionLoggingFilter}, capturing the messages logged to the
+ * Jersey {@link LoggingFeature} logger to verify sampling, slow and failed request 
+ * logging, entity truncation and masking of authorization headers.
+ */
+public class RestConnectionLoggingFilterTest {
+	private static final Logger LOG = Logger.getLogger(LoggingFeature.DEFAULT_LOGGER_NAME);
+	@Rule public final StubServer server = new StubServer();
+	private final List<String> messages = new CopyOnWriteArrayList<>();
+	private final Handler handler = new CapturingHandler();
+	private Level originalLevel;
+	
+	@Before
+	public void setUp() {
+		originalLevel = LOG.getLevel();
+		LOG.setLevel(Level.FINE);
+		LOG.addHandler(handler);
+		server.handle("/ok", exchange -> StubServer.sendJson(exchange, 200, "{\"result\":\"ok\"}"));
+		server.handle("/slow", exchange -> { sleep(300); StubServer.sendJson(exchange, 200, "{\"result\":\"slow\"}"); });
+		server.handle("/fail", exchange -> StubServer.sendJson(exchange, 404, "{\"result\":\"fail\"}"));
+		server.handle("/large", exchange -> StubServer.sendJson(exchange, 200, "{\"result\":\"0123456789abcdefghij\"}"));
+	}
+	
+	@After
+	public void tearDown() {
+		LOG.removeHandler(handler);
+		LOG.setLevel(originalLevel);
+	}
+	
+	@Test
+	public void testSampleRate() {
+		RestConnection conn = builder().logSampleRate(3).build();
+		try {
+			for ( int i = 0 ; i < 6 ; i++ ) { get(conn, "/ok"); }
+			assertEquals(2, count("Sending client request"));
+			assertEquals(2, count("Client response received"));
+			assertEquals(2, count("{\"result\":\"ok\"}"));
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testSlowRequestsOnly() {
+		RestConnection conn = builder().logSampleRate(0).logSlowRequestThreshold(200).build();
+		try {
+			get(conn, "/ok");
+			assertTrue(messages.toString(), messages.isEmpty());
+			get(conn, "/slow");
+			assertEquals(1, count("Sending client request"));
+			assertEquals(1, count("GET "+server.getBaseUrl()+"/slow"));
+			assertEquals(1, count("(slow request)"));
+			assertEquals(1, count("{\"result\":\"slow\"}"));
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testFailedRequestsOnly() {
+		RestConnection conn = builder().logSampleRate(0).logFailedRequests(true).build();
+		try {
+			get(conn, "/ok");
+			assertTrue(messages.toString(), messages.isEmpty());
+			try {
+				get(conn, "/fail");
+				fail("Expected request to fail");
+			} catch ( RuntimeException expected ) {}
+			assertEquals(1, count("Sending client request"));
+			assertEquals(1, count("(failed request)"));
+			assertEquals(1, count(" < 404"));
+			assertEquals(1, count("{\"result\":\"fail\"}"));
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testEntityTruncation() {
+		RestConnection conn = builder().logMaxEntitySize(16).build();
+		try {
+			assertEquals("0123456789abcdefghij", conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/large"), String.class)
+					.replaceAll(".*\"result\":\"([^\"]*)\".*", "$1"));
+			assertEquals(1, count("{\"result\":\"01234...more..."));
+			assertFalse(messages.toString(), messages.stream().anyMatch(m -> m.contains("56789")));
+			conn.executeRequest(HttpMethod.POST, conn.getBaseResource().path("/ok"), 
+					Entity.entity("{\"request\":\"0123456789\"}", "application/json"), String.class);
+			assertEquals(1, count("{\"request\":\"0123...more..."));
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testAuthorizationHeaderMasked() {
+		RestConnection conn = builder().build();
+		try {
+			conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/ok").request().header("Authorization", "Bearer secret-token"), String.class);
+			assertEquals(1, count("Authorization: [hidden]"));
+			assertFalse(messages.toString(), messages.stream().anyMatch(m -> m.contains("secret-token")));
+		} finally {
+			conn.close();
+		}
+	}
+	
+	@Test
+	public void testLoggerDisabled() {
+		LOG.setLevel(Level.INFO);
+		RestConnection conn = builder().logFailedRequests(true).logSlowRequestThreshold(0).build();
+		try {
+			get(conn, "/ok");
+			assertTrue(messages.toString(), messages.isEmpty());
+		} finally {
+			conn.close();
+		}
+	}
+	
+	private static void get(RestConnection conn, String path) {
+		conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path(path), String.class);
+	}
+	
+	private long count(String text) {
+		return messages.stream().filter(m -> m.contains(text)).collect(Collectors.counting());
+	}
+	
+	private RestConnection.RestConnectionBuilder builder() {
+		return RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.publishMetricsMBean(false);
+	}
+	
+	/**
+	 * {@link Handler} that captures log messages, applying the maskers registered through 
+	 * {@link LogMaskingHelper} at the time the message is logged, like the Log4j pattern 
+	 * converter used by applications.
+	 */
+	private final class CapturingHandler extends Handler {
+		@Override
+		public void publish(LogRecord record) {
+			StringBuilder sb = new StringBuilder();
+			LogMaskingHelper.format(Log4jLogEvent.newBuilder().setMessage(new SimpleMessage(record.getMessage())).build(), sb);
+			messages.add(sb.toString());
+		}
+		
+		@Override
+		public void flush() {}
+		
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RestConnectionMetrics}, verifying path normalization and the
+ * maximum number of endpoints for which metrics are recorded.
+ */
+public class RestConnectionMetricsTest {
+	@Test
+	public void testNormalizeNumericIds() {
+		assertEquals("/api/v1/issues/{id}/comments", RestConnectionMetrics.normalizePath("/api/v1/issues/123/comments"));
+		assertEquals("/api/v1/issues/{id}", RestConnectionMetrics.normalizePath("/api/v1/issues/456"));
+		assertEquals("/api/v1/issues/{id}/", RestConnectionMetrics.normalizePath("/api/v1/issues/456/"));
+		assertEquals("/{id}/{id}", RestConnectionMetrics.normalizePath("/1/22"));
+		assertEquals("{id}/a", RestConnectionMetrics.normalizePath("0/a"));
+	}
+	
+	@Test
+	public void testNormalizeUuids() {
+		assertEquals("/api/v3/releases/{id}/vulnerabilities", 
+				RestConnectionMetrics.normalizePath("/api/v3/releases/0f8fad5b-d9cb-469f-a165-70867728950e/vulnerabilities"));
+		assertEquals("/api/v3/releases/{id}", 
+				RestConnectionMetrics.normalizePath("/api/v3/releases/0F8FAD5B-D9CB-469F-A165-70867728950E"));
+		// Segments that only resemble a UUID are left as-is
+		assertEquals("/a/0f8fad5b-d9cb-469f-a165-70867728950x", RestConnectionMetrics.normalizePath("/a/0f8fad5b-d9cb-469f-a165-70867728950x"));
+		assertEquals("/a/0f8fad5bd9cb-469f-a165-70867728950e-", RestConnectionMetrics.normalizePath("/a/0f8fad5bd9cb-469f-a165-70867728950e-"));
+		assertEquals("/a/0f8fad5b-d9cb-469f-a165-70867728950", RestConnectionMetrics.normalizePath("/a/0f8fad5b-d9cb-469f-a165-70867728950"));
+	}
+	
+	@Test
+	public void testNormalizeWithoutIds() {
+		String path = "/api/v1/projectVersions/attributes";
+		assertSame(path, RestConnectionMetrics.normalizePath(path));
+		assertEquals("/api/v1/12a/a12", RestConnectionMetrics.normalizePath("/api/v1/12a/a12"));
+		assertEquals("//a//", RestConnectionMetrics.normalizePath("//a//"));
+		assertEquals("/", RestConnectionMetrics.normalizePath("/"));
+		assertEquals("/", RestConnectionMetrics.normalizePath(""));
+		assertEquals("/", RestConnectionMetrics.normalizePath(null));
+	}
+	
+	@Test
+	public void testEndpointsByNormalizedPath() {
+		RestConnectionMetrics metrics = new RestConnectionMetrics();
+		EndpointMetrics endpoint = metrics.getEndpointMetrics("GET", URI.create("http://localhost/api/v1/issues/1?fields=id"));
+		assertSame(endpoint, metrics.getEndpointMetrics("GET", URI.create("http://localhost/api/v1/issues/2")));
+		assertSame(endpoint, metrics.getEndpointMetrics("GET", "/api/v1/issues/0f8fad5b-d9cb-469f-a165-70867728950e"));
+		assertNotSame(endpoint, metrics.getEndpointMetrics("PUT", "/api/v1/issues/1"));
+		assertEquals("/api/v1/issues/{id}", endpoint.getPath());
+		assertEquals(new TreeSet<>(Arrays.asList("GET /api/v1/issues/{id}", "PUT /api/v1/issues/{id}")), metrics.getEndpoints().keySet());
+	}
+	
+	@Test
+	public void testMaxEndpoints() {
+		RestConnectionMetrics metrics = new RestConnectionMetrics(3);
+		EndpointMetrics a = metrics.getEndpointMetrics("GET", "/a");
+		EndpointMetrics b = metrics.getEndpointMetrics("GET", "/b");
+		EndpointMetrics c = metrics.getEndpointMetrics("POST", "/c");
+		// New paths after the maximum has been reached are recorded under {other}
+		EndpointMetrics other = metrics.getEndpointMetrics("GET", "/d");
+		assertEquals("{other}", other.getPath());
+		assertSame(other, metrics.getEndpointMetrics("GET", "/e/1"));
+		assertEquals("{other}", metrics.getEndpointMetrics("POST", "/f").getPath());
+		assertNotSame(other, metrics.getEndpointMetrics("POST", "/f"));
+		// Existing endpoints are still recorded separately
+		assertSame(a, metrics.getEndpointMetrics("GET", "/a"));
+		assertSame(b, metrics.getEndpointMetrics("GET", "/b"));
+		assertSame(c, metrics.getEndpointMetrics("POST", "/c"));
+		assertEquals(new TreeSet<>(Arrays.asList("GET /a", "GET /b", "GET {other}", "POST /c", "POST {other}")), metrics.getEndpoints().keySet());
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.resilience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RateLimiter}, using a manually advanced clock to verify pacing,
+ * rate limit window resets and pauses without depending on actual elapsed time.
+ */
+public class RateLimiterTest {
+	private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+	private final RateLimiter rateLimiter = new RateLimiter(clock::get);
+	
+	@Test
+	public void testNoLimitWithoutHeaders() throws Exception {
+		for ( int i = 0 ; i < 10 ; i++ ) {
+			rateLimiter.acquire();
+		}
+		rateLimiter.update(headers(null, null, null));
+		rateLimiter.update(headers("100", "invalid", "10"));
+		assertWaitMillis(0);
+		rateLimiter.acquire();
+		assertWaitMillis(0);
+	}
+	
+	@Test
+	public void testNoPacingAboveThreshold() throws Exception {
+		rateLimiter.update(headers("100", "60", "10"));
+		for ( int i = 0 ; i < 10 ; i++ ) {
+			rateLimiter.acquire();
+		}
+		assertWaitMillis(0);
+	}
+	
+	@Test
+	public void testPacingBelowThreshold() throws Exception {
+		// 10 requests remaining in 1 second; requests should be spaced 100 ms apart
+		rateLimiter.update(headers("100", "10", "1"));
+		assertWaitMillis(0);
+		rateLimiter.acquire();
+		assertWaitMillis(100);
+		advanceMillis(40);
+		assertWaitMillis(60);
+		advanceMillis(60);
+		assertWaitMillis(0);
+		rateLimiter.acquire();
+		assertWaitMillis(100);
+		// Permits don't accumulate beyond the maximum burst size
+		advanceMillis(1000);
+		rateLimiter.acquire();
+		assertWaitMillis(100);
+		// Pacing stops once remaining requests are above the threshold again
+		rateLimiter.update(headers("100", "90", "1"));
+		assertWaitMillis(0);
+		assertEquals(0, rateLimiter.getThrottledRequests());
+	}
+	
+	@Test
+	public void testPacingWithoutLimitHeader() throws Exception {
+		rateLimiter.update(headers(null, "50", "10"));
+		rateLimiter.acquire();
+		assertWaitMillis(200);
+	}
+	
+	@Test
+	public void testMaxBurst() throws Exception {
+		rateLimiter.maxBurst(3).update(headers("100", "10", "1"));
+		for ( int i = 0 ; i < 3 ; i++ ) {
+			assertWaitMillis(0);
+			rateLimiter.acquire();
+		}
+		assertWaitMillis(100);
+		advanceMillis(250);
+		rateLimiter.acquire();
+		rateLimiter.acquire();
+		assertWaitMillis(50);
+	}
+	
+	@Test
+	public void testReset() throws Exception {
+		rateLimiter.update(headers("100", "10", "1"));
+		rateLimiter.acquire();
+		// No requests remaining; no requests are admitted until the window resets
+		rateLimiter.update(headers("100", "0", "2"));
+		assertWaitMillis(2000);
+		advanceMillis(1500);
+		assertWaitMillis(500);
+		advanceMillis(500);
+		assertWaitMillis(0);
+		// The rate for the new window hasn't been learned yet, so requests are not paced
+		rateLimiter.acquire();
+		rateLimiter.acquire();
+		assertWaitMillis(0);
+		// Zero or negative reset values are treated as 1 second
+		rateLimiter.update(headers("100", "0", "-5"));
+		assertWaitMillis(1000);
+	}
+	
+	@Test
+	public void testPause() throws Exception {
+		rateLimiter.pause(500);
+		assertWaitMillis(500);
+		// A shorter pause doesn't shorten the current pause
+		rateLimiter.pause(100);
+		assertWaitMillis(500);
+		advanceMillis(300);
+		rateLimiter.pause(400);
+		assertWaitMillis(400);
+		advanceMillis(400);
+		assertWaitMillis(0);
+		rateLimiter.acquire();
+		assertWaitMillis(0);
+	}
+	
+	@Test
+	public void testPauseWhilePacing() throws Exception {
+		rateLimiter.update(headers("100", "10", "1"));
+		rateLimiter.pause(500);
+		assertWaitMillis(500);
+		advanceMillis(500);
+		// The bucket is empty after the pause; pacing continues at the current rate
+		assertWaitMillis(100);
+		advanceMillis(100);
+		rateLimiter.acquire();
+		assertWaitMillis(100);
+	}
+	
+	@Test
+	public void testAcquireWaitsForPause() throws Exception {
+		RateLimiter rateLimiter = new RateLimiter();
+		rateLimiter.pause(200);
+		long startMillis = System.currentTimeMillis();
+		rateLimiter.acquire();
+		long elapsedMillis = System.currentTimeMillis()-startMillis;
+		assertTrue("Elapsed: "+elapsedMillis, elapsedMillis >= 150);
+		assertEquals(1, rateLimiter.getThrottledRequests());
+		assertTrue(rateLimiter.getThrottledMillis() >= 150);
+	}
+	
+	private void advanceMillis(long millis) {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+	
+	private void assertWaitMillis(long expectedMillis) {
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(expectedMillis), rateLimiter.getWaitNanos(), TimeUnit.MICROSECONDS.toNanos(1));
+	}
+	
+	private static final Function<String, String> headers(String limit, String remaining, String reset) {
+		Map<String, String> result = new HashMap<>();
+		result.put("X-Rate-Limit-Limit", limit);
+		result.put("X-Rate-Limit-Remaining", remaining);
+		result.put("X-Rate-Limit-Reset", reset);
+		return result::get;
+	}
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.HttpMethod;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.test.StubServer;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Tests for downloading files through a server that supports gzip content encoding. 
+ * Range requests apply to the encoded content, so {@link FileDownloader} must request 
+ * the identity encoding for resumed and parallel range downloads to produce a file that 
+ * is byte-identical to the remote file, while other requests should still accept 
+ * compressed responses.
+ */
+public class FileDownloaderCompressionTest {
+	private static final String ETAG = "\"v1\"";
+	private static final byte[] CONTENT = createContent();
+	@Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+	@Rule public final StubServer server = new StubServer()
+			.handle("/file", this::handleFile)
+			.handle("/json", this::handleJson);
+	private final List<String> acceptEncodingHeaders = new CopyOnWriteArrayList<>();
+	private RestConnection conn;
+	
+	@Before
+	public void start() {
+		conn = RestConnection.builder().baseUrl(server.getBaseUrl()).publishMetricsMBean(false).build();
+	}
+	
+	@After
+	public void stop() {
+		conn.close();
+	}
+	
+	@Test
+	public void testResumedDownload() throws IOException {
+		Path target = tempFolder.getRoot().toPath().resolve("file");
+		Files.write(target.resolveSibling("file.part"), Arrays.copyOf(CONTENT, 1000));
+		Files.write(target.resolveSibling("file.part.validator"), ETAG.getBytes(StandardCharsets.UTF_8));
+		
+		DownloadResult result = downloader().download(target);
+		
+		assertEquals(1000, result.getResumedFrom());
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(Arrays.asList("identity"), acceptEncodingHeaders);
+	}
+	
+	@Test
+	public void testParallelRangeDownload() throws IOException {
+		Path target = tempFolder.getRoot().toPath().resolve("file");
+		
+		downloader().parallelRanges(4).minRangeSize(1024).download(target);
+		
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(4, acceptEncodingHeaders.size());
+		assertTrue(acceptEncodingHeaders.toString(), acceptEncodingHeaders.stream().allMatch("identity"::equals));
+	}
+	
+	@Test
+	public void testRegularRequestAcceptsCompressedResponse() {
+		JSONMap result = conn.executeRequest(HttpMethod.GET, conn.getBaseResource().path("/json"), JSONMap.class);
+		
+		assertEquals("ok", result.get("result"));
+		assertEquals(Arrays.asList("gzip, deflate"), acceptEncodingHeaders);
+	}
+	
+	private FileDownloader downloader() {
+		return new FileDownloader(conn, () -> conn.getBaseResource().path("/file").request());
+	}
+	
+	/**
+	 * Serve the gzip-encoded content if the client accepts gzip encoding, applying any 
+	 * requested range to the encoded content like for example Apache httpd does.
+	 */
+	private void handleFile(HttpExchange exchange) throws IOException {
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		acceptEncodingHeaders.add(acceptEncoding);
+		byte[] content = CONTENT;
+		if ( acceptEncoding != null && acceptEncoding.contains("gzip") ) {
+			content = gzip(CONTENT);
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+		}
+		exchange.getResponseHeaders().add("ETag", ETAG);
+		exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+		int start = 0;
+		int end = content.length-1;
+		if ( range != null && (ifRange == null || ETAG.equals(ifRange)) ) {
+			String[] startAndEnd = range.substring("bytes=".length()).split("-", -1);
+			start = Integer.parseInt(startAndEnd[0]);
+			if ( !startAndEnd[1].isEmpty() ) { end = Math.min(end, Integer.parseInt(startAndEnd[1])); }
+			exchange.getResponseHeaders().add("Content-Range", "bytes "+start+"-"+end+"/"+content.length);
+			exchange.sendResponseHeaders(206, end-start+1);
+		} else {
+			exchange.sendResponseHeaders(200, content.length);
+		}
+		try ( OutputStream os = exchange.getResponseBody() ) { os.write(content, start, end-start+1); }
+	}
+	
+	private void handleJson(HttpExchange exchange) throws IOException {
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		acceptEncodingHeaders.add(acceptEncoding);
+		byte[] content = "{\"result\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+		if ( acceptEncoding != null && acceptEncoding.contains("gzip") ) {
+			content = gzip(content);
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+		}
+		StubServer.send(exchange, 200, "application/json", content);
+	}
+	
+	private static final byte[] createContent() {
+		StringBuilder sb = new StringBuilder();
+		for ( int i = 0 ; sb.length() < 16*1024 ; i++ ) {
+			sb.append("line ").append(i).append('\n');
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+	
+	private static final byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try ( GZIPOutputStream out = new GZIPOutputStream(result) ) {
+			out.write(content);
+		}
+		return result.toByteArray();
+	}
+}
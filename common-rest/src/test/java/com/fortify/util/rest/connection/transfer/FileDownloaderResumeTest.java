@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.test.StubServer;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Tests for resuming downloads with {@link FileDownloader}, verifying that a 
+ * <code>.part</code> file is only resumed if the remote file hasn't changed,
+ * and for downloading a file in parallel ranges.
+ */
+public class FileDownloaderResumeTest {
+	private static final String ETAG = "\"v2\"";
+	private static final byte[] CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+	@Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+	private final List<String> rangeHeaders = new CopyOnWriteArrayList<>();
+	private final List<String> ifRangeHeaders = new CopyOnWriteArrayList<>();
+	private volatile byte[] content = CONTENT;
+	@Rule public final StubServer server = new StubServer().handle("/file", this::handle);
+	private RestConnection conn;
+	
+	@Before
+	public void start() {
+		conn = RestConnection.builder().baseUrl(server.getBaseUrl()).publishMetricsMBean(false).build();
+	}
+	
+	@After
+	public void stop() {
+		conn.close();
+	}
+	
+	@Test
+	public void testPartFileWithoutValidatorIsNotResumed() throws IOException {
+		Path target = tempFolder.getRoot().toPath().resolve("file");
+		Files.write(part(target), "XXXXXXXXXX".getBytes(StandardCharsets.UTF_8));
+		
+		DownloadResult result = download(target);
+		
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(0, result.getResumedFrom());
+		assertEquals(Arrays.asList((String)null), rangeHeaders);
+		assertFalse(Files.exists(validator(target)));
+	}
+	
+	@Test
+	public void testPartFileWithMatchingValidatorIsResumed() throws IOException {
+		Path target = tempFolder.getRoot().toPath().resolve("file");
+		Files.write(part(target), Arrays.copyOf(CONTENT, 10));
+		Files.write(validator(target), ETAG.getBytes(StandardCharsets.UTF_8));
+		
+		DownloadResult result = download(target);
+		
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(10, result.getResumedFrom());
+		assertEquals(Arrays.asList("bytes=10-"), rangeHeaders);
+		assertEquals(Arrays.asList(ETAG), ifRangeHeaders);
+		assertFalse(Files.exists(validator(target)));
+	}
+	
+	@Test
+	public void testPartFileWithStaleValidatorIsRestarted() throws IOException {
+		Path target = tempFolder.getRoot().toPath().resolve("file");
+		Files.write(part(target), "XXXXXXXXXX".getBytes(StandardCharsets.UTF_8));
+		Files.write(validator(target), "\"v1\"".getBytes(StandardCharsets.UTF_8));
+		
+		DownloadResult result = download(target);
+		
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(0, result.getResumedFrom());
+		assertEquals(Arrays.asList("\"v1\""), ifRangeHeaders);
+	}
+	
+	@Test
+	public void testNoResumeIgnoresPartFile() throws IOException {
+		Path target = tempFolder.getRoot().toPath().resolve("file");
+		Files.write(part(target), Arrays.copyOf(CONTENT, 10));
+		Files.write(validator(target), ETAG.getBytes(StandardCharsets.UTF_8));
+		
+		new FileDownloader(conn, () -> conn.getBaseResource().path("/file").request()).resume(false).download(target);
+		
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertNull(rangeHeaders.get(0));
+	}
+	
+	@Test
+	public void testParallelRangeDownload() throws IOException {
+		content = new byte[64*1024];
+		for ( int i = 0 ; i < content.length ; i++ ) { content[i] = (byte)i; }
+		Path target = tempFolder.getRoot().toPath().resolve("file");
+		
+		new FileDownloader(conn, () -> conn.getBaseResource().path("/file").request())
+			.parallelRanges(4).minRangeSize(8*1024).download(target);
+		
+		assertArrayEquals(content, Files.readAllBytes(target));
+		// The first range is read from the open-ended first response, without retries
+		assertEquals(4, rangeHeaders.size());
+		assertEquals("bytes=0-", rangeHeaders.get(0));
+	}
+	
+	private DownloadResult download(Path target) {
+		return new FileDownloader(conn, () -> conn.getBaseResource().path("/file").request()).download(target);
+	}
+	
+	private static Path part(Path target) {
+		return target.resolveSibling(target.getFileName()+".part");
+	}
+	
+	private static Path validator(Path target) {
+		return target.resolveSibling(target.getFileName()+".part.validator");
+	}
+	
+	/**
+	 * Minimal range request handling, returning the full content if the If-Range
+	 * header doesn't match the current ETag.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+		rangeHeaders.add(range);
+		if ( ifRange != null ) { ifRangeHeaders.add(ifRange); }
+		exchange.getResponseHeaders().add("ETag", ETAG);
+		exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+		byte[] content = this.content;
+		int start = 0;
+		int end = content.length-1;
+		if ( range != null && (ifRange == null || ETAG.equals(ifRange)) ) {
+			String[] startAndEnd = range.substring("bytes=".length()).split("-", -1);
+			start = Integer.parseInt(startAndEnd[0]);
+			if ( !startAndEnd[1].isEmpty() ) { end = Math.min(end, Integer.parseInt(startAndEnd[1])); }
+			exchange.getResponseHeaders().add("Content-Range", "bytes "+start+"-"+end+"/"+content.length);
+			exchange.sendResponseHeaders(206, end-start+1);
+		} else {
+			exchange.sendResponseHeaders(200, content.length);
+		}
+		try ( OutputStream os = exchange.getResponseBody() ) { os.write(content, start, end-start+1); }
+	}
+}
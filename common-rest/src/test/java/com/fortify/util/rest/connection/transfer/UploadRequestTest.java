@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.connection.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.jersey.media.multipart.Boundary;
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataMultiPart;
+import org.glassfish.jersey.media.multipart.MultiPart;
+import org.glassfish.jersey.media.multipart.file.StreamDataBodyPart;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.test.StubServer;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Tests for {@link RestConnection#executeUploadRequest(String, javax.ws.rs.client.Invocation.Builder, Entity, Class, long, ITransferProgressListener)},
+ * verifying that multipart uploads are streamed to the server using chunked transfer 
+ * encoding instead of being buffered in memory, that the MIME-Version header is sent, 
+ * and that upload progress is reported.
+ */
+public class UploadRequestTest {
+	private static final long FILE_SIZE = 3*TransferProgressInterceptor.REPORTING_INTERVAL+12345;
+	private static final long STREAMED_BYTES = 256*1024;
+	private final CountDownLatch serverReceivedData = new CountDownLatch(1);
+	private volatile String transferEncoding;
+	private volatile String contentLength;
+	private volatile String mimeVersion;
+	private volatile long bytesReceived;
+	@Rule public final StubServer server = new StubServer().handle("/upload", this::handle);
+	private RestConnection conn;
+	
+	@Before
+	public void start() {
+		conn = RestConnection.builder().baseUrl(server.getBaseUrl()).publishMetricsMBean(false).build();
+	}
+	
+	@After
+	public void stop() {
+		conn.close();
+	}
+	
+	@Test
+	public void testMultipartUploadIsStreamed() {
+		List<long[]> progress = new CopyOnWriteArrayList<>();
+		BlockingInputStream file = new BlockingInputStream(FILE_SIZE, STREAMED_BYTES, serverReceivedData);
+		MultiPart multiPart = new FormDataMultiPart()
+				.type(new MediaType("multipart", "form-data", 
+						Collections.singletonMap(Boundary.BOUNDARY_PARAMETER, Boundary.createBoundary())))
+				.bodyPart(new FormDataBodyPart("Filename", "test.bin"))
+				.bodyPart(new StreamDataBodyPart("test.bin", file, "test.bin", MediaType.APPLICATION_OCTET_STREAM_TYPE));
+		String result = conn.executeUploadRequest(HttpMethod.POST, conn.getBaseResource().path("/upload").request(), 
+				Entity.entity(multiPart, multiPart.getMediaType()), String.class, FILE_SIZE, 
+				(bytesTransferred, totalBytes) -> progress.add(new long[] {bytesTransferred, totalBytes}));
+		
+		assertEquals("OK", result);
+		assertTrue("Server didn't receive any data before the upload was fully written", file.isUnblockedByServer());
+		assertEquals("chunked", transferEncoding);
+		assertNull(contentLength);
+		assertEquals("1.0", mimeVersion);
+		
+		assertTrue("Expected intermediate progress reports, got "+progress.size(), progress.size() > 3);
+		long previous = 0;
+		for ( long[] report : progress ) {
+			assertTrue(report[0] >= previous);
+			assertEquals(FILE_SIZE, report[1]);
+			previous = report[0];
+		}
+		assertEquals(bytesReceived, progress.get(progress.size()-1)[0]);
+		assertTrue(bytesReceived > FILE_SIZE);
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+		contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		mimeVersion = exchange.getRequestHeaders().getFirst("MIME-Version");
+		long count = 0;
+		byte[] buffer = new byte[8192];
+		try ( InputStream is = exchange.getRequestBody() ) {
+			int read;
+			while ( (read = is.read(buffer)) != -1 ) {
+				count += read;
+				if ( count >= STREAMED_BYTES ) { serverReceivedData.countDown(); }
+			}
+		}
+		bytesReceived = count;
+		StubServer.send(exchange, 200, "text/plain", "OK".getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * {@link InputStream} that generates the given number of bytes, blocking after
+	 * the given number of bytes has been read until the server has signaled that 
+	 * it has received that data. If the client buffered the full request entity 
+	 * before sending it, the server would never receive this data and the stream 
+	 * would time out waiting.
+	 */
+	private static final class BlockingInputStream extends InputStream {
+		private final long size;
+		private final long blockAt;
+		private final CountDownLatch unblock;
+		private long position = 0;
+		private boolean unblockedByServer = false;
+		
+		public BlockingInputStream(long size, long blockAt, CountDownLatch unblock) {
+			this.size = size;
+			this.blockAt = blockAt;
+			this.unblock = unblock;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1)==-1 ? -1 : b[0] & 0xff;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if ( position >= size ) { return -1; }
+			if ( position == blockAt ) { awaitServer(); }
+			long limit = position < blockAt ? blockAt : size;
+			int count = (int)Math.min(len, limit-position);
+			for ( int i = 0 ; i < count ; i++ ) {
+				b[off+i] = (byte)((position+i) % 251);
+			}
+			position += count;
+			return count;
+		}
+		
+		private void awaitServer() throws IOException {
+			try {
+				unblockedByServer = unblock.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		
+		public boolean isUnblockedByServer() {
+			return unblockedByServer;
+		}
+	}
+}
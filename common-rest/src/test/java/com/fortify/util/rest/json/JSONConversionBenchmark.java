@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+/**
+ * <p>JMH benchmark for typed {@link JSONMap} access, comparing the shared 
+ * {@link JSONConversionService} against creating a new {@link DefaultConversionService}
+ * for every access, as was previously done by {@link JSONMap}. Each benchmark invocation
+ * performs five typed accesses on a single record.</p>
+ * 
+ * <p>Run with the GC profiler to compare allocation rates, using 
+ * <code>mvn -Pbenchmark -pl common-rest verify -DskipTests -Dbenchmark.args="JSONConversion -prof gc"</code>,
+ * after installing the other modules in this project using <code>mvn install -DskipTests</code>.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JSONConversionBenchmark {
+	private JSONMap record;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		record = new JSONMap();
+		record.put("id", 42);
+		record.put("name", "5.0");
+		record.put("issueCount", "123");
+		record.put("active", true);
+		record.put("creationDate", "2019-03-04T05:06:07.890+0100");
+	}
+	
+	@Benchmark
+	public void sharedConversionService(Blackhole bh) {
+		bh.consume(record.get("id", Long.class));
+		bh.consume(record.get("name", String.class));
+		bh.consume(record.get("issueCount", Integer.class));
+		bh.consume(record.get("active", Boolean.class));
+		bh.consume(record.get("creationDate", Date.class));
+	}
+	
+	@Benchmark
+	public void conversionServicePerAccess(Blackhole bh) {
+		bh.consume(createLegacyConversionService().convert(record.get("id"), Long.class));
+		bh.consume(createLegacyConversionService().convert(record.get("name"), String.class));
+		bh.consume(createLegacyConversionService().convert(record.get("issueCount"), Integer.class));
+		bh.consume(createLegacyConversionService().convert(record.get("active"), Boolean.class));
+		bh.consume(createLegacyConversionService().convert(record.get("creationDate"), Date.class));
+	}
+	
+	private static final ConversionService createLegacyConversionService() {
+		DefaultConversionService result = new DefaultConversionService();
+		result.addConverter(new Converter<String, Date>() {
+			@Override
+			public Date convert(String source) {
+				try {
+					return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse(source);
+				} catch ( ParseException e ) {
+					throw new RuntimeException("Error parsing date format pattern", e);
+				}
+			}
+		});
+		return result;
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+/**
+ * Equivalence tests for {@link JSONConversionService}, comparing conversion results and
+ * exceptions against a {@link DefaultConversionService} configured like the conversion 
+ * service that was previously created by {@link JSONMap} for every typed access.
+ */
+public class JSONConversionServiceTest {
+	private static final List<Object> SOURCES = Arrays.asList(
+			null, "", " ", "42", " 42 ", "-7", "4.5", "3000000000", "abc", 
+			"true", "TRUE", " yes ", "off", "1", "0", "2019-03-04T05:06:07.890+0100",
+			42, -7, 42L, 3000000000L, 4.5d, 4.5f, new BigDecimal("12.50"), new BigInteger("12345678901234567890"),
+			true, Boolean.FALSE, new Date(1551672367890L));
+	private static final List<Class<?>> TARGET_TYPES = Arrays.asList(
+			Object.class, String.class, Integer.class, int.class, Long.class, long.class, 
+			Double.class, double.class, BigDecimal.class, Boolean.class, boolean.class, Date.class);
+	
+	@Test
+	public void testEquivalentToDefaultConversionService() {
+		ConversionService expectedService = createLegacyConversionService();
+		ConversionService actualService = JSONConversionService.getInstance();
+		for ( Object source : SOURCES ) {
+			for ( Class<?> targetType : TARGET_TYPES ) {
+				String description = describe(source)+" -> "+targetType.getSimpleName();
+				Object expected, actual;
+				try {
+					expected = expectedService.convert(source, targetType);
+				} catch ( RuntimeException expectedException ) {
+					try {
+						actual = actualService.convert(source, targetType);
+						fail(description+": expected "+expectedException.getClass().getName()+", got "+describe(actual));
+					} catch ( RuntimeException actualException ) {
+						assertEquals(description, expectedException.getClass(), actualException.getClass());
+					}
+					continue;
+				}
+				actual = actualService.convert(source, targetType);
+				assertEquals(description, describe(expected), describe(actual));
+			}
+		}
+	}
+	
+	@Test
+	public void testIsoDates() {
+		ConversionService service = JSONConversionService.getInstance();
+		assertEquals(new Date(1551672367890L), service.convert("2019-03-04T05:06:07.890+01:00", Date.class));
+		assertEquals(new Date(1551672367890L), service.convert("2019-03-04T04:06:07.890Z", Date.class));
+		assertEquals(new Date(1551672367890L), service.convert("2019-03-04T04:06:07.890", Date.class));
+	}
+	
+	@Test
+	public void testJSONMapTypedAccess() {
+		JSONMap map = new JSONMap();
+		map.put("id", 42);
+		map.put("nested", new JSONMap());
+		map.getOrCreateJSONMap("nested").put("active", "yes");
+		assertEquals(Long.valueOf(42), map.get("id", Long.class));
+		assertEquals("42", map.get("id", String.class));
+		assertEquals(Boolean.TRUE, map.getPath("nested.active", Boolean.class));
+	}
+	
+	private static final String describe(Object value) {
+		return value == null ? "null" : value.getClass().getSimpleName()+":"+value;
+	}
+	
+	/**
+	 * Create a {@link ConversionService} configured in the same way as the conversion 
+	 * service that was previously created by {@link JSONMap}. 
+	 */
+	private static final ConversionService createLegacyConversionService() {
+		DefaultConversionService result = new DefaultConversionService();
+		result.addConverter(new Converter<String, Date>() {
+			@Override
+			public Date convert(String source) {
+				try {
+					return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse(source);
+				} catch ( ParseException e ) {
+					throw new RuntimeException("Error parsing date format pattern", e);
+				}
+			}
+		});
+		return result;
+	}
+}
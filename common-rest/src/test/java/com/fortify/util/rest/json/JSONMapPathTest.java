@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fortify.util.rest.json.ondemand.JSONMapOnDemandLoaderSpEL;
+import com.fortify.util.spring.SpringExpressionUtil;
+
+/**
+ * Equivalence tests for {@link JSONMapPath}, comparing the results and exceptions of
+ * {@link JSONMap#getPath(String)} against evaluating the same paths as SpEL expressions,
+ * which is how paths were evaluated before they were being compiled.
+ */
+public class JSONMapPathTest {
+	private static final String JSON = "{"
+			+ "\"id\":42,\"name\":\"root\",\"nullValue\":null,\"_under$score\":\"u\","
+			+ "\"nested\":{\"a\":{\"b\":{\"c\":\"deep\"}},\"size\":3,\"active\":true},"
+			+ "\"list\":[{\"name\":\"first\"},{\"name\":\"second\",\"tags\":[\"x\",\"y\"]}],"
+			+ "\"matrix\":[[1,2],[3,4]],"
+			+ "\"empty\":\"emptyValue\",\"values\":\"valuesValue\","
+			+ "\"true\":\"reserved\",\"div\":\"reserved\""
+			+ "}";
+	private static final List<String> PATHS = Arrays.asList(
+			// Simple and nested paths
+			"id", "name", "_under$score", "nested", "nested.a", "nested.a.b.c", "nested.size", "nested.active",
+			// Indexed paths
+			"list[0]", "list[1].name", "list[1].tags[1]", "matrix[1][0]", "matrix[0]",
+			// Missing or null intermediate values, and out-of-bounds indexes
+			"missing", "missing.a", "nullValue", "nullValue.a", "nested.missing.a", "name.a", 
+			"id.a", "list[2]", "list[2].name", "list[0].tags[0]", "matrix[5][0]", "list.name",
+			// Bean properties and reserved words, which SpEL resolves differently from map entries
+			"empty", "values", "nested.empty", "list[0].empty", "true", "div", "nested.a.b.class",
+			// Non-path expressions, which are evaluated as SpEL expressions
+			"list.size()", "id + 1", "name == 'root'", "nested?.a", "nullValue?.a", "list[0]['name']",
+			"#root.name", "'literal'", "list.![name]", "name.length()", "nested['a'].b.c", " id", "");
+	
+	@Test
+	public void testEquivalentToSpEL() throws Exception {
+		JSONMap json = JSONObjectMapper.getInstance().readValue(JSON, JSONMap.class);
+		for ( String path : PATHS ) {
+			assertEquivalentToSpEL(json, path);
+		}
+	}
+	
+	@Test
+	public void testOnDemandProperties() throws Exception {
+		JSONMap json = JSONObjectMapper.getInstance().readValue(JSON, JSONMap.class);
+		json.put("onDemand", new JSONMapOnDemandLoaderSpEL("name", String.class, false));
+		json.put("onDemandNested", new JSONMapOnDemandLoaderSpEL("nested.a", JSONMap.class, false));
+		json.put("onDemandList", new JSONMapOnDemandLoaderSpEL("list", JSONList.class, false));
+		for ( String path : Arrays.asList("onDemand", "onDemandNested.b.c", "onDemandList[1].name", "onDemandList[5]") ) {
+			assertEquivalentToSpEL(json, path);
+		}
+		assertEquals("deep", json.getPath("onDemandNested.b.c"));
+	}
+	
+	@Test
+	public void testRepeatedEvaluation() throws Exception {
+		// Compiled paths are cached; verify that cached paths are evaluated against the given JSONMap
+		for ( int i = 0 ; i < 3 ; i++ ) {
+			JSONMap json = JSONObjectMapper.getInstance().readValue("{\"a\":{\"b\":["+i+"]}}", JSONMap.class);
+			assertEquals(i, json.getPath("a.b[0]"));
+			assertEquivalentToSpEL(json, "a.b[0]");
+			assertEquivalentToSpEL(json, "a.b[1]");
+		}
+	}
+	
+	private static final void assertEquivalentToSpEL(JSONMap json, String path) {
+		Object expected, actual;
+		try {
+			expected = SpringExpressionUtil.evaluateExpression(json, path, Object.class);
+		} catch ( RuntimeException expectedException ) {
+			try {
+				actual = json.getPath(path);
+				fail(path+": expected "+expectedException.getClass().getName()+", got "+describe(actual));
+			} catch ( RuntimeException actualException ) {
+				assertEquals(path, expectedException.getClass(), actualException.getClass());
+				assertEquals(path, expectedException.getMessage(), actualException.getMessage());
+			}
+			return;
+		}
+		actual = json.getPath(path);
+		assertEquals(path, describe(expected), describe(actual));
+	}
+	
+	private static final String describe(Object value) {
+		return value == null ? "null" : value.getClass().getSimpleName()+":"+value;
+	}
+}
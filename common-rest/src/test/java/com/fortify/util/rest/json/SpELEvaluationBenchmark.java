@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import com.fortify.util.spring.SpringExpressionUtil;
+
+/**
+ * <p>JMH benchmark comparing SpEL evaluation on {@link JSONMap} records through the cached
+ * expressions provided by {@link SpringExpressionUtil}, with and without SpEL compilation 
+ * ({@link SpelCompilerMode#MIXED}), against parsing the expression for every record as 
+ * was done before expressions were cached.</p>
+ * 
+ * <p>Run using <code>mvn -Pbenchmark -pl common-rest verify -DskipTests -Dbenchmark.args="SpEL"</code>,
+ * after installing the other modules in this project using <code>mvn install -DskipTests</code>.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpELEvaluationBenchmark {
+	private static final String SIMPLE_EXPRESSION = "project.name+':'+name";
+	private static final String TEMPLATE_EXPRESSION = "${project.name} - ${name} (${id})";
+	
+	@Param({"OFF", "MIXED"})
+	public SpelCompilerMode compilerMode;
+	private JSONMap record;
+	private SpelExpressionParser uncachedParser;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		SpringExpressionUtil.setCompilerMode(compilerMode);
+		uncachedParser = new SpelExpressionParser(new SpelParserConfiguration(compilerMode, getClass().getClassLoader()));
+		JSONMap project = new JSONMap();
+		project.put("id", 10);
+		project.put("name", "WebGoat");
+		record = new JSONMap();
+		record.put("id", 42);
+		record.put("name", "5.0");
+		record.put("active", true);
+		record.put("project", project);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SpringExpressionUtil.setCompilerMode(SpelCompilerMode.OFF);
+	}
+	
+	@Benchmark
+	public String simpleUncached() {
+		return uncachedParser.parseExpression(SIMPLE_EXPRESSION)
+				.getValue(SpringExpressionUtil.getStandardEvaluationContext(), record, String.class);
+	}
+	
+	@Benchmark
+	public String simpleCached() {
+		return SpringExpressionUtil.evaluateExpression(record, SIMPLE_EXPRESSION, String.class);
+	}
+	
+	@Benchmark
+	public String templateUncached() {
+		return uncachedParser.parseExpression(TEMPLATE_EXPRESSION, new TemplateParserContext("${","}"))
+				.getValue(SpringExpressionUtil.getStandardEvaluationContext(), record, String.class);
+	}
+	
+	@Benchmark
+	public String templateCached() {
+		return SpringExpressionUtil.evaluateTemplateExpression(record, TEMPLATE_EXPRESSION, String.class);
+	}
+}
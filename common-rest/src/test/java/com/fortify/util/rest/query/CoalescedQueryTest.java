@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.query;
+
+import static com.fortify.util.rest.test.ConcurrentTestUtils.runConcurrently;
+import static com.fortify.util.rest.test.ConcurrentTestUtils.sleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.WebTarget;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.json.JSONList;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.json.ondemand.IJSONMapOnDemandLoader;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for concurrent identical queries on a connection that coalesces concurrent
+ * requests, verifying that a pre-processor that modifies the returned data only sees 
+ * the data for its own query.
+ */
+public class CoalescedQueryTest {
+	private static final int ITEM_COUNT = 10;
+	@Rule public final StubServer server = new StubServer();
+	private RestConnection conn;
+	private final AtomicInteger requestCount = new AtomicInteger();
+	
+	@Before
+	public void start() {
+		server.handle("/", exchange -> {
+			requestCount.incrementAndGet();
+			sleep(500); // Allow the concurrent query to join this request
+			StringBuilder items = new StringBuilder();
+			for ( int i = 0 ; i < ITEM_COUNT ; i++ ) {
+				items.append(items.length()==0 ? "" : ",").append("{\"id\":").append(i).append(",\"processCount\":0}");
+			}
+			StubServer.sendJson(exchange, 200, "{\"items\":["+items+"]}");
+		});
+		conn = RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.coalesceConcurrentRequests(true)
+				.publishMetricsMBean(false).build();
+	}
+	
+	@After
+	public void stop() {
+		conn.close();
+	}
+	
+	@Test
+	public void testConcurrentQueriesWithModifyingPreProcessor() throws Exception {
+		List<JSONList> results = runConcurrently(2, () -> new TestQueryBuilder(conn)
+				.preProcessor(json -> { json.put("processCount", json.get("processCount", Integer.class)+1); return true; })
+				.build().getAll());
+		assertEquals(1, requestCount.get());
+		for ( JSONList result : results ) {
+			assertEquals(ITEM_COUNT, result.size());
+			for ( JSONMap item : result.asValueType(JSONMap.class) ) {
+				assertEquals(Integer.valueOf(1), item.get("processCount", Integer.class));
+			}
+		}
+		assertNotSame(results.get(0).get(0), results.get(1).get(0));
+	}
+	
+	private static final class TestQuery extends AbstractRestConnectionQuery<JSONMap> {
+		public TestQuery(TestQueryBuilder config) {
+			super(config);
+		}
+		
+		@Override
+		protected WebTarget updateWebTargetWithPagingData(WebTarget target, PagingData pagingData) {
+			return target;
+		}
+		
+		@Override
+		protected void updatePagingDataFromResponse(PagingData pagingData, JSONMap data) {}
+		
+		@Override
+		protected JSONList getJSONListFromResponse(JSONMap json) {
+			return json.get("items", JSONList.class);
+		}
+		
+		@Override
+		protected Class<JSONMap> getResponseTypeClass() {
+			return JSONMap.class;
+		}
+	}
+	
+	private static final class TestQueryBuilder extends AbstractRestConnectionQueryBuilder<RestConnection, TestQueryBuilder> {
+		public TestQueryBuilder(RestConnection conn) {
+			super(conn, false);
+		}
+		
+		@Override
+		protected IJSONMapOnDemandLoader createOnDemandLoader(String uri) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public IRestConnectionQuery build() {
+			return new TestQuery(this);
+		}
+	}
+}
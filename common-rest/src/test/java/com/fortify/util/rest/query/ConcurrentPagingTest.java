@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.WebTarget;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.json.JSONList;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.json.ondemand.IJSONMapOnDemandLoader;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for concurrent page requests in {@link AbstractRestConnectionQuery}, verifying
+ * that remaining pages are loaded on the connection's task executor with at most the
+ * configured number of concurrent page requests, while results are still processed 
+ * in page order.
+ */
+public class ConcurrentPagingTest {
+	private static final int TOTAL_COUNT = 500;
+	private static final int MAX_CONCURRENT_PAGE_REQUESTS = 3;
+	@Rule public final StubServer server = new StubServer(10);
+	private RestConnection conn;
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final Set<String> requestThreadNames = ConcurrentHashMap.newKeySet();
+	
+	@Before
+	public void start() {
+		server.handle("/", exchange -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			requestCount.incrementAndGet();
+			try {
+				Thread.sleep(20);
+				int offset = 0;
+				int limit = 0;
+				for ( String param : exchange.getRequestURI().getQuery().split("&") ) {
+					String[] nameAndValue = param.split("=");
+					if ( "offset".equals(nameAndValue[0]) ) { offset = Integer.parseInt(nameAndValue[1]); }
+					if ( "limit".equals(nameAndValue[0]) ) { limit = Integer.parseInt(nameAndValue[1]); }
+				}
+				StringBuilder items = new StringBuilder();
+				for ( int i = offset ; i < Math.min(offset+limit, TOTAL_COUNT) ; i++ ) {
+					items.append(items.length()==0 ? "" : ",").append("{\"id\":").append(i).append("}");
+				}
+				StubServer.sendJson(exchange, 200, "{\"totalCount\":"+TOTAL_COUNT+",\"items\":["+items+"]}");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+			}
+		});
+		conn = RestConnection.builder()
+				.baseUrl(server.getBaseUrl())
+				.publishMetricsMBean(false).build();
+	}
+	
+	@After
+	public void stop() {
+		conn.close();
+	}
+	
+	@Test
+	public void testConcurrentPaging() {
+		for ( int run = 0 ; run < 5 ; run++ ) {
+			JSONList results = new TestQueryBuilder(conn).maxConcurrentPageRequests(MAX_CONCURRENT_PAGE_REQUESTS).build().getAll();
+			assertEquals(TOTAL_COUNT, results.size());
+			for ( int i = 0 ; i < TOTAL_COUNT ; i++ ) {
+				assertEquals(Integer.valueOf(i), results.asValueType(JSONMap.class).get(i).get("id", Integer.class));
+			}
+		}
+		assertEquals(5*TOTAL_COUNT/50, requestCount.get());
+		assertTrue("Concurrent page requests: "+maxRunning.get(), maxRunning.get() <= MAX_CONCURRENT_PAGE_REQUESTS);
+		// The first page is loaded on the current thread, all remaining pages on the connection's task executor
+		requestThreadNames.remove(Thread.currentThread().getName());
+		assertTrue("Page request threads: "+requestThreadNames, !requestThreadNames.isEmpty() 
+				&& requestThreadNames.stream().allMatch(name -> name.startsWith("rest-connection-task-")));
+	}
+	
+	@Test
+	public void testMaxResults() {
+		JSONList results = new TestQueryBuilder(conn).maxConcurrentPageRequests(MAX_CONCURRENT_PAGE_REQUESTS).maxResults(120).build().getAll();
+		assertEquals(120, results.size());
+		assertEquals(Integer.valueOf(119), results.asValueType(JSONMap.class).get(119).get("id", Integer.class));
+		assertEquals(3, requestCount.get());
+	}
+	
+	private final class TestQuery extends AbstractRestConnectionQuery<JSONMap> {
+		public TestQuery(TestQueryBuilder config) {
+			super(config);
+		}
+		
+		@Override
+		protected JSONMap executeRequest(WebTarget target) {
+			requestThreadNames.add(Thread.currentThread().getName());
+			return super.executeRequest(target);
+		}
+		
+		@Override
+		protected WebTarget updateWebTargetWithPagingData(WebTarget target, PagingData pagingData) {
+			return target.queryParam("offset", ""+pagingData.getNextPageStart()).queryParam("limit", ""+pagingData.getNextPageSize());
+		}
+		
+		@Override
+		protected void updatePagingDataFromResponse(PagingData pagingData, JSONMap data) {
+			pagingData.setTotalAvailable( data.get("totalCount", Integer.class) );
+		}
+		
+		@Override
+		protected JSONList getJSONListFromResponse(JSONMap json) {
+			Object data = json.get("items", Object.class);
+			return (data instanceof JSONList) ? (JSONList)data : new JSONList(Arrays.asList(data));
+		}
+		
+		@Override
+		protected Class<JSONMap> getResponseTypeClass() {
+			return JSONMap.class;
+		}
+	}
+	
+	private final class TestQueryBuilder extends AbstractRestConnectionQueryBuilder<RestConnection, TestQueryBuilder> {
+		public TestQueryBuilder(RestConnection conn) {
+			super(conn, true);
+		}
+		
+		@Override
+		protected IJSONMapOnDemandLoader createOnDemandLoader(String uri) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public IRestConnectionQuery build() {
+			return new TestQuery(this);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fortify.util.rest.connection.RestConnection;
+import com.fortify.util.rest.json.JSONMap;
+import com.fortify.util.rest.json.ondemand.AbstractJSONMapOnDemandLoader;
+import com.fortify.util.rest.json.ondemand.IJSONMapOnDemandLoaderAsync;
+import com.fortify.util.rest.json.ondemand.JSONMapOnDemandLoaderRest;
+import com.fortify.util.rest.json.processor.IJSONMapProcessor;
+import com.fortify.util.rest.test.ConcurrentTestUtils;
+import com.fortify.util.rest.test.StubServer;
+
+/**
+ * Tests for {@link JSONMapProcessorWithOnDemandPrefetch}
+ */
+public class JSONMapProcessorWithOnDemandPrefetchTest {
+	private static final int WINDOW_SIZE = 4;
+	@Rule public final StubServer server = new StubServer(2*WINDOW_SIZE);
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	private final AtomicInteger asyncLoads = new AtomicInteger();
+	
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void testPrefetch() {
+		List<JSONMap> processed = new ArrayList<>();
+		JSONMapProcessorWithOnDemandPrefetch prefetch = new JSONMapProcessorWithOnDemandPrefetch(new CollectingProcessor(processed), WINDOW_SIZE, executor);
+		TestLoader storingLoader = new TestLoader(true);
+		TestLoader nonStoringLoader = new TestLoader(false);
+		for ( int i = 0 ; i < 20 ; i++ ) {
+			JSONMap json = new JSONMap();
+			json.put("id", i);
+			// Multiple prefetched properties per record, to verify that the number of 
+			// concurrent loads is limited rather than just the number of pending records
+			json.put("stored1", storingLoader);
+			json.put("stored2", storingLoader);
+			json.put("notStored", nonStoringLoader);
+			prefetch.process(json);
+		}
+		prefetch.flush();
+		assertEquals(20, processed.size());
+		for ( int i = 0 ; i < 20 ; i++ ) {
+			JSONMap json = processed.get(i);
+			assertEquals(i, json.get("id"));
+			assertEquals("prefetched", getRawValue(json, "stored1"));
+			assertEquals("prefetched", getRawValue(json, "stored2"));
+			assertSame(nonStoringLoader, getRawValue(json, "notStored"));
+		}
+		assertEquals(40, asyncLoads.get());
+		assertTrue("Concurrent loads: "+maxRunning.get(), maxRunning.get() <= WINDOW_SIZE);
+	}
+	
+	@Test
+	public void testPrefetchRestLoader() {
+		AtomicInteger runningRequests = new AtomicInteger();
+		AtomicInteger maxRunningRequests = new AtomicInteger();
+		server.handle("/", exchange -> {
+			maxRunningRequests.accumulateAndGet(runningRequests.incrementAndGet(), Math::max);
+			try {
+				ConcurrentTestUtils.sleep(20);
+				StubServer.sendJson(exchange, 200, "{\"path\":\""+exchange.getRequestURI().getPath()+"\"}");
+			} finally {
+				runningRequests.decrementAndGet();
+			}
+		});
+		RestConnection conn = RestConnection.builder().baseUrl(server.getBaseUrl()).publishMetricsMBean(false).build();
+		try {
+			List<JSONMap> processed = new ArrayList<>();
+			JSONMapProcessorWithOnDemandPrefetch prefetch = new JSONMapProcessorWithOnDemandPrefetch(new CollectingProcessor(processed), WINDOW_SIZE, conn.getTaskExecutor());
+			JSONMapOnDemandLoaderRest loader = new JSONMapOnDemandLoaderRest(conn, true, "/items/${id}", "path");
+			for ( int i = 0 ; i < 20 ; i++ ) {
+				JSONMap json = new JSONMap();
+				json.put("id", i);
+				// Multiple prefetched properties per record, to verify that the number of 
+				// concurrent requests is limited rather than just the number of pending records
+				json.put("details1", loader);
+				json.put("details2", loader);
+				prefetch.process(json);
+			}
+			prefetch.flush();
+			assertEquals(20, processed.size());
+			for ( int i = 0 ; i < 20 ; i++ ) {
+				assertEquals("/items/"+i, getRawValue(processed.get(i), "details1"));
+				assertEquals("/items/"+i, getRawValue(processed.get(i), "details2"));
+			}
+			assertTrue("Concurrent requests: "+maxRunningRequests.get(), maxRunningRequests.get() <= WINDOW_SIZE);
+		} finally {
+			conn.close();
+		}
+	}
+	
+	/**
+	 * Get the given property value without invoking any on-demand loader
+	 */
+	private static final Object getRawValue(JSONMap json, String name) {
+		return json.entrySet().stream().filter(e -> name.equals(e.getKey())).findFirst().get().getValue();
+	}
+	
+	private final class TestLoader extends AbstractJSONMapOnDemandLoader implements IJSONMapOnDemandLoaderAsync {
+		private static final long serialVersionUID = 1L;
+
+		public TestLoader(boolean storeValue) {
+			super(storeValue);
+		}
+		
+		@Override
+		public Object getOnDemand(String propertyName, JSONMap parent) {
+			return "loaded";
+		}
+		
+		@Override
+		public CompletableFuture<Object> getOnDemandAsync(String propertyName, JSONMap parent, Executor executor) {
+			asyncLoads.incrementAndGet();
+			return CompletableFuture.supplyAsync(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+				}
+				return "prefetched";
+			}, executor);
+		}
+	}
+	
+	private static final class CollectingProcessor implements IJSONMapProcessor {
+		private final List<JSONMap> processed;
+		
+		public CollectingProcessor(List<JSONMap> processed) {
+			this.processed = processed;
+		}
+		
+		@Override
+		public void process(JSONMap json) {
+			processed.add(json);
+		}
+		
+		@Override
+		public void notifyNextPage(PagingData pagingData) {}
+	}
+}
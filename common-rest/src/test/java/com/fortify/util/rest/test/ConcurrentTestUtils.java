@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utility methods for concurrency tests.
+ */
+public final class ConcurrentTestUtils {
+	private ConcurrentTestUtils() {}
+	
+	/**
+	 * Invoke the given {@link Callable} from the given number of threads that are released
+	 * at the same time, to maximize contention, and return the results in thread order.
+	 */
+	public static final <T> List<T> runConcurrently(int threads, Callable<T> callable) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch ready = new CountDownLatch(threads);
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<T>> futures = new ArrayList<>(threads);
+			for ( int i = 0 ; i < threads ; i++ ) {
+				futures.add(executor.submit(() -> {
+					ready.countDown();
+					start.await();
+					return callable.call();
+				}));
+			}
+			ready.await(10, TimeUnit.SECONDS);
+			start.countDown();
+			List<T> result = new ArrayList<>(threads);
+			for ( Future<T> future : futures ) {
+				result.add(future.get(30, TimeUnit.SECONDS));
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Sleep for the given number of milliseconds, restoring the interrupt flag if interrupted
+	 */
+	public static final void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
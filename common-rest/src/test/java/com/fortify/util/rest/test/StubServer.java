@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * (c) Copyright 2017 EntIT Software LLC, a Micro Focus company
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.rest.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.rules.ExternalResource;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * JUnit rule that starts a local {@link HttpServer} on a random port before each test,
+ * and stops it after each test. Handlers can be registered either before the server 
+ * is started, or from within a test or <code>@Before</code> method.
+ * 
+ * <pre>
+ * &#64;Rule public final StubServer server = new StubServer();
+ * 
+ * &#64;Before
+ * public void setUp() {
+ *     server.handle("/", exchange -&gt; StubServer.sendJson(exchange, 200, "{}"));
+ * }
+ * </pre>
+ */
+public class StubServer extends ExternalResource {
+	private final int threads;
+	private final Map<String, HttpHandler> handlers = new LinkedHashMap<>();
+	private HttpServer server;
+	private ExecutorService executor;
+	
+	/**
+	 * Create a {@link StubServer} that handles at most 4 concurrent requests
+	 */
+	public StubServer() {
+		this(4);
+	}
+	
+	/**
+	 * Create a {@link StubServer} that handles at most the given number of concurrent requests
+	 * @param threads
+	 */
+	public StubServer(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * Register the given {@link HttpHandler} for the given path
+	 * @param path
+	 * @param handler
+	 * @return
+	 */
+	public StubServer handle(String path, HttpHandler handler) {
+		handlers.put(path, handler);
+		if ( server != null ) { server.createContext(path, handler); }
+		return this;
+	}
+	
+	@Override
+	protected void before() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		handlers.forEach(server::createContext);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.start();
+	}
+	
+	@Override
+	protected void after() {
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+	}
+	
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	public String getBaseUrl() {
+		return "http://127.0.0.1:"+getPort();
+	}
+	
+	/**
+	 * Send the given JSON string as the response body with the given status
+	 */
+	public static final void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+		send(exchange, status, "application/json", json.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Send the given response body with the given status and content type
+	 */
+	public static final void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		if ( contentType != null ) { exchange.getResponseHeaders().add("Content-Type", contentType); }
+		exchange.sendResponseHeaders(status, body.length==0 ? -1 : body.length);
+		try ( OutputStream os = exchange.getResponseBody() ) { os.write(body); }
+	}
+	
+	/**
+	 * Send the given status without a response body
+	 */
+	public static final void sendStatus(HttpExchange exchange, int status) throws IOException {
+		exchange.sendResponseHeaders(status, -1);
+		exchange.close();
+	}
+}
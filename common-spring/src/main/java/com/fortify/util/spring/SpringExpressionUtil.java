@@ -27,12 +27,17 @@ package com.fortify.util.spring;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import org.springframework.context.expression.MapAccessor;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.PropertyAccessor;
 import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.ReflectivePropertyAccessor;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
@@ -41,17 +46,45 @@ import com.fortify.util.spring.expression.SimpleExpression;
 import com.fortify.util.spring.expression.TemplateExpression;
 
 /**
- * This class provides several utility methods related to 
+ * <p>This class provides several utility methods related to 
  * Spring Expression Language, for example for evaluating
- * (template) expressions on input objects.
+ * (template) expressions on input objects.</p>
+ * 
+ * <p>Parsed expressions are cached by expression string, so
+ * evaluating the same expression string for many input objects
+ * only parses the expression once. Optionally, SpEL compilation 
+ * can be enabled through {@link #setCompilerMode(SpelCompilerMode)}
+ * or the standard <code>spring.expression.compiler.mode</code>
+ * system property, allowing frequently evaluated expressions to be 
+ * compiled to byte code.</p>
  */
 public class SpringExpressionUtil {
+	private static final int MAX_CACHED_EXPRESSIONS = 10000;
 	private static final List<PropertyAccessor> PROPERTY_ACCESSORS = getPropertyAccessors();
-	private static final SpelExpressionParser SPEL_PARSER = new SpelExpressionParser();
 	private static final StandardEvaluationContext SPEL_CONTEXT = createStandardEvaluationContext();
+	private static final ConcurrentMap<String, SimpleExpression> SIMPLE_EXPRESSION_CACHE = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, TemplateExpression> TEMPLATE_EXPRESSION_CACHE = new ConcurrentHashMap<>();
+	private static volatile SpelExpressionParser SPEL_PARSER = new SpelExpressionParser();
 	
 	protected SpringExpressionUtil() {}
 	
+	/**
+	 * Configure the {@link SpelCompilerMode} for all expressions parsed through this class.
+	 * With {@link SpelCompilerMode#MIXED}, expressions are compiled after they have been
+	 * evaluated a number of times, falling back to interpreted mode if compiled evaluation
+	 * fails. With {@link SpelCompilerMode#IMMEDIATE}, expressions are compiled after their
+	 * first evaluation, throwing an exception if compiled evaluation fails. By default,
+	 * the compiler mode is taken from the <code>spring.expression.compiler.mode</code>
+	 * system property, or {@link SpelCompilerMode#OFF} if not defined. Any cached 
+	 * expressions are discarded when changing the compiler mode.
+	 * @param compilerMode
+	 */
+	public static final void setCompilerMode(SpelCompilerMode compilerMode) {
+		SPEL_PARSER = new SpelExpressionParser(new SpelParserConfiguration(compilerMode, SpringExpressionUtil.class.getClassLoader()));
+		SIMPLE_EXPRESSION_CACHE.clear();
+		TEMPLATE_EXPRESSION_CACHE.clear();
+	}
+	
 	public static final void addPropertyAccessors(PropertyAccessor... propertyAccessors) {
 		PROPERTY_ACCESSORS.addAll(Arrays.asList(propertyAccessors));
 	}
@@ -78,21 +111,41 @@ public class SpringExpressionUtil {
 	}
 
 	/**
-	 * Parse the given string as a SpEL expression.
+	 * Parse the given string as a SpEL expression, returning a cached
+	 * {@link SimpleExpression} if the given string was parsed before.
 	 * @param exprStr
 	 * @return The SpEL {@link Expression} object for the given expression string, or null if input is null
 	 */
 	public static final SimpleExpression parseSimpleExpression(String exprStr) {
-		return exprStr==null ? null : new SimpleExpression(SPEL_PARSER.parseExpression(exprStr));
+		return exprStr==null ? null : getCachedExpression(SIMPLE_EXPRESSION_CACHE, exprStr, 
+				e -> new SimpleExpression(SPEL_PARSER.parseExpression(e)));
 	}
 	
 	/**
-	 * Parse the given string as a SpEL template expression.
+	 * Parse the given string as a SpEL template expression, returning a cached
+	 * {@link TemplateExpression} if the given string was parsed before.
 	 * @param exprStr
 	 * @return The SpEL {@link Expression} object for the given expression string, or null if input is null 
 	 */
 	public static final TemplateExpression parseTemplateExpression(String exprStr) {
-		return exprStr==null ? null : new TemplateExpression(SPEL_PARSER.parseExpression(exprStr.replace("\\n", "\n"), new TemplateParserContext("${","}")));
+		return exprStr==null ? null : getCachedExpression(TEMPLATE_EXPRESSION_CACHE, exprStr, 
+				e -> new TemplateExpression(SPEL_PARSER.parseExpression(e.replace("\\n", "\n"), new TemplateParserContext("${","}"))));
+	}
+	
+	/**
+	 * Get the parsed expression for the given expression string from the given cache,
+	 * parsing and caching the expression if not yet cached. To avoid unbounded memory 
+	 * usage if many different expression strings are being generated dynamically, the 
+	 * cache is cleared once it contains the maximum number of cached expressions.
+	 */
+	private static final <E extends Expression> E getCachedExpression(ConcurrentMap<String, E> cache, String exprStr, Function<String, E> parser) {
+		E result = cache.get(exprStr);
+		if ( result == null ) {
+			result = parser.apply(exprStr);
+			if ( cache.size() >= MAX_CACHED_EXPRESSIONS ) { cache.clear(); }
+			cache.putIfAbsent(exprStr, result);
+		}
+		return result;
 	}
 	
 	public static final <T> T evaluateExpression(Object input, Expression expression, Class<T> returnType) {